@@ -0,0 +1,28 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GitRepositoryParserBenchmark {
+
+  @Param({
+    "https://github.com/owner/repository.git",
+    "git@github.com:owner/repository.git",
+    "ssh://git@bitbucket.example.com:7999/project/repository.git",
+    "https://gitlab.example.com/group/subgroup/repository.git"
+  })
+  public String url;
+
+  private final GitRepositoryParser myParser = new GitRepositoryParser();
+
+  @Benchmark
+  public Repository parseRepositoryUrl() {
+    return myParser.parseRepositoryUrl(url);
+  }
+}
@@ -0,0 +1,57 @@
+package jetbrains.buildServer.commitPublisher;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Request building and sending by {@link HttpHelper}, requests go to a local server answering with an empty response,
+ * so the cost of the client is measured rather than the one of a remote forge
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpHelperBenchmark {
+
+  private static final String PAYLOAD = "{\"state\":\"success\",\"target_url\":\"http://localhost:8111/viewLog.html?buildId=42\"," +
+                                        "\"description\":\"Success\",\"context\":\"continuous-integration/teamcity\"}";
+
+  private final Map<String, String> myHeaders = Collections.singletonMap(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+  private HttpServer myServer;
+  private String myUrl;
+
+  @Setup
+  public void startServer() throws Exception {
+    myServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    myServer.createContext("/", exchange -> {
+      try (InputStream body = exchange.getRequestBody()) {
+        while (body.read() != -1) ;
+      }
+      exchange.sendResponseHeaders(201, -1);
+      exchange.close();
+    });
+    myServer.start();
+    myUrl = "http://localhost:" + myServer.getAddress().getPort() + "/repos/owner/repository/statuses/31aa2a5d4e4f0a1f5cbc4e3a4b7a77d3f1b7f0a1";
+  }
+
+  @TearDown
+  public void stopServer() {
+    myServer.stop(0);
+  }
+
+  @Benchmark
+  public void post() throws Exception {
+    HttpHelper.post(myUrl, "user", "password", PAYLOAD, ContentType.APPLICATION_JSON, myHeaders,
+                    BaseCommitStatusPublisher.DEFAULT_CONNECTION_TIMEOUT, null, null);
+  }
+}
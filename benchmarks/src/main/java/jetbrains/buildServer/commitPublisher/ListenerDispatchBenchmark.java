@@ -0,0 +1,67 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.SRunningBuild;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.vcs.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Dispatch of a build event by the listener to the publishers of a build type: the multi-node task is submitted,
+ * accepted, the publishers of the build type are created and the revisions to publish are found.
+ * The server and the build type are the ones of the functional tests, the publisher only records the event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerDispatchBenchmark extends CommitStatusPublisherTestBase {
+
+  private static final Set<String> EVENTS = Collections.singleton(Event.COMMENTED.getName());
+
+  private CommitStatusPublisherListener myListener;
+  private SRunningBuild myBuild;
+
+  @Setup
+  public void setUpServer() throws Exception {
+    setUp();
+    myListener = new CommitStatusPublisherListener(myFixture.getEventDispatcher(), new PublisherManager(myServer), myFixture.getHistory(), myBuildsManager,
+                                                   myFixture.getBuildPromotionManager(), myProblems, myFixture.getServerResponsibility(),
+                                                   myFixture.getSingletonService(ExecutorServices.class), myMultiNodeTasks,
+                                                   new RepositoryRouteCache(), new PublishAuditLog(), new PublishingOperations(), new PublishingMetrics(),
+                                                   new PublishingEventRecorder(myFixture.getSingletonService(ExecutorServices.class), myFixture.getServerPaths()));
+    MockPublisher publisher = new MockPublisher(myPublisherSettings, MockPublisherSettings.PUBLISHER_ID, myBuildType, myFeatureDescriptor.getId(),
+                                                Collections.emptyMap(), myProblems, new PublisherLogger());
+    myPublisherSettings.setPublisher(publisher);
+
+    SVcsRoot vcsRoot = myFixture.addVcsRoot("jetbrains.git", "vcs1");
+    publisher.setVcsRootId(vcsRoot.getExternalId());
+    myBuildType.addVcsRoot(vcsRoot);
+    VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstances().iterator().next();
+    myCurrentVersions.put(vcsRoot.getName(), "111");
+    myFixture.addModification(new ModificationData(new Date(),
+                                                   Collections.singletonList(new VcsChange(VcsChangeInfo.Type.CHANGED, "changed", "file", "file", "1", "2")),
+                                                   "description", "user", vcsRootInstance, "rev1", "rev1"));
+    myBuild = myFixture.startBuild(myBuildType);
+  }
+
+  @TearDown
+  public void tearDownServer() throws Exception {
+    tearDown();
+  }
+
+  @Benchmark
+  public void dispatchCommentedEvent() {
+    myListener.buildCommented(myBuild, null, "comment");
+    while (!myMultiNodeTasks.findTasks(EVENTS).isEmpty()) {
+      Thread.yield();
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package jetbrains.buildServer.commitPublisher.gitlab;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GitlabMessageBenchmark {
+
+  @Param({"refs/heads/master", "refs/pull/1/head"})
+  public String branch;
+
+  @Benchmark
+  public String createMessage() {
+    return GitlabPublisher.createMessage(GitlabBuildStatus.SUCCESS, "Project :: Build", branch,
+                                         "http://localhost:8111/viewLog.html?buildId=42", "Success");
+  }
+}
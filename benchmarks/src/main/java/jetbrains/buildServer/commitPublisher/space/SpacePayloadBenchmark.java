@@ -0,0 +1,23 @@
+package jetbrains.buildServer.commitPublisher.space;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpacePayloadBenchmark {
+
+  private final List<String> myChanges = Arrays.asList("31aa2a5d4e4f0a1f5cbc4e3a4b7a77d3f1b7f0a1", "8c6f8d0e2b1b6d4c2a9e2d1c0b7a6f5e4d3c2b1a");
+
+  @Benchmark
+  public String createPayload() {
+    return SpacePublisher.createPayload(myChanges, SpaceBuildStatus.RUNNING, "http://localhost:8111/viewLog.html?buildId=42",
+                                        "TeamCity", "Project :: Build", "Project_Build", 1546300800000L, "Build started");
+  }
+}
@@ -0,0 +1,97 @@
+package jetbrains.buildServer.commitPublisher.stash;
+
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.BuildStatistics;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Messages of both Bitbucket Server endpoints, the build statistics are not set,
+ * since only the test counters are read from them
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StashMessageBenchmark {
+
+  private final StashPublisher.StatusData myData = new StashPublisher.StatusData() {
+    @NotNull
+    @Override
+    public String getCommit() {
+      return "31aa2a5d4e4f0a1f5cbc4e3a4b7a77d3f1b7f0a1";
+    }
+
+    @NotNull
+    @Override
+    public String getState() {
+      return StashBuildStatus.SUCCESSFUL.toString();
+    }
+
+    @NotNull
+    @Override
+    public String getKey() {
+      return "Project_Build";
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+      return "Project :: Build #42";
+    }
+
+    @NotNull
+    @Override
+    public String getUrl() {
+      return "http://localhost:8111/viewLog.html?buildId=42";
+    }
+
+    @NotNull
+    @Override
+    public String getDescription() {
+      return "Success";
+    }
+
+    @NotNull
+    @Override
+    public String getBuildNumber() {
+      return "42";
+    }
+
+    @Nullable
+    @Override
+    public VcsRootInstance getVcsRootInstance() {
+      return null;
+    }
+
+    @Override
+    public long getBuildDurationMs() {
+      return 61000;
+    }
+
+    @Nullable
+    @Override
+    public String getVcsBranch() {
+      return "refs/heads/master";
+    }
+
+    @Override
+    public BuildStatistics getBuildStatistics() {
+      return null;
+    }
+  };
+
+  @Benchmark
+  public String createBuildApiMessage() {
+    return StashPublisher.createBuildApiMessage(myData);
+  }
+
+  @Benchmark
+  public String createCoreApiMessage() {
+    return StashPublisher.createCoreApiMessage(myData);
+  }
+}
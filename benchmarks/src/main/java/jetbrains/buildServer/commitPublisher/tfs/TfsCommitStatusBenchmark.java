@@ -0,0 +1,24 @@
+package jetbrains.buildServer.commitPublisher.tfs;
+
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.messages.Status;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TfsCommitStatusBenchmark {
+
+  @Param({"true", "false"})
+  public boolean starting;
+
+  @Benchmark
+  public String createCommitStatus() {
+    TfsStatusPublisher.CommitStatus status = TfsStatusPublisher.createCommitStatus(
+      "Project :: Build", "42", "Project_Build", Status.NORMAL, starting, "http://localhost:8111/viewLog.html?buildId=42");
+    return TfsStatusPublisher.toJson(status);
+  }
+}
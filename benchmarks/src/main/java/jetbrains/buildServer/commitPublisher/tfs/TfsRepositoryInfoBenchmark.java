@@ -0,0 +1,25 @@
+package jetbrains.buildServer.commitPublisher.tfs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TfsRepositoryInfoBenchmark {
+
+  @Param({
+    "https://test.visualstudio.com/DefaultCollection/_git/Repository",
+    "https://test.visualstudio.com/DefaultCollection/Project/_git/Repository",
+    "http://host:81/tfs/DefaultCollection/Project/_git/Repository"
+  })
+  public String url;
+
+  @Benchmark
+  public TfsRepositoryInfo parse() {
+    return TfsRepositoryInfo.parse(url);
+  }
+}
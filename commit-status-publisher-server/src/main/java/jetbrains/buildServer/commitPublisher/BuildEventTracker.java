@@ -0,0 +1,147 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Remembers the last consequent event (such as FINISHED) published for a build, so that late first events
+ * (QUEUED, STARTED) of the same build don't overwrite its final status.
+ *
+ * Entries are kept for a while after the last consequent event of the build and are expired by {@link #cleanup()}.
+ * The number of entries is bounded by a limit which grows with the number of running builds,
+ * the oldest entries are evicted when the limit is exceeded.
+ *
+ * Events are tracked in memory of the node which publishes them. With distributed publishing a late first event
+ * taken by another node is not checked against the final status published by this node,
+ * it is skipped by {@link BuildTaskSequences} instead.
+ */
+class BuildEventTracker {
+
+  static final String TTL_PROPERTY = "teamcity.commitStatusPublisher.lastEvents.ttlMinutes";
+  static final String MIN_CAPACITY_PROPERTY = "teamcity.commitStatusPublisher.lastEvents.minCapacity";
+  static final String CAPACITY_PER_RUNNING_BUILD_PROPERTY = "teamcity.commitStatusPublisher.lastEvents.capacityPerRunningBuild";
+
+  // Boxed keys are kept on purpose: the plugin has no primitive collections library of its own, and the trove maps
+  // bundled with the server are not thread-safe, so every event would take a lock which the concurrent map avoids.
+  // A key is boxed once per event, next to the cost of publishing the status it is negligible.
+  private final ConcurrentHashMap<Long, LastEvent> myLastEvents = new ConcurrentHashMap<Long, LastEvent>();
+  private final IntSupplier myRunningBuildsCount;
+  private final AtomicLong myExpiredCount = new AtomicLong();
+  private final AtomicLong myEvictedCount = new AtomicLong();
+  private final AtomicLong mySkippedCount = new AtomicLong();
+
+  BuildEventTracker(@NotNull IntSupplier runningBuildsCount) {
+    myRunningBuildsCount = runningBuildsCount;
+  }
+
+  /**
+   * Records an event of the build
+   * @return false if the event must not be published, i.e. it is a first event and a consequent event of the build is already published
+   */
+  boolean recordEvent(long buildId, @NotNull Event event) {
+    if (event.isFirstTask()) {
+      if (myLastEvents.containsKey(buildId)) {
+        mySkippedCount.incrementAndGet();
+        return false;
+      }
+      return true;
+    }
+    if (event.isConsequentTask())
+      myLastEvents.put(buildId, new LastEvent(event, System.currentTimeMillis()));
+    return true;
+  }
+
+  @Nullable
+  Event getLastEvent(long buildId) {
+    LastEvent lastEvent = myLastEvents.get(buildId);
+    return lastEvent == null ? null : lastEvent.myEvent;
+  }
+
+  /**
+   * Removes expired entries and evicts the oldest ones if the tracker exceeds its capacity
+   */
+  void cleanup() {
+    cleanup(System.currentTimeMillis());
+  }
+
+  void cleanup(long now) {
+    long ttlMs = TimeUnit.MINUTES.toMillis(TeamCityProperties.getInteger(TTL_PROPERTY, 60));
+    long expired = 0;
+    for (Map.Entry<Long, LastEvent> entry : myLastEvents.entrySet()) {
+      if (now - entry.getValue().myTimestamp >= ttlMs && myLastEvents.remove(entry.getKey(), entry.getValue()))
+        expired++;
+    }
+    myExpiredCount.addAndGet(expired);
+
+    int capacity = getCapacity();
+    int excess = myLastEvents.size() - capacity;
+    if (excess <= 0)
+      return;
+    List<Map.Entry<Long, LastEvent>> entries = new ArrayList<Map.Entry<Long, LastEvent>>(myLastEvents.entrySet());
+    entries.sort((e1, e2) -> Long.compare(e1.getValue().myTimestamp, e2.getValue().myTimestamp));
+    long evicted = 0;
+    for (int i = 0; i < excess && i < entries.size(); i++) {
+      Map.Entry<Long, LastEvent> entry = entries.get(i);
+      if (myLastEvents.remove(entry.getKey(), entry.getValue()))
+        evicted++;
+    }
+    myEvictedCount.addAndGet(evicted);
+    LOG.info("Evicted " + evicted + " build(s) from the last published events, capacity: " + capacity +
+             ". Late statuses of these builds will not be checked against their final status. " +
+             "Consider increasing the " + CAPACITY_PER_RUNNING_BUILD_PROPERTY + " internal property.");
+  }
+
+  int getCapacity() {
+    int minCapacity = TeamCityProperties.getInteger(MIN_CAPACITY_PROPERTY, 1000);
+    int perRunningBuild = TeamCityProperties.getInteger(CAPACITY_PER_RUNNING_BUILD_PROPERTY, 10);
+    return Math.max(minCapacity, myRunningBuildsCount.getAsInt() * perRunningBuild);
+  }
+
+  int size() {
+    return myLastEvents.size();
+  }
+
+  /**
+   * Exports the numbers of expired and evicted entries and of skipped events
+   */
+  void registerCounters(@NotNull PublishingMetrics metrics) {
+    metrics.registerCounter("last_events_expired", "Builds forgotten by the last published event tracker after the TTL", myExpiredCount::get);
+    metrics.registerCounter("last_events_evicted", "Builds evicted from the last published event tracker when it exceeded its capacity", myEvictedCount::get);
+    metrics.registerCounter("late_first_events_skipped", "Queued or started statuses not published because the build had already finished",
+                            mySkippedCount::get);
+  }
+
+  long getExpiredCount() {
+    return myExpiredCount.get();
+  }
+
+  long getEvictedCount() {
+    return myEvictedCount.get();
+  }
+
+  long getSkippedCount() {
+    return mySkippedCount.get();
+  }
+
+  private static class LastEvent {
+    private final Event myEvent;
+    private final long myTimestamp;
+
+    LastEvent(@NotNull Event event, long timestamp) {
+      myEvent = event;
+      myTimestamp = timestamp;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package jetbrains.buildServer.commitPublisher;
+
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.BuildPromotionEx;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sequence numbers of publishing tasks of a single build, kept in attributes of its build promotion.
+ *
+ * The attributes are saved with the build and seen by all nodes, so the tasks of a build are ordered
+ * even when its events are submitted and published by different nodes whose clocks are not in sync:
+ * a task gets a sequence number greater than the ones of all tasks submitted for the build before it,
+ * and a task older than the last published task of the build is skipped, so that e.g. a STARTED status
+ * doesn't overwrite the FINISHED one.
+ */
+class BuildTaskSequences {
+
+  static final String SUBMITTED_ATTRIBUTE_NAME = "teamcity.commitStatusPublisher.submittedSequence";
+  static final String PUBLISHED_ATTRIBUTE_NAME = "teamcity.commitStatusPublisher.publishedSequence";
+
+  static final long UNKNOWN_SEQUENCE = -1;
+
+  private BuildTaskSequences() {
+  }
+
+  /**
+   * Records a new task of the build
+   * @param sequence sequence number given to the task by the submitting node
+   * @return sequence number of the task, greater than the given one if a later task was already submitted by another node
+   */
+  static long submit(@NotNull BuildPromotion promotion, long sequence) {
+    long result = Math.max(sequence, get(promotion, SUBMITTED_ATTRIBUTE_NAME) + 1);
+    ((BuildPromotionEx)promotion).setAttribute(SUBMITTED_ATTRIBUTE_NAME, String.valueOf(result));
+    return result;
+  }
+
+  /**
+   * @return true if a task with a greater sequence number is already published for the build
+   */
+  static boolean isOutdated(@NotNull BuildPromotion promotion, long sequence) {
+    return sequence < get(promotion, PUBLISHED_ATTRIBUTE_NAME);
+  }
+
+  static void published(@NotNull BuildPromotion promotion, long sequence) {
+    if (sequence > get(promotion, PUBLISHED_ATTRIBUTE_NAME))
+      ((BuildPromotionEx)promotion).setAttribute(PUBLISHED_ATTRIBUTE_NAME, String.valueOf(sequence));
+  }
+
+  private static long get(@NotNull BuildPromotion promotion, @NotNull String attributeName) {
+    Object value = ((BuildPromotionEx)promotion).getAttribute(attributeName);
+    if (value == null)
+      return UNKNOWN_SEQUENCE;
+    try {
+      return Long.parseLong(value.toString());
+    } catch (NumberFormatException e) {
+      return UNKNOWN_SEQUENCE;
+    }
+  }
+}
@@ -3,10 +3,15 @@ package jetbrains.buildServer.commitPublisher;
 import com.google.common.util.concurrent.Striped;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.BuildProblemData;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.MultiNodeTasks.PerformingTask;
@@ -26,7 +31,7 @@ import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
 public class CommitStatusPublisherListener extends BuildServerAdapter {
 
   private final static String PUBLISHING_ENABLED_PROPERTY_NAME = "teamcity.commitStatusPublisher.enabled";
-  private final static int MAX_LAST_EVENTS_TO_REMEMBER = 1000;
+  final static String DISTRIBUTED_PUBLISHING_PROPERTY_NAME = "teamcity.commitStatusPublisher.distributedPublishing.enabled";
 
   private final PublisherManager myPublisherManager;
   private final BuildHistory myBuildHistory;
@@ -36,16 +41,18 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
   private final ServerResponsibility myServerResponsibility;
   private final MultiNodeTasks myMultiNodeTasks;
   private final ExecutorServices myExecutorServices;
+  private final RepositoryRouteCache myRoutes;
+  private final PublishAuditLog myAuditLog;
+  private final PublishingOperations myOperations;
+  private final PublishingMetrics myMetrics;
+  private final PublishingExecutor myPublishingExecutor;
+  private final PublishingEventRecorder myRecorder;
   private final Map<String, Event> myEventTypes = new HashMap<>();
   private static final Striped<Lock> myLocks = Striped.lazyWeakLock(100);
-  private final Map<Long, Event> myLastEvents =
-    new LinkedHashMap<Long, Event> () {
-      @Override
-      protected boolean removeEldestEntry(Map.Entry<Long, Event> eldest)
-      {
-        return size() > MAX_LAST_EVENTS_TO_REMEMBER;
-      }
-    };
+  private final BuildEventTracker myLastEvents;
+  private final AtomicLong mySequence = new AtomicLong();
+  private volatile PendingSequences myPendingSequences;
+  private final List<ScheduledFuture<?>> myPeriodicTasks = new ArrayList<ScheduledFuture<?>>();
 
   public CommitStatusPublisherListener(@NotNull EventDispatcher<BuildServerListener> events,
                                        @NotNull PublisherManager voterManager,
@@ -55,7 +62,12 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
                                        @NotNull CommitStatusPublisherProblems problems,
                                        @NotNull ServerResponsibility serverResponsibility,
                                        @NotNull final ExecutorServices executorServices,
-                                       @NotNull MultiNodeTasks multiNodeTasks) {
+                                       @NotNull MultiNodeTasks multiNodeTasks,
+                                       @NotNull RepositoryRouteCache routes,
+                                       @NotNull PublishAuditLog auditLog,
+                                       @NotNull PublishingOperations operations,
+                                       @NotNull PublishingMetrics metrics,
+                                       @NotNull PublishingEventRecorder recorder) {
     myPublisherManager = voterManager;
     myBuildHistory = buildHistory;
     myBuildsManager = buildsManager;
@@ -64,7 +76,21 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
     myServerResponsibility = serverResponsibility;
     myMultiNodeTasks = multiNodeTasks;
     myExecutorServices = executorServices;
+    myRoutes = routes;
+    myAuditLog = auditLog;
+    myOperations = operations;
+    myMetrics = metrics;
+    myRecorder = recorder;
+    myPublishingExecutor = new PublishingExecutor(executorServices.getLowPriorityExecutorService());
+    myMetrics.setQueueDepthSupplier(myPublishingExecutor::getWaitingCount);
     myEventTypes.putAll(Arrays.stream(Event.values()).collect(Collectors.toMap(Event::getName, et -> et)));
+    myLastEvents = new BuildEventTracker(() -> myBuildsManager.getRunningBuilds().size());
+    myLastEvents.registerCounters(myMetrics);
+    myPeriodicTasks.add(myExecutorServices.getNormalExecutorService().scheduleWithFixedDelay(() -> {
+      myLastEvents.cleanup();
+      myMetrics.removeIdleBuildTypes();
+    }, 1, 1, TimeUnit.MINUTES));
+    myPeriodicTasks.add(myExecutorServices.getNormalExecutorService().scheduleWithFixedDelay(myAuditLog::drain, 1, 1, TimeUnit.SECONDS));
 
     events.addListener(this);
 
@@ -145,6 +171,16 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
     ));
   }
 
+  @Override
+  public void serverShutdown() {
+    for (ScheduledFuture<?> periodicTask : myPeriodicTasks) {
+      periodicTask.cancel(false);
+    }
+    myPublishingExecutor.shutdown();
+    myMetrics.setQueueDepthSupplier(null);
+    myRecorder.stop();
+  }
+
   @Override
   public void changesLoaded(@NotNull final SRunningBuild build) {
     SBuildType buildType = getBuildType(Event.STARTED, build);
@@ -235,6 +271,40 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
     submitTaskForQueuedBuild(Event.REMOVED_FROM_QUEUE, build);
   }
 
+  @Override
+  public void vcsRootUpdated(@NotNull SVcsRoot oldVcsRoot, @NotNull SVcsRoot newVcsRoot) {
+    myRoutes.invalidate(oldVcsRoot.getId());
+  }
+
+  @Override
+  public void vcsRootRemoved(@NotNull SVcsRoot root) {
+    myRoutes.invalidate(root.getId());
+  }
+
+  @Override
+  public void buildTypeUnregistered(@NotNull SBuildType buildType) {
+    myProblems.clearProblems(buildType.getInternalId());
+  }
+
+  @Override
+  public void buildTypePersisted(@NotNull SBuildType buildType) {
+    clearProblemsOfRemovedFeatures(buildType);
+  }
+
+  @Override
+  public void buildTypeTemplatePersisted(@NotNull BuildTypeTemplate buildTemplate) {
+    for (SBuildType buildType : buildTemplate.getUsages()) {
+      clearProblemsOfRemovedFeatures(buildType);
+    }
+  }
+
+  private void clearProblemsOfRemovedFeatures(@NotNull SBuildType buildType) {
+    Set<String> featureIds = buildType.getBuildFeaturesOfType(CommitStatusPublisherFeature.TYPE).stream()
+                                      .map(SBuildFeatureDescriptor::getId)
+                                      .collect(Collectors.toSet());
+    myProblems.clearObsoleteProblems(buildType, featureIds);
+  }
+
   private boolean isBuildFeatureAbsent(@Nullable SBuildType buildType) {
     return buildType == null || buildType.getBuildFeaturesOfType(CommitStatusPublisherFeature.TYPE).stream()
                                          .noneMatch(f -> buildType.isEnabled(f.getId()));
@@ -247,8 +317,9 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
                 || "true".equals(publishingEnabledParam));
   }
 
-  private void logStatusNotPublished(@NotNull Event event, @NotNull String buildDescription, @NotNull CommitStatusPublisher publisher, @NotNull String message) {
-    LOG.info(String.format("Event: %s, build %s, publisher %s: %s", event.getName(), buildDescription, publisher.toString(), message));
+  private void logStatusNotPublished(@NotNull Event event, @NotNull BuildPromotion promotion, @NotNull CommitStatusPublisher publisher, @NotNull String message) {
+    myAuditLog.record(promotion.getId(), publisher.getBuildType().getInternalId(), publisher.getId(), null, event.getName(), 0,
+                      PublishAuditLog.Outcome.SKIPPED, message);
   }
 
   private void submitTaskForBuild(@NotNull Event event, @NotNull SBuild build) {
@@ -263,8 +334,12 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
       }
     }
 
+    myRecorder.record(event, build.getBuildPromotion(), event == Event.INTERRUPTED || build.getBuildStatus().isFailed());
     long buildId = build.getBuildId();
-    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(event.getName(), event.getName() + ":" + buildId, buildId, null, null));
+    PublishingTrace trace = PublishingTrace.start(myMetrics, build.getBuildTypeId());
+    long sequence = nextSequence(build.getBuildPromotion(), LogUtil.describe(build));
+    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(event.getName(), event.getName() + ":" + buildId, buildId, sequence, trace.toTaskArgument()));
+    trace.stage(PublishingTrace.SUBMIT);
   }
 
   private void submitTaskForQueuedBuild(@NotNull Event event, @NotNull SQueuedBuild build) {
@@ -278,8 +353,36 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
           return;
       }
     }
+    myRecorder.record(event, build.getBuildPromotion(), false);
     long promotionId = build.getBuildPromotion().getId();
-    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(event.getName(), event.getName() + ":" + promotionId, promotionId, null, null));
+    PublishingTrace trace = PublishingTrace.start(myMetrics, build.getBuildTypeId());
+    long sequence = nextSequence(build.getBuildPromotion(), LogUtil.describe(build));
+    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(event.getName(), event.getName() + ":" + promotionId, promotionId, sequence, trace.toTaskArgument()));
+    trace.stage(PublishingTrace.SUBMIT);
+  }
+
+  /**
+   * Returns the sequence number of a publishing task. Sequence numbers grow monotonically on this node
+   * and follow the wall clock, so that tasks submitted by different nodes are ordered approximately by submission time.
+   * Tasks of different builds are ordered correctly only as long as the clocks of the nodes are in sync.
+   * Tasks of the same build are always ordered: the sequence number is greater than the ones of the tasks
+   * already submitted for the build by any node, see {@link BuildTaskSequences}.
+   */
+  private long nextSequence(@NotNull BuildPromotion promotion, @NotNull String buildDescription) {
+    long sequence = mySequence.updateAndGet(prev -> Math.max(prev + 1, System.currentTimeMillis()));
+    try {
+      long buildSequence = BuildTaskSequences.submit(promotion, sequence);
+      if (buildSequence > sequence)
+        mySequence.accumulateAndGet(buildSequence, Math::max);
+      return buildSequence;
+    } catch (Exception e) {
+      LOG.warnAndDebugDetails("Failed to save the sequence number of a publishing task of build " + buildDescription, e);
+      return sequence;
+    }
+  }
+
+  private boolean isDistributedPublishing() {
+    return TeamCityProperties.getBoolean(DISTRIBUTED_PUBLISHING_PROPERTY_NAME);
   }
 
   @NotNull
@@ -334,6 +437,10 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
       Long buildId = task.getLongArg1();
       if (buildId == null) return false;
 
+      // any node can take the task, including a task of a removed build which is just finished by accept()
+      if (isDistributedPublishing())
+        return !hasPrecedingTasks(task);
+
       SBuild build = myBuildsManager.findBuildInstanceById(buildId);
       if (build == null) {
         return myServerResponsibility.canManageBuilds();
@@ -351,27 +458,47 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
         return;
       }
 
-      synchronized (myLastEvents) {
-        if (myLastEvents.get(build.getBuildId()) != null && eventType.isFirstTask()) {
-          task.finished();
-          return;
-        }
-        if (eventType.isConsequentTask())
-          myLastEvents.put(build.getBuildId(), eventType);
+      if (!myLastEvents.recordEvent(build.getBuildId(), eventType)) {
+        myMetrics.statusDropped(build.getBuildTypeId());
+        task.finished();
+        return;
       }
 
-      CompletableFuture.runAsync(() -> {
-        Lock lock = myLocks.get(build.getBuildTypeId());
-        lock.lock();
-        try {
-          runForEveryPublisher(eventType, build);
-        } finally {
-          lock.unlock();
-        }
-      }, myExecutorServices.getLowPriorityExecutorService()).handle((r, t) -> {
+      if (isOutdated(task, build.getBuildPromotion(), build.getBuildTypeId())) {
         task.finished();
-        return r;
-      });
+        return;
+      }
+
+      PublishingTrace trace = getTrace(task, build.getBuildTypeId());
+      PublishingOperations.Operation operation = myOperations.register(eventType, build.getBuildTypeId(), LogUtil.describe(build));
+      try {
+        CompletableFuture.runAsync(() -> {
+          trace.stage(PublishingTrace.QUEUE);
+          operation.waitingForLock();
+          Lock lock = myLocks.get(build.getBuildTypeId());
+          lock.lock();
+          try {
+            trace.stage(PublishingTrace.LOCK);
+            operation.lockAcquired();
+            if (!isOutdated(task, build.getBuildPromotion(), build.getBuildTypeId())) {
+              runForEveryPublisher(eventType, build, trace, operation);
+              published(task, build.getBuildPromotion(), LogUtil.describe(build));
+            }
+          } finally {
+            lock.unlock();
+            finishTrace(trace, build.getBuildTypeId(), eventType, LogUtil.describe(build));
+          }
+        }, myPublishingExecutor).handle((r, t) -> {
+          myOperations.unregister(operation);
+          task.finished();
+          return r;
+        });
+      } catch (RejectedExecutionException e) {
+        // the server is shutting down, the task is not going to run
+        LOG.debug("Publishing of " + eventType.getName() + " status of " + LogUtil.describe(build) + " is rejected", e);
+        myOperations.unregister(operation);
+        task.finished();
+      }
     }
 
     @Nullable
@@ -384,7 +511,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
 
 
 
-    private void runForEveryPublisher(@NotNull Event event, @NotNull SBuild build) {
+    private void runForEveryPublisher(@NotNull Event event, @NotNull SBuild build,
+                                      @NotNull PublishingTrace trace, @NotNull PublishingOperations.Operation operation) {
 
       PublishTask task = myTaskSupplier.apply(build);
 
@@ -392,25 +520,36 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
       if (buildType == null)
         return;
       Map<String, CommitStatusPublisher> publishers = getPublishers(buildType);
-      LOG.debug("Event: " + event.getName() + ", build " + LogUtil.describe(build) + ", publishers: " + publishers.values());
+      LOG.debug("Event: " + event.getName() + ", build " + LogUtil.describe(build) + ", trace: " + trace.getTraceId() + ", publishers: " + publishers.values());
+      long queueMs = trace.getElapsedMs();
+      List<PublishingTimeline.Entry> timeline = new ArrayList<PublishingTimeline.Entry>();
       for (Map.Entry<String, CommitStatusPublisher> pubEntry : publishers.entrySet()) {
         CommitStatusPublisher publisher = pubEntry.getValue();
         if (!publisher.isEventSupported(event))
           continue;
+        if (operation.isCancelRequested()) {
+          logStatusNotPublished(event, build.getBuildPromotion(), publisher, "publishing was cancelled");
+          continue;
+        }
         if (isPublishingDisabled(buildType)) {
-          logStatusNotPublished(event, LogUtil.describe(build), publisher, "commit status publishing is disabled");
+          logStatusNotPublished(event, build.getBuildPromotion(), publisher, "commit status publishing is disabled");
           continue;
         }
         List<BuildRevision> revisions = getBuildRevisionForVote(publisher, build);
         if (revisions.isEmpty()) {
-          logStatusNotPublished(event, LogUtil.describe(build), publisher, "no compatible revisions found");
+          logStatusNotPublished(event, build.getBuildPromotion(), publisher, "no compatible revisions found");
           continue;
         }
         myProblems.clearProblem(publisher);
+        long publishingStart = System.currentTimeMillis();
+        boolean successful = true;
         for (BuildRevision revision: revisions) {
-          runTask(event, build.getBuildPromotion(), LogUtil.describe(build), task, publisher, revision);
+          successful &= runTask(event, build.getBuildPromotion(), LogUtil.describe(build), task, publisher, revision, trace, operation, queueMs, timeline);
         }
+        if (successful)
+          myProblems.publishingSucceeded(publisher, publishingStart);
       }
+      saveTimeline(build.getBuildPromotion(), LogUtil.describe(build), timeline);
       myProblems.clearObsoleteProblems(buildType, publishers.keySet());
     }
 
@@ -426,6 +565,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
 
     @Override
     public boolean beforeAccept(@NotNull final PerformingTask task) {
+      if (isDistributedPublishing())
+        return !hasPrecedingTasks(task);
       return myServerResponsibility.canManageBuilds();
     }
 
@@ -437,18 +578,40 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
         task.finished();
         return;
       }
-      CompletableFuture.runAsync(() -> {
-        Lock lock = myLocks.get(build.getBuildTypeId());
-        lock.lock();
-        try {
-          runForEveryPublisher(eventType, build);
-        } finally {
-          lock.unlock();
-        }
-      }, myExecutorServices.getLowPriorityExecutorService()).handle((r, t) -> {
+      if (isOutdated(task, build.getBuildPromotion(), build.getBuildTypeId())) {
         task.finished();
-        return r;
-      });
+        return;
+      }
+      PublishingTrace trace = getTrace(task, build.getBuildTypeId());
+      PublishingOperations.Operation operation = myOperations.register(eventType, build.getBuildTypeId(), LogUtil.describe(build));
+      try {
+        CompletableFuture.runAsync(() -> {
+          trace.stage(PublishingTrace.QUEUE);
+          operation.waitingForLock();
+          Lock lock = myLocks.get(build.getBuildTypeId());
+          lock.lock();
+          try {
+            trace.stage(PublishingTrace.LOCK);
+            operation.lockAcquired();
+            if (!isOutdated(task, build.getBuildPromotion(), build.getBuildTypeId())) {
+              runForEveryPublisher(eventType, build, trace, operation);
+              published(task, build.getBuildPromotion(), LogUtil.describe(build));
+            }
+          } finally {
+            lock.unlock();
+            finishTrace(trace, build.getBuildTypeId(), eventType, LogUtil.describe(build));
+          }
+        }, myPublishingExecutor).handle((r, t) -> {
+          myOperations.unregister(operation);
+          task.finished();
+          return r;
+        });
+      } catch (RejectedExecutionException e) {
+        // the server is shutting down, the task is not going to run
+        LOG.debug("Publishing of " + eventType.getName() + " status of " + LogUtil.describe(build) + " is rejected", e);
+        myOperations.unregister(operation);
+        task.finished();
+      }
     }
 
     @Nullable
@@ -464,30 +627,42 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
       return promotion.getQueuedBuild();
     }
 
-    private void runForEveryPublisher(@NotNull Event event, @NotNull SQueuedBuild build) {
+    private void runForEveryPublisher(@NotNull Event event, @NotNull SQueuedBuild build,
+                                      @NotNull PublishingTrace trace, @NotNull PublishingOperations.Operation operation) {
       PublishTask publishTask = myTaskSupplier.apply(build);
       SBuildType buildType = build.getBuildType();
 
       Map<String, CommitStatusPublisher> publishers = getPublishers(buildType);
-      LOG.debug("Event: " + event.getName() + ", build " + LogUtil.describe(build) + ", publishers: " + publishers.values());
+      LOG.debug("Event: " + event.getName() + ", build " + LogUtil.describe(build) + ", trace: " + trace.getTraceId() + ", publishers: " + publishers.values());
+      long queueMs = trace.getElapsedMs();
+      List<PublishingTimeline.Entry> timeline = new ArrayList<PublishingTimeline.Entry>();
       for (Map.Entry<String, CommitStatusPublisher> pubEntry : publishers.entrySet()) {
         CommitStatusPublisher publisher = pubEntry.getValue();
         if (!publisher.isEventSupported(event))
           continue;
+        if (operation.isCancelRequested()) {
+          logStatusNotPublished(event, build.getBuildPromotion(), publisher, "publishing was cancelled");
+          continue;
+        }
         if (isPublishingDisabled(buildType)) {
-          logStatusNotPublished(event, LogUtil.describe(build), publisher, "commit status publishing is disabled");
+          logStatusNotPublished(event, build.getBuildPromotion(), publisher, "commit status publishing is disabled");
           continue;
         }
         List<BuildRevision> revisions = getQueuedBuildRevisionForVote(buildType, publisher, build);
         if (revisions.isEmpty()) {
-          logStatusNotPublished(event, LogUtil.describe(build), publisher, "no compatible revisions found");
+          logStatusNotPublished(event, build.getBuildPromotion(), publisher, "no compatible revisions found");
           continue;
         }
         myProblems.clearProblem(publisher);
+        long publishingStart = System.currentTimeMillis();
+        boolean successful = true;
         for (BuildRevision revision: revisions) {
-          runTask(event, build.getBuildPromotion(), LogUtil.describe(build), publishTask, publisher, revision);
+          successful &= runTask(event, build.getBuildPromotion(), LogUtil.describe(build), publishTask, publisher, revision, trace, operation, queueMs, timeline);
         }
+        if (successful)
+          myProblems.publishingSucceeded(publisher, publishingStart);
       }
+      saveTimeline(build.getBuildPromotion(), LogUtil.describe(build), timeline);
       myProblems.clearObsoleteProblems(buildType, publishers.keySet());
     }
 
@@ -496,28 +671,152 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
 
   private abstract class PublisherTaskConsumer extends MultiNodeTasks.TaskConsumer {
 
+    /**
+     * When publishing is distributed, tasks of a build configuration can be taken by different nodes,
+     * so a task is deferred while a task of the same build configuration with a smaller sequence number
+     * is not finished yet. Statuses of a commit are thus published in the order their events have occurred,
+     * within the limits of {@link #nextSequence()}.
+     */
+    protected boolean hasPrecedingTasks(@NotNull PerformingTask task) {
+      Long sequence = task.getLongArg2();
+      String buildTypeId = PublishingTrace.getBuildTypeId(task.getStringArg());
+      if (sequence == null || buildTypeId == null)
+        return false;
+      Long smallestPending = getSmallestPendingSequence(buildTypeId, sequence);
+      if (smallestPending != null && smallestPending < sequence) {
+        LOG.debug("Task " + task.getType() + ":" + task.getLongArg1() + " is deferred until the task with sequence number " + smallestPending + " is finished");
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Returns the smallest sequence number of pending tasks of the build type.
+     * All pending tasks are loaded at most once per {@link PendingSequences#TTL_MS}, so a polling round doesn't load them
+     * for every task it checks. They are loaded again when the task is newer than the loaded ones.
+     * A task which has finished in the meantime can only defer the following tasks until the next load.
+     */
+    @Nullable
+    private Long getSmallestPendingSequence(@NotNull String buildTypeId, long sequence) {
+      long now = System.currentTimeMillis();
+      PendingSequences pending = myPendingSequences;
+      if (pending != null && pending.isUpToDate(now, buildTypeId, sequence))
+        return pending.mySequences.get(buildTypeId);
+      Map<String, Long> sequences = new HashMap<String, Long>();
+      for (PerformingTask other : myMultiNodeTasks.findTasks(myEventTypes.keySet())) {
+        Long otherSequence = other.getLongArg2();
+        String otherBuildTypeId = PublishingTrace.getBuildTypeId(other.getStringArg());
+        if (otherSequence != null && otherBuildTypeId != null)
+          sequences.merge(otherBuildTypeId, otherSequence, Math::min);
+      }
+      myPendingSequences = new PendingSequences(now, sequences);
+      return sequences.get(buildTypeId);
+    }
+
+    /**
+     * @return true if a later task of the build is already published, possibly by another node, the task is skipped then
+     */
+    protected boolean isOutdated(@NotNull PerformingTask task, @NotNull BuildPromotion promotion, @NotNull String buildTypeId) {
+      Long sequence = task.getLongArg2();
+      if (sequence == null || !BuildTaskSequences.isOutdated(promotion, sequence))
+        return false;
+      LOG.debug("Task " + task.getType() + ":" + task.getLongArg1() + " is skipped, a later task of the build is already published");
+      myMetrics.statusDropped(buildTypeId);
+      return true;
+    }
+
+    /**
+     * Records the task as the last published task of the build, must be called under the lock of the build type
+     */
+    protected void published(@NotNull PerformingTask task, @NotNull BuildPromotion promotion, @NotNull String buildDescription) {
+      Long sequence = task.getLongArg2();
+      if (sequence == null)
+        return;
+      try {
+        BuildTaskSequences.published(promotion, sequence);
+      } catch (Exception e) {
+        LOG.warnAndDebugDetails("Failed to save the sequence number of the published task of build " + buildDescription, e);
+      }
+    }
+
+    /**
+     * Restores the trace of the task and marks it as accepted
+     */
+    @NotNull
+    protected PublishingTrace getTrace(@NotNull PerformingTask task, @NotNull String buildTypeId) {
+      String argument = task.getStringArg();
+      PublishingTrace trace = PublishingTrace.fromTaskArgument(myMetrics, argument != null ? argument : buildTypeId);
+      trace.stage(PublishingTrace.ACCEPT);
+      myMetrics.taskAccepted(buildTypeId);
+      return trace;
+    }
+
+    protected void finishTrace(@NotNull PublishingTrace trace, @NotNull String buildTypeId, @NotNull Event event, @NotNull String buildDescription) {
+      long latency = trace.finish(event, buildDescription);
+      myMetrics.taskFinished(buildTypeId, latency);
+    }
+
     @Nullable
     protected Event getEventType(PerformingTask task) {
       String taskType = task.getType();
       return myEventTypes.get(taskType);
     }
 
-    protected void runTask(@NotNull Event event,
+    /**
+     * @return true if the status is published without errors
+     */
+    protected boolean runTask(@NotNull Event event,
                            @NotNull BuildPromotion promotion,
                            @NotNull String buildDescription,
                            @NotNull PublishTask publishTask,
                            @NotNull CommitStatusPublisher publisher,
-                           @NotNull BuildRevision revision) {
+                           @NotNull BuildRevision revision,
+                           @NotNull PublishingTrace trace,
+                           @NotNull PublishingOperations.Operation operation,
+                           long queueMs,
+                           @NotNull List<PublishingTimeline.Entry> timeline) {
+      long start = System.currentTimeMillis();
+      boolean successful = false;
+      String destination = publisher + " (" + revision.getRoot().getName() + ")";
+      myMetrics.eventStarted();
+      operation.publishing(publisher.getId(), destination);
       try {
         publishTask.run(publisher, revision);
+        successful = true;
       } catch (Throwable t) {
-        myProblems.reportProblem(String.format("Commit Status Publisher has failed to publish %s status", event.getName()), publisher, buildDescription, null, t, LOG);
+        myProblems.reportProblem(String.format("Commit Status Publisher has failed to publish %s status", event.getName()), publisher, buildDescription,
+                                 revision.getRoot().getName(), t, LOG);
         if (shouldFailBuild(publisher.getBuildType())) {
           String problemId = "commitStatusPublisher." + publisher.getId() + "." + revision.getRoot().getId();
           String problemDescription = t instanceof PublisherException ? t.getMessage() : t.toString();
           BuildProblemData buildProblem = BuildProblemData.createBuildProblem(problemId, "commitStatusPublisherProblem", problemDescription);
           ((BuildPromotionEx)promotion).addBuildProblem(buildProblem);
         }
+      } finally {
+        operation.published();
+        long duration = System.currentTimeMillis() - start;
+        myMetrics.eventFinished(publisher.getId(), event.getName(), successful, duration);
+        trace.stage(PublishingTrace.PUBLISH, publisher.getId());
+        PublishAuditLog.Outcome outcome = successful ? PublishAuditLog.Outcome.PUBLISHED : PublishAuditLog.Outcome.FAILED;
+        myAuditLog.record(promotion.getId(), publisher.getBuildType().getInternalId(), publisher.getId(), revision.getRevision(),
+                          event.getName(), duration, outcome, null);
+        timeline.add(new PublishingTimeline.Entry(start, event.getName(), publisher.getBuildFeatureId(), revision.getRevision(),
+                                                  destination, queueMs, duration, outcome));
+      }
+      return successful;
+    }
+
+    /**
+     * Saves the timeline entries of a task with a single update of the promotion attribute.
+     * Must be called under the lock of the build type, so that entries of concurrent tasks of the build are not lost.
+     */
+    protected void saveTimeline(@NotNull BuildPromotion promotion, @NotNull String buildDescription, @NotNull List<PublishingTimeline.Entry> timeline) {
+      if (timeline.isEmpty())
+        return;
+      try {
+        PublishingTimeline.append(promotion, timeline);
+      } catch (Exception e) {
+        LOG.warnAndDebugDetails("Failed to save commit status publishing timeline of build " + buildDescription, e);
       }
     }
 
@@ -579,4 +878,27 @@ public class CommitStatusPublisherListener extends BuildServerAdapter {
     }
 
   }
+
+  /**
+   * Smallest sequence numbers of pending publishing tasks per build type
+   */
+  private static class PendingSequences {
+    private static final long TTL_MS = 1000;
+
+    private final long myLoadTime;
+    private final Map<String, Long> mySequences;
+
+    PendingSequences(long loadTime, @NotNull Map<String, Long> sequences) {
+      myLoadTime = loadTime;
+      mySequences = sequences;
+    }
+
+    /**
+     * @return true if the sequences were loaded recently and after the task with the given sequence number was submitted
+     */
+    boolean isUpToDate(long now, @NotNull String buildTypeId, long sequence) {
+      Long smallest = mySequences.get(buildTypeId);
+      return now - myLoadTime < TTL_MS && smallest != null && smallest <= sequence;
+    }
+  }
 }
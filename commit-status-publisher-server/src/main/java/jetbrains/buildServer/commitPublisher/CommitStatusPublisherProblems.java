@@ -3,6 +3,7 @@ package jetbrains.buildServer.commitPublisher;
 import com.google.common.util.concurrent.Striped;
 import com.intellij.openapi.diagnostic.Logger;
 import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.serverSide.systemProblems.SystemProblem;
 import jetbrains.buildServer.serverSide.systemProblems.SystemProblemNotification;
 import jetbrains.buildServer.serverSide.systemProblems.SystemProblemTicket;
@@ -10,13 +11,24 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
 import org.jetbrains.annotations.Nullable;
 
 public class CommitStatusPublisherProblems {
 
+  static final String REPORT_INTERVAL_PROPERTY = "teamcity.commitStatusPublisher.problems.reportIntervalSeconds";
+
+  private static final int MAX_KEY_MESSAGE_LENGTH = 200;
+  // ids, counters, hashes and timestamps which differ between occurrences of the same problem
+  private static final Pattern VARIABLE_PART = Pattern.compile("[0-9a-fA-F]*[0-9][0-9a-fA-F]*");
+
   private final SystemProblemNotification myProblems;
-  private final ConcurrentHashMap<String, Map<String, Set<SystemProblemTicket>>> myTickets = new ConcurrentHashMap<String, Map<String, Set<SystemProblemTicket>>> ();
+  // build type internal id -> build feature id -> problem key -> aggregated occurrences of the problem
+  private final ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, ProblemAggregate>>> myTickets =
+    new ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, ProblemAggregate>>>();
   private final Striped<Lock> myLocks = Striped.lazyWeakLock(256);
 
   public CommitStatusPublisherProblems(@NotNull SystemProblemNotification systemProblems) {
@@ -31,6 +43,15 @@ public class CommitStatusPublisherProblems {
     reportProblem("Commit Status Publisher error", publisher, buildDescription, destination, t, logger);
   }
 
+  /**
+   * Reports a publishing problem. Repeated problems of a publisher with the same message, destination and error class
+   * are aggregated into a single system problem with a counter. While they keep occurring, they are logged
+   * and the system problem is updated at most once per report interval.
+   * Problems without a destination are aggregated by the message of the error with ids and numbers masked out,
+   * so that different errors are reported separately, while the number of aggregated problems stays bounded.
+   * The aggregate outlives {@link #clearProblem(CommitStatusPublisher)}, a problem which occurs again
+   * within the report interval raises its system problem again without logging.
+   */
   public void reportProblem(@NotNull String errorMessage,
                               @NotNull CommitStatusPublisher publisher,
                               @NotNull String buildDescription,
@@ -38,9 +59,30 @@ public class CommitStatusPublisherProblems {
                               @Nullable Throwable t,
                               @NotNull Logger logger) {
 
+    SBuildType buildType = publisher.getBuildType();
+    String btId = buildType.getInternalId();
+    String featureId = publisher.getBuildFeatureId();
+    String problemKey = errorMessage + "|" + (destination == null ? "#" + getNormalizedMessage(t) : destination)
+                        + "|" + (null == t ? "" : t.getClass().getName());
+    long now = System.currentTimeMillis();
+    long reportIntervalMs = TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(REPORT_INTERVAL_PROPERTY, 60));
+
+    ProblemAggregate aggregate = getAggregate(btId, featureId, problemKey);
+    if (!aggregate.occurred(now, reportIntervalMs)) {
+      if (logger.isDebugEnabled())
+        logger.debug(String.format("%s. Publisher: %s. Build: %s (repeated error, occurred %d times)",
+                                   errorMessage, publisher.getId(), buildDescription, aggregate.getCount()));
+      if (!aggregate.hasTicket())
+        raiseProblem(buildType, featureId, problemKey, aggregate, null);
+      return;
+    }
+
     String dst = (null == destination) ? "" : "(" + destination + ")";
     String errorDescription = String.format("%s. Publisher: %s%s.", errorMessage, publisher.getId(), dst);
     String logEntry = String.format("%s. Build: %s", errorDescription, buildDescription);
+    long notLogged = aggregate.takeNotReportedCount();
+    if (notLogged > 0)
+      logEntry += String.format(" (%d similar errors were not logged since the previous report)", notLogged);
     if (null != t) {
       String exMsg = t.getMessage();
       if (null != exMsg) {
@@ -52,80 +94,252 @@ public class CommitStatusPublisherProblems {
     } else {
       logger.warn(logEntry);
     }
-    SBuildType buildType = publisher.getBuildType();
-    Lock lock = myLocks.get(buildType);
+    long count = aggregate.getCount();
+    if (count > 1)
+      errorDescription += String.format(" Occurred %d times, last at %tF %<tT.", count, new Date(aggregate.getLastSeen()));
+
+    raiseProblem(buildType, featureId, problemKey, aggregate, errorDescription);
+  }
+
+  /**
+   * Raises the system problem of the aggregate
+   * @param description description of the problem, null to raise it again with the last reported description
+   */
+  private void raiseProblem(@NotNull SBuildType buildType, @NotNull String featureId, @NotNull String problemKey,
+                            @NotNull ProblemAggregate aggregate, @Nullable String description) {
+    String btId = buildType.getInternalId();
+    Lock lock = myLocks.get(btId);
     lock.lock();
     try {
-      SystemProblem problem = new SystemProblem(errorDescription, null, Constants.COMMIT_STATUS_PUBLISHER_PROBLEM_TYPE, null);
-      putTicket(buildType.getInternalId(), publisher.getBuildFeatureId(), myProblems.raiseProblem(buildType, problem));
+      // the problem could have been forgotten concurrently, register it again then
+      ProblemAggregate registered = putAggregate(btId, featureId, problemKey, aggregate);
+      if (description == null) {
+        description = registered.getDescription();
+        if (description == null || registered.hasTicket())
+          return;
+      }
+      SystemProblem problem = new SystemProblem(description, null, Constants.COMMIT_STATUS_PUBLISHER_PROBLEM_TYPE, null);
+      registered.replaceTicket(description, myProblems.raiseProblem(buildType, problem));
     } finally {
       lock.unlock();
     }
   }
 
+  /**
+   * Cancels the system problems of the publisher, e.g. before its statuses are published again.
+   * Occurrences of the problems are still counted, so that a problem which persists is not logged again
+   * before its report interval passes. Problems which haven't occurred during the interval are forgotten.
+   */
   void clearProblem(@NotNull CommitStatusPublisher publisher) {
     SBuildType buildType = publisher.getBuildType();
     String featureId = publisher.getBuildFeatureId();
-    Lock lock = myLocks.get(buildType);
+    String btId = buildType.getInternalId();
+    // most publishers have no problems reported, don't take the lock for them
+    Map<String, ConcurrentHashMap<String, ProblemAggregate>> ticketsForPublishers = myTickets.get(btId);
+    if (ticketsForPublishers == null || !ticketsForPublishers.containsKey(featureId))
+      return;
+    long reportIntervalMs = TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(REPORT_INTERVAL_PROPERTY, 60));
+    long now = System.currentTimeMillis();
+    Lock lock = myLocks.get(btId);
     lock.lock();
     try {
-      String btId = buildType.getInternalId();
-      if (myTickets.containsKey(btId)) {
-        Map<String, Set<SystemProblemTicket>> ticketsForPublishers = myTickets.get(btId);
-        if (ticketsForPublishers.containsKey(featureId)) {
-          Set<SystemProblemTicket> tickets = ticketsForPublishers.get(featureId);
-          for (SystemProblemTicket ticket: tickets) {
-              ticket.cancel();
-          }
-          ticketsForPublishers.remove(featureId);
+      Map<String, ProblemAggregate> problems = ticketsForPublishers.get(featureId);
+      if (problems != null) {
+        for (ProblemAggregate problem : problems.values()) {
+          problem.replaceTicket(problem.getDescription(), null);
         }
       }
+      forgetProblems(btId, featureId, now - reportIntervalMs);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Forgets the problems of the publisher which haven't occurred since the given time,
+   * must be called when all statuses of the publisher are published successfully
+   */
+  void publishingSucceeded(@NotNull CommitStatusPublisher publisher, long since) {
+    String featureId = publisher.getBuildFeatureId();
+    String btId = publisher.getBuildType().getInternalId();
+    Map<String, ConcurrentHashMap<String, ProblemAggregate>> ticketsForPublishers = myTickets.get(btId);
+    if (ticketsForPublishers == null || !ticketsForPublishers.containsKey(featureId))
+      return;
+    Lock lock = myLocks.get(btId);
+    lock.lock();
+    try {
+      forgetProblems(btId, featureId, since);
     } finally {
       lock.unlock();
     }
   }
 
   void clearObsoleteProblems(@NotNull SBuildType buildType, @NotNull Collection<String> currentFeatureIds) {
-    Lock lock = myLocks.get(buildType);
+    String btId = buildType.getInternalId();
+    Map<String, ConcurrentHashMap<String, ProblemAggregate>> ticketsForPublishers = myTickets.get(btId);
+    if (ticketsForPublishers == null || currentFeatureIds.containsAll(ticketsForPublishers.keySet()))
+      return;
+    Lock lock = myLocks.get(btId);
     lock.lock();
     try {
-      String btId = buildType.getInternalId();
-      if (myTickets.containsKey(btId)) {
-        Map<String, Set<SystemProblemTicket>> ticketsForPublishers = myTickets.get(btId);
-        Set<String> featureIdsToRemove = new HashSet<String>(ticketsForPublishers.keySet());
-        featureIdsToRemove.removeAll(currentFeatureIds);
-        for (String featureId: featureIdsToRemove) {
-          if (ticketsForPublishers.containsKey(featureId)) {
-            Set<SystemProblemTicket> tickets = ticketsForPublishers.get(featureId);
-            for (SystemProblemTicket ticket: tickets) {
-              ticket.cancel();
-            }
-            ticketsForPublishers.remove(featureId);
-          }
+      Set<String> featureIdsToRemove = new HashSet<String>(ticketsForPublishers.keySet());
+      featureIdsToRemove.removeAll(currentFeatureIds);
+      cancelTickets(btId, featureIdsToRemove);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Cancels all problems of the build type, e.g. when the build type is removed
+   */
+  void clearProblems(@NotNull String buildTypeInternalId) {
+    if (!myTickets.containsKey(buildTypeInternalId))
+      return;
+    Lock lock = myLocks.get(buildTypeInternalId);
+    lock.lock();
+    try {
+      Map<String, ConcurrentHashMap<String, ProblemAggregate>> ticketsForPublishers = myTickets.get(buildTypeInternalId);
+      if (ticketsForPublishers != null)
+        cancelTickets(buildTypeInternalId, new HashSet<String>(ticketsForPublishers.keySet()));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @NotNull
+  private static String getNormalizedMessage(@Nullable Throwable t) {
+    if (t == null || t.getMessage() == null)
+      return "";
+    String message = t.getMessage();
+    if (message.length() > MAX_KEY_MESSAGE_LENGTH)
+      message = message.substring(0, MAX_KEY_MESSAGE_LENGTH);
+    return VARIABLE_PART.matcher(message).replaceAll("#");
+  }
+
+  int getBuildTypesWithProblemsCount() {
+    return myTickets.size();
+  }
+
+  // must be called under the lock of the build type
+  private void forgetProblems(@NotNull String buildTypeInternalId, @NotNull String featureId, long lastSeenBefore) {
+    Map<String, ConcurrentHashMap<String, ProblemAggregate>> ticketsForPublishers = myTickets.get(buildTypeInternalId);
+    if (ticketsForPublishers == null)
+      return;
+    Map<String, ProblemAggregate> problems = ticketsForPublishers.get(featureId);
+    if (problems == null)
+      return;
+    problems.values().removeIf(problem -> {
+      if (problem.getLastSeen() >= lastSeenBefore)
+        return false;
+      problem.replaceTicket(null, null);
+      return true;
+    });
+    if (problems.isEmpty())
+      ticketsForPublishers.remove(featureId, problems);
+    if (ticketsForPublishers.isEmpty())
+      myTickets.remove(buildTypeInternalId, ticketsForPublishers);
+  }
+
+  // must be called under the lock of the build type
+  private void cancelTickets(@NotNull String buildTypeInternalId, @NotNull Collection<String> featureIds) {
+    Map<String, ConcurrentHashMap<String, ProblemAggregate>> ticketsForPublishers = myTickets.get(buildTypeInternalId);
+    if (ticketsForPublishers == null)
+      return;
+    for (String featureId : featureIds) {
+      Map<String, ProblemAggregate> problems = ticketsForPublishers.remove(featureId);
+      if (problems != null) {
+        for (ProblemAggregate problem : problems.values()) {
+          problem.replaceTicket(null, null);
         }
       }
+    }
+    if (ticketsForPublishers.isEmpty())
+      myTickets.remove(buildTypeInternalId, ticketsForPublishers);
+  }
+
+  @NotNull
+  private ProblemAggregate getAggregate(@NotNull String buildTypeInternalId, @NotNull String featureId, @NotNull String problemKey) {
+    Map<String, ConcurrentHashMap<String, ProblemAggregate>> ticketsForPublishers = myTickets.get(buildTypeInternalId);
+    if (ticketsForPublishers != null) {
+      Map<String, ProblemAggregate> problems = ticketsForPublishers.get(featureId);
+      if (problems != null) {
+        ProblemAggregate aggregate = problems.get(problemKey);
+        if (aggregate != null)
+          return aggregate;
+      }
+    }
+    Lock lock = myLocks.get(buildTypeInternalId);
+    lock.lock();
+    try {
+      return putAggregate(buildTypeInternalId, featureId, problemKey, new ProblemAggregate());
     } finally {
       lock.unlock();
     }
   }
 
-  private void putTicket(String buildTypeInternalId, String publisherBuildFeatureId, SystemProblemTicket ticket) {
-    Map<String, Set<SystemProblemTicket>> ticketsForPublishers;
-    if (myTickets.containsKey(buildTypeInternalId)) {
-      ticketsForPublishers = myTickets.get(buildTypeInternalId);
-    } else {
-      ticketsForPublishers = new HashMap<String, Set<SystemProblemTicket>>();
-      myTickets.put(buildTypeInternalId, ticketsForPublishers);
+  // must be called under the lock of the build type, returns the registered aggregate
+  @NotNull
+  private ProblemAggregate putAggregate(@NotNull String buildTypeInternalId, @NotNull String featureId, @NotNull String problemKey,
+                                        @NotNull ProblemAggregate aggregate) {
+    ProblemAggregate existing = myTickets.computeIfAbsent(buildTypeInternalId, id -> new ConcurrentHashMap<String, ConcurrentHashMap<String, ProblemAggregate>>())
+                                         .computeIfAbsent(featureId, id -> new ConcurrentHashMap<String, ProblemAggregate>())
+                                         .putIfAbsent(problemKey, aggregate);
+    return existing == null ? aggregate : existing;
+  }
+
+  private static class ProblemAggregate {
+    private final AtomicLong myCount = new AtomicLong();
+    private final AtomicLong myLastReported = new AtomicLong();
+    private final AtomicLong myCountAtLastReport = new AtomicLong();
+    private volatile long myLastSeen;
+    private volatile SystemProblemTicket myTicket; // changed under the lock of the build type
+    private String myDescription; // guarded by the lock of the build type
+
+    /**
+     * Records an occurrence of the problem
+     * @return true if the occurrence should be reported, i.e. it is the first one or the report interval has passed
+     */
+    boolean occurred(long now, long reportIntervalMs) {
+      myCount.incrementAndGet();
+      myLastSeen = now;
+      long lastReported = myLastReported.get();
+      return (lastReported == 0 || now - lastReported >= reportIntervalMs) && myLastReported.compareAndSet(lastReported, now);
     }
 
-    Set<SystemProblemTicket> tickets;
+    /**
+     * @return number of occurrences since the previous report, not counting the one being reported
+     */
+    long takeNotReportedCount() {
+      long count = myCount.get();
+      return Math.max(0, count - myCountAtLastReport.getAndSet(count) - 1);
+    }
 
-    if (ticketsForPublishers.containsKey(publisherBuildFeatureId)) {
-      tickets = ticketsForPublishers.get(publisherBuildFeatureId);
-    } else {
-      tickets = new HashSet<SystemProblemTicket>();
-      ticketsForPublishers.put(publisherBuildFeatureId, tickets);
+    long getCount() {
+      return myCount.get();
+    }
+
+    long getLastSeen() {
+      return myLastSeen;
+    }
+
+    boolean hasTicket() {
+      return myTicket != null;
+    }
+
+    // must be called under the lock of the build type
+    @Nullable
+    String getDescription() {
+      return myDescription;
+    }
+
+    // must be called under the lock of the build type
+    void replaceTicket(@Nullable String description, @Nullable SystemProblemTicket ticket) {
+      SystemProblemTicket previous = myTicket;
+      myTicket = ticket;
+      myDescription = description;
+      if (previous != null)
+        previous.cancel();
     }
-    tickets.add(ticket);
   }
 }
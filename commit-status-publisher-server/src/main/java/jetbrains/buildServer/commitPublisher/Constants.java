@@ -34,6 +34,10 @@ public class Constants {
   public static final String GERRIT_SUCCESS_VOTE = "successVote";
   public static final String GERRIT_FAILURE_VOTE = "failureVote";
   public static final String GERRIT_LABEL = "label";
+  public static final String GERRIT_TRANSPORT = "gerritTransport";
+  public static final String GERRIT_TRANSPORT_SSH = "ssh";
+  public static final String GERRIT_TRANSPORT_HTTP = "http";
+  public static final String GERRIT_HTTP_PASSWORD = "secure:gerritHttpPassword";
 
   public static final String GITHUB_PUBLISHER_ID = "githubStatusPublisher";
   public static final String GITHUB_SERVER = "github_host";
@@ -55,6 +59,14 @@ public class Constants {
   public static final String GITLAB_API_URL = "gitlabApiUrl";
   public static final String GITLAB_TOKEN = "secure:gitlabAccessToken";
 
+  public static final String RELAY_PUBLISHER_ID = "relayStatusPublisher";
+  public static final String RELAY_PROVIDER = "relayProvider";
+  public static final String RELAY_API_URL = "relayApiUrl";
+
+  public static final String WEBHOOK_PUBLISHER_ID = "webhookStatusPublisher";
+  public static final String WEBHOOK_URL = "webhookUrl";
+  public static final String WEBHOOK_TOKEN = "secure:webhookToken";
+
 
   @NotNull
   public String getVcsRootIdParam() {
@@ -136,6 +148,26 @@ public class Constants {
     return GERRIT_FAILURE_VOTE;
   }
 
+  @NotNull
+  public String getGerritTransport() {
+    return GERRIT_TRANSPORT;
+  }
+
+  @NotNull
+  public String getGerritTransportSsh() {
+    return GERRIT_TRANSPORT_SSH;
+  }
+
+  @NotNull
+  public String getGerritTransportHttp() {
+    return GERRIT_TRANSPORT_HTTP;
+  }
+
+  @NotNull
+  public String getGerritHttpPassword() {
+    return GERRIT_HTTP_PASSWORD;
+  }
+
   @NotNull
   public String getBitbucketCloudUsername() {
     return BITBUCKET_CLOUD_USERNAME;
@@ -160,4 +192,24 @@ public class Constants {
   public String getGitlabToken() {
     return GITLAB_TOKEN;
   }
+
+  @NotNull
+  public String getRelayProvider() {
+    return RELAY_PROVIDER;
+  }
+
+  @NotNull
+  public String getRelayApiUrl() {
+    return RELAY_API_URL;
+  }
+
+  @NotNull
+  public String getWebhookUrl() {
+    return WEBHOOK_URL;
+  }
+
+  @NotNull
+  public String getWebhookToken() {
+    return WEBHOOK_TOKEN;
+  }
 }
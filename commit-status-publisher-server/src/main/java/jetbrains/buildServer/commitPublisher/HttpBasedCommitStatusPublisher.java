@@ -1,5 +1,6 @@
 package jetbrains.buildServer.commitPublisher;
 
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.IOGuard;
 import jetbrains.buildServer.serverSide.SBuildType;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
@@ -11,32 +12,65 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 public abstract class HttpBasedCommitStatusPublisher extends BaseCommitStatusPublisher implements HttpResponseProcessor {
 
   private final ExecutorServices myExecutorServices;
   private final HttpResponseProcessor myHttpResponseProcessor;
+  private final PublishedStateCache myPublishedStates;
+  protected final PublishingMetrics myMetrics;
 
   public HttpBasedCommitStatusPublisher(@NotNull CommitStatusPublisherSettings settings,
                                         @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                                         @NotNull final ExecutorServices executorServices,
                                         @NotNull Map<String, String> params,
-                                        @NotNull CommitStatusPublisherProblems problems) {
+                                        @NotNull CommitStatusPublisherProblems problems,
+                                        @NotNull PublishedStateCache publishedStates,
+                                        @NotNull PublishingMetrics metrics) {
     super(settings, buildType, buildFeatureId, params, problems);
     myExecutorServices = executorServices;
     myHttpResponseProcessor = new DefaultHttpResponseProcessor();
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
   }
 
   protected void post(final String url, final String username, final String password,
                       final String data, final ContentType contentType, final Map<String, String> headers,
                       final String buildDescription) {
+    String destination = getPublishedStateDestination(url);
+    if (data != null && myPublishedStates.isPublished(destination, data)) {
+      LOG.debug("Status for build " + buildDescription + " is not posted to " + url + ": the same status has already been published");
+      myMetrics.statusCoalesced(getBuildType().getInternalId());
+      return;
+    }
+    AtomicReference<String> status = new AtomicReference<String>(PublishingMetrics.ERROR_STATUS);
+    long start = System.currentTimeMillis();
     try {
-      IOGuard.allowNetworkCall(() -> HttpHelper.post(url, username, password, data, contentType, headers, getConnectionTimeout(), getSettings().trustStore(), this));
+      IOGuard.allowNetworkCall(() -> HttpHelper.post(url, username, password, data, contentType, headers, getConnectionTimeout(), getSettings().trustStore(),
+                                                     response -> {
+                                                       status.set(String.valueOf(response.getStatusCode()));
+                                                       processResponse(response);
+                                                     }));
+      if (data != null)
+        myPublishedStates.published(destination, data);
     } catch (Exception ex) {
+      myPublishedStates.forget(destination);
       myProblems.reportProblem("Commit Status Publisher HTTP request has failed", this, buildDescription, url, ex, LOG);
+    } finally {
+      myMetrics.requestCompleted(getId(), url, status.get(), System.currentTimeMillis() - start);
     }
   }
 
+  /**
+   * The status URL identifies the server, repository and commit; statuses of different build types and
+   * publisher features are separate statuses of the commit even if they are posted to the same URL
+   */
+  @NotNull
+  private String getPublishedStateDestination(@NotNull String url) {
+    return url + "|" + getId() + "|" + getBuildType().getInternalId() + "|" + getBuildFeatureId();
+  }
+
   @Deprecated // The method is no longer necessary as all commit status publisher methods are already invoked asynchronously
   protected Future postAsync(final String url, final String username, final String password,
                              final String data, final ContentType contentType, final Map<String, String> headers,
@@ -57,6 +91,11 @@ public abstract class HttpBasedCommitStatusPublisher extends BaseCommitStatusPub
     }));
   }
 
+  @NotNull
+  protected ExecutorServices getExecutorServices() {
+    return myExecutorServices;
+  }
+
   public void processResponse(HttpHelper.HttpResponse response) throws HttpPublisherException, IOException {
     myHttpResponseProcessor.processResponse(response);
   }
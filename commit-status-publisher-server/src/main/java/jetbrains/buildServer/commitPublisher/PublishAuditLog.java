@@ -0,0 +1,181 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Keeps the most recent publishing records in a fixed-size ring buffer.
+ *
+ * Publishing threads only claim a slot and store a record, records are written to the log later by {@link #drain()}
+ * at the level set by the {@link #LOG_LEVEL_PROPERTY} internal property. When the buffer is overrun before it is drained,
+ * the overwritten records are not logged, their number is logged instead.
+ */
+public class PublishAuditLog {
+
+  static final String CAPACITY_PROPERTY = "teamcity.commitStatusPublisher.audit.capacity";
+  static final String LOG_LEVEL_PROPERTY = "teamcity.commitStatusPublisher.audit.logLevel";
+
+  public enum Outcome {
+    PUBLISHED, FAILED, SKIPPED, COALESCED
+  }
+
+  private final AtomicReferenceArray<Record> myRecords;
+  private final int myMask;
+  private final AtomicLong myWritten = new AtomicLong();
+  private final AtomicLong myDrained = new AtomicLong();
+
+  public PublishAuditLog() {
+    this(TeamCityProperties.getInteger(CAPACITY_PROPERTY, 4096));
+  }
+
+  PublishAuditLog(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    myRecords = new AtomicReferenceArray<Record>(size);
+    myMask = size - 1;
+  }
+
+  public void record(long promotionId,
+                     @NotNull String buildTypeId,
+                     @NotNull String publisher,
+                     @Nullable String revision,
+                     @NotNull String state,
+                     long latencyMs,
+                     @NotNull Outcome outcome,
+                     @Nullable String message) {
+    long sequence = myWritten.getAndIncrement();
+    myRecords.set((int)(sequence & myMask),
+                  new Record(sequence, System.currentTimeMillis(), promotionId, buildTypeId, publisher, revision, state, latencyMs, outcome, message));
+  }
+
+  /**
+   * Writes records added since the previous call to the log, should not be called concurrently
+   */
+  public void drain() {
+    String level = TeamCityProperties.getProperty(LOG_LEVEL_PROPERTY, "debug");
+    boolean info = "info".equalsIgnoreCase(level);
+    if (!info && !("debug".equalsIgnoreCase(level) && LOG.isDebugEnabled())) {
+      myDrained.set(myWritten.get());
+      return;
+    }
+    long written = myWritten.get();
+    long next = myDrained.get();
+    if (written - next > myRecords.length()) {
+      LOG.warn((written - next - myRecords.length()) + " commit status publishing records were overwritten before they were logged");
+      next = written - myRecords.length();
+    }
+    for (; next < written; next++) {
+      Record record = myRecords.get((int)(next & myMask));
+      if (record == null || record.mySequence < next)
+        break; // the slot is claimed, but the record is not stored yet, it will be logged next time
+      if (record.mySequence > next)
+        continue; // overwritten already
+      if (info)
+        LOG.info(record.toString());
+      else
+        LOG.debug(record.toString());
+    }
+    myDrained.set(next);
+  }
+
+  /**
+   * @return records of the build type which are still in the buffer, the most recent first
+   */
+  @NotNull
+  public List<Record> getRecords(@NotNull String buildTypeId) {
+    List<Record> result = new ArrayList<Record>();
+    for (int i = 0; i < myRecords.length(); i++) {
+      Record record = myRecords.get(i);
+      if (record != null && record.myBuildTypeId.equals(buildTypeId))
+        result.add(record);
+    }
+    result.sort(Comparator.comparingLong((Record r) -> r.mySequence).reversed());
+    return result;
+  }
+
+  public void clear() {
+    for (int i = 0; i < myRecords.length(); i++) {
+      myRecords.set(i, null);
+    }
+    myDrained.set(myWritten.get());
+  }
+
+  public static class Record {
+    private final long mySequence;
+    private final long myTimestamp;
+    private final long myPromotionId;
+    private final String myBuildTypeId;
+    private final String myPublisher;
+    private final String myRevision;
+    private final String myState;
+    private final long myLatencyMs;
+    private final Outcome myOutcome;
+    private final String myMessage;
+
+    Record(long sequence, long timestamp, long promotionId, @NotNull String buildTypeId, @NotNull String publisher, @Nullable String revision,
+           @NotNull String state, long latencyMs, @NotNull Outcome outcome, @Nullable String message) {
+      mySequence = sequence;
+      myTimestamp = timestamp;
+      myPromotionId = promotionId;
+      myBuildTypeId = buildTypeId;
+      myPublisher = publisher;
+      myRevision = revision;
+      myState = state;
+      myLatencyMs = latencyMs;
+      myOutcome = outcome;
+      myMessage = message;
+    }
+
+    @NotNull
+    public Date getDate() {
+      return new Date(myTimestamp);
+    }
+
+    public long getPromotionId() {
+      return myPromotionId;
+    }
+
+    @NotNull
+    public String getPublisher() {
+      return myPublisher;
+    }
+
+    @Nullable
+    public String getRevision() {
+      return myRevision;
+    }
+
+    @NotNull
+    public String getState() {
+      return myState;
+    }
+
+    public long getLatencyMs() {
+      return myLatencyMs;
+    }
+
+    @NotNull
+    public Outcome getOutcome() {
+      return myOutcome;
+    }
+
+    @Nullable
+    public String getMessage() {
+      return myMessage;
+    }
+
+    @Override
+    public String toString() {
+      return "Publisher " + myPublisher + ", promotionId: " + myPromotionId + ", revision: " + myRevision + ", state: " + myState +
+             ", outcome: " + myOutcome + ", latency: " + myLatencyMs + "ms" + (myMessage == null ? "" : ", " + myMessage);
+    }
+  }
+}
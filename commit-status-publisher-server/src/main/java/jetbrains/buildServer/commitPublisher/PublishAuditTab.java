@@ -0,0 +1,39 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import jetbrains.buildServer.serverSide.ProjectManager;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.users.SUser;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.openapi.WebControllerManager;
+import jetbrains.buildServer.web.openapi.buildType.BuildTypeTab;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shows the recent publishing records of a build type
+ */
+public class PublishAuditTab extends BuildTypeTab {
+
+  private final PublishAuditLog myAuditLog;
+
+  public PublishAuditTab(@NotNull WebControllerManager manager,
+                         @NotNull ProjectManager projectManager,
+                         @NotNull PluginDescriptor descriptor,
+                         @NotNull PublishAuditLog auditLog) {
+    super("commitStatusPublisherAudit", "Commit Statuses", manager, projectManager, descriptor.getPluginResourcesPath("publishAudit.jsp"));
+    myAuditLog = auditLog;
+  }
+
+  @Override
+  public boolean isAvailable(@NotNull HttpServletRequest request) {
+    SBuildType buildType = getBuildType(request);
+    return super.isAvailable(request) && buildType != null && !buildType.getBuildFeaturesOfType(CommitStatusPublisherFeature.TYPE).isEmpty();
+  }
+
+  @Override
+  protected void fillModel(@NotNull Map<String, Object> model, @NotNull HttpServletRequest request, @NotNull SBuildType buildType, @Nullable SUser user) {
+    model.put("records", myAuditLog.getRecords(buildType.getInternalId()));
+  }
+}
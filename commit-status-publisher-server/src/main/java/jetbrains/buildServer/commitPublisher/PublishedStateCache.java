@@ -0,0 +1,70 @@
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers the last status successfully published to each destination, so that a post
+ * which would not change anything on the VCS hosting side can be skipped.
+ *
+ * A destination is identified by the status URL (server, repository and commit) and the status context.
+ * Only a hash of the published payload is kept. Entries expire after a while,
+ * because the status can be changed on the hosting side by someone else.
+ */
+public class PublishedStateCache {
+
+  private static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.publishedStateCache.enabled";
+  private static final String MAX_SIZE_PROPERTY = "teamcity.commitStatusPublisher.publishedStateCache.maxSize";
+  private static final String EXPIRATION_PROPERTY = "teamcity.commitStatusPublisher.publishedStateCache.expirationMinutes";
+
+  private final Cache<String, String> myStates;
+  private final AtomicLong mySavedRequests = new AtomicLong();
+
+  public PublishedStateCache() {
+    this(TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, 10000), TeamCityProperties.getInteger(EXPIRATION_PROPERTY, 60));
+  }
+
+  PublishedStateCache(int maxSize, int expirationMinutes) {
+    myStates = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(expirationMinutes, TimeUnit.MINUTES).build();
+  }
+
+  /**
+   * Checks whether the same state was the last one published to the destination,
+   * counts the request as saved if it was
+   */
+  public boolean isPublished(@NotNull String destination, @NotNull String state) {
+    if (!TeamCityProperties.getBooleanOrTrue(ENABLED_PROPERTY))
+      return false;
+    String published = myStates.getIfPresent(destination);
+    if (published == null || !published.equals(hash(state)))
+      return false;
+    mySavedRequests.incrementAndGet();
+    return true;
+  }
+
+  public void published(@NotNull String destination, @NotNull String state) {
+    myStates.put(destination, hash(state));
+  }
+
+  /**
+   * Forgets the state of the destination, e.g. when publishing has failed and the actual state is unknown
+   */
+  public void forget(@NotNull String destination) {
+    myStates.invalidate(destination);
+  }
+
+  public long getSavedRequestsCount() {
+    return mySavedRequests.get();
+  }
+
+  @NotNull
+  private static String hash(@NotNull String state) {
+    return Hashing.murmur3_128().hashString(state, StandardCharsets.UTF_8).toString();
+  }
+}
@@ -0,0 +1,196 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Records the stream of build events which lead to commit status publishing, so it can be replayed against stub servers
+ * by the load tests with the timing of the real traffic.
+ *
+ * Events are passed by {@link CommitStatusPublisherListener} when it submits a publishing task, so a recording contains
+ * exactly the events which are published. They are written to the file in the background, one write at a time,
+ * the thread of the event only puts them into a queue.
+ *
+ * Recording starts when the {@link #ENABLED_PROPERTY} internal property is set to true and stops when it is reset,
+ * after {@link #MAX_EVENTS_PROPERTY} events or on server shutdown. Each recording is a gzipped file of {@link RecordedEvent} lines
+ * in the server logs directory.
+ */
+public class PublishingEventRecorder {
+
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.recorder.enabled";
+  static final String MAX_EVENTS_PROPERTY = "teamcity.commitStatusPublisher.recorder.maxEvents";
+  static final String FILE_PREFIX = "commitStatusPublisherEvents";
+
+  private final File myDir;
+  private final Executor myExecutor;
+  private final ConcurrentLinkedQueue<Runnable> myPending = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean myWriteScheduled = new AtomicBoolean();
+  private Recording myRecording;
+  private boolean myStopped;
+  private volatile boolean myStarted;
+
+  public PublishingEventRecorder(@NotNull ExecutorServices executorServices, @NotNull ServerPaths serverPaths) {
+    this(executorServices.getLowPriorityExecutorService(), new File(serverPaths.getLogsPath()));
+  }
+
+  PublishingEventRecorder(@NotNull Executor executor, @NotNull File dir) {
+    myExecutor = executor;
+    myDir = dir;
+  }
+
+  /**
+   * Records an event of a build which is going to be published
+   */
+  void record(@NotNull Event event, @NotNull BuildPromotion promotion, boolean failed) {
+    if (!TeamCityProperties.getBoolean(ENABLED_PROPERTY)) {
+      if (myStarted) {
+        myStarted = false;
+        enqueue(this::reset);
+      }
+      return;
+    }
+    SBuildType buildType = promotion.getBuildType();
+    if (buildType == null)
+      return;
+    List<String> publishers = new ArrayList<String>();
+    for (SBuildFeatureDescriptor feature : buildType.getBuildFeaturesOfType(CommitStatusPublisherFeature.TYPE)) {
+      String publisherId = feature.getParameters().get(Constants.PUBLISHER_ID_PARAM);
+      if (publisherId != null && buildType.isEnabled(feature.getId()))
+        publishers.add(publisherId);
+    }
+    if (publishers.isEmpty())
+      return;
+    List<String> revisions = new ArrayList<String>();
+    for (BuildRevision revision : promotion.getRevisions()) {
+      revisions.add(revision.getRevision());
+    }
+    record(event, buildType.getInternalId(), promotion.getId(), revisions, publishers, failed);
+  }
+
+  void record(@NotNull Event event, @NotNull String buildTypeId, long promotionId,
+              @NotNull List<String> revisions, @NotNull List<String> publishers, boolean failed) {
+    myStarted = true;
+    long time = System.currentTimeMillis();
+    enqueue(() -> write(time, event, buildTypeId, promotionId, revisions, publishers, failed));
+  }
+
+  private void enqueue(@NotNull Runnable write) {
+    myPending.add(write);
+    if (myWriteScheduled.compareAndSet(false, true)) {
+      try {
+        myExecutor.execute(this::writePending);
+      } catch (RejectedExecutionException e) {
+        // the server is shutting down, pending events are written by stop()
+        myWriteScheduled.set(false);
+      }
+    }
+  }
+
+  private synchronized void writePending() {
+    myWriteScheduled.set(false);
+    Runnable write;
+    while ((write = myPending.poll()) != null) {
+      write.run();
+    }
+  }
+
+  private void write(long time, @NotNull Event event, @NotNull String buildTypeId, long promotionId,
+                     @NotNull List<String> revisions, @NotNull List<String> publishers, boolean failed) {
+    if (myStopped)
+      return;
+    try {
+      if (myRecording == null)
+        myRecording = new Recording(myDir, time);
+      myRecording.write(time, event, buildTypeId, promotionId, revisions, publishers, failed);
+      if (myRecording.myCount >= TeamCityProperties.getInteger(MAX_EVENTS_PROPERTY, 1000000)) {
+        myStopped = true;
+        finish();
+      }
+    } catch (IOException e) {
+      LOG.warnAndDebugDetails("Failed to record commit status publishing event, recording is stopped", e);
+      myStopped = true;
+      finish();
+    }
+  }
+
+  /**
+   * Called when recording is disabled, the next recording can start once it is enabled again
+   */
+  private void reset() {
+    finish();
+    myStopped = false;
+  }
+
+  /**
+   * Writes pending events and finishes the current recording, called on server shutdown
+   */
+  synchronized void stop() {
+    writePending();
+    finish();
+  }
+
+  private void finish() {
+    if (myRecording == null)
+      return;
+    try {
+      myRecording.close();
+      LOG.info("Recorded " + myRecording.myCount + " commit status publishing events to " + myRecording.myFile.getAbsolutePath());
+    } catch (IOException e) {
+      LOG.warnAndDebugDetails("Failed to finish recording of commit status publishing events " + myRecording.myFile.getAbsolutePath(), e);
+    }
+    myRecording = null;
+  }
+
+  private static class Recording {
+    private final File myFile;
+    private final Writer myWriter;
+    private final long myStart;
+    private final Map<String, Integer> myBuildTypes = new HashMap<String, Integer>();
+    private final Map<Long, Integer> myBuilds = new HashMap<Long, Integer>();
+    private final Map<String, Integer> myRevisions = new HashMap<String, Integer>();
+    private int myCount;
+
+    Recording(@NotNull File dir, long start) throws IOException {
+      myStart = start;
+      String startTime = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(myStart));
+      myFile = new File(dir, FILE_PREFIX + "-" + startTime + ".txt.gz");
+      myWriter = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(myFile)), StandardCharsets.UTF_8));
+      myWriter.write(RecordedEvent.HEADER_PREFIX + " commit status publishing events recorded since " + new Date(myStart) + "\n");
+      LOG.info("Recording commit status publishing events to " + myFile.getAbsolutePath());
+    }
+
+    void write(long time, @NotNull Event event, @NotNull String buildTypeId, long promotionId,
+               @NotNull List<String> revisions, @NotNull List<String> publishers, boolean failed) throws IOException {
+      List<Integer> revisionNumbers = new ArrayList<Integer>();
+      for (String revision : revisions) {
+        revisionNumbers.add(number(myRevisions, revision));
+      }
+      RecordedEvent recorded = new RecordedEvent(time - myStart, event, number(myBuildTypes, buildTypeId),
+                                                 number(myBuilds, promotionId), revisionNumbers, publishers, failed);
+      myWriter.write(recorded.format());
+      myWriter.write('\n');
+      myCount++;
+    }
+
+    void close() throws IOException {
+      myWriter.close();
+    }
+
+    private static <K> int number(@NotNull Map<K, Integer> numbers, @NotNull K key) {
+      return numbers.computeIfAbsent(key, k -> numbers.size() + 1);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Runs publishing tasks.
+ *
+ * Publishing is mostly waiting for code hostings to respond. On JDK 21 and later every task gets its own virtual thread,
+ * so thousands of statuses can wait for a response without occupying the thread pools of the server. On older JDKs,
+ * or when {@link #VIRTUAL_THREADS_PROPERTY} is false, tasks run in the low priority executor of the server.
+ * The plugin is compiled for Java 8, that's why the virtual thread executor is created via reflection.
+ *
+ * Virtual threads are not pooled, so the number of tasks running at once is limited by a semaphore instead of a pool size:
+ * a task which doesn't get one of {@link #MAX_RUNNING_TASKS_PROPERTY} permits waits in a queue and is started
+ * when a running task completes. Neither the submitter nor a pooled thread is blocked while a task waits for a permit.
+ */
+class PublishingExecutor implements Executor {
+
+  static final String VIRTUAL_THREADS_PROPERTY = "teamcity.commitStatusPublisher.virtualThreads.enabled";
+  static final String MAX_RUNNING_TASKS_PROPERTY = "teamcity.commitStatusPublisher.maxRunningTasks";
+
+  private static final int DEFAULT_MAX_RUNNING_TASKS = 256;
+
+  private final ExecutorService myExecutor;
+  private final boolean myVirtualThreads;
+  private final Semaphore myPermits;
+  private final ConcurrentLinkedQueue<Runnable> myWaiting = new ConcurrentLinkedQueue<Runnable>();
+
+  PublishingExecutor(@NotNull ExecutorService platformExecutor) {
+    ExecutorService virtualThreadExecutor = TeamCityProperties.getBooleanOrTrue(VIRTUAL_THREADS_PROPERTY) ? createVirtualThreadExecutor() : null;
+    myVirtualThreads = virtualThreadExecutor != null;
+    myExecutor = myVirtualThreads ? virtualThreadExecutor : platformExecutor;
+    myPermits = new Semaphore(Math.max(1, TeamCityProperties.getInteger(MAX_RUNNING_TASKS_PROPERTY, DEFAULT_MAX_RUNNING_TASKS)));
+    LOG.info("Commit statuses are published using " + (myVirtualThreads ? "virtual threads" : "the low priority executor") +
+             ", at most " + myPermits.availablePermits() + " at once");
+  }
+
+  @Override
+  public void execute(@NotNull Runnable task) {
+    if (myPermits.tryAcquire()) {
+      start(task);
+      return;
+    }
+    myWaiting.add(task);
+    // a running task could complete after the permit check above but before the task was queued
+    startWaiting();
+  }
+
+  boolean isVirtualThreads() {
+    return myVirtualThreads;
+  }
+
+  /**
+   * @return number of tasks waiting for a permit
+   */
+  int getWaitingCount() {
+    return myWaiting.size();
+  }
+
+  /**
+   * Stops the virtual thread executor, the executor of the server is stopped by the server itself
+   */
+  void shutdown() {
+    if (myVirtualThreads)
+      myExecutor.shutdown();
+  }
+
+  private void start(@NotNull Runnable task) {
+    try {
+      myExecutor.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          myPermits.release();
+          startWaiting();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      myPermits.release();
+      throw e;
+    }
+  }
+
+  private void startWaiting() {
+    while (!myWaiting.isEmpty() && myPermits.tryAcquire()) {
+      Runnable next = myWaiting.poll();
+      if (next == null) {
+        myPermits.release();
+        continue;
+      }
+      try {
+        start(next);
+      } catch (RejectedExecutionException e) {
+        LOG.debug("Publishing task is rejected, the server is probably shutting down", e);
+      }
+      return;
+    }
+  }
+
+  @Nullable
+  private static ExecutorService createVirtualThreadExecutor() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "Commit status publisher ", 0L);
+      ThreadFactory factory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+      Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (ExecutorService)newExecutor.invoke(null, factory);
+    } catch (NoSuchMethodException | ClassNotFoundException e) {
+      // JDK without virtual threads
+      return null;
+    } catch (Exception e) {
+      LOG.warnAndDebugDetails("Failed to create a virtual thread executor, the low priority executor is used", e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Live registry of publishing operations accepted by this node.
+ *
+ * An operation is registered when a publishing task is accepted and is removed when all publishers of the event are done.
+ * Cancellation of an operation can be requested: a queued operation is skipped once it gets the lock of its build type,
+ * a running one finishes the status being published and skips its remaining publishers. Until then the operation
+ * stays in the registry with the cancel requested, and while its status is being sent it is still in flight.
+ *
+ * Cancellation never interrupts the publishing thread. The thread comes from a shared pool and can be busy with work
+ * of other builds, e.g. the Gerrit batcher sends reviews of several builds from the thread of the first of them,
+ * and some publishers send requests from other threads which wouldn't be interrupted anyway.
+ */
+public class PublishingOperations {
+
+  public enum State {
+    QUEUED, WAITING_FOR_LOCK, HOLDING_LOCK, PUBLISHING
+  }
+
+  public enum Grouping {
+    DESTINATION(Operation::getDestination),
+    PUBLISHER(Operation::getPublisherType),
+    BUILD_TYPE(Operation::getBuildTypeId);
+
+    private final Function<Operation, String> myKey;
+
+    Grouping(@NotNull Function<Operation, String> key) {
+      myKey = key;
+    }
+
+    @NotNull
+    String getKey(@NotNull Operation operation) {
+      String key = myKey.apply(operation);
+      return key != null ? key : "";
+    }
+  }
+
+  private final Map<Long, Operation> myOperations = new ConcurrentHashMap<Long, Operation>();
+  private final AtomicLong myNextId = new AtomicLong();
+
+  @NotNull
+  Operation register(@NotNull CommitStatusPublisher.Event event, @NotNull String buildTypeId, @NotNull String buildDescription) {
+    Operation operation = new Operation(myNextId.incrementAndGet(), event.getName(), buildTypeId, buildDescription, System.currentTimeMillis());
+    myOperations.put(operation.getId(), operation);
+    return operation;
+  }
+
+  void unregister(@NotNull Operation operation) {
+    myOperations.remove(operation.getId());
+  }
+
+  /**
+   * @return operations ordered by age, the oldest first
+   */
+  @NotNull
+  public List<Operation> getOperations() {
+    List<Operation> result = new ArrayList<Operation>(myOperations.values());
+    result.sort(Comparator.comparingLong(Operation::getId));
+    return result;
+  }
+
+  /**
+   * @return operations grouped by the key, groups with more operations go first
+   */
+  @NotNull
+  public Map<String, List<Operation>> getGroupedOperations(@NotNull Grouping grouping) {
+    Map<String, List<Operation>> groups = new HashMap<String, List<Operation>>();
+    for (Operation operation : getOperations()) {
+      groups.computeIfAbsent(grouping.getKey(operation), k -> new ArrayList<Operation>()).add(operation);
+    }
+    List<Map.Entry<String, List<Operation>>> entries = new ArrayList<Map.Entry<String, List<Operation>>>(groups.entrySet());
+    entries.sort((e1, e2) -> e1.getValue().size() != e2.getValue().size() ? e2.getValue().size() - e1.getValue().size() : e1.getKey().compareTo(e2.getKey()));
+    Map<String, List<Operation>> result = new LinkedHashMap<String, List<Operation>>();
+    for (Map.Entry<String, List<Operation>> entry : entries) {
+      result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Requests cancellation of the operation, it takes effect before the next status of the operation is published
+   * @return the operation or null if there is no such operation, e.g. it is finished already
+   */
+  @Nullable
+  public Operation cancel(long operationId) {
+    Operation operation = myOperations.get(operationId);
+    if (operation == null)
+      return null;
+    operation.cancel();
+    return operation;
+  }
+
+  public static class Operation {
+    private final long myId;
+    private final String myEvent;
+    private final String myBuildTypeId;
+    private final String myBuildDescription;
+    private final long myCreated;
+    private volatile State myState = State.QUEUED;
+    private volatile long myStateSince;
+    private volatile String myPublisherType;
+    private volatile String myDestination;
+    private volatile boolean myCancelRequested;
+
+    Operation(long id, @NotNull String event, @NotNull String buildTypeId, @NotNull String buildDescription, long created) {
+      myId = id;
+      myEvent = event;
+      myBuildTypeId = buildTypeId;
+      myBuildDescription = buildDescription;
+      myCreated = created;
+      myStateSince = created;
+    }
+
+    void waitingForLock() {
+      setState(State.WAITING_FOR_LOCK);
+    }
+
+    void lockAcquired() {
+      setState(State.HOLDING_LOCK);
+    }
+
+    synchronized void publishing(@NotNull String publisherType, @NotNull String destination) {
+      myPublisherType = publisherType;
+      myDestination = destination;
+      setState(State.PUBLISHING);
+    }
+
+    synchronized void published() {
+      setState(State.HOLDING_LOCK);
+    }
+
+    private void setState(@NotNull State state) {
+      myState = state;
+      myStateSince = System.currentTimeMillis();
+    }
+
+    void cancel() {
+      myCancelRequested = true;
+    }
+
+    public boolean isCancelRequested() {
+      return myCancelRequested;
+    }
+
+    /**
+     * @return true if a status is being sent, a requested cancellation doesn't stop it
+     */
+    public boolean isInFlight() {
+      return myState == State.PUBLISHING;
+    }
+
+    public long getId() {
+      return myId;
+    }
+
+    @NotNull
+    public String getEvent() {
+      return myEvent;
+    }
+
+    @NotNull
+    public String getBuildTypeId() {
+      return myBuildTypeId;
+    }
+
+    @NotNull
+    public String getBuildDescription() {
+      return myBuildDescription;
+    }
+
+    @NotNull
+    public State getState() {
+      return myState;
+    }
+
+    @Nullable
+    public String getPublisherType() {
+      return myPublisherType;
+    }
+
+    @Nullable
+    public String getDestination() {
+      return myDestination;
+    }
+
+    public long getAgeMs() {
+      return System.currentTimeMillis() - myCreated;
+    }
+
+    public long getStateAgeMs() {
+      return System.currentTimeMillis() - myStateSince;
+    }
+  }
+}
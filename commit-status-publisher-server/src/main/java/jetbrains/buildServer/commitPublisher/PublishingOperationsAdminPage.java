@@ -0,0 +1,61 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Collections;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import jetbrains.buildServer.controllers.admin.AdminPage;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.web.openapi.Groupable;
+import jetbrains.buildServer.web.openapi.PagePlaces;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Diagnostics page showing publishing operations of this node which are queued or in progress
+ */
+public class PublishingOperationsAdminPage extends AdminPage {
+
+  private final String myCancelUrl;
+  private final PublishingOperations myOperations;
+
+  public PublishingOperationsAdminPage(@NotNull PagePlaces pagePlaces,
+                                       @NotNull PluginDescriptor descriptor,
+                                       @NotNull PublishingOperationsController controller,
+                                       @NotNull PublishingOperations operations) {
+    super(pagePlaces, "commitStatusPublisherOperations", descriptor.getPluginResourcesPath("publishingOperations.jsp"), "Commit Status Publishing");
+    setPluginName("commitStatusPublisher");
+    myCancelUrl = controller.getUrl();
+    myOperations = operations;
+    register();
+  }
+
+  @Override
+  public boolean isAvailable(@NotNull HttpServletRequest request) {
+    return super.isAvailable(request) && checkHasGlobalPermission(request, Permission.VIEW_SERVER_SETTINGS);
+  }
+
+  @NotNull
+  @Override
+  public String getGroup() {
+    return Groupable.SERVER_RELATED_GROUP;
+  }
+
+  @Override
+  public void fillModel(@NotNull Map<String, Object> model, @NotNull HttpServletRequest request) {
+    PublishingOperations.Grouping grouping = getGrouping(request.getParameter("groupBy"));
+    model.put("groupBy", grouping != null ? grouping.name() : "");
+    model.put("cancelUrl", myCancelUrl);
+    model.put("groupings", PublishingOperations.Grouping.values());
+    model.put("operationGroups", grouping != null
+                                 ? myOperations.getGroupedOperations(grouping)
+                                 : Collections.singletonMap("", myOperations.getOperations()));
+  }
+
+  private static PublishingOperations.Grouping getGrouping(String groupBy) {
+    for (PublishingOperations.Grouping grouping : PublishingOperations.Grouping.values()) {
+      if (grouping.name().equals(groupBy))
+        return grouping;
+    }
+    return null;
+  }
+}
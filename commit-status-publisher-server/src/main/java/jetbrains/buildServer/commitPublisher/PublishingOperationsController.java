@@ -0,0 +1,69 @@
+package jetbrains.buildServer.commitPublisher;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrains.buildServer.controllers.BaseController;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.users.SUser;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.openapi.WebControllerManager;
+import jetbrains.buildServer.web.util.SessionUser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.web.servlet.ModelAndView;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Requests cancellation of publishing operations listed on the {@link PublishingOperationsAdminPage},
+ * see {@link PublishingOperations} for when it takes effect
+ */
+public class PublishingOperationsController extends BaseController {
+
+  private final String myUrl;
+  private final PublishingOperations myOperations;
+
+  public PublishingOperationsController(@NotNull WebControllerManager controllerManager,
+                                        @NotNull PluginDescriptor descriptor,
+                                        @NotNull PublishingOperations operations) {
+    myUrl = descriptor.getPluginResourcesPath("cancelPublishing.html");
+    myOperations = operations;
+    controllerManager.registerController(myUrl, this);
+  }
+
+  @NotNull
+  public String getUrl() {
+    return myUrl;
+  }
+
+  @Nullable
+  @Override
+  protected ModelAndView doHandle(@NotNull HttpServletRequest request, @NotNull HttpServletResponse response) throws Exception {
+    if (!isPost(request)) {
+      response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+      return null;
+    }
+    SUser user = SessionUser.getUser(request);
+    if (user == null || !user.isPermissionGrantedGlobally(Permission.CHANGE_SERVER_SETTINGS)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Cancelling commit status publishing requires the permission to change server settings");
+      return null;
+    }
+    long operationId;
+    try {
+      operationId = Long.parseLong(request.getParameter("operationId"));
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Bad operation id");
+      return null;
+    }
+    PublishingOperations.Operation operation = myOperations.cancel(operationId);
+    if (operation == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "The operation is finished already");
+      return null;
+    }
+    String state = operation.isInFlight() ? "cancel requested, in flight" : "cancel requested";
+    LOG.info("Cancellation of commit status publishing operation " + operationId + " was requested by " + user.describe(false) + " (" + state + ")");
+    response.setContentType("text/plain");
+    response.getWriter().write(state);
+    return null;
+  }
+}
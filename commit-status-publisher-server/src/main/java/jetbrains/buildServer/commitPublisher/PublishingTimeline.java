@@ -0,0 +1,165 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.BuildPromotionEx;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Publishing history of a single build, kept in an attribute of its build promotion.
+ *
+ * Every published status adds one line to the attribute, so the timeline is saved together with the build
+ * and is available on the build results page after the audit records of the node are gone.
+ * Lines of all statuses of a build event are added at once, after all of them are published.
+ */
+public class PublishingTimeline {
+
+  static final String ATTRIBUTE_NAME = "teamcity.commitStatusPublisher.timeline";
+  static final String MAX_ENTRIES_PROPERTY = "teamcity.commitStatusPublisher.timeline.maxEntries";
+
+  private static final char FIELD_SEPARATOR = '|';
+  private static final char ENTRY_SEPARATOR = '\n';
+  private static final int FIELDS_COUNT = 8;
+
+  private PublishingTimeline() {
+  }
+
+  static void append(@NotNull BuildPromotion promotion, @NotNull List<Entry> entries) {
+    BuildPromotionEx promotionEx = (BuildPromotionEx)promotion;
+    Object timeline = promotionEx.getAttribute(ATTRIBUTE_NAME);
+    String current = timeline instanceof String ? (String)timeline : null;
+    String updated = current;
+    int maxEntries = TeamCityProperties.getInteger(MAX_ENTRIES_PROPERTY, 100);
+    for (Entry entry : entries) {
+      String appended = append(updated, entry, maxEntries);
+      if (appended == null)
+        break;
+      updated = appended;
+    }
+    if (updated != null && !updated.equals(current))
+      promotionEx.setAttribute(ATTRIBUTE_NAME, updated);
+  }
+
+  /**
+   * @return entries of the build in the order they were published
+   */
+  @NotNull
+  public static List<Entry> getEntries(@NotNull BuildPromotion promotion) {
+    Object timeline = ((BuildPromotionEx)promotion).getAttribute(ATTRIBUTE_NAME);
+    return timeline instanceof String ? parse((String)timeline) : Collections.emptyList();
+  }
+
+  /**
+   * @return the timeline with the entry added or null if the timeline already has maxEntries entries
+   */
+  @Nullable
+  static String append(@Nullable String timeline, @NotNull Entry entry, int maxEntries) {
+    if (timeline == null || timeline.isEmpty())
+      return maxEntries > 0 ? entry.format() : null;
+    int count = 1;
+    for (int i = 0; i < timeline.length(); i++) {
+      if (timeline.charAt(i) == ENTRY_SEPARATOR)
+        count++;
+    }
+    return count < maxEntries ? timeline + ENTRY_SEPARATOR + entry.format() : null;
+  }
+
+  @NotNull
+  static List<Entry> parse(@NotNull String timeline) {
+    List<Entry> result = new ArrayList<Entry>();
+    for (String line : timeline.split(String.valueOf(ENTRY_SEPARATOR))) {
+      String[] fields = line.split("\\" + FIELD_SEPARATOR, -1);
+      if (fields.length != FIELDS_COUNT)
+        continue;
+      try {
+        result.add(new Entry(Long.parseLong(fields[0]), fields[1], fields[2], fields[3], fields[4],
+                             Long.parseLong(fields[5]), Long.parseLong(fields[6]), PublishAuditLog.Outcome.valueOf(fields[7])));
+      } catch (IllegalArgumentException ignored) {
+        // written by a newer version of the plugin
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  private static String escape(@Nullable String value) {
+    return value == null ? "" : value.replace(FIELD_SEPARATOR, '_').replace(ENTRY_SEPARATOR, ' ');
+  }
+
+  public static class Entry {
+    private final long myTimestamp;
+    private final String myEvent;
+    private final String myFeatureId;
+    private final String myRevision;
+    private final String myDestination;
+    private final long myQueueMs;
+    private final long myNetworkMs;
+    private final PublishAuditLog.Outcome myOutcome;
+
+    Entry(long timestamp, @NotNull String event, @NotNull String featureId, @Nullable String revision, @Nullable String destination,
+          long queueMs, long networkMs, @NotNull PublishAuditLog.Outcome outcome) {
+      myTimestamp = timestamp;
+      myEvent = event;
+      myFeatureId = featureId;
+      myRevision = revision == null ? "" : revision;
+      myDestination = destination == null ? "" : destination;
+      myQueueMs = queueMs;
+      myNetworkMs = networkMs;
+      myOutcome = outcome;
+    }
+
+    @NotNull
+    private String format() {
+      return String.valueOf(myTimestamp) + FIELD_SEPARATOR + escape(myEvent) + FIELD_SEPARATOR + escape(myFeatureId) + FIELD_SEPARATOR +
+             escape(myRevision) + FIELD_SEPARATOR + escape(myDestination) + FIELD_SEPARATOR + myQueueMs + FIELD_SEPARATOR +
+             myNetworkMs + FIELD_SEPARATOR + myOutcome.name();
+    }
+
+    @NotNull
+    public Date getDate() {
+      return new Date(myTimestamp);
+    }
+
+    @NotNull
+    public String getEvent() {
+      return myEvent;
+    }
+
+    @NotNull
+    public String getFeatureId() {
+      return myFeatureId;
+    }
+
+    @NotNull
+    public String getRevision() {
+      return myRevision;
+    }
+
+    @NotNull
+    public String getDestination() {
+      return myDestination;
+    }
+
+    /**
+     * @return time from the build event until its statuses started to be published, i.e. spent in the queue
+     *         and waiting for the lock of the build type, -1 if unknown
+     */
+    public long getQueueMs() {
+      return myQueueMs;
+    }
+
+    public long getNetworkMs() {
+      return myNetworkMs;
+    }
+
+    @NotNull
+    public PublishAuditLog.Outcome getOutcome() {
+      return myOutcome;
+    }
+  }
+}
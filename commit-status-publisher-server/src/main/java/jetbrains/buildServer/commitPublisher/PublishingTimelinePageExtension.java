@@ -0,0 +1,41 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import jetbrains.buildServer.serverSide.SBuild;
+import jetbrains.buildServer.serverSide.SBuildServer;
+import jetbrains.buildServer.web.openapi.PagePlaces;
+import jetbrains.buildServer.web.openapi.PlaceId;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.openapi.SimplePageExtension;
+import jetbrains.buildServer.web.util.BuildDataExtensionUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shows the publishing timeline of a build on its results page
+ */
+public class PublishingTimelinePageExtension extends SimplePageExtension {
+
+  private final SBuildServer myServer;
+
+  public PublishingTimelinePageExtension(@NotNull PagePlaces pagePlaces,
+                                         @NotNull PluginDescriptor descriptor,
+                                         @NotNull SBuildServer server) {
+    super(pagePlaces, PlaceId.BUILD_RESULTS_FRAGMENT, "commitStatusPublisherTimeline", descriptor.getPluginResourcesPath("publishingTimeline.jsp"));
+    myServer = server;
+    register();
+  }
+
+  @Override
+  public boolean isAvailable(@NotNull HttpServletRequest request) {
+    SBuild build = BuildDataExtensionUtil.retrieveBuild(request, myServer);
+    return build != null && !PublishingTimeline.getEntries(build.getBuildPromotion()).isEmpty();
+  }
+
+  @Override
+  public void fillModel(@NotNull Map<String, Object> model, @NotNull HttpServletRequest request) {
+    SBuild build = BuildDataExtensionUtil.retrieveBuild(request, myServer);
+    if (build != null)
+      model.put("timelineEntries", PublishingTimeline.getEntries(build.getBuildPromotion()));
+  }
+}
@@ -0,0 +1,130 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Follows a publishing event from the listener callback to the requests made by publishers.
+ *
+ * The trace id and the time of the event travel with the multi-node task as its string argument,
+ * so stages are measured on the node which performs the task even if the event has happened on another node.
+ * Durations of stages are recorded to {@link PublishingMetrics}, traces slower than a threshold are logged.
+ */
+class PublishingTrace {
+
+  static final String SLOW_TRACE_THRESHOLD_PROPERTY = "teamcity.commitStatusPublisher.slowTraceThresholdSeconds";
+
+  static final String SUBMIT = "submit";
+  static final String ACCEPT = "accept";
+  static final String QUEUE = "queue";
+  static final String LOCK = "lock";
+  static final String PUBLISH = "publish";
+  static final String TOTAL = "total";
+
+  private static final char SEPARATOR = '|';
+  private static final long UNKNOWN_TIME = -1;
+
+  private final PublishingMetrics myMetrics;
+  private final String myBuildTypeId;
+  private final String myTraceId;
+  private final long myEventTime;
+  private final List<String> myStages = new ArrayList<String>();
+  private long myLastStageTime;
+
+  private PublishingTrace(@NotNull PublishingMetrics metrics, @NotNull String buildTypeId, @NotNull String traceId, long eventTime) {
+    myMetrics = metrics;
+    myBuildTypeId = buildTypeId;
+    myTraceId = traceId;
+    myEventTime = eventTime;
+    myLastStageTime = eventTime;
+  }
+
+  @NotNull
+  static PublishingTrace start(@NotNull PublishingMetrics metrics, @NotNull String buildTypeId) {
+    return new PublishingTrace(metrics, buildTypeId, Long.toHexString(ThreadLocalRandom.current().nextLong()), System.currentTimeMillis());
+  }
+
+  /**
+   * Restores the trace from the string argument of a task, tasks submitted before traces were introduced
+   * carry only the build type id, a new trace with unknown event time is started for them
+   */
+  @NotNull
+  static PublishingTrace fromTaskArgument(@NotNull PublishingMetrics metrics, @NotNull String argument) {
+    String[] parts = argument.split("\\" + SEPARATOR);
+    if (parts.length == 3) {
+      try {
+        return new PublishingTrace(metrics, parts[0], parts[1], Long.parseLong(parts[2]));
+      } catch (NumberFormatException ignored) {
+      }
+    }
+    return new PublishingTrace(metrics, parts[0], Long.toHexString(ThreadLocalRandom.current().nextLong()), UNKNOWN_TIME);
+  }
+
+  @Nullable
+  static String getBuildTypeId(@Nullable String taskArgument) {
+    if (taskArgument == null)
+      return null;
+    int idx = taskArgument.indexOf(SEPARATOR);
+    return idx < 0 ? taskArgument : taskArgument.substring(0, idx);
+  }
+
+  @NotNull
+  String toTaskArgument() {
+    return myBuildTypeId + SEPARATOR + myTraceId + SEPARATOR + myEventTime;
+  }
+
+  @NotNull
+  String getTraceId() {
+    return myTraceId;
+  }
+
+  /**
+   * @return time passed since the event, -1 if the time of the event is unknown
+   */
+  long getElapsedMs() {
+    return myEventTime == UNKNOWN_TIME ? UNKNOWN_TIME : System.currentTimeMillis() - myEventTime;
+  }
+
+  void stage(@NotNull String stage) {
+    stage(stage, null);
+  }
+
+  /**
+   * Marks the end of the stage, the stage is measured from the end of the previous one
+   * @param details describes the stage in the slow trace log, e.g. the publisher of the {@link #PUBLISH} stage
+   */
+  synchronized void stage(@NotNull String stage, @Nullable String details) {
+    long now = System.currentTimeMillis();
+    if (myLastStageTime != UNKNOWN_TIME) {
+      long duration = now - myLastStageTime;
+      myMetrics.stageCompleted(stage, duration);
+      myStages.add(stage + (details == null ? "" : "(" + details + ")") + " +" + duration + "ms");
+    }
+    myLastStageTime = now;
+  }
+
+  /**
+   * Records the total duration of the trace and logs the trace if it was slow
+   * @return total duration of the trace, -1 if the time of the event is unknown
+   */
+  synchronized long finish(@NotNull Event event, @NotNull String buildDescription) {
+    if (myEventTime == UNKNOWN_TIME)
+      return UNKNOWN_TIME;
+    long total = System.currentTimeMillis() - myEventTime;
+    myMetrics.stageCompleted(TOTAL, total);
+    long threshold = TeamCityProperties.getLong(SLOW_TRACE_THRESHOLD_PROPERTY, 60) * 1000;
+    if (threshold > 0 && total > threshold) {
+      LOG.warn("Slow commit status publishing, trace " + myTraceId + ", event: " + event.getName() + ", build " + buildDescription +
+               ": " + String.join(", ", myStages) + ", total " + total + "ms");
+    }
+    return total;
+  }
+}
@@ -0,0 +1,123 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A listener event saved by {@link PublishingEventRecorder}, one line of a recording.
+ *
+ * Build types, builds and revisions are replaced with numbers in the order they appear in the recording,
+ * so the recording keeps the shape of the traffic, i.e. which events concern the same build, build type or revision,
+ * but nothing about the projects themselves. Publishers are kept as publisher ids of the enabled build features.
+ */
+class RecordedEvent {
+
+  static final String HEADER_PREFIX = "#";
+
+  private static final char FIELD_SEPARATOR = '|';
+  private static final String LIST_SEPARATOR = ",";
+  private static final int FIELDS_COUNT = 7;
+
+  private final long myOffsetMs;
+  private final Event myEvent;
+  private final int myBuildType;
+  private final int myBuild;
+  private final List<Integer> myRevisions;
+  private final List<String> myPublishers;
+  private final boolean myFailed;
+
+  RecordedEvent(long offsetMs, @NotNull Event event, int buildType, int build,
+                @NotNull List<Integer> revisions, @NotNull List<String> publishers, boolean failed) {
+    myOffsetMs = offsetMs;
+    myEvent = event;
+    myBuildType = buildType;
+    myBuild = build;
+    myRevisions = revisions;
+    myPublishers = publishers;
+    myFailed = failed;
+  }
+
+  @NotNull
+  String format() {
+    StringBuilder revisions = new StringBuilder();
+    for (Integer revision : myRevisions) {
+      if (revisions.length() > 0)
+        revisions.append(LIST_SEPARATOR);
+      revisions.append(revision);
+    }
+    return String.valueOf(myOffsetMs) + FIELD_SEPARATOR + myEvent.name() + FIELD_SEPARATOR + myBuildType + FIELD_SEPARATOR + myBuild +
+           FIELD_SEPARATOR + revisions + FIELD_SEPARATOR + String.join(LIST_SEPARATOR, myPublishers) + FIELD_SEPARATOR + (myFailed ? "F" : "S");
+  }
+
+  /**
+   * @return null for header lines and lines which cannot be parsed
+   */
+  @Nullable
+  static RecordedEvent parse(@NotNull String line) {
+    if (line.isEmpty() || line.startsWith(HEADER_PREFIX))
+      return null;
+    String[] fields = line.split("\\" + FIELD_SEPARATOR, -1);
+    if (fields.length != FIELDS_COUNT)
+      return null;
+    try {
+      List<Integer> revisions = new ArrayList<Integer>();
+      for (String revision : split(fields[4])) {
+        revisions.add(Integer.parseInt(revision));
+      }
+      return new RecordedEvent(Long.parseLong(fields[0]), Event.valueOf(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                               revisions, split(fields[5]), "F".equals(fields[6]));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @NotNull
+  private static List<String> split(@NotNull String list) {
+    if (list.isEmpty())
+      return Collections.emptyList();
+    List<String> result = new ArrayList<String>();
+    Collections.addAll(result, list.split(LIST_SEPARATOR));
+    return result;
+  }
+
+  /**
+   * @return time of the event since the start of the recording
+   */
+  long getOffsetMs() {
+    return myOffsetMs;
+  }
+
+  @NotNull
+  Event getEvent() {
+    return myEvent;
+  }
+
+  int getBuildType() {
+    return myBuildType;
+  }
+
+  /**
+   * @return number of the build promotion, it is the same for events of the queued and the started build
+   */
+  int getBuild() {
+    return myBuild;
+  }
+
+  @NotNull
+  List<Integer> getRevisions() {
+    return myRevisions;
+  }
+
+  @NotNull
+  List<String> getPublishers() {
+    return myPublishers;
+  }
+
+  boolean isFailed() {
+    return myFailed;
+  }
+}
@@ -0,0 +1,143 @@
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Objects;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.vcs.VcsRoot;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers repositories parsed from VCS root URLs together with the endpoint URL prefixes built from them,
+ * so that publishers do not re-parse the same URL for every status they send.
+ *
+ * Entries are keyed by publisher, VCS root, VCS type, fetch URL and the publisher parameters the route depends on,
+ * so a changed URL or changed publisher settings never hit a stale entry.
+ * Entries of a VCS root are dropped when the root is updated or removed.
+ */
+public class RepositoryRouteCache {
+
+  private static final String MAX_SIZE_PROPERTY = "teamcity.commitStatusPublisher.repositoryRouteCache.maxSize";
+
+  private final Cache<Key, Route<?>> myRoutes;
+
+  public RepositoryRouteCache() {
+    this(TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, 10000));
+  }
+
+  RepositoryRouteCache(int maxSize) {
+    myRoutes = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /**
+   * Returns a cached route or resolves and caches a new one
+   * @param publisherId id of the publisher the route is built for
+   * @param root VCS root or VCS root instance the repository URL belongs to
+   * @param url repository URL, route is not resolved if it is null
+   * @param params publisher parameters the route depends on, such as server URL or path prefix
+   * @param resolver parses the repository from the URL
+   * @param prefixBuilder builds an endpoint URL prefix for the parsed repository, may be null if the publisher does not need it
+   * @return route or null if the repository cannot be resolved
+   */
+  @Nullable
+  public <T> Route<T> getRoute(@NotNull String publisherId,
+                               @NotNull VcsRoot root,
+                               @Nullable String url,
+                               @Nullable String params,
+                               @NotNull Resolver<T> resolver,
+                               @Nullable PrefixBuilder<T> prefixBuilder) throws PublisherException {
+    if (url == null)
+      return null;
+    Key key = new Key(publisherId, root, url, params);
+    @SuppressWarnings("unchecked")
+    Route<T> route = (Route<T>)myRoutes.getIfPresent(key);
+    if (route != null)
+      return route;
+    T repository = resolver.resolve(url);
+    if (repository == null)
+      return null;
+    route = new Route<T>(repository, prefixBuilder == null ? null : prefixBuilder.build(repository));
+    myRoutes.put(key, route);
+    return route;
+  }
+
+  public void invalidate(long vcsRootId) {
+    myRoutes.asMap().keySet().removeIf(key -> key.myParentRootId == vcsRootId);
+  }
+
+  public void invalidateAll() {
+    myRoutes.invalidateAll();
+  }
+
+  long size() {
+    return myRoutes.size();
+  }
+
+  public interface Resolver<T> {
+    @Nullable
+    T resolve(@NotNull String url) throws PublisherException;
+  }
+
+  public interface PrefixBuilder<T> {
+    @NotNull
+    String build(@NotNull T repository);
+  }
+
+  public static class Route<T> {
+    private final T myRepository;
+    private final String myEndpointPrefix;
+
+    Route(@NotNull T repository, @Nullable String endpointPrefix) {
+      myRepository = repository;
+      myEndpointPrefix = endpointPrefix;
+    }
+
+    @NotNull
+    public T getRepository() {
+      return myRepository;
+    }
+
+    @Nullable
+    public String getEndpointPrefix() {
+      return myEndpointPrefix;
+    }
+  }
+
+  private static class Key {
+    private final String myPublisherId;
+    private final long myRootId;
+    private final long myParentRootId;
+    private final String myVcsName;
+    private final String myUrl;
+    private final String myParams;
+
+    Key(@NotNull String publisherId, @NotNull VcsRoot root, @NotNull String url, @Nullable String params) {
+      myPublisherId = publisherId;
+      myRootId = root.getId();
+      myParentRootId = root instanceof VcsRootInstance ? ((VcsRootInstance)root).getParentId() : root.getId();
+      myVcsName = root.getVcsName();
+      myUrl = url;
+      myParams = params;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key)o;
+      return myRootId == key.myRootId &&
+             myParentRootId == key.myParentRootId &&
+             myPublisherId.equals(key.myPublisherId) &&
+             myVcsName.equals(key.myVcsName) &&
+             myUrl.equals(key.myUrl) &&
+             Objects.equals(myParams, key.myParams);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myPublisherId, myRootId, myParentRootId, myVcsName, myUrl, myParams);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package jetbrains.buildServer.commitPublisher.bitbucketCloud;
 import com.google.gson.*;
 import java.util.LinkedHashMap;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
@@ -16,6 +17,7 @@ import java.util.Map;
 class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher {
   private String myBaseUrl = BitbucketCloudSettings.DEFAULT_API_URL;
   private final WebLinks myLinks;
+  private final RepositoryRouteCache myRoutes;
   private final Gson myGson = new Gson();
 
   BitbucketCloudPublisher(@NotNull CommitStatusPublisherSettings settings,
@@ -23,9 +25,13 @@ class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher {
                           @NotNull final ExecutorServices executorServices,
                           @NotNull WebLinks links,
                           @NotNull Map<String, String> params,
-                          @NotNull CommitStatusPublisherProblems problems) {
-    super(settings, buildType, buildFeatureId, executorServices, params, problems);
+                          @NotNull CommitStatusPublisherProblems problems,
+                          @NotNull PublishedStateCache publishedStates,
+                          @NotNull PublishingMetrics metrics,
+                          @NotNull RepositoryRouteCache routes) {
+    super(settings, buildType, buildFeatureId, executorServices, params, problems, publishedStates, metrics);
     myLinks = links;
+    myRoutes = routes;
   }
 
   @NotNull
@@ -93,11 +99,15 @@ class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher {
                     @NotNull String comment) throws PublisherException {
     String msg = createMessage(status, build.getBuildPromotion().getBuildTypeId(), getBuildName(build), myLinks.getViewResultsUrl(build), comment);
     final VcsRootInstance root = revision.getRoot();
-    Repository repository = BitbucketCloudSettings.VCS_PROPERTIES_PARSER.parseRepository(root);
-    if (repository == null) {
+    final String baseUrl = getBaseUrl();
+    RepositoryRouteCache.Route<Repository> route = myRoutes.getRoute(
+      Constants.BITBUCKET_PUBLISHER_ID, root, BitbucketCloudRepositoryParser.getRepositoryUrl(root), baseUrl,
+      url -> BitbucketCloudSettings.VCS_PROPERTIES_PARSER.parseRepository(root),
+      repository -> baseUrl + "2.0/repositories/" + repository.owner() + "/" + repository.repositoryName() + "/commit/");
+    if (route == null) {
       throw new PublisherException(String.format("Bitbucket publisher has failed to parse repository URL from VCS root '%s'", root.getName()));
     }
-    vote(revision.getRevision(), msg, repository, LogUtil.describe(build));
+    vote(revision.getRevision(), msg, route.getEndpointPrefix(), LogUtil.describe(build));
   }
 
   @NotNull
@@ -115,9 +125,9 @@ class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher {
     return myGson.toJson(data);
   }
 
-  private void vote(@NotNull String commit, @NotNull String data, @NotNull Repository repository, @NotNull String buildDescription) {
+  private void vote(@NotNull String commit, @NotNull String data, @NotNull String commitUrlPrefix, @NotNull String buildDescription) {
     LOG.debug(getBaseUrl() + " :: " + commit + " :: " + data);
-    String url = getBaseUrl() + "2.0/repositories/" + repository.owner() + "/" + repository.repositoryName() + "/commit/" + commit + "/statuses/build";
+    String url = commitUrlPrefix + commit + "/statuses/build";
     post(url, getUsername(), getPassword(), data, ContentType.APPLICATION_JSON, null, buildDescription);
   }
 
@@ -19,14 +19,21 @@ class BitbucketCloudRepositoryParser {
 
   @Nullable
   public Repository parseRepository(@NotNull VcsRoot root) {
+    String url = getRepositoryUrl(root);
+    if (url == null)
+      return null;
     if ("jetbrains.git".equals(root.getVcsName())) {
-      String url = root.getProperty("url");
-      return url == null ? null : VCS_URL_PARSER.parseRepositoryUrl(url);
-    }
-    if ("mercurial".equals(root.getVcsName())) {
-      String url = root.getProperty("repositoryPath");
-      return url == null ? null : parseMercurialRepository(url);
+      return VCS_URL_PARSER.parseRepositoryUrl(url);
     }
+    return parseMercurialRepository(url);
+  }
+
+  @Nullable
+  static String getRepositoryUrl(@NotNull VcsRoot root) {
+    if ("jetbrains.git".equals(root.getVcsName()))
+      return root.getProperty("url");
+    if ("mercurial".equals(root.getVcsName()))
+      return root.getProperty("repositoryPath");
     return null;
   }
 
@@ -13,6 +13,7 @@ import jetbrains.buildServer.web.openapi.PluginDescriptor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 
 public class BitbucketCloudSettings extends BasePublisherSettings implements CommitStatusPublisherSettings {
   final static String DEFAULT_API_URL = "https://api.bitbucket.org/";
@@ -29,12 +30,22 @@ public class BitbucketCloudSettings extends BasePublisherSettings implements Com
     add(Event.FAILURE_DETECTED);
   }};
 
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
+  private final RepositoryRouteCache myRoutes;
+
   public BitbucketCloudSettings(@NotNull final ExecutorServices executorServices,
                                 @NotNull PluginDescriptor descriptor,
                                 @NotNull WebLinks links,
                                 @NotNull CommitStatusPublisherProblems problems,
-                                @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                                @NotNull SSLTrustStoreProvider trustStoreProvider,
+                                @NotNull PublishedStateCache publishedStates,
+                                @NotNull PublishingMetrics metrics,
+                                @NotNull RepositoryRouteCache routes) {
     super(executorServices, descriptor, links, problems, trustStoreProvider);
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
+    myRoutes = routes;
   }
 
   void setDefaultApiUrl(@NotNull String url) {
@@ -59,7 +70,7 @@ public class BitbucketCloudSettings extends BasePublisherSettings implements Com
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new BitbucketCloudPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems);
+    return new BitbucketCloudPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems, myPublishedStates, myMetrics, myRoutes);
   }
 
   @Nullable
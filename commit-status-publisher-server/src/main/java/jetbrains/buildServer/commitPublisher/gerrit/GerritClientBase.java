@@ -34,7 +34,14 @@ abstract class GerritClientBase implements GerritClient {
            .append(buildVoteClause(label)).append(vote)
            .append(" -m \"").append(escape(message)).append("\" ")
            .append(revision);
-    IOGuard.allowNetworkCall(() -> runCommand(connectionDetails, command.toString()));
+    IOGuard.allowNetworkCall(() -> runReviewCommand(connectionDetails, command.toString()));
+  }
+
+  /**
+   * Runs the gerrit review command, implementations may combine it with reviews of other builds
+   */
+  protected void runReviewCommand(@NotNull GerritConnectionDetails connectionDetails, @NotNull String command) throws JSchException, IOException {
+    runCommand(connectionDetails, command);
   }
 
   @Override
@@ -58,6 +65,17 @@ abstract class GerritClientBase implements GerritClient {
     return String.format(" --label %s=", label);
   }
 
+  /**
+   * Returns the name of the label to vote for, the same label the review command votes for
+   */
+  @NotNull
+  static String getLabelName(@Nullable String label) {
+    if (USE_VERIFIED_OPTION.equals(label) || null == label || label.isEmpty() ||
+        TeamCityProperties.getBoolean("teamcity.commitStatusPublisher.gerrit.verified.option"))
+      return "Verified";
+    return label;
+  }
+
   @NotNull
   private static String escape(@NotNull String s) {
     return ESCAPE_PATTERN.matcher(s).replaceAll("\\\\$0");
@@ -1,19 +1,27 @@
 package jetbrains.buildServer.commitPublisher.gerrit;
 
 import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import jetbrains.buildServer.ExtensionHolder;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
+import jetbrains.buildServer.commitPublisher.Constants;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.BuildServerAdapter;
+import jetbrains.buildServer.serverSide.BuildServerListener;
 import jetbrains.buildServer.serverSide.SProject;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.ssh.ServerSshKeyManager;
 import jetbrains.buildServer.ssh.TeamCitySshKey;
+import jetbrains.buildServer.util.EventDispatcher;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -23,76 +31,144 @@ public class GerritClientImpl extends GerritClientBase implements GerritClient {
 
   private final ExtensionHolder myExtensionHolder;
   private final CommitStatusPublisherProblems myProblems;
+  private final GerritSshSessionPool mySessionPool;
+  private final GerritReviewBatcher myReviewBatcher;
+  private final PublishingMetrics myMetrics;
 
-  public GerritClientImpl(@NotNull ExtensionHolder extensionHolder, @NotNull CommitStatusPublisherProblems problems) {
+  public GerritClientImpl(@NotNull ExtensionHolder extensionHolder,
+                          @NotNull CommitStatusPublisherProblems problems,
+                          @NotNull ExecutorServices executorServices,
+                          @NotNull EventDispatcher<BuildServerListener> events,
+                          @NotNull PublishingMetrics metrics) {
     myExtensionHolder = extensionHolder;
     myProblems = problems;
+    myMetrics = metrics;
+    mySessionPool = new GerritSshSessionPool();
+    myReviewBatcher = new GerritReviewBatcher(this::runCommands);
+    executorServices.getNormalExecutorService().scheduleWithFixedDelay(mySessionPool::evictIdleSessions, 1, 1, TimeUnit.MINUTES);
+    events.addListener(new BuildServerAdapter() {
+      @Override
+      public void serverShutdown() {
+        mySessionPool.dispose();
+      }
+    });
   }
 
   public String runCommand(@NotNull GerritConnectionDetails connectionDetails, @NotNull String command) throws JSchException, IOException {
-    ChannelExec channel = null;
-    Session session = null;
-    String out = null;
+    GerritReviewBatcher.PendingCommand pending = new GerritReviewBatcher.PendingCommand(connectionDetails, command);
+    long start = System.currentTimeMillis();
+    runCommands(Collections.singletonList(pending));
     try {
-      JSch jsch = new JSch();
-      addKeys(jsch, connectionDetails.getProject(), connectionDetails.getKeyId());
-      session = createSession(jsch, connectionDetails.getServer(), connectionDetails.getUserName());
-      session.setConfig("StrictHostKeyChecking", "no");
-      session.connect();
-      channel = (ChannelExec) session.openChannel("exec");
-      channel.setPty(false);
-      channel.setCommand(command);
-      BufferedReader stdout = new BufferedReader(new InputStreamReader(channel.getInputStream()));
-      BufferedReader stderr = new BufferedReader(new InputStreamReader(channel.getErrStream()));
-      LOG.debug("Run command '" + command + "'");
-      channel.connect();
-      out = readFully(stdout);
-      String err = readFully(stderr);
-      LOG.info("Command '" + command + "' finished, exitCode: " + channel.getExitStatus());
-      LOG.debug("Command '" + command + "' has returned stdout: '" + out + "', stderr: '" + err + "'");
-      if (err.length() > 0)
-        throw new IOException(err);
-    } finally {
-      if (channel != null)
-        channel.disconnect();
-      if (session != null)
-        session.disconnect();
+      String result = pending.await();
+      requestCompleted(connectionDetails, PublishingMetrics.SUCCESS_STATUS, start);
+      return result;
+    } catch (JSchException | IOException e) {
+      requestCompleted(connectionDetails, PublishingMetrics.ERROR_STATUS, start);
+      throw e;
     }
-    return out;
   }
 
-  private void addKeys(@NotNull JSch jsch, @NotNull SProject project, @Nullable String keyId) throws JSchException {
-    Collection<ServerSshKeyManager> extensions = myExtensionHolder.getExtensions(ServerSshKeyManager.class);
-    ServerSshKeyManager sshKeyManager;
-    if (extensions.isEmpty()) {
-      sshKeyManager = null;
-    } else {
-      sshKeyManager = extensions.iterator().next();
+  @Override
+  protected void runReviewCommand(@NotNull GerritConnectionDetails connectionDetails, @NotNull String command) throws JSchException, IOException {
+    if (!GerritReviewBatcher.isEnabled()) {
+      runCommand(connectionDetails, command);
+      return;
     }
-    if (keyId != null && sshKeyManager != null) {
-      TeamCitySshKey key = sshKeyManager.getKey(project, keyId);
-      if (key != null)
-        jsch.addIdentity(key.getName(), key.getPrivateKey(), null, null);
+    String batchKey = connectionDetails.getUserName() + "@" + connectionDetails.getServer() +
+                      " (project: " + connectionDetails.getProject().getProjectId() + ", key: " + connectionDetails.getKeyId() + ")";
+    long start = System.currentTimeMillis();
+    try {
+      myReviewBatcher.submit(batchKey, connectionDetails, command);
+      requestCompleted(connectionDetails, PublishingMetrics.SUCCESS_STATUS, start);
+    } catch (JSchException | IOException e) {
+      requestCompleted(connectionDetails, PublishingMetrics.ERROR_STATUS, start);
+      throw e;
     }
-    String home = System.getProperty("user.home");
-    home = home == null ? new File(".").getAbsolutePath() : new File(home).getAbsolutePath();
-    File defaultKey = new File(new File(home, ".ssh"), "id_rsa");
-    if (defaultKey.isFile())
-      jsch.addIdentity(defaultKey.getAbsolutePath());
   }
 
+  private void requestCompleted(@NotNull GerritConnectionDetails connectionDetails, @NotNull String status, long start) {
+    myMetrics.requestCompleted(Constants.GERRIT_PUBLISHER_ID, connectionDetails.getServer(), status, System.currentTimeMillis() - start);
+  }
 
-  private Session createSession(@NotNull JSch jsch, @NotNull String server, @NotNull String username) throws JSchException {
-    int idx = server.indexOf(":");
-    if (idx != -1) {
-      String host = server.substring(0, idx);
-      int port = Integer.valueOf(server.substring(idx + 1, server.length()));
-      return jsch.getSession(username, host, port);
-    } else {
-      return jsch.getSession(username, server, 29418);
+  /**
+   * Runs commands with the same connection details on one pooled session, each in its own channel.
+   * Every command gets its own result, a failure of one channel doesn't affect the others.
+   */
+  private void runCommands(@NotNull List<GerritReviewBatcher.PendingCommand> commands) {
+    GerritConnectionDetails connectionDetails = commands.get(0).getDetails();
+    TeamCitySshKey key = getKey(connectionDetails.getProject(), connectionDetails.getKeyId());
+    int maxChannels = GerritSshSessionPool.getMaxChannels();
+    for (int from = 0; from < commands.size(); from += maxChannels) {
+      List<GerritReviewBatcher.PendingCommand> chunk = commands.subList(from, Math.min(commands.size(), from + maxChannels));
+      try {
+        runOnSession(connectionDetails, key, chunk);
+      } catch (JSchException e) {
+        for (GerritReviewBatcher.PendingCommand command : chunk) {
+          command.fail(e);
+        }
+      }
     }
   }
 
+  private void runOnSession(@NotNull GerritConnectionDetails connectionDetails,
+                            @Nullable TeamCitySshKey key,
+                            @NotNull List<GerritReviewBatcher.PendingCommand> commands) throws JSchException {
+    GerritSshSessionPool.Lease lease = mySessionPool.acquire(connectionDetails.getServer(), connectionDetails.getUserName(), key, commands.size());
+    List<RunningCommand> running = new ArrayList<RunningCommand>();
+    try {
+      Session session = lease.getSession();
+      for (GerritReviewBatcher.PendingCommand command : commands) {
+        ChannelExec channel;
+        try {
+          channel = openExecChannel(session, command.getCommand());
+        } catch (JSchException e) {
+          if (!running.isEmpty()) {
+            command.fail(e);
+            continue;
+          }
+          // the server could have closed the pooled session since its last health check, retry once on a new one
+          LOG.debug("Failed to open a channel on pooled Gerrit SSH session, reconnecting", e);
+          lease.invalidate();
+          lease.close();
+          lease = mySessionPool.acquire(connectionDetails.getServer(), connectionDetails.getUserName(), key, commands.size());
+          session = lease.getSession();
+          channel = openExecChannel(session, command.getCommand());
+        }
+        running.add(new RunningCommand(command, channel));
+      }
+      for (RunningCommand command : running) {
+        command.start();
+      }
+      // outputs of review commands are small, so the channels can be read one by one
+      for (RunningCommand command : running) {
+        command.finish();
+      }
+    } finally {
+      for (RunningCommand command : running) {
+        command.myChannel.disconnect();
+      }
+      lease.close();
+    }
+  }
+
+  @NotNull
+  private static ChannelExec openExecChannel(@NotNull Session session, @NotNull String command) throws JSchException {
+    ChannelExec channel = (ChannelExec) session.openChannel("exec");
+    channel.setPty(false);
+    channel.setCommand(command);
+    return channel;
+  }
+
+  @Nullable
+  private TeamCitySshKey getKey(@NotNull SProject project, @Nullable String keyId) {
+    if (keyId == null)
+      return null;
+    Collection<ServerSshKeyManager> extensions = myExtensionHolder.getExtensions(ServerSshKeyManager.class);
+    if (extensions.isEmpty())
+      return null;
+    return extensions.iterator().next().getKey(project, keyId);
+  }
+
   @NotNull
   private static String readFully(@NotNull BufferedReader reader) throws IOException {
     String line;
@@ -103,4 +179,44 @@ public class GerritClientImpl extends GerritClientBase implements GerritClient {
     return out.toString().trim();
   }
 
+  private static class RunningCommand {
+    private final GerritReviewBatcher.PendingCommand myCommand;
+    private final ChannelExec myChannel;
+    private BufferedReader myStdout;
+    private BufferedReader myStderr;
+
+    RunningCommand(@NotNull GerritReviewBatcher.PendingCommand command, @NotNull ChannelExec channel) {
+      myCommand = command;
+      myChannel = channel;
+    }
+
+    void start() {
+      String command = myCommand.getCommand();
+      try {
+        myStdout = new BufferedReader(new InputStreamReader(myChannel.getInputStream()));
+        myStderr = new BufferedReader(new InputStreamReader(myChannel.getErrStream()));
+        LOG.debug("Run command '" + command + "'");
+        myChannel.connect();
+      } catch (JSchException | IOException e) {
+        myCommand.fail(e);
+      }
+    }
+
+    void finish() {
+      if (myCommand.isDone())
+        return;
+      String command = myCommand.getCommand();
+      try {
+        String out = readFully(myStdout);
+        String err = readFully(myStderr);
+        LOG.info("Command '" + command + "' finished, exitCode: " + myChannel.getExitStatus());
+        LOG.debug("Command '" + command + "' has returned stdout: '" + out + "', stderr: '" + err + "'");
+        if (err.length() > 0)
+          throw new IOException(err);
+        myCommand.complete(out);
+      } catch (IOException e) {
+        myCommand.fail(e);
+      }
+    }
+  }
 }
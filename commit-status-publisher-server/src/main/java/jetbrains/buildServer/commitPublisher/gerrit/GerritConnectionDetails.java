@@ -13,14 +13,22 @@ class GerritConnectionDetails {
   private final String myServer;
   private final String myUserName;
   private final String myKeyId;
+  private final String myHttpPassword;
 
   GerritConnectionDetails(@NotNull SProject project, @NotNull String gerritProject,
                                  @NotNull String server, @NotNull String username, @Nullable String keyId) {
+    this(project, gerritProject, server, username, keyId, null);
+  }
+
+  GerritConnectionDetails(@NotNull SProject project, @NotNull String gerritProject,
+                          @NotNull String server, @NotNull String username, @Nullable String keyId,
+                          @Nullable String httpPassword) {
     myProject = project;
     myGerritProject = gerritProject;
     myServer = server;
     myUserName = username;
     myKeyId = keyId;
+    myHttpPassword = httpPassword;
   }
 
   @NotNull
@@ -48,4 +56,9 @@ class GerritConnectionDetails {
     return myKeyId;
   }
 
+  @Nullable
+  String getHttpPassword() {
+    return myHttpPassword;
+  }
+
 }
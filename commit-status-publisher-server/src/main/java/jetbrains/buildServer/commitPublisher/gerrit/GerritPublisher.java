@@ -52,7 +52,7 @@ class GerritPublisher extends BaseCommitStatusPublisher {
 
       myGerritClient.review(
         new GerritConnectionDetails(bt.getProject(), getGerritProject(), getGerritServer(), getUsername(),
-                                    myParams.get(ServerSshKeyManager.TEAMCITY_SSH_KEY_PROP)),
+                                    myParams.get(ServerSshKeyManager.TEAMCITY_SSH_KEY_PROP), myParams.get(Constants.GERRIT_HTTP_PASSWORD)),
         getGerritLabel(), vote, msg, revision.getRevision()
       );
       return true;
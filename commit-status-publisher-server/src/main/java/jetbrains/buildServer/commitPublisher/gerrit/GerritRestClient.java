@@ -0,0 +1,187 @@
+package jetbrains.buildServer.commitPublisher.gerrit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.jcraft.jsch.JSchException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.gerrit.data.GerritChangeInfo;
+import jetbrains.buildServer.commitPublisher.gerrit.data.GerritReviewInput;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.IOGuard;
+import org.apache.http.entity.ContentType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Publishes reviews through the Gerrit REST API instead of running commands over SSH,
+ * votes for the same labels as {@link GerritClientBase} does.
+ */
+class GerritRestClient implements GerritClient {
+
+  private static final String XSSI_PREFIX = ")]}'";
+  private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("Accept", "application/json");
+  private static final Gson GSON = new Gson();
+
+  private final CommitStatusPublisherSettings mySettings;
+  private final PublishingMetrics myMetrics;
+  private final Cache<String, String> myChangeIds = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+  GerritRestClient(@NotNull CommitStatusPublisherSettings settings, @NotNull PublishingMetrics metrics) {
+    mySettings = settings;
+    myMetrics = metrics;
+  }
+
+  @Override
+  public void review(@NotNull final GerritConnectionDetails connectionDetails,
+                     @Nullable final String label,
+                     @NotNull final String vote,
+                     @NotNull final String message,
+                     @NotNull final String revision) throws Exception {
+    String changeId = getChangeId(connectionDetails, revision);
+    String url = getReviewUrl(connectionDetails.getServer(), changeId, revision);
+    String data = createReviewPayload(label, vote, message);
+    send(url, connectionDetails, data, new DefaultHttpResponseProcessor());
+  }
+
+  @Override
+  public void testConnection(@NotNull GerritConnectionDetails connectionDetails) throws JSchException, IOException, PublisherException {
+    String gerritProject = connectionDetails.getGerritProject();
+    String url = getApiUrl(connectionDetails.getServer()) + "/projects/" + encode(gerritProject);
+    try {
+      send(url, connectionDetails, null, new DefaultHttpResponseProcessor() {
+        @Override
+        public void processResponse(HttpHelper.HttpResponse response) throws HttpPublisherException, IOException {
+          if (response.getStatusCode() == 404)
+            throw new HttpPublisherException(String.format("Inaccessible Gerrit project %s", gerritProject));
+          super.processResponse(response);
+        }
+      });
+    } catch (IOException | PublisherException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new PublisherException("Gerrit REST API request has failed", e);
+    }
+  }
+
+  @Override
+  public String runCommand(@NotNull GerritConnectionDetails connectionDetails, @NotNull String command) throws JSchException, IOException {
+    throw new IOException("Gerrit commands cannot be run over HTTP: " + command);
+  }
+
+  @NotNull
+  private String getChangeId(@NotNull GerritConnectionDetails connectionDetails, @NotNull String revision) throws Exception {
+    String apiUrl = getApiUrl(connectionDetails.getServer());
+    String cacheKey = apiUrl + "#" + connectionDetails.getGerritProject() + "#" + revision;
+    String changeId = myChangeIds.getIfPresent(cacheKey);
+    if (changeId != null)
+      return changeId;
+
+    String url = apiUrl + "/changes/?q=" + encode("commit:" + revision + " project:" + connectionDetails.getGerritProject());
+    AtomicReference<String> content = new AtomicReference<String>();
+    send(url, connectionDetails, null, new DefaultHttpResponseProcessor() {
+      @Override
+      public void processResponse(HttpHelper.HttpResponse response) throws HttpPublisherException, IOException {
+        super.processResponse(response);
+        content.set(response.getContent());
+      }
+    });
+    changeId = parseChangeId(content.get());
+    if (changeId == null)
+      throw new PublisherException("No Gerrit change found for revision " + revision + " in project " + connectionDetails.getGerritProject());
+    myChangeIds.put(cacheKey, changeId);
+    return changeId;
+  }
+
+  /**
+   * Sends a GET request or, when data is specified, a POST request, and records it in the publishing metrics
+   */
+  private void send(@NotNull String url,
+                    @NotNull GerritConnectionDetails connectionDetails,
+                    @Nullable String data,
+                    @NotNull HttpResponseProcessor processor) throws Exception {
+    AtomicReference<String> status = new AtomicReference<String>(PublishingMetrics.ERROR_STATUS);
+    HttpResponseProcessor recordingProcessor = response -> {
+      status.set(String.valueOf(response.getStatusCode()));
+      processor.processResponse(response);
+    };
+    long start = System.currentTimeMillis();
+    try {
+      IOGuard.allowNetworkCall(() -> {
+        if (data == null)
+          HttpHelper.get(url, connectionDetails.getUserName(), connectionDetails.getHttpPassword(), JSON_HEADERS,
+                         BaseCommitStatusPublisher.DEFAULT_CONNECTION_TIMEOUT, mySettings.trustStore(), recordingProcessor);
+        else
+          HttpHelper.post(url, connectionDetails.getUserName(), connectionDetails.getHttpPassword(), data, ContentType.APPLICATION_JSON, JSON_HEADERS,
+                          BaseCommitStatusPublisher.DEFAULT_CONNECTION_TIMEOUT, mySettings.trustStore(), recordingProcessor);
+      });
+    } finally {
+      myMetrics.requestCompleted(Constants.GERRIT_PUBLISHER_ID, url, status.get(), System.currentTimeMillis() - start);
+    }
+  }
+
+  /**
+   * The change is identified by its legacy numeric id: the {@code id} field of the change info already contains
+   * the URL-encoded project name and encoding it again would break projects with a slash in the name
+   */
+  @NotNull
+  static String getReviewUrl(@NotNull String server, @NotNull String changeId, @NotNull String revision) throws UnsupportedEncodingException {
+    return getApiUrl(server) + "/changes/" + encode(changeId) + "/revisions/" + encode(revision) + "/review";
+  }
+
+  @Nullable
+  static String parseChangeId(@Nullable String json) throws PublisherException {
+    if (json == null)
+      return null;
+    try {
+      GerritChangeInfo[] changes = GSON.fromJson(stripXssiPrefix(json), GerritChangeInfo[].class);
+      if (changes == null || changes.length == 0)
+        return null;
+      return changes[0]._number != null ? String.valueOf(changes[0]._number) : null;
+    } catch (JsonSyntaxException e) {
+      throw new PublisherException("Gerrit has returned a malformed response: " + json, e);
+    }
+  }
+
+  @NotNull
+  static String createReviewPayload(@Nullable String label, @NotNull String vote, @NotNull String message) throws PublisherException {
+    GerritReviewInput input = new GerritReviewInput();
+    input.message = message;
+    try {
+      input.labels = Collections.singletonMap(GerritClientBase.getLabelName(label), Integer.valueOf(vote.trim()));
+    } catch (NumberFormatException e) {
+      throw new PublisherException("Invalid Gerrit vote: " + vote, e);
+    }
+    return GSON.toJson(input);
+  }
+
+  /**
+   * Returns the URL of the authenticated REST API, the server may be specified as <host>[:<port>]
+   * the same way it is specified for SSH, https is used in this case
+   */
+  @NotNull
+  static String getApiUrl(@NotNull String server) {
+    String url = HttpHelper.stripTrailingSlash(server.trim());
+    if (!url.startsWith("http://") && !url.startsWith("https://"))
+      url = "https://" + url;
+    return url + "/a";
+  }
+
+  @NotNull
+  static String stripXssiPrefix(@NotNull String json) {
+    String trimmed = json.trim();
+    return trimmed.startsWith(XSSI_PREFIX) ? trimmed.substring(XSSI_PREFIX.length()) : trimmed;
+  }
+
+  @NotNull
+  private static String encode(@NotNull String s) throws UnsupportedEncodingException {
+    return URLEncoder.encode(s, "UTF-8");
+  }
+}
@@ -0,0 +1,168 @@
+package jetbrains.buildServer.commitPublisher.gerrit;
+
+import com.jcraft.jsch.JSchException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Collects review commands sent to the same Gerrit server within a short window
+ * and hands them over to a runner as a single batch.
+ *
+ * The thread which opens a batch waits for the window to pass (or for the batch to fill up) and runs it,
+ * other submitters just wait for the results of their own commands.
+ */
+class GerritReviewBatcher {
+
+  static final String WINDOW_PROPERTY = "teamcity.commitStatusPublisher.gerrit.reviewBatch.windowMs";
+  static final String MAX_SIZE_PROPERTY = "teamcity.commitStatusPublisher.gerrit.reviewBatch.maxSize";
+
+  private final BatchRunner myRunner;
+  private final Map<String, Batch> myOpenBatches = new HashMap<String, Batch>(); // guarded by itself
+
+  GerritReviewBatcher(@NotNull BatchRunner runner) {
+    myRunner = runner;
+  }
+
+  static boolean isEnabled() {
+    return getWindowMs() > 0;
+  }
+
+  /**
+   * Runs the command as a part of a batch of commands with the same key
+   * @param batchKey key identifying the server and credentials the command is run with
+   * @param details connection details of the command
+   * @param command command to run
+   * @return output of the command
+   */
+  @NotNull
+  String submit(@NotNull String batchKey, @NotNull GerritConnectionDetails details, @NotNull String command) throws JSchException, IOException {
+    PendingCommand pending = new PendingCommand(details, command);
+    int maxSize = Math.max(1, TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, 20));
+    Batch batch;
+    boolean leader;
+    synchronized (myOpenBatches) {
+      batch = myOpenBatches.get(batchKey);
+      leader = batch == null;
+      if (leader) {
+        batch = new Batch();
+        myOpenBatches.put(batchKey, batch);
+      }
+      batch.myCommands.add(pending);
+      if (batch.myCommands.size() >= maxSize) {
+        myOpenBatches.remove(batchKey);
+        batch.myFull.countDown();
+      }
+    }
+    if (leader)
+      runBatch(batchKey, batch);
+    return pending.await();
+  }
+
+  private void runBatch(@NotNull String batchKey, @NotNull Batch batch) {
+    List<PendingCommand> commands;
+    try {
+      batch.myFull.await(getWindowMs(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      synchronized (myOpenBatches) {
+        myOpenBatches.remove(batchKey, batch);
+        commands = Collections.unmodifiableList(new ArrayList<PendingCommand>(batch.myCommands));
+      }
+    }
+    LOG.debug("Running a batch of " + commands.size() + " Gerrit command(s) for " + batchKey);
+    try {
+      myRunner.run(commands);
+    } catch (Throwable e) {
+      for (PendingCommand command : commands) {
+        command.fail(e);
+      }
+    }
+    for (PendingCommand command : commands) {
+      command.fail(new IOException("Command was not run: " + command.getCommand()));
+    }
+  }
+
+  private static long getWindowMs() {
+    return TeamCityProperties.getLong(WINDOW_PROPERTY, 100);
+  }
+
+  interface BatchRunner {
+    /**
+     * Runs commands sharing the same connection details, every command must be completed or failed
+     */
+    void run(@NotNull List<PendingCommand> commands) throws Exception;
+  }
+
+  static class PendingCommand {
+    private final GerritConnectionDetails myDetails;
+    private final String myCommand;
+    private final CompletableFuture<String> myResult = new CompletableFuture<String>();
+
+    PendingCommand(@NotNull GerritConnectionDetails details, @NotNull String command) {
+      myDetails = details;
+      myCommand = command;
+    }
+
+    @NotNull
+    GerritConnectionDetails getDetails() {
+      return myDetails;
+    }
+
+    @NotNull
+    String getCommand() {
+      return myCommand;
+    }
+
+    void complete(@NotNull String output) {
+      myResult.complete(output);
+    }
+
+    /**
+     * Fails the command unless it is already completed
+     */
+    void fail(@NotNull Throwable error) {
+      myResult.completeExceptionally(error);
+    }
+
+    boolean isDone() {
+      return myResult.isDone();
+    }
+
+    @NotNull
+    String await() throws JSchException, IOException {
+      try {
+        return myResult.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for Gerrit command: " + myCommand, e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof JSchException)
+          throw (JSchException)cause;
+        if (cause instanceof IOException)
+          throw (IOException)cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException)cause;
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  private static class Batch {
+    private final List<PendingCommand> myCommands = new ArrayList<PendingCommand>();
+    private final CountDownLatch myFull = new CountDownLatch(1);
+  }
+}
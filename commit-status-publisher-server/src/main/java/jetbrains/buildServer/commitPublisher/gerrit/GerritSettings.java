@@ -2,6 +2,7 @@ package jetbrains.buildServer.commitPublisher.gerrit;
 
 import jetbrains.buildServer.ExtensionHolder;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
@@ -27,9 +28,9 @@ public class GerritSettings extends BasePublisherSettings implements CommitStatu
           put(Constants.GERRIT_LABEL, "Gerrit Label");
           put(Constants.GERRIT_SUCCESS_VOTE, "Success vote");
           put(Constants.GERRIT_FAILURE_VOTE, "Failure vote");
-          put(TEAMCITY_SSH_KEY_PROP, "SSH key");
   }};
   private GerritClient myGerritClient;
+  private final GerritClient myRestClient;
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.FINISHED);
   }};
@@ -41,10 +42,12 @@ public class GerritSettings extends BasePublisherSettings implements CommitStatu
                         @NotNull GerritClient gerritClient,
                         @NotNull WebLinks links,
                         @NotNull CommitStatusPublisherProblems problems,
-                        @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                        @NotNull SSLTrustStoreProvider trustStoreProvider,
+                        @NotNull PublishingMetrics metrics) {
     super(executorServices, descriptor, links, problems, trustStoreProvider);
     myExtensionHolder = extensionHolder;
     myGerritClient = gerritClient;
+    myRestClient = new GerritRestClient(this, metrics);
   }
 
   @NotNull
@@ -68,6 +71,7 @@ public class GerritSettings extends BasePublisherSettings implements CommitStatu
     params.put(Constants.GERRIT_LABEL, "Verified");
     params.put(Constants.GERRIT_SUCCESS_VOTE, "+1");
     params.put(Constants.GERRIT_FAILURE_VOTE, "-1");
+    params.put(Constants.GERRIT_TRANSPORT, Constants.GERRIT_TRANSPORT_SSH);
     return params;
   }
 
@@ -79,7 +83,16 @@ public class GerritSettings extends BasePublisherSettings implements CommitStatu
 
   @Nullable
   public GerritPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new GerritPublisher(this, buildType, buildFeatureId, myGerritClient, myLinks, params, myProblems);
+    return new GerritPublisher(this, buildType, buildFeatureId, getClient(params), myLinks, params, myProblems);
+  }
+
+  @NotNull
+  private GerritClient getClient(@NotNull Map<String, String> params) {
+    return isHttpTransport(params) ? myRestClient : myGerritClient;
+  }
+
+  private static boolean isHttpTransport(@NotNull Map<String, String> params) {
+    return Constants.GERRIT_TRANSPORT_HTTP.equals(params.get(Constants.GERRIT_TRANSPORT));
   }
 
   @NotNull
@@ -96,6 +109,12 @@ public class GerritSettings extends BasePublisherSettings implements CommitStatu
           if (params.get(mandatoryParam.getKey()) == null)
             errors.add(new InvalidProperty(mandatoryParam.getKey(), String.format("%s must be specified", mandatoryParam.getValue())));
         }
+        if (isHttpTransport(params)) {
+          if (params.get(Constants.GERRIT_HTTP_PASSWORD) == null)
+            errors.add(new InvalidProperty(Constants.GERRIT_HTTP_PASSWORD, "HTTP password must be specified"));
+        } else if (params.get(TEAMCITY_SSH_KEY_PROP) == null) {
+          errors.add(new InvalidProperty(TEAMCITY_SSH_KEY_PROP, "SSH key must be specified"));
+        }
         return errors;
       }
     };
@@ -109,10 +128,11 @@ public class GerritSettings extends BasePublisherSettings implements CommitStatu
   @Override
   public void testConnection(@NotNull BuildTypeIdentity buildTypeOrTemplate, @NotNull VcsRoot root, @NotNull Map<String, String> params) throws PublisherException {
     try {
-      myGerritClient.testConnection(
+      getClient(params).testConnection(
         new GerritConnectionDetails(buildTypeOrTemplate.getProject(), params.get(Constants.GERRIT_PROJECT),
                                     params.get(Constants.GERRIT_SERVER), params.get(Constants.GERRIT_USERNAME),
-                                    params.get(ServerSshKeyManager.TEAMCITY_SSH_KEY_PROP))
+                                    params.get(ServerSshKeyManager.TEAMCITY_SSH_KEY_PROP),
+                                    params.get(Constants.GERRIT_HTTP_PASSWORD))
       );
     } catch (Exception e) {
       throw new PublisherException("Gerrit publisher connection test has failed", e);
@@ -0,0 +1,349 @@
+package jetbrains.buildServer.commitPublisher.gerrit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import java.io.File;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.ssh.TeamCitySshKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Keeps authenticated SSH sessions to Gerrit servers open between commands.
+ * Sessions are keyed by server, user and SSH key, kept alive with SSH keepalive messages,
+ * re-established when found disconnected and closed after being idle for a while.
+ * Each session serves a bounded number of channels at once. A session dropped from the pool while other leases
+ * still use it is closed when the last of them is released.
+ */
+class GerritSshSessionPool {
+
+  static final int DEFAULT_PORT = 29418;
+
+  private static final String MAX_CHANNELS_PROPERTY = "teamcity.commitStatusPublisher.gerrit.ssh.maxChannelsPerSession";
+  private static final String CHANNEL_WAIT_TIMEOUT_PROPERTY = "teamcity.commitStatusPublisher.gerrit.ssh.channelWaitTimeoutSeconds";
+  static final String IDLE_TIMEOUT_PROPERTY = "teamcity.commitStatusPublisher.gerrit.ssh.idleTimeoutSeconds";
+  private static final String KEEP_ALIVE_INTERVAL_PROPERTY = "teamcity.commitStatusPublisher.gerrit.ssh.keepAliveIntervalSeconds";
+
+  private final ConcurrentHashMap<SessionKey, PooledSession> mySessions = new ConcurrentHashMap<SessionKey, PooledSession>();
+  private final Cache<IdentityKey, JSch> myIdentities = CacheBuilder.newBuilder().maximumSize(100).build();
+
+  @NotNull
+  Lease acquire(@NotNull String server, @NotNull String username, @Nullable TeamCitySshKey key) throws JSchException {
+    return acquire(server, username, key, 1);
+  }
+
+  /**
+   * Borrows a session together with the given number of its channel slots,
+   * the number is capped by the maximum number of channels per session
+   */
+  @NotNull
+  Lease acquire(@NotNull String server, @NotNull String username, @Nullable TeamCitySshKey key, int channels) throws JSchException {
+    final IdentityKey identityKey = new IdentityKey(key, getDefaultKeyFile());
+    final SessionKey sessionKey = new SessionKey(server, username, identityKey);
+    while (true) {
+      final PooledSession pooled = mySessions.computeIfAbsent(sessionKey, k -> new PooledSession(getMaxChannels()));
+      final int permits = Math.max(1, Math.min(channels, pooled.myMaxChannels));
+      pooled.acquireChannels(permits);
+      final Session session;
+      try {
+        session = pooled.lease(() -> createSession(getJSch(identityKey, key), server, username));
+      } catch (JSchException | RuntimeException e) {
+        pooled.releaseChannels(permits);
+        throw e;
+      }
+      if (session != null)
+        return new Lease(pooled, session, permits);
+      // the entry was evicted while we were waiting for channels, the next iteration creates a new one
+      pooled.releaseChannels(permits);
+    }
+  }
+
+  /**
+   * Closes sessions which have no open channels and were not used longer than the idle timeout and removes them from the pool
+   */
+  void evictIdleSessions() {
+    final long idleTimeoutMs = TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(IDLE_TIMEOUT_PROPERTY, 300));
+    final long now = System.currentTimeMillis();
+    for (Map.Entry<SessionKey, PooledSession> entry : mySessions.entrySet()) {
+      if (entry.getValue().retireIfIdle(now, idleTimeoutMs))
+        mySessions.remove(entry.getKey(), entry.getValue());
+    }
+  }
+
+  int getPooledSessionsCount() {
+    return mySessions.size();
+  }
+
+  void dispose() {
+    for (PooledSession pooled : mySessions.values()) {
+      pooled.retire();
+    }
+    mySessions.clear();
+    myIdentities.invalidateAll();
+  }
+
+  @NotNull
+  private JSch getJSch(@NotNull IdentityKey identityKey, @Nullable TeamCitySshKey key) throws JSchException {
+    try {
+      return myIdentities.get(identityKey, () -> createJSch(key, identityKey.myDefaultKeyPath));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof JSchException)
+        throw (JSchException)e.getCause();
+      throw new JSchException("Failed to load SSH identities", e.getCause());
+    }
+  }
+
+  @NotNull
+  JSch createJSch(@Nullable TeamCitySshKey key, @Nullable String defaultKeyPath) throws JSchException {
+    JSch jsch = new JSch();
+    if (key != null)
+      jsch.addIdentity(key.getName(), key.getPrivateKey(), null, null);
+    if (defaultKeyPath != null)
+      jsch.addIdentity(defaultKeyPath);
+    return jsch;
+  }
+
+  @NotNull
+  Session createSession(@NotNull JSch jsch, @NotNull String server, @NotNull String username) throws JSchException {
+    int idx = server.indexOf(":");
+    final Session session;
+    if (idx != -1) {
+      String host = server.substring(0, idx);
+      int port = Integer.valueOf(server.substring(idx + 1, server.length()));
+      session = jsch.getSession(username, host, port);
+    } else {
+      session = jsch.getSession(username, server, DEFAULT_PORT);
+    }
+    session.setConfig("StrictHostKeyChecking", "no");
+    session.setServerAliveInterval((int)TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(KEEP_ALIVE_INTERVAL_PROPERTY, 30)));
+    session.setServerAliveCountMax(3);
+    LOG.debug("Opening SSH session to Gerrit server " + server + " as " + username);
+    session.connect();
+    return session;
+  }
+
+  boolean isConnected(@NotNull Session session) {
+    return session.isConnected();
+  }
+
+  void disconnect(@NotNull Session session) {
+    session.disconnect();
+  }
+
+  @Nullable
+  private static File getDefaultKeyFile() {
+    String home = System.getProperty("user.home");
+    home = home == null ? new File(".").getAbsolutePath() : new File(home).getAbsolutePath();
+    File defaultKey = new File(new File(home, ".ssh"), "id_rsa");
+    return defaultKey.isFile() ? defaultKey : null;
+  }
+
+  static int getMaxChannels() {
+    return Math.max(1, TeamCityProperties.getInteger(MAX_CHANNELS_PROPERTY, 5));
+  }
+
+  /**
+   * A session borrowed from the pool together with one of its channel slots, must be closed after use
+   */
+  static class Lease implements AutoCloseable {
+    private final PooledSession myPooled;
+    private final Session mySession;
+    private final int myChannels;
+    private boolean myClosed;
+
+    private Lease(@NotNull PooledSession pooled, @NotNull Session session, int channels) {
+      myPooled = pooled;
+      mySession = session;
+      myChannels = channels;
+    }
+
+    @NotNull
+    Session getSession() {
+      return mySession;
+    }
+
+    /**
+     * Drops the session from the pool, e.g. after a channel could not be opened on it.
+     * Leases which use the session at the moment can finish their work, the session is closed when the last of them is released.
+     */
+    void invalidate() {
+      myPooled.invalidate(mySession);
+    }
+
+    @Override
+    public void close() {
+      if (myClosed)
+        return;
+      myClosed = true;
+      myPooled.release(mySession);
+      myPooled.releaseChannels(myChannels);
+    }
+  }
+
+  private interface SessionFactory {
+    @NotNull
+    Session create() throws JSchException;
+  }
+
+  private class PooledSession {
+    private final Semaphore myChannels;
+    private final int myMaxChannels;
+    private final Map<Session, Integer> myLeases = new IdentityHashMap<Session, Integer>(); // guarded by this
+    private Session mySession; // guarded by this
+    private boolean myRetired; // guarded by this
+    private volatile long myLastUsed = System.currentTimeMillis();
+
+    PooledSession(int maxChannels) {
+      myMaxChannels = maxChannels;
+      myChannels = new Semaphore(maxChannels);
+    }
+
+    void acquireChannels(int permits) throws JSchException {
+      int timeout = TeamCityProperties.getInteger(CHANNEL_WAIT_TIMEOUT_PROPERTY, 60);
+      try {
+        if (!myChannels.tryAcquire(permits, timeout, TimeUnit.SECONDS))
+          throw new JSchException("Timed out waiting for a free channel of the Gerrit SSH session");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new JSchException("Interrupted while waiting for a free channel of the Gerrit SSH session", e);
+      }
+      myLastUsed = System.currentTimeMillis();
+    }
+
+    void releaseChannels(int permits) {
+      myLastUsed = System.currentTimeMillis();
+      myChannels.release(permits);
+    }
+
+    /**
+     * @return connected session or null if this entry was removed from the pool
+     */
+    @Nullable
+    synchronized Session lease(@NotNull SessionFactory factory) throws JSchException {
+      if (myRetired)
+        return null;
+      if (mySession != null && !isConnected(mySession)) {
+        LOG.debug("Pooled SSH session to Gerrit server " + mySession.getHost() + " is disconnected, reconnecting");
+        drop(mySession);
+      }
+      if (mySession == null)
+        mySession = factory.create();
+      Integer leases = myLeases.get(mySession);
+      myLeases.put(mySession, leases == null ? 1 : leases + 1);
+      return mySession;
+    }
+
+    synchronized void release(@NotNull Session session) {
+      Integer leases = myLeases.get(session);
+      if (leases == null)
+        return;
+      if (leases > 1) {
+        myLeases.put(session, leases - 1);
+        return;
+      }
+      myLeases.remove(session);
+      if (session != mySession)
+        disconnect(session);
+    }
+
+    synchronized void invalidate(@NotNull Session session) {
+      drop(session);
+    }
+
+    /**
+     * Marks this entry as removed from the pool if it has no leases and was not used longer than the idle timeout
+     */
+    synchronized boolean retireIfIdle(long now, long idleTimeoutMs) {
+      if (now - myLastUsed < idleTimeoutMs || myChannels.availablePermits() < myMaxChannels || !myLeases.isEmpty())
+        return false;
+      if (mySession != null)
+        LOG.debug("Closing idle SSH session to Gerrit server " + mySession.getHost());
+      retire();
+      return true;
+    }
+
+    synchronized void retire() {
+      myRetired = true;
+      if (mySession != null)
+        drop(mySession);
+    }
+
+    /**
+     * Stops handing out the session, it is closed right away if it has no leases or by the release of the last lease otherwise
+     */
+    private void drop(@NotNull Session session) {
+      if (mySession == session)
+        mySession = null;
+      if (!myLeases.containsKey(session))
+        disconnect(session);
+    }
+  }
+
+  private static class IdentityKey {
+    private final String myKeyName;
+    private final byte[] myPrivateKey;
+    private final String myDefaultKeyPath;
+    private final long myDefaultKeyTimestamp;
+
+    IdentityKey(@Nullable TeamCitySshKey key, @Nullable File defaultKey) {
+      myKeyName = key == null ? null : key.getName();
+      myPrivateKey = key == null ? null : key.getPrivateKey();
+      myDefaultKeyPath = defaultKey == null ? null : defaultKey.getAbsolutePath();
+      myDefaultKeyTimestamp = defaultKey == null ? 0 : defaultKey.lastModified();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      IdentityKey that = (IdentityKey)o;
+      return Arrays.equals(myPrivateKey, that.myPrivateKey) &&
+             myDefaultKeyTimestamp == that.myDefaultKeyTimestamp &&
+             Objects.equals(myKeyName, that.myKeyName) &&
+             Objects.equals(myDefaultKeyPath, that.myDefaultKeyPath);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myKeyName, Arrays.hashCode(myPrivateKey), myDefaultKeyPath, myDefaultKeyTimestamp);
+    }
+  }
+
+  private static class SessionKey {
+    private final String myServer;
+    private final String myUserName;
+    private final IdentityKey myIdentity;
+
+    SessionKey(@NotNull String server, @NotNull String userName, @NotNull IdentityKey identity) {
+      myServer = server;
+      myUserName = userName;
+      myIdentity = identity;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      SessionKey that = (SessionKey)o;
+      return myServer.equals(that.myServer) && myUserName.equals(that.myUserName) && myIdentity.equals(that.myIdentity);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myServer, myUserName, myIdentity);
+    }
+  }
+}
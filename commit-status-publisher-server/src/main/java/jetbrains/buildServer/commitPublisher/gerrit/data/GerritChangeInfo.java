@@ -0,0 +1,10 @@
+package jetbrains.buildServer.commitPublisher.gerrit.data;
+
+/**
+ * This class does not represent full change information.
+ */
+public class GerritChangeInfo {
+  public String id;
+  public String project;
+  public Integer _number;
+}
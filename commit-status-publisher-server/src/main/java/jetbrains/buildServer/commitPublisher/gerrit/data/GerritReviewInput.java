@@ -0,0 +1,11 @@
+package jetbrains.buildServer.commitPublisher.gerrit.data;
+
+import java.util.Map;
+
+/**
+ * Request body of the set review REST endpoint, only the fields used by the publisher.
+ */
+public class GerritReviewInput {
+  public String message;
+  public Map<String, Integer> labels;
+}
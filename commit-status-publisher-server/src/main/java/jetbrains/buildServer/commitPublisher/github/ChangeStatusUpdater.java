@@ -19,6 +19,7 @@ package jetbrains.buildServer.commitPublisher.github;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.github.api.*;
 import jetbrains.buildServer.commitPublisher.github.ui.UpdateChangesConstants;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
@@ -46,13 +47,22 @@ public class ChangeStatusUpdater {
   @NotNull
   private final GitHubApiFactory myFactory;
   private final WebLinks myWeb;
+  private final RepositoryRouteCache myRoutes;
+  private final PublishingMetrics myMetrics;
+  private final PublishAuditLog myAuditLog;
 
   public ChangeStatusUpdater(@NotNull final GitHubApiFactory factory,
                              @NotNull final WebLinks web,
-                             @NotNull final VcsModificationHistory vcsModificationHistory) {
+                             @NotNull final VcsModificationHistory vcsModificationHistory,
+                             @NotNull final RepositoryRouteCache routes,
+                             @NotNull final PublishingMetrics metrics,
+                             @NotNull final PublishAuditLog auditLog) {
     myFactory = factory;
     myWeb = web;
     myModificationHistory = vcsModificationHistory;
+    myRoutes = routes;
+    myMetrics = metrics;
+    myAuditLog = auditLog;
   }
 
   @NotNull
@@ -106,7 +116,9 @@ public class ChangeStatusUpdater {
 
     final GitHubApi api = getGitHubApi(params);
 
-    Repository repo = parseRepository(root);
+    RepositoryRouteCache.Route<Repository> route = myRoutes.getRoute(
+      Constants.GITHUB_PUBLISHER_ID, root, root.getProperty("url"), null, VCS_URL_PARSER::parseRepositoryUrl, null);
+    Repository repo = route != null ? route.getRepository() : parseRepository(root);
 
     final String repositoryOwner = repo.owner();
     final String repositoryName = repo.repositoryName();
@@ -177,11 +189,13 @@ public class ChangeStatusUpdater {
                                         @NotNull final String message,
                                         @NotNull final GitHubChangeState status) {
         final RepositoryVersion version = revision.getRepositoryVersion();
-        LOG.info("Scheduling GitHub status update for " +
-                 "hash: " + version.getVersion() + ", " +
-                 "branch: " + version.getVcsBranch() + ", " +
-                 "buildId: " + build.getBuildId() + ", " +
-                 "status: " + status);
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Scheduling GitHub status update for " +
+                    "hash: " + version.getVersion() + ", " +
+                    "branch: " + version.getVcsBranch() + ", " +
+                    "buildId: " + build.getBuildId() + ", " +
+                    "status: " + status);
+        }
 
         final Runnable scheduleUpdater = new Runnable() {
 
@@ -291,9 +305,10 @@ public class ChangeStatusUpdater {
             final CommitStatusPublisherProblems problems = publisher.getProblems();
             boolean prMergeBranch = !hash.equals(version.getVersion());
             String url;
+            long start = System.currentTimeMillis();
             try {
               url = getViewResultsUrl(build);
-              api.setChangeStatus(
+              boolean posted = api.setChangeStatus(
                       repositoryOwner,
                       repositoryName,
                       hash,
@@ -302,8 +317,14 @@ public class ChangeStatusUpdater {
                       message,
                       prMergeBranch ? context + " - merge" : context
               );
-              LOG.info("Updated GitHub status for hash: " + hash + ", buildId: " + build.getBuildId() + ", status: " + status);
+              if (!posted)
+                myMetrics.statusCoalesced(build.getBuildTypeId());
+              myAuditLog.record(build.getBuildPromotion().getId(), build.getBuildTypeId(), publisher.getId(), hash, status.getState(),
+                                System.currentTimeMillis() - start,
+                                posted ? PublishAuditLog.Outcome.PUBLISHED : PublishAuditLog.Outcome.COALESCED, null);
             } catch (IOException e) {
+              myAuditLog.record(build.getBuildPromotion().getId(), build.getBuildTypeId(), publisher.getId(), hash, status.getState(),
+                                System.currentTimeMillis() - start, PublishAuditLog.Outcome.FAILED, e.getMessage());
               problems.reportProblem(String.format("Commit Status Publisher error. GitHub status: '%s'", status.toString()), publisher, LogUtil.describe(build), publisher.getServerUrl(), e, LOG);
             }
             if (addComments) {
@@ -314,7 +335,7 @@ public class ChangeStatusUpdater {
                         hash,
                         getComment(version, build, status != GitHubChangeState.Pending, hash)
                 );
-                LOG.info("Added comment to GitHub commit: " + hash + ", buildId: " + build.getBuildId() + ", status: " + status);
+                LOG.debug("Added comment to GitHub commit: " + hash + ", buildId: " + build.getBuildId() + ", status: " + status);
               } catch (IOException e) {
                 problems.reportProblem("Commit Status Publisher has failed to add a comment", publisher, LogUtil.describe(build), null, e, LOG);
               }
@@ -36,13 +36,16 @@ public interface GitHubApi {
                           @NotNull String repositoryName,
                           @NotNull String hash) throws IOException;
 
-  void setChangeStatus(@NotNull String repoOwner,
-                       @NotNull String repositoryName,
-                       @NotNull String hash,
-                       @NotNull GitHubChangeState status,
-                       @NotNull String targetUrl,
-                       @NotNull String description,
-                       @Nullable String context) throws IOException;
+  /**
+   * @return false if the status was not posted, because the same status has already been published
+   */
+  boolean setChangeStatus(@NotNull String repoOwner,
+                          @NotNull String repositoryName,
+                          @NotNull String hash,
+                          @NotNull GitHubChangeState status,
+                          @NotNull String targetUrl,
+                          @NotNull String description,
+                          @Nullable String context) throws IOException;
 
 
   /**
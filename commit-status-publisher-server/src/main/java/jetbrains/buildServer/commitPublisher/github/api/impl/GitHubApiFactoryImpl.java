@@ -18,6 +18,8 @@ package jetbrains.buildServer.commitPublisher.github.api.impl;
 
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApiFactory;
+import jetbrains.buildServer.commitPublisher.PublishedStateCache;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.http.SimpleCredentials;
 import org.jetbrains.annotations.NotNull;
 
@@ -27,9 +29,15 @@ import org.jetbrains.annotations.NotNull;
  */
 public class GitHubApiFactoryImpl implements GitHubApiFactory {
   private final HttpClientWrapper myWrapper;
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
 
-  public GitHubApiFactoryImpl(@NotNull final HttpClientWrapper wrapper) {
+  public GitHubApiFactoryImpl(@NotNull final HttpClientWrapper wrapper,
+                              @NotNull final PublishedStateCache publishedStates,
+                              @NotNull final PublishingMetrics metrics) {
     myWrapper = wrapper;
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
   }
 
 
@@ -37,7 +45,7 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   public GitHubApi openGitHubForUser(@NotNull final String url,
                                      @NotNull final String username,
                                      @NotNull final String password) {
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myPublishedStates, myMetrics){
       @Override
       protected SimpleCredentials authenticationCredentials() {
         return new SimpleCredentials(username, password);
@@ -48,7 +56,7 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   @NotNull
   public GitHubApi openGitHubForToken(@NotNull final String url,
                                       @NotNull final String token) {
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myPublishedStates, myMetrics){
       @Override
       protected SimpleCredentials authenticationCredentials() {
         return new SimpleCredentials(token, "x-oauth-basic");
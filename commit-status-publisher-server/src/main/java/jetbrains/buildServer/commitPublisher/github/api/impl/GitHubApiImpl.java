@@ -19,11 +19,14 @@ package jetbrains.buildServer.commitPublisher.github.api.impl;
 import com.google.gson.Gson;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
+import jetbrains.buildServer.commitPublisher.Constants;
+import jetbrains.buildServer.commitPublisher.PublishedStateCache;
 import jetbrains.buildServer.commitPublisher.PublisherException;
 import jetbrains.buildServer.commitPublisher.Repository;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubChangeState;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.*;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.http.SimpleCredentials;
 import jetbrains.buildServer.serverSide.IOGuard;
 import jetbrains.buildServer.util.HTTPRequestBuilder;
@@ -54,12 +57,18 @@ public abstract class GitHubApiImpl implements GitHubApi {
   private final HttpClientWrapper myClient;
   private final GitHubApiPaths myUrls;
   private final Gson myGson = new Gson();
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
 
   public GitHubApiImpl(@NotNull final HttpClientWrapper client,
-                       @NotNull final GitHubApiPaths urls
+                       @NotNull final GitHubApiPaths urls,
+                       @NotNull final PublishedStateCache publishedStates,
+                       @NotNull final PublishingMetrics metrics
   ) {
     myClient = client;
     myUrls = urls;
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
   }
 
   @Nullable
@@ -136,42 +145,53 @@ public abstract class GitHubApiImpl implements GitHubApi {
     return result;
   }
 
-  public void setChangeStatus(@NotNull final String repoOwner,
-                              @NotNull final String repoName,
-                              @NotNull final String hash,
-                              @NotNull final GitHubChangeState status,
-                              @NotNull final String targetUrl,
-                              @NotNull final String description,
-                              @Nullable final String context) throws IOException {
+  public boolean setChangeStatus(@NotNull final String repoOwner,
+                                 @NotNull final String repoName,
+                                 @NotNull final String hash,
+                                 @NotNull final GitHubChangeState status,
+                                 @NotNull final String targetUrl,
+                                 @NotNull final String description,
+                                 @Nullable final String context) throws IOException {
 
     final String url = myUrls.getStatusUrl(repoOwner, repoName, hash);
     final String entity = myGson.toJson(new CommitStatus(status.getState(), targetUrl, description, context));
+    final String destination = url + "|" + context;
+    if (myPublishedStates.isPublished(destination, entity)) {
+      LOG.debug("GitHub status for hash " + hash + " is not posted: the same status has already been published, context: " + context);
+      return false;
+    }
 
     final HttpMethod method = HttpMethod.POST;
     logRequest(method, url, entity);
 
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
+    final AtomicReference<String> statusRef = new AtomicReference<>(PublishingMetrics.ERROR_STATUS);
+    final long start = System.currentTimeMillis();
     IOGuard.allowNetworkCall(() -> {
       myClient.post(
         url, authenticationCredentials(), defaultHeaders(),
         entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
+        response -> statusRef.set(String.valueOf(response.getStatusCode())),
         response -> {
-        },
-        response -> {
+          statusRef.set(String.valueOf(response.getStatusCode()));
           logFailedResponse(method, url, entity, response);
           exceptionRef.set(new IOException(getErrorMessage(response, MSG_PROXY_OR_PERMISSIONS)));
         },
         e -> exceptionRef.set(e));
     });
+    myMetrics.requestCompleted(Constants.GITHUB_PUBLISHER_ID, url, statusRef.get(), System.currentTimeMillis() - start);
 
     final Exception ex;
     if ((ex = exceptionRef.get()) != null) {
+      myPublishedStates.forget(destination);
       if (ex instanceof IOException) {
         throw (IOException) ex;
       } else {
         throw new IOException(ex);
       }
     }
+    myPublishedStates.published(destination, entity);
+    return true;
   }
 
   public boolean isPullRequestMergeBranch(@NotNull String branchName) {
@@ -341,18 +361,21 @@ public abstract class GitHubApiImpl implements GitHubApi {
     logRequest(method, url, entity);
 
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
+    final AtomicReference<String> statusRef = new AtomicReference<>(PublishingMetrics.ERROR_STATUS);
+    final long start = System.currentTimeMillis();
     IOGuard.allowNetworkCall(() -> {
       myClient.post(
         url, authenticationCredentials(), defaultHeaders(),
         entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
+        response -> statusRef.set(String.valueOf(response.getStatusCode())),
         response -> {
-        },
-        response -> {
+          statusRef.set(String.valueOf(response.getStatusCode()));
           logFailedResponse(method, url, entity, response);
           exceptionRef.set(new IOException(getErrorMessage(response, null)));
         },
         e -> exceptionRef.set(e));
     });
+    myMetrics.requestCompleted(Constants.GITHUB_PUBLISHER_ID, url, statusRef.get(), System.currentTimeMillis() - start);
 
     final Exception ex;
     if ((ex = exceptionRef.get()) != null) {
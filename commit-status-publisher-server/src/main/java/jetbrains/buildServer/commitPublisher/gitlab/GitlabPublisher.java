@@ -3,6 +3,7 @@ package jetbrains.buildServer.commitPublisher.gitlab;
 import com.google.gson.Gson;
 import java.util.LinkedHashMap;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
@@ -22,18 +23,23 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher {
 
   private static final String REFS_HEADS = "refs/heads/";
   private static final String REFS_TAGS = "refs/tags/";
-  private final Gson myGson = new Gson();
+  private static final Gson GSON = new Gson();
   private static final GitRepositoryParser VCS_URL_PARSER = new GitRepositoryParser();
 
   private final WebLinks myLinks;
+  private final RepositoryRouteCache myRoutes;
 
   GitlabPublisher(@NotNull CommitStatusPublisherSettings settings,
                   @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                   @NotNull ExecutorServices executorServices, @NotNull WebLinks links,
                   @NotNull Map<String, String> params,
-                  @NotNull CommitStatusPublisherProblems problems) {
-    super(settings, buildType, buildFeatureId, executorServices, params, problems);
+                  @NotNull CommitStatusPublisherProblems problems,
+                  @NotNull PublishedStateCache publishedStates,
+                  @NotNull PublishingMetrics metrics,
+                  @NotNull RepositoryRouteCache routes) {
+    super(settings, buildType, buildFeatureId, executorServices, params, problems, publishedStates, metrics);
     myLinks = links;
+    myRoutes = routes;
   }
 
 
@@ -120,21 +126,23 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher {
     String apiUrl = getApiUrl();
     if (null == apiUrl || apiUrl.length() == 0)
       throw new PublisherException("Missing GitLab API URL parameter");
-    String pathPrefix = GitlabSettings.getPathPrefix(apiUrl);
-    Repository repository = parseRepository(root, pathPrefix);
-    if (repository == null)
+    RepositoryRouteCache.Route<Repository> route = myRoutes.getRoute(
+      Constants.GITLAB_PUBLISHER_ID, root, root.getProperty("url"), apiUrl,
+      url -> parseRepository(root, GitlabSettings.getPathPrefix(apiUrl)),
+      repository -> GitlabSettings.getProjectsUrl(apiUrl, repository.owner(), repository.repositoryName()) + "/statuses/");
+    if (route == null)
       throw new PublisherException("Cannot parse repository URL from VCS root " + root.getName());
 
     try {
-      publish(revision.getRevision(), message, repository, buildDescription);
+      publish(revision.getRevision(), message, route.getEndpointPrefix(), buildDescription);
     } catch (Exception e) {
       throw new PublisherException("Cannot publish status to GitLab for VCS root " +
                                    revision.getRoot().getName() + ": " + e.toString(), e);
     }
   }
 
-  private void publish(@NotNull String commit, @NotNull String data, @NotNull Repository repository, @NotNull String buildDescription) {
-    String url = GitlabSettings.getProjectsUrl(getApiUrl(), repository.owner(), repository.repositoryName()) + "/statuses/" + commit;
+  private void publish(@NotNull String commit, @NotNull String data, @NotNull String statusesUrlPrefix, @NotNull String buildDescription) {
+    String url = statusesUrlPrefix + commit;
     LOG.debug("Request url: " + url + ", message: " + data);
     post(url, null, null, data, ContentType.APPLICATION_JSON, Collections.singletonMap("PRIVATE-TOKEN", getPrivateToken()), buildDescription);
   }
@@ -161,7 +169,15 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher {
                                @NotNull String description) {
 
     RepositoryVersion repositoryVersion = revision.getRepositoryVersion();
-    String ref = repositoryVersion.getVcsBranch();
+    return createMessage(status, name, repositoryVersion.getVcsBranch(), url, description);
+  }
+
+  @NotNull
+  static String createMessage(@NotNull GitlabBuildStatus status,
+                              @NotNull String name,
+                              @Nullable String ref,
+                              @NotNull String url,
+                              @NotNull String description) {
     if (ref != null) {
       if (ref.startsWith(REFS_HEADS)) {
         ref = ref.substring(REFS_HEADS.length());
@@ -179,7 +195,7 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher {
     data.put("description", description);
     if (ref != null)
       data.put("ref", ref);
-    return myGson.toJson(data);
+    return GSON.toJson(data);
   }
 
   @Nullable
@@ -15,6 +15,7 @@ import jetbrains.buildServer.web.util.WebUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 
 import java.io.IOException;
 import java.util.*;
@@ -37,12 +38,22 @@ public class GitlabSettings extends BasePublisherSettings implements CommitStatu
     addAll(mySupportedEvents);
   }};
 
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
+  private final RepositoryRouteCache myRoutes;
+
   public GitlabSettings(@NotNull ExecutorServices executorServices,
                         @NotNull PluginDescriptor descriptor,
                         @NotNull WebLinks links,
                         @NotNull CommitStatusPublisherProblems problems,
-                        @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                        @NotNull SSLTrustStoreProvider trustStoreProvider,
+                        @NotNull PublishedStateCache publishedStates,
+                        @NotNull PublishingMetrics metrics,
+                        @NotNull RepositoryRouteCache routes) {
     super(executorServices, descriptor, links, problems, trustStoreProvider);
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
+    myRoutes = routes;
   }
 
   @NotNull
@@ -66,7 +77,7 @@ public class GitlabSettings extends BasePublisherSettings implements CommitStatu
   @NotNull
   @Override
   public GitlabPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new GitlabPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems);
+    return new GitlabPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems, myPublishedStates, myMetrics, myRoutes);
   }
 
   @Override
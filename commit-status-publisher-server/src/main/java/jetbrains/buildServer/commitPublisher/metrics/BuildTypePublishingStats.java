@@ -0,0 +1,85 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live publishing counters of a build type on this node
+ */
+public class BuildTypePublishingStats {
+
+  static final int WINDOW_MINUTES = 60;
+  private static final double LATENCY_SMOOTHING = 0.2;
+  private static final long NONE = -1;
+
+  private final AtomicInteger myPending = new AtomicInteger();
+  private final AtomicLong myBacklogSince = new AtomicLong(NONE);
+  private final AtomicLong mySmoothedLatencyMs = new AtomicLong(NONE);
+  private final RecentEventsCounter myDropped = new RecentEventsCounter(WINDOW_MINUTES);
+  private final RecentEventsCounter myCoalesced = new RecentEventsCounter(WINDOW_MINUTES);
+  private volatile long myLastActivity;
+
+  BuildTypePublishingStats(long now) {
+    myLastActivity = now;
+  }
+
+  void taskAccepted(long now) {
+    myLastActivity = now;
+    if (myPending.getAndIncrement() == 0)
+      myBacklogSince.compareAndSet(NONE, now);
+  }
+
+  /**
+   * @param latencyMs time from the build event to the published status, negative if unknown
+   */
+  void taskFinished(long now, long latencyMs) {
+    myLastActivity = now;
+    if (myPending.decrementAndGet() == 0)
+      myBacklogSince.set(NONE);
+    if (latencyMs < 0)
+      return;
+    // exponentially weighted, so that the latency recovers once publishing is fast again
+    mySmoothedLatencyMs.updateAndGet(prev -> prev == NONE ? latencyMs : Math.round(prev * (1 - LATENCY_SMOOTHING) + latencyMs * LATENCY_SMOOTHING));
+  }
+
+  void statusDropped(long now) {
+    myLastActivity = now;
+    myDropped.increment(now);
+  }
+
+  void statusCoalesced(long now) {
+    myLastActivity = now;
+    myCoalesced.increment(now);
+  }
+
+  public int getPendingCount() {
+    return myPending.get();
+  }
+
+  /**
+   * @return for how long there were unfinished publishing tasks without a break, 0 if there are none
+   */
+  public long getBacklogAgeMs(long now) {
+    long since = myBacklogSince.get();
+    return since == NONE || myPending.get() == 0 ? 0 : now - since;
+  }
+
+  /**
+   * @return smoothed latency of recent statuses, -1 if nothing is published yet
+   */
+  public long getLatencyMs() {
+    return mySmoothedLatencyMs.get();
+  }
+
+  public long getRecentlyDroppedCount(long now) {
+    return myDropped.getCount(now);
+  }
+
+  public long getRecentlyCoalescedCount(long now) {
+    return myCoalesced.getCount(now);
+  }
+
+  boolean isIdle(long now, long idleMs) {
+    return myPending.get() == 0 && now - myLastActivity > idleMs;
+  }
+}
@@ -0,0 +1,66 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with fixed bucket bounds, the last bucket counts durations above all bounds
+ */
+public class LatencyHistogram {
+
+  static final long[] BUCKET_BOUNDS_MS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+  private final AtomicLongArray myBuckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+  private final AtomicLong myCount = new AtomicLong();
+  private final AtomicLong mySumMs = new AtomicLong();
+
+  public void record(long durationMs) {
+    long duration = Math.max(0, durationMs);
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS_MS.length && duration > BUCKET_BOUNDS_MS[bucket]) {
+      bucket++;
+    }
+    myBuckets.incrementAndGet(bucket);
+    mySumMs.addAndGet(duration);
+    myCount.incrementAndGet();
+  }
+
+  public long getCount() {
+    return myCount.get();
+  }
+
+  public long getSumMs() {
+    return mySumMs.get();
+  }
+
+  /**
+   * @return cumulative counts of durations not greater than the corresponding bucket bound,
+   * the last element is the count of all recorded durations
+   */
+  long[] getCumulativeCounts() {
+    long[] result = new long[myBuckets.length()];
+    long total = 0;
+    for (int i = 0; i < result.length; i++) {
+      total += myBuckets.get(i);
+      result[i] = total;
+    }
+    return result;
+  }
+
+  /**
+   * Estimates the percentile by the upper bound of the bucket it falls into
+   * @return estimated duration in milliseconds, {@link Long#MAX_VALUE} if it is above all bucket bounds, 0 if nothing is recorded
+   */
+  public long getPercentileMs(double percentile) {
+    long[] counts = getCumulativeCounts();
+    long total = counts[counts.length - 1];
+    if (total == 0)
+      return 0;
+    long rank = (long)Math.ceil(total * percentile / 100);
+    for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+      if (counts[i] >= rank)
+        return BUCKET_BOUNDS_MS[i];
+    }
+    return Long.MAX_VALUE;
+  }
+}
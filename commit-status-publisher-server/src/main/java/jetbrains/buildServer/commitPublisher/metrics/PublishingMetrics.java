@@ -0,0 +1,287 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Counts requests to VCS hostings and handled publishing events along with their durations.
+ *
+ * Requests are accounted per publisher type, destination host and response status,
+ * events are accounted per publisher type, event and outcome.
+ * Backlog, latency and skipped statuses are also tracked per build type for health reports.
+ * Counters maintained by other components, such as caches, are registered with {@link #registerCounter}.
+ */
+public class PublishingMetrics implements PublishingMetricsMXBean {
+
+  public static final String SUCCESS_STATUS = "ok";
+  public static final String ERROR_STATUS = "error";
+
+  public static final String SAVED_REQUESTS_COUNTER = "saved_requests";
+
+  private static final String PREFIX = "teamcity_commit_status_publisher_";
+  private static final List<String> REQUEST_LABELS = Arrays.asList("publisher", "host", "status");
+  private static final List<String> EVENT_LABELS = Arrays.asList("publisher", "event", "outcome");
+  private static final List<String> STAGE_LABELS = Collections.singletonList("stage");
+
+  private static final long BUILD_TYPE_IDLE_MS = TimeUnit.HOURS.toMillis(1);
+
+  private final ConcurrentHashMap<List<String>, LatencyHistogram> myRequests = new ConcurrentHashMap<List<String>, LatencyHistogram>();
+  private final ConcurrentHashMap<List<String>, LatencyHistogram> myEvents = new ConcurrentHashMap<List<String>, LatencyHistogram>();
+  private final ConcurrentHashMap<List<String>, LatencyHistogram> myStages = new ConcurrentHashMap<List<String>, LatencyHistogram>();
+  private final ConcurrentHashMap<String, BuildTypePublishingStats> myBuildTypes = new ConcurrentHashMap<String, BuildTypePublishingStats>();
+  private final ConcurrentHashMap<String, Counter> myCounters = new ConcurrentHashMap<String, Counter>();
+  private final AtomicInteger myInFlightEvents = new AtomicInteger();
+  private volatile IntSupplier myQueueDepth;
+
+  /**
+   * @param status HTTP status code of the response, {@link #SUCCESS_STATUS} if a non-HTTP request has succeeded
+   *               or {@link #ERROR_STATUS} if no response was received
+   */
+  public void requestCompleted(@NotNull String publisherType, @NotNull String url, @NotNull String status, long durationMs) {
+    myRequests.computeIfAbsent(Arrays.asList(publisherType, getHost(url), status), k -> new LatencyHistogram()).record(durationMs);
+  }
+
+  public void eventStarted() {
+    myInFlightEvents.incrementAndGet();
+  }
+
+  public void eventFinished(@NotNull String publisherType, @NotNull String event, boolean successful, long durationMs) {
+    myInFlightEvents.decrementAndGet();
+    List<String> key = Arrays.asList(publisherType, event, successful ? SUCCESS_STATUS : ERROR_STATUS);
+    myEvents.computeIfAbsent(key, k -> new LatencyHistogram()).record(durationMs);
+  }
+
+  /**
+   * Records the duration of a publishing stage, such as waiting in the executor queue
+   */
+  public void stageCompleted(@NotNull String stage, long durationMs) {
+    myStages.computeIfAbsent(Collections.singletonList(stage), k -> new LatencyHistogram()).record(durationMs);
+  }
+
+  @Nullable
+  public LatencyHistogram getStageHistogram(@NotNull String stage) {
+    return myStages.get(Collections.singletonList(stage));
+  }
+
+  public void taskAccepted(@NotNull String buildTypeId) {
+    long now = System.currentTimeMillis();
+    myBuildTypes.computeIfAbsent(buildTypeId, id -> new BuildTypePublishingStats(now)).taskAccepted(now);
+  }
+
+  /**
+   * @param latencyMs time from the build event to the published status, negative if unknown
+   */
+  public void taskFinished(@NotNull String buildTypeId, long latencyMs) {
+    BuildTypePublishingStats stats = myBuildTypes.get(buildTypeId);
+    if (stats != null)
+      stats.taskFinished(System.currentTimeMillis(), latencyMs);
+  }
+
+  /**
+   * Records a status which was not published, because a more recent status of the build is already published
+   */
+  public void statusDropped(@NotNull String buildTypeId) {
+    long now = System.currentTimeMillis();
+    myBuildTypes.computeIfAbsent(buildTypeId, id -> new BuildTypePublishingStats(now)).statusDropped(now);
+  }
+
+  /**
+   * Records a status which was not posted, because the same status has already been published
+   */
+  public void statusCoalesced(@NotNull String buildTypeId) {
+    long now = System.currentTimeMillis();
+    myBuildTypes.computeIfAbsent(buildTypeId, id -> new BuildTypePublishingStats(now)).statusCoalesced(now);
+  }
+
+  @Nullable
+  public BuildTypePublishingStats getBuildTypeStats(@NotNull String buildTypeId) {
+    return myBuildTypes.get(buildTypeId);
+  }
+
+  public void removeIdleBuildTypes() {
+    long now = System.currentTimeMillis();
+    myBuildTypes.values().removeIf(stats -> stats.isIdle(now, BUILD_TYPE_IDLE_MS));
+  }
+
+  public void setQueueDepthSupplier(@Nullable IntSupplier queueDepth) {
+    myQueueDepth = queueDepth;
+  }
+
+  /**
+   * Exports a monotonically increasing counter, a counter registered with the same name is replaced
+   * @param name name of the counter without the common prefix and the _total suffix
+   */
+  public void registerCounter(@NotNull String name, @NotNull String help, @NotNull LongSupplier value) {
+    myCounters.put(name, new Counter(help, value));
+  }
+
+  @Override
+  public long getRequestsCount() {
+    long result = 0;
+    for (LatencyHistogram histogram : myRequests.values()) {
+      result += histogram.getCount();
+    }
+    return result;
+  }
+
+  @Override
+  public long getFailedRequestsCount() {
+    long result = 0;
+    for (Map.Entry<List<String>, LatencyHistogram> entry : myRequests.entrySet()) {
+      if (isFailedStatus(entry.getKey().get(2)))
+        result += entry.getValue().getCount();
+    }
+    return result;
+  }
+
+  @Override
+  public int getInFlightEventsCount() {
+    return myInFlightEvents.get();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    IntSupplier queueDepth = myQueueDepth;
+    return queueDepth == null ? -1 : queueDepth.getAsInt();
+  }
+
+  @NotNull
+  @Override
+  public Map<String, Long> getRequestCounts() {
+    return getCounts(myRequests);
+  }
+
+  @NotNull
+  @Override
+  public Map<String, Long> getEventCounts() {
+    return getCounts(myEvents);
+  }
+
+  @NotNull
+  @Override
+  public Map<String, Long> getCounters() {
+    Map<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<String, Counter> entry : myCounters.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().myValue.getAsLong());
+    }
+    return result;
+  }
+
+  @NotNull
+  public String toOpenMetrics() {
+    StringBuilder out = new StringBuilder();
+    writeHistograms(out, "request_duration_seconds", "Duration of requests to VCS hostings", REQUEST_LABELS, myRequests);
+    writeHistograms(out, "event_duration_seconds", "Duration of publishing an event with a publisher", EVENT_LABELS, myEvents);
+    writeHistograms(out, "stage_duration_seconds", "Duration of publishing stages from the build event to the published status", STAGE_LABELS, myStages);
+    out.append("# TYPE ").append(PREFIX).append("in_flight_events gauge\n");
+    out.append("# HELP ").append(PREFIX).append("in_flight_events Events being published at the moment\n");
+    out.append(PREFIX).append("in_flight_events ").append(getInFlightEventsCount()).append('\n');
+    int queueDepth = getQueueDepth();
+    if (queueDepth >= 0) {
+      out.append("# TYPE ").append(PREFIX).append("queue_depth gauge\n");
+      out.append("# HELP ").append(PREFIX).append("queue_depth Publishing tasks waiting for their turn to run\n");
+      out.append(PREFIX).append("queue_depth ").append(queueDepth).append('\n');
+    }
+    for (Map.Entry<String, Counter> entry : new TreeMap<String, Counter>(myCounters).entrySet()) {
+      String metric = PREFIX + entry.getKey();
+      out.append("# TYPE ").append(metric).append(" counter\n");
+      out.append("# HELP ").append(metric).append(' ').append(entry.getValue().myHelp).append('\n');
+      out.append(metric).append("_total ").append(entry.getValue().myValue.getAsLong()).append('\n');
+    }
+    out.append("# EOF\n");
+    return out.toString();
+  }
+
+  private static boolean isFailedStatus(@NotNull String status) {
+    if (ERROR_STATUS.equals(status))
+      return true;
+    try {
+      return Integer.parseInt(status) >= 400;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  @NotNull
+  private static Map<String, Long> getCounts(@NotNull Map<List<String>, LatencyHistogram> histograms) {
+    Map<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<List<String>, LatencyHistogram> entry : histograms.entrySet()) {
+      result.put(String.join("|", entry.getKey()), entry.getValue().getCount());
+    }
+    return result;
+  }
+
+  private static void writeHistograms(@NotNull StringBuilder out,
+                                      @NotNull String name,
+                                      @NotNull String help,
+                                      @NotNull List<String> labelNames,
+                                      @NotNull Map<List<String>, LatencyHistogram> histograms) {
+    String metric = PREFIX + name;
+    out.append("# TYPE ").append(metric).append(" histogram\n");
+    out.append("# UNIT ").append(metric).append(" seconds\n");
+    out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+    for (Map.Entry<List<String>, LatencyHistogram> entry : histograms.entrySet()) {
+      String labels = formatLabels(labelNames, entry.getKey());
+      long[] counts = entry.getValue().getCumulativeCounts();
+      for (int i = 0; i < counts.length; i++) {
+        String bound = i < LatencyHistogram.BUCKET_BOUNDS_MS.length ? toSeconds(LatencyHistogram.BUCKET_BOUNDS_MS[i]) : "+Inf";
+        out.append(metric).append("_bucket{").append(labels).append(",le=\"").append(bound).append("\"} ").append(counts[i]).append('\n');
+      }
+      out.append(metric).append("_count{").append(labels).append("} ").append(counts[counts.length - 1]).append('\n');
+      out.append(metric).append("_sum{").append(labels).append("} ").append(toSeconds(entry.getValue().getSumMs())).append('\n');
+    }
+  }
+
+  @NotNull
+  private static String formatLabels(@NotNull List<String> names, @NotNull List<String> values) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < names.size(); i++) {
+      if (i > 0)
+        result.append(',');
+      result.append(names.get(i)).append("=\"").append(escape(values.get(i))).append('"');
+    }
+    return result.toString();
+  }
+
+  @NotNull
+  private static String escape(@NotNull String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  @NotNull
+  private static String toSeconds(long ms) {
+    return String.valueOf(ms / 1000.0);
+  }
+
+  /**
+   * @return host of the URL, Gerrit servers specified as host[:port] are supported too
+   */
+  @NotNull
+  static String getHost(@NotNull String url) {
+    String uri = url.contains("://") ? url : "ssh://" + url;
+    try {
+      String host = new URI(uri).getHost();
+      return host != null ? host : url;
+    } catch (URISyntaxException e) {
+      return url;
+    }
+  }
+
+  private static class Counter {
+    private final String myHelp;
+    private final LongSupplier myValue;
+
+    Counter(@NotNull String help, @NotNull LongSupplier value) {
+      myHelp = help;
+      myValue = value;
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrains.buildServer.controllers.BaseController;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.users.SUser;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.openapi.WebControllerManager;
+import jetbrains.buildServer.web.util.SessionUser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Serves publishing metrics in the OpenMetrics text format
+ */
+public class PublishingMetricsController extends BaseController {
+
+  private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+  private final String myUrl;
+  private final PublishingMetrics myMetrics;
+
+  public PublishingMetricsController(@NotNull WebControllerManager controllerManager,
+                                     @NotNull PluginDescriptor descriptor,
+                                     @NotNull PublishingMetrics metrics) {
+    myUrl = descriptor.getPluginResourcesPath("metrics.html");
+    myMetrics = metrics;
+    controllerManager.registerController(myUrl, this);
+  }
+
+  @NotNull
+  public String getUrl() {
+    return myUrl;
+  }
+
+  @Nullable
+  @Override
+  protected ModelAndView doHandle(@NotNull HttpServletRequest request, @NotNull HttpServletResponse response) throws Exception {
+    SUser user = SessionUser.getUser(request);
+    if (user == null || !user.isPermissionGrantedGlobally(Permission.VIEW_SERVER_SETTINGS)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN, "Viewing commit status publishing metrics requires the permission to view server settings");
+      return null;
+    }
+    byte[] metrics = myMetrics.toOpenMetrics().getBytes(StandardCharsets.UTF_8);
+    response.setContentType(CONTENT_TYPE);
+    response.setContentLength(metrics.length);
+    response.getOutputStream().write(metrics);
+    return null;
+  }
+}
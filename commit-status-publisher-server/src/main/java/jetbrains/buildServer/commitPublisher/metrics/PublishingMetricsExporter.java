@@ -0,0 +1,49 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jetbrains.buildServer.commitPublisher.PublishedStateCache;
+import jetbrains.buildServer.serverSide.BuildServerAdapter;
+import jetbrains.buildServer.serverSide.BuildServerListener;
+import jetbrains.buildServer.util.EventDispatcher;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Registers {@link PublishingMetrics} as an MBean for the lifetime of the server
+ */
+public class PublishingMetricsExporter {
+
+  static final String OBJECT_NAME = "jetbrains.buildServer.commitPublisher:type=PublishingMetrics";
+
+  public PublishingMetricsExporter(@NotNull EventDispatcher<BuildServerListener> events,
+                                   @NotNull PublishingMetrics metrics,
+                                   @NotNull PublishedStateCache publishedStates) {
+    metrics.registerCounter(PublishingMetrics.SAVED_REQUESTS_COUNTER, "Statuses not posted because the same status had already been published",
+                            publishedStates::getSavedRequestsCount);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name))
+        server.registerMBean(metrics, name);
+    } catch (Exception e) {
+      LOG.warnAndDebugDetails("Failed to register commit status publishing metrics MBean", e);
+    }
+
+    events.addListener(new BuildServerAdapter() {
+      @Override
+      public void serverShutdown() {
+        try {
+          ObjectName name = new ObjectName(OBJECT_NAME);
+          if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        } catch (Exception e) {
+          LOG.debug("Failed to unregister commit status publishing metrics MBean", e);
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,35 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.Map;
+
+/**
+ * Publishing metrics exposed through JMX
+ */
+public interface PublishingMetricsMXBean {
+
+  long getRequestsCount();
+
+  long getFailedRequestsCount();
+
+  int getInFlightEventsCount();
+
+  /**
+   * @return number of publishing tasks waiting until fewer than teamcity.commitStatusPublisher.maxRunningTasks are running, -1 if unknown
+   */
+  int getQueueDepth();
+
+  /**
+   * @return request counts keyed by publisher|host|status
+   */
+  Map<String, Long> getRequestCounts();
+
+  /**
+   * @return event counts keyed by publisher|event|outcome
+   */
+  Map<String, Long> getEventCounts();
+
+  /**
+   * @return values of counters registered by other components, keyed by counter name
+   */
+  Map<String, Long> getCounters();
+}
@@ -0,0 +1,40 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events which have happened during the last minutes, one bucket per minute.
+ * An increment racing with the reuse of its bucket for a new minute can be lost, which is fine for health checks.
+ */
+public class RecentEventsCounter {
+
+  private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private final AtomicLongArray myCounts;
+  private final AtomicLongArray myMinutes;
+
+  public RecentEventsCounter(int windowMinutes) {
+    myCounts = new AtomicLongArray(windowMinutes);
+    myMinutes = new AtomicLongArray(windowMinutes);
+  }
+
+  public void increment(long now) {
+    long minute = now / MINUTE_MS;
+    int bucket = (int)(minute % myCounts.length());
+    long bucketMinute = myMinutes.get(bucket);
+    if (bucketMinute != minute && myMinutes.compareAndSet(bucket, bucketMinute, minute))
+      myCounts.set(bucket, 0);
+    myCounts.incrementAndGet(bucket);
+  }
+
+  public long getCount(long now) {
+    long minute = now / MINUTE_MS;
+    long result = 0;
+    for (int i = 0; i < myCounts.length(); i++) {
+      if (minute - myMinutes.get(i) < myCounts.length())
+        result += myCounts.get(i);
+    }
+    return result;
+  }
+}
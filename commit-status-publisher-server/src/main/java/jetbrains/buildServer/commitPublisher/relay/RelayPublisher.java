@@ -0,0 +1,107 @@
+package jetbrains.buildServer.commitPublisher.relay;
+
+import java.io.IOException;
+import java.util.Map;
+import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.gitlab.GitlabSettings;
+import jetbrains.buildServer.commitPublisher.relay.spool.Provider;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolRecord;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolRecord.State;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.users.User;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+class RelayPublisher extends BaseCommitStatusPublisher {
+
+  private final RelaySettings mySettings;
+  private final WebLinks myLinks;
+
+  RelayPublisher(@NotNull RelaySettings settings,
+                 @NotNull SBuildType buildType, @NotNull String buildFeatureId,
+                 @NotNull WebLinks links,
+                 @NotNull Map<String, String> params,
+                 @NotNull CommitStatusPublisherProblems problems) {
+    super(settings, buildType, buildFeatureId, params, problems);
+    mySettings = settings;
+    myLinks = links;
+  }
+
+  @NotNull
+  @Override
+  public String getId() {
+    return Constants.RELAY_PUBLISHER_ID;
+  }
+
+  @NotNull
+  @Override
+  public String toString() {
+    return "relay";
+  }
+
+  @Override
+  public boolean buildQueued(@NotNull SQueuedBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(revision, State.PENDING, myLinks.getQueuedBuildUrl(build), "Build queued");
+    return true;
+  }
+
+  @Override
+  public boolean buildRemovedFromQueue(@NotNull SQueuedBuild build, @NotNull BuildRevision revision, @Nullable User user, @Nullable String comment) throws PublisherException {
+    publish(revision, State.CANCELED, myLinks.getQueuedBuildUrl(build), "Build canceled");
+    return true;
+  }
+
+  @Override
+  public boolean buildStarted(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(revision, State.RUNNING, myLinks.getViewResultsUrl(build), "Build started");
+    return true;
+  }
+
+  @Override
+  public boolean buildFinished(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    State state = build.getBuildStatus().isSuccessful() ? State.SUCCESS : State.FAILURE;
+    publish(revision, state, myLinks.getViewResultsUrl(build), build.getStatusDescriptor().getText());
+    return true;
+  }
+
+  @Override
+  public boolean buildFailureDetected(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(revision, State.FAILURE, myLinks.getViewResultsUrl(build), build.getStatusDescriptor().getText());
+    return true;
+  }
+
+  @Override
+  public boolean buildMarkedAsSuccessful(@NotNull SBuild build, @NotNull BuildRevision revision, boolean buildInProgress) throws PublisherException {
+    publish(revision, buildInProgress ? State.RUNNING : State.SUCCESS, myLinks.getViewResultsUrl(build), "Build marked as successful");
+    return true;
+  }
+
+  @Override
+  public boolean buildInterrupted(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(revision, State.CANCELED, myLinks.getViewResultsUrl(build), build.getStatusDescriptor().getText());
+    return true;
+  }
+
+  private void publish(@NotNull BuildRevision revision, @NotNull State state, @NotNull String url, @NotNull String description) throws PublisherException {
+    Provider provider = Provider.find(myParams.get(Constants.RELAY_PROVIDER));
+    if (provider == null)
+      throw new PublisherException("Missing code hosting parameter of the relay publisher");
+    String apiUrl = myParams.get(Constants.RELAY_API_URL);
+    if (apiUrl != null)
+      apiUrl = HttpHelper.stripTrailingSlash(apiUrl);
+    VcsRootInstance root = revision.getRoot();
+    String repositoryUrl = root.getProperty(Constants.GIT_URL_PARAMETER);
+    Repository repository = repositoryUrl == null ? null :
+                            GitRepositoryParser.parseRepository(repositoryUrl, provider == Provider.GITLAB && apiUrl != null ? GitlabSettings.getPathPrefix(apiUrl) : null);
+    if (repository == null)
+      throw new PublisherException("Cannot parse repository URL from VCS root " + root.getName());
+    SpoolRecord record = new SpoolRecord(provider, apiUrl, repositoryUrl, repository.owner(), repository.repositoryName(), revision.getRevision(), state,
+                                         myBuildType.getExternalId(), myBuildType.getFullName(), url, description, System.currentTimeMillis());
+    try {
+      mySettings.append(record.toBytes());
+    } catch (IOException e) {
+      throw new PublisherException("Cannot write status to the relay spool " + mySettings.getSpoolDir().getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+  }
+}
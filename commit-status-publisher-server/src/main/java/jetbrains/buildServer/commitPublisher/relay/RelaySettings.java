@@ -0,0 +1,177 @@
+package jetbrains.buildServer.commitPublisher.relay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.relay.spool.Provider;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolWriter;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.util.EventDispatcher;
+import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
+import jetbrains.buildServer.vcs.VcsRoot;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.util.WebUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Publisher which doesn't talk to the code hosting itself: statuses are appended to a spool directory
+ * and the standalone relay process from the commit-status-relay module delivers them, with its own credentials.
+ *
+ * The spool directory is {@link #SPOOL_DIR_PROPERTY}, by default it is in the plugin data directory.
+ * Only one server process can write to a spool directory, on a multi-node setup every node needs its own directory and relay.
+ */
+public class RelaySettings extends BasePublisherSettings implements CommitStatusPublisherSettings {
+
+  static final String SPOOL_DIR_PROPERTY = "teamcity.commitStatusPublisher.relay.spoolDir";
+  static final String SEGMENT_SIZE_MB_PROPERTY = "teamcity.commitStatusPublisher.relay.segmentSizeMb";
+  static final String MAX_SEGMENTS_PROPERTY = "teamcity.commitStatusPublisher.relay.maxSegments";
+
+  private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
+    add(Event.STARTED);
+    add(Event.FINISHED);
+    add(Event.MARKED_AS_SUCCESSFUL);
+    add(Event.INTERRUPTED);
+    add(Event.FAILURE_DETECTED);
+  }};
+
+  private static final Set<Event> mySupportedEventsWithQueued = new HashSet<Event>() {{
+    add(Event.QUEUED);
+    add(Event.REMOVED_FROM_QUEUE);
+    addAll(mySupportedEvents);
+  }};
+
+  private final File myDefaultSpoolDir;
+  private SpoolWriter myWriter;
+  private boolean myShutdown;
+
+  public RelaySettings(@NotNull ExecutorServices executorServices,
+                       @NotNull PluginDescriptor descriptor,
+                       @NotNull WebLinks links,
+                       @NotNull CommitStatusPublisherProblems problems,
+                       @NotNull SSLTrustStoreProvider trustStoreProvider,
+                       @NotNull ServerPaths serverPaths,
+                       @NotNull EventDispatcher<BuildServerListener> events) {
+    super(executorServices, descriptor, links, problems, trustStoreProvider);
+    myDefaultSpoolDir = new File(serverPaths.getPluginDataDirectory(), "commitStatusPublisher/relaySpool");
+    events.addListener(new BuildServerAdapter() {
+      @Override
+      public void serverShutdown() {
+        closeWriter();
+      }
+    });
+  }
+
+  @NotNull
+  @Override
+  public String getId() {
+    return Constants.RELAY_PUBLISHER_ID;
+  }
+
+  @NotNull
+  @Override
+  public String getName() {
+    return "Relay";
+  }
+
+  @Nullable
+  @Override
+  public String getEditSettingsUrl() {
+    return "relay/relaySettings.jsp";
+  }
+
+  @NotNull
+  @Override
+  public RelayPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
+    return new RelayPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems);
+  }
+
+  @NotNull
+  @Override
+  public String describeParameters(@NotNull Map<String, String> params) {
+    Provider provider = Provider.find(params.get(Constants.RELAY_PROVIDER));
+    String result = super.describeParameters(params);
+    if (provider != null)
+      result += " " + provider.getDisplayName();
+    String url = params.get(Constants.RELAY_API_URL);
+    if (url != null)
+      result += " " + WebUtil.escapeXml(url);
+    return result + " via relay";
+  }
+
+  @Nullable
+  @Override
+  public PropertiesProcessor getParametersProcessor() {
+    return new PropertiesProcessor() {
+      public Collection<InvalidProperty> process(Map<String, String> params) {
+        List<InvalidProperty> errors = new ArrayList<InvalidProperty>();
+        Provider provider = Provider.find(params.get(Constants.RELAY_PROVIDER));
+        if (provider == null)
+          errors.add(new InvalidProperty(Constants.RELAY_PROVIDER, "Code hosting must be specified"));
+        else if (provider.getDefaultApiUrl() == null && params.get(Constants.RELAY_API_URL) == null)
+          errors.add(new InvalidProperty(Constants.RELAY_API_URL, provider.getDisplayName() + " URL must be specified"));
+        return errors;
+      }
+    };
+  }
+
+  @Override
+  public boolean isPublishingForVcsRoot(final VcsRoot vcsRoot) {
+    return Constants.GIT_VCS_NAME.equals(vcsRoot.getVcsName());
+  }
+
+  @Override
+  protected Set<Event> getSupportedEvents(final SBuildType buildType, final Map<String, String> params) {
+    return isBuildQueuedSupported(buildType, params) ? mySupportedEventsWithQueued : mySupportedEvents;
+  }
+
+  /**
+   * Appends a record to the spool, the spool is opened on the first call, so servers which don't use the publisher
+   * don't create the directory
+   */
+  void append(@NotNull byte[] record) throws IOException {
+    getWriter().append(record);
+  }
+
+  @NotNull
+  private synchronized SpoolWriter getWriter() throws IOException {
+    if (myShutdown)
+      throw new IOException("Relay spool is closed, the server is shutting down");
+    File dir = getSpoolDir();
+    if (myWriter != null && !myWriter.getDir().equals(dir)) {
+      myWriter.close();
+      myWriter = null;
+    }
+    if (myWriter == null) {
+      myWriter = new SpoolWriter(dir, TeamCityProperties.getInteger(SEGMENT_SIZE_MB_PROPERTY, 16) * 1024 * 1024,
+                                 TeamCityProperties.getInteger(MAX_SEGMENTS_PROPERTY, 64));
+    }
+    return myWriter;
+  }
+
+  /**
+   * Marks the end of the last segment and forces it to disk, so the relay doesn't wait for more records in it
+   */
+  private synchronized void closeWriter() {
+    myShutdown = true;
+    if (myWriter == null)
+      return;
+    try {
+      myWriter.close();
+    } catch (IOException e) {
+      LOG.warnAndDebugDetails("Failed to close relay spool " + myWriter.getDir().getAbsolutePath(), e);
+    }
+    myWriter = null;
+  }
+
+  @NotNull
+  File getSpoolDir() {
+    String dir = TeamCityProperties.getPropertyOrNull(SPOOL_DIR_PROPERTY);
+    return dir != null ? new File(dir) : myDefaultSpoolDir;
+  }
+}
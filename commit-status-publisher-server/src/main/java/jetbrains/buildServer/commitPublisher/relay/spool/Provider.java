@@ -0,0 +1,47 @@
+package jetbrains.buildServer.commitPublisher.relay.spool;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Code hosting a relay delivers statuses to
+ */
+public enum Provider {
+  GITHUB("GitHub", "https://api.github.com"),
+  GITLAB("GitLab", null),
+  BITBUCKET_SERVER("Bitbucket Server", null),
+  BITBUCKET_CLOUD("Bitbucket Cloud", "https://api.bitbucket.org"),
+  AZURE_DEVOPS("Azure DevOps", "https://dev.azure.com");
+
+  private final String myDisplayName;
+  private final String myDefaultApiUrl;
+
+  Provider(@NotNull String displayName, @Nullable String defaultApiUrl) {
+    myDisplayName = displayName;
+    myDefaultApiUrl = defaultApiUrl;
+  }
+
+  @NotNull
+  public String getDisplayName() {
+    return myDisplayName;
+  }
+
+  /**
+   * @return API URL of the hosted service, null for self-hosted providers which always need the URL
+   */
+  @Nullable
+  public String getDefaultApiUrl() {
+    return myDefaultApiUrl;
+  }
+
+  @Nullable
+  public static Provider find(@Nullable String name) {
+    if (name == null)
+      return null;
+    for (Provider provider : values()) {
+      if (provider.name().equals(name))
+        return provider;
+    }
+    return null;
+  }
+}
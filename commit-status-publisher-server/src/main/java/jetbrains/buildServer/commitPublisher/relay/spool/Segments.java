@@ -0,0 +1,109 @@
+package jetbrains.buildServer.commitPublisher.relay.spool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Layout of a spool directory.
+ *
+ * A spool is a sequence of segment files of a fixed size named by their increasing numbers. A segment holds records one after another,
+ * each is an int length followed by that many bytes. A length of {@link #NO_RECORD} means nothing is written there yet,
+ * {@link #END_OF_SEGMENT} means the writer has moved to the next segment. The writer puts the length after the bytes of the record,
+ * so a reader which sees a length can read the whole record.
+ *
+ * The reader keeps its position in {@link #OFFSET_FILE} and deletes segments it has read. Segment numbers are never reused,
+ * so a new writer continues after the last segment or after the position of the reader if it has deleted all of them.
+ */
+final class Segments {
+
+  static final int NO_RECORD = 0;
+  static final int END_OF_SEGMENT = -1;
+  static final int LENGTH_SIZE = 4;
+
+  static final String LOCK_FILE = "spool.lock";
+  static final String OFFSET_FILE = "spool.offset";
+
+  private static final String PREFIX = "spool-";
+  private static final String SUFFIX = ".seg";
+
+  private static volatile int ourFence;
+
+  private Segments() {
+  }
+
+  /**
+   * Keeps the accesses to a mapped segment made before the call from being reordered with the accesses made after it.
+   * The writer calls it between the bytes of a record and its length, the reader between the length and the bytes.
+   *
+   * Java 8 has no fence API for memory shared with another process. A volatile access is used instead: HotSpot doesn't move
+   * memory accesses across it and emits memory barriers around it on weakly ordered CPUs, so they order the plain accesses
+   * of the mapped buffer as well.
+   */
+  static void fence() {
+    ourFence++;
+  }
+
+  @NotNull
+  static File file(@NotNull File dir, long number) {
+    return new File(dir, String.format("%s%020d%s", PREFIX, number, SUFFIX));
+  }
+
+  /**
+   * @return numbers of the segments in the directory in increasing order
+   */
+  @NotNull
+  static List<Long> list(@NotNull File dir) {
+    List<Long> result = new ArrayList<Long>();
+    String[] names = dir.list();
+    if (names == null)
+      return result;
+    for (String name : names) {
+      Long number = parseNumber(name);
+      if (number != null)
+        result.add(number);
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * @return segment number and position in it saved by the reader, null if the reader has not saved them yet
+   */
+  @Nullable
+  static long[] readOffset(@NotNull File dir) throws IOException {
+    File file = new File(dir, OFFSET_FILE);
+    if (!file.isFile())
+      return null;
+    String[] fields = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+    try {
+      return fields.length == 2 ? new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1])} : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  static void writeOffset(@NotNull File dir, long segment, int position) throws IOException {
+    File tmp = new File(dir, OFFSET_FILE + ".tmp");
+    Files.write(tmp.toPath(), (segment + " " + position).getBytes(StandardCharsets.UTF_8));
+    Files.move(tmp.toPath(), new File(dir, OFFSET_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Nullable
+  private static Long parseNumber(@NotNull String name) {
+    if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX))
+      return null;
+    try {
+      return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
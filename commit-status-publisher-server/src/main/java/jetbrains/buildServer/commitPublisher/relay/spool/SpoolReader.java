@@ -0,0 +1,134 @@
+package jetbrains.buildServer.commitPublisher.relay.spool;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.relay.spool.Segments.*;
+
+/**
+ * Tails a spool directory written by a {@link SpoolWriter} of another process.
+ *
+ * Records are returned in the order they were appended. The position after the last returned record is saved by {@link #commit()},
+ * a reader started later continues from the saved position, so records which were returned but not committed are returned again.
+ * Commit also deletes the segments which are read completely.
+ */
+public class SpoolReader implements Closeable {
+
+  private final File myDir;
+  private long mySegmentNumber;
+  private MappedByteBuffer mySegment;
+  private int myPosition;
+  private boolean mySegmentFinished;
+
+  public SpoolReader(@NotNull File dir) throws IOException {
+    myDir = dir;
+    long[] offset = Segments.readOffset(dir);
+    if (offset != null) {
+      mySegmentNumber = offset[0];
+      myPosition = (int)offset[1];
+    } else {
+      mySegmentNumber = -1;
+    }
+  }
+
+  /**
+   * @return the next record, null if the writer has not appended it yet
+   * @throws IOException if the spool cannot be read or the current segment is corrupted, see {@link #skipSegment()}
+   */
+  @Nullable
+  public synchronized byte[] next() throws IOException {
+    while (true) {
+      if (mySegment == null && !openSegment())
+        return null;
+      int length = myPosition + LENGTH_SIZE <= mySegment.capacity() ? mySegment.getInt(myPosition) : END_OF_SEGMENT;
+      if (length == NO_RECORD) {
+        if (!Segments.file(myDir, mySegmentNumber + 1).exists())
+          return null;
+        // the writer finishes a segment before it starts the next one, so the length is final now,
+        // no record here means the writer has crashed before it could mark the end of the segment
+        length = mySegment.getInt(myPosition);
+        if (length == NO_RECORD)
+          length = END_OF_SEGMENT;
+      }
+      if (length == END_OF_SEGMENT) {
+        finishSegment();
+        continue;
+      }
+      if (length < 0 || myPosition + LENGTH_SIZE + length > mySegment.capacity())
+        throw new IOException("Spool segment " + Segments.file(myDir, mySegmentNumber).getAbsolutePath() + " is corrupted at " + myPosition);
+      Segments.fence();
+      byte[] record = new byte[length];
+      ByteBuffer buffer = mySegment.duplicate();
+      buffer.position(myPosition + LENGTH_SIZE);
+      buffer.get(record);
+      myPosition += LENGTH_SIZE + length;
+      return record;
+    }
+  }
+
+  /**
+   * Drops the rest of the current segment, e.g. when it is corrupted
+   */
+  public synchronized void skipSegment() {
+    if (mySegment != null)
+      finishSegment();
+  }
+
+  /**
+   * Saves the position after the last returned record and deletes segments which are read completely
+   */
+  public synchronized void commit() throws IOException {
+    if (mySegmentNumber < 0)
+      return;
+    long segment = mySegmentFinished ? mySegmentNumber + 1 : mySegmentNumber;
+    Segments.writeOffset(myDir, segment, mySegmentFinished ? 0 : myPosition);
+    for (Long number : Segments.list(myDir)) {
+      if (number >= segment)
+        break;
+      File file = Segments.file(myDir, number);
+      if (!file.delete() && file.exists())
+        throw new IOException("Cannot delete delivered spool segment " + file.getAbsolutePath());
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    mySegment = null;
+  }
+
+  private void finishSegment() {
+    mySegment = null;
+    mySegmentFinished = true;
+  }
+
+  private boolean openSegment() throws IOException {
+    Long next = null;
+    for (Long number : Segments.list(myDir)) {
+      if (mySegmentFinished ? number > mySegmentNumber : number >= mySegmentNumber) {
+        next = number;
+        break;
+      }
+    }
+    if (next == null)
+      return false;
+    try (RandomAccessFile file = new RandomAccessFile(Segments.file(myDir, next), "r")) {
+      long size = file.length();
+      // the writer has created the file but has not set its size yet
+      if (size < 2 * LENGTH_SIZE)
+        return false;
+      mySegment = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+    if (next != mySegmentNumber || mySegmentFinished)
+      myPosition = 0;
+    mySegmentNumber = next;
+    mySegmentFinished = false;
+    return true;
+  }
+}
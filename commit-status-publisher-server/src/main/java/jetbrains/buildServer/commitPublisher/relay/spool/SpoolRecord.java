@@ -0,0 +1,158 @@
+package jetbrains.buildServer.commitPublisher.relay.spool;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.nio.charset.StandardCharsets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A commit status written to the spool by the relay publisher, the same for every provider.
+ * It is stored as UTF-8 JSON, so fields can be added without breaking relays reading older spools.
+ */
+public class SpoolRecord {
+
+  public enum State {
+    PENDING, RUNNING, SUCCESS, FAILURE, CANCELED
+  }
+
+  private static final Gson ourGson = new Gson();
+
+  private String provider;
+  private String apiUrl;
+  private String repositoryUrl;
+  private String owner;
+  private String repository;
+  private String commit;
+  private String state;
+  private String key;
+  private String context;
+  private String url;
+  private String description;
+  private long timestamp;
+
+  @SuppressWarnings("unused")
+  private SpoolRecord() {
+  }
+
+  public SpoolRecord(@NotNull Provider provider, @Nullable String apiUrl, @NotNull String repositoryUrl, @NotNull String owner, @NotNull String repository,
+                     @NotNull String commit, @NotNull State state, @NotNull String key, @NotNull String context, @NotNull String url,
+                     @NotNull String description, long timestamp) {
+    this.provider = provider.name();
+    this.apiUrl = apiUrl;
+    this.repositoryUrl = repositoryUrl;
+    this.owner = owner;
+    this.repository = repository;
+    this.commit = commit;
+    this.state = state.name();
+    this.key = key;
+    this.context = context;
+    this.url = url;
+    this.description = description;
+    this.timestamp = timestamp;
+  }
+
+  @NotNull
+  public byte[] toBytes() {
+    return ourGson.toJson(this).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return null if the bytes are not a record or miss any of the required fields
+   */
+  @Nullable
+  public static SpoolRecord fromBytes(@NotNull byte[] bytes) {
+    SpoolRecord record;
+    try {
+      record = ourGson.fromJson(new String(bytes, StandardCharsets.UTF_8), SpoolRecord.class);
+    } catch (JsonParseException e) {
+      return null;
+    }
+    if (record == null || record.getProvider() == null || record.getState() == null ||
+        record.owner == null || record.repository == null || record.commit == null || record.key == null || record.context == null)
+      return null;
+    return record;
+  }
+
+  @Nullable
+  public Provider getProvider() {
+    return Provider.find(provider);
+  }
+
+  /**
+   * @return API URL configured in the publisher, null when the provider's default should be used
+   */
+  @Nullable
+  public String getApiUrl() {
+    return apiUrl == null || apiUrl.isEmpty() ? null : apiUrl;
+  }
+
+  @Nullable
+  public String getRepositoryUrl() {
+    return repositoryUrl;
+  }
+
+  @NotNull
+  public String getOwner() {
+    return owner;
+  }
+
+  @NotNull
+  public String getRepository() {
+    return repository;
+  }
+
+  @NotNull
+  public String getCommit() {
+    return commit;
+  }
+
+  @Nullable
+  public State getState() {
+    if (state == null)
+      return null;
+    try {
+      return State.valueOf(state);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return stable identifier of the status, statuses with the same key replace each other on the commit
+   */
+  @NotNull
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * @return name of the status shown to users
+   */
+  @NotNull
+  public String getContext() {
+    return context;
+  }
+
+  @Nullable
+  public String getUrl() {
+    return url;
+  }
+
+  @Nullable
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * @return time the status was written to the spool
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String toString() {
+    return provider + " " + state + " " + owner + "/" + repository + "@" + commit + " (" + context + ")";
+  }
+}
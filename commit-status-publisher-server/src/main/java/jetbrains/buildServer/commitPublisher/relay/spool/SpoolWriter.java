@@ -0,0 +1,119 @@
+package jetbrains.buildServer.commitPublisher.relay.spool;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.relay.spool.Segments.*;
+
+/**
+ * Appends records to a spool directory through memory-mapped segments, so an append is a copy to memory without any system calls
+ * until a segment is full. Records survive a crash of the writing process, the operating system flushes them to disk on its own,
+ * a segment is forced to disk when the writer moves to the next one.
+ *
+ * Only one writer can use a directory at a time, it holds a lock on the directory until it is closed. A writer always starts
+ * a new segment, so it never writes after records of a previous writer which could have crashed in the middle of a segment.
+ * When the directory has the maximum number of segments, which happens when the relay doesn't keep up or is not running,
+ * appends fail until the relay deletes delivered segments.
+ */
+public class SpoolWriter implements Closeable {
+
+  private final File myDir;
+  private final int mySegmentSize;
+  private final int myMaxSegments;
+  private final RandomAccessFile myLockFile;
+  private final FileLock myLock;
+  private long mySegmentNumber;
+  private MappedByteBuffer mySegment;
+  private int myPosition;
+  private boolean myClosed;
+
+  public SpoolWriter(@NotNull File dir, int segmentSize, int maxSegments) throws IOException {
+    if (segmentSize < 2 * LENGTH_SIZE)
+      throw new IllegalArgumentException("Spool segment size is too small: " + segmentSize);
+    if (!dir.isDirectory() && !dir.mkdirs())
+      throw new IOException("Cannot create spool directory " + dir.getAbsolutePath());
+    myDir = dir;
+    mySegmentSize = segmentSize;
+    myMaxSegments = maxSegments;
+    myLockFile = new RandomAccessFile(new File(dir, LOCK_FILE), "rw");
+    FileLock lock;
+    try {
+      lock = myLockFile.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      myLockFile.close();
+      throw new IOException("Spool directory " + dir.getAbsolutePath() + " is used by another writer");
+    }
+    myLock = lock;
+    List<Long> segments = Segments.list(dir);
+    long[] offset = Segments.readOffset(dir);
+    mySegmentNumber = Math.max(segments.isEmpty() ? 0 : segments.get(segments.size() - 1), offset == null ? 0 : offset[0] - 1);
+  }
+
+  @NotNull
+  public File getDir() {
+    return myDir;
+  }
+
+  public synchronized void append(@NotNull byte[] record) throws IOException {
+    if (myClosed)
+      throw new IOException("Spool writer of " + myDir.getAbsolutePath() + " is closed");
+    int size = LENGTH_SIZE + record.length;
+    // there is always a room for the end of segment mark after the record
+    if (size + LENGTH_SIZE > mySegmentSize)
+      throw new IOException("Record of " + record.length + " bytes doesn't fit into a spool segment of " + mySegmentSize + " bytes");
+    if (mySegment != null && myPosition + size + LENGTH_SIZE > mySegmentSize)
+      finishSegment();
+    if (mySegment == null)
+      startSegment();
+    mySegment.position(myPosition + LENGTH_SIZE);
+    mySegment.put(record);
+    // the reader takes a record as soon as it sees its length, so the bytes must become visible first
+    Segments.fence();
+    mySegment.putInt(myPosition, record.length);
+    myPosition += size;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (myClosed)
+      return;
+    myClosed = true;
+    try {
+      if (mySegment != null)
+        finishSegment();
+    } finally {
+      myLock.release();
+      myLockFile.close();
+    }
+  }
+
+  private void finishSegment() {
+    mySegment.putInt(myPosition, END_OF_SEGMENT);
+    mySegment.force();
+    mySegment = null;
+  }
+
+  private void startSegment() throws IOException {
+    int segments = Segments.list(myDir).size();
+    if (segments >= myMaxSegments)
+      throw new IOException("Spool directory " + myDir.getAbsolutePath() + " is full, " + segments + " segments are not delivered by the relay");
+    long number = mySegmentNumber + 1;
+    try (RandomAccessFile file = new RandomAccessFile(Segments.file(myDir, number), "rw")) {
+      file.setLength(mySegmentSize);
+      mySegment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mySegmentSize);
+    }
+    mySegmentNumber = number;
+    myPosition = 0;
+  }
+}
@@ -0,0 +1,98 @@
+package jetbrains.buildServer.commitPublisher.reports;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.metrics.BuildTypePublishingStats;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.healthStatus.*;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reports build types whose statuses are published slowly, pile up or are skipped.
+ * The report reads live publishing counters of this node, so it doesn't depend on the build type settings.
+ */
+public class SlowPublishingReport extends HealthStatusReport {
+
+  static final String LATENCY_THRESHOLD_PROPERTY = "teamcity.commitStatusPublisher.health.latencyThresholdSeconds";
+  static final String BACKLOG_THRESHOLD_PROPERTY = "teamcity.commitStatusPublisher.health.backlogThreshold";
+  static final String BACKLOG_AGE_THRESHOLD_PROPERTY = "teamcity.commitStatusPublisher.health.backlogAgeThresholdMinutes";
+  static final String DROPPED_THRESHOLD_PROPERTY = "teamcity.commitStatusPublisher.health.droppedPerHourThreshold";
+  static final String COALESCED_THRESHOLD_PROPERTY = "teamcity.commitStatusPublisher.health.coalescedPerHourThreshold";
+
+  private static final String REPORT_TYPE = "CommitStatusPublisherSlowPublishing";
+  private static final String DISPLAY_NAME = "Commit Status Publisher publishes statuses slowly or skips them";
+  private static final ItemCategory CATEGORY
+          = new ItemCategory(REPORT_TYPE + "Category", DISPLAY_NAME, ItemSeverity.WARN);
+
+  private final PublishingMetrics myMetrics;
+
+  public SlowPublishingReport(@NotNull PublishingMetrics metrics) {
+    myMetrics = metrics;
+  }
+
+  @NotNull
+  @Override
+  public String getType() {
+    return REPORT_TYPE;
+  }
+
+  @NotNull
+  @Override
+  public String getDisplayName() {
+    return DISPLAY_NAME;
+  }
+
+  @NotNull
+  @Override
+  public Collection<ItemCategory> getCategories() {
+    return Collections.singleton(CATEGORY);
+  }
+
+  @Override
+  public boolean canReportItemsFor(@NotNull HealthStatusScope healthStatusScope) {
+    return healthStatusScope.isItemWithSeverityAccepted(ItemSeverity.WARN);
+  }
+
+  @Override
+  public void report(@NotNull HealthStatusScope scope, @NotNull HealthStatusItemConsumer consumer) {
+    long now = System.currentTimeMillis();
+    for (SBuildType bt : scope.getBuildTypes()) {
+      BuildTypePublishingStats stats = myMetrics.getBuildTypeStats(bt.getInternalId());
+      if (stats == null)
+        continue;
+      List<String> problems = getProblems(stats, now);
+      if (problems.isEmpty())
+        continue;
+      String identity = REPORT_TYPE + "_BT_" + bt.getInternalId();
+      Map<String, Object> additionalData = new HashMap<>();
+      additionalData.put("buildType", bt);
+      additionalData.put("problems", problems);
+      consumer.consumeForBuildType(bt, new HealthStatusItem(identity, CATEGORY, additionalData));
+    }
+  }
+
+  @NotNull
+  static List<String> getProblems(@NotNull BuildTypePublishingStats stats, long now) {
+    List<String> problems = new ArrayList<>();
+    long latencyMs = stats.getLatencyMs();
+    if (latencyMs > TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(LATENCY_THRESHOLD_PROPERTY, 120)))
+      problems.add(String.format("statuses appear %d seconds after build events on average", TimeUnit.MILLISECONDS.toSeconds(latencyMs)));
+
+    int pending = stats.getPendingCount();
+    long backlogAgeMs = stats.getBacklogAgeMs(now);
+    if (pending >= TeamCityProperties.getInteger(BACKLOG_THRESHOLD_PROPERTY, 20) &&
+        backlogAgeMs > TimeUnit.MINUTES.toMillis(TeamCityProperties.getInteger(BACKLOG_AGE_THRESHOLD_PROPERTY, 5)))
+      problems.add(String.format("%d statuses are waiting to be published, the backlog has not cleared for %d minutes", pending, TimeUnit.MILLISECONDS.toMinutes(backlogAgeMs)));
+
+    long dropped = stats.getRecentlyDroppedCount(now);
+    if (dropped >= TeamCityProperties.getInteger(DROPPED_THRESHOLD_PROPERTY, 10))
+      problems.add(String.format("%d statuses were dropped during the last hour, because they were processed after the final status of their build", dropped));
+
+    long coalesced = stats.getRecentlyCoalescedCount(now);
+    if (coalesced >= TeamCityProperties.getInteger(COALESCED_THRESHOLD_PROPERTY, 100))
+      problems.add(String.format("%d statuses were not posted during the last hour, because the same status had already been published", coalesced));
+    return problems;
+  }
+}
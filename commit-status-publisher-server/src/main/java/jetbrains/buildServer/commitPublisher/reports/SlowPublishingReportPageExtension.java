@@ -0,0 +1,27 @@
+package jetbrains.buildServer.commitPublisher.reports;
+
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import jetbrains.buildServer.serverSide.healthStatus.HealthStatusItem;
+import jetbrains.buildServer.web.openapi.PagePlaces;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.openapi.healthStatus.HealthStatusItemPageExtension;
+import org.jetbrains.annotations.NotNull;
+
+public class SlowPublishingReportPageExtension extends HealthStatusItemPageExtension {
+
+  public SlowPublishingReportPageExtension(@NotNull PagePlaces pagePlaces,
+                                           @NotNull SlowPublishingReport report,
+                                           @NotNull PluginDescriptor pluginDescriptor) {
+    super(report.getType(), pagePlaces);
+    setIncludeUrl(pluginDescriptor.getPluginResourcesPath("reports/slowPublishingReport.jsp"));
+    register();
+  }
+
+
+  @Override
+  public void fillModel(@NotNull Map<String, Object> model, @NotNull HttpServletRequest request) {
+    HealthStatusItem item = getStatusItem(request);
+    model.putAll(item.getAdditionalData());
+  }
+}
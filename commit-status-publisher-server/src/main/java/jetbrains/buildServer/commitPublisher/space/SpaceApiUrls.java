@@ -24,16 +24,25 @@ public class SpaceApiUrls {
                                 @NotNull String projectKey,
                                 @NotNull String repository,
                                 @NotNull String revision) {
-    return String.format("%s/%s/%s/%s/%s/%s",
+    return commitStatusUrl(commitStatusUrlPrefix(spaceUrl, projectKey, repository), revision);
+  }
+
+  static String commitStatusUrlPrefix(@NotNull String spaceUrl,
+                                      @NotNull String projectKey,
+                                      @NotNull String repository) {
+    return String.format("%s/%s/%s/%s/",
       HttpHelper.stripTrailingSlash(spaceUrl),
       HTTP_API_PART,
       projectKey(projectKey),
-      repository(repository),
-      revision(revision),
-      COMMIT_STATUS_PART
+      repository(repository)
     );
   }
 
+  static String commitStatusUrl(@NotNull String commitStatusUrlPrefix,
+                                @NotNull String revision) {
+    return commitStatusUrlPrefix + revision(revision) + "/" + COMMIT_STATUS_PART;
+  }
+
   static String commitStatusTestConnectionUrl(@NotNull String spaceUrl,
                                               @NotNull String projectKey) {
     return String.format("%s/%s/%s/%s/%s",
@@ -2,11 +2,13 @@ package jetbrains.buildServer.commitPublisher.space;
 
 import com.google.gson.Gson;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.serverSide.oauth.space.SpaceConnectDescriber;
 import jetbrains.buildServer.vcs.VcsModification;
+import jetbrains.buildServer.vcs.VcsRootInstance;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
 import org.jetbrains.annotations.NotNull;
@@ -18,17 +20,22 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher {
 
   private final WebLinks myLinks;
   private final SpaceConnectDescriber mySpaceConnector;
-  private final Gson myGson = new Gson();
+  private final RepositoryRouteCache myRoutes;
+  private static final Gson GSON = new Gson();
 
   SpacePublisher(@NotNull CommitStatusPublisherSettings settings,
                  @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                  @NotNull ExecutorServices executorServices, @NotNull WebLinks links,
                  @NotNull Map<String, String> params,
                  @NotNull CommitStatusPublisherProblems problems,
-                 @NotNull SpaceConnectDescriber spaceConnector) {
-    super(settings, buildType, buildFeatureId, executorServices, params, problems);
+                 @NotNull SpaceConnectDescriber spaceConnector,
+                 @NotNull PublishedStateCache publishedStates,
+                 @NotNull PublishingMetrics metrics,
+                 @NotNull RepositoryRouteCache routes) {
+    super(settings, buildType, buildFeatureId, executorServices, params, problems, publishedStates, metrics);
     myLinks = links;
     mySpaceConnector = spaceConnector;
+    myRoutes = routes;
   }
 
   @NotNull
@@ -104,7 +111,7 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher {
         mySpaceConnector.getServiceSecret(),
         mySpaceConnector.getFullAddress(),
         getConnectionTimeout(),
-        myGson,
+        GSON,
         getSettings().trustStore()
       );
     } catch (Exception e) {
@@ -112,14 +119,18 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher {
       return;
     }
 
-    Repository repoInfo= SpaceUtils.getRepositoryInfo(revision.getRoot(), myParams.get(Constants.SPACE_PROJECT_KEY));
-
-    String url = SpaceApiUrls.commitStatusUrl(
-      mySpaceConnector.getFullAddress(),
-      repoInfo.owner(),
-      repoInfo.repositoryName(),
-      revision.getRevision()
+    final VcsRootInstance root = revision.getRoot();
+    final String projectKey = myParams.get(Constants.SPACE_PROJECT_KEY);
+    final String spaceUrl = mySpaceConnector.getFullAddress();
+    RepositoryRouteCache.Route<Repository> route = myRoutes.getRoute(
+      Constants.SPACE_PUBLISHER_ID, root, root.getProperty("url"), spaceUrl + " " + projectKey,
+      url -> SpaceUtils.getRepositoryInfo(root, projectKey),
+      repoInfo -> SpaceApiUrls.commitStatusUrlPrefix(spaceUrl, repoInfo.owner(), repoInfo.repositoryName())
     );
+    if (route == null)
+      throw new PublisherException("Cannot parse repository URL from VCS root (url not present) " + root.getName());
+
+    String url = SpaceApiUrls.commitStatusUrl(route.getEndpointPrefix(), revision.getRevision());
 
     Map<String, String> headers = new LinkedHashMap<>();
     headers.put(HttpHeaders.ACCEPT, ContentType.TEXT_PLAIN.getMimeType());
@@ -129,14 +140,14 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher {
   }
 
   @NotNull
-  private String createPayload(@NotNull List<String> changes,
-                               @NotNull SpaceBuildStatus executionStatus,
-                               @NotNull String url,
-                               @NotNull String externalServiceName,
-                               @NotNull String taskName,
-                               @NotNull String taskId,
-                               Long timestamp,
-                               String description) {
+  static String createPayload(@NotNull List<String> changes,
+                              @NotNull SpaceBuildStatus executionStatus,
+                              @NotNull String url,
+                              @NotNull String externalServiceName,
+                              @NotNull String taskName,
+                              @NotNull String taskId,
+                              Long timestamp,
+                              String description) {
     Map<String, Object> data = new HashMap<>();
     data.put(SpaceSettings.CHANGES_FIELD, changes);
     data.put(SpaceSettings.EXECUTION_STATUS_FIELD, executionStatus.getName());
@@ -150,7 +161,7 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher {
     if (description != null)
       data.put(SpaceSettings.DESCRIPTION_FIELD, description);
 
-    return myGson.toJson(data);
+    return GSON.toJson(data);
   }
 
   @Override
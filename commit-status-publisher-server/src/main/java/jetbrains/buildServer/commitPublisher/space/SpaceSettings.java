@@ -2,6 +2,7 @@ package jetbrains.buildServer.commitPublisher.space;
 
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor;
@@ -37,6 +38,9 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
 
   private final OAuthConnectionsManager myOAuthConnectionManager;
   private final OAuthTokensStorage myOAuthTokensStorage;
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
+  private final RepositoryRouteCache myRoutes;
 
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.STARTED);
@@ -52,10 +56,16 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
                        @NotNull CommitStatusPublisherProblems problems,
                        @NotNull SSLTrustStoreProvider trustStoreProvider,
                        @NotNull OAuthConnectionsManager oAuthConnectionsManager,
-                       @NotNull OAuthTokensStorage oauthTokensStorage) {
+                       @NotNull OAuthTokensStorage oauthTokensStorage,
+                       @NotNull PublishedStateCache publishedStates,
+                       @NotNull PublishingMetrics metrics,
+                       @NotNull RepositoryRouteCache routes) {
     super(executorServices, descriptor, links, problems, trustStoreProvider);
     myOAuthConnectionManager = oAuthConnectionsManager;
     myOAuthTokensStorage = oauthTokensStorage;
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
+    myRoutes = routes;
   }
 
   @NotNull
@@ -80,7 +90,7 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
   @Override
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
     SpaceConnectDescriber connector = SpaceUtils.getConnectionData(params, myOAuthConnectionManager, buildType.getProject());
-    return new SpacePublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems, connector);
+    return new SpacePublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems, connector, myPublishedStates, myMetrics, myRoutes);
   }
 
   @NotNull
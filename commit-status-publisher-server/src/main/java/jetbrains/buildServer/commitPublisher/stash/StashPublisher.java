@@ -4,6 +4,7 @@ import com.google.gson.*;
 import java.util.LinkedHashMap;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.stash.data.JsonStashBuildStatus;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
@@ -19,17 +20,22 @@ import java.util.Map;
 class StashPublisher extends HttpBasedCommitStatusPublisher {
   public static final String PROP_PUBLISH_QUEUED_BUILD_STATUS = "teamcity.stashCommitStatusPublisher.publishQueuedBuildStatus";
 
-  private final Gson myGson = new Gson();
+  private static final Gson GSON = new Gson();
   private final WebLinks myLinks;
+  private final RepositoryRouteCache myRoutes;
   private BuildStatusEndpoint myBuildStatusEndpoint = null;
 
   StashPublisher(@NotNull CommitStatusPublisherSettings settings,
                  @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                  @NotNull final ExecutorServices executorServices,
                  @NotNull WebLinks links, @NotNull Map<String, String> params,
-                 @NotNull CommitStatusPublisherProblems problems) {
-    super(settings, buildType, buildFeatureId, executorServices, params, problems);
+                 @NotNull CommitStatusPublisherProblems problems,
+                 @NotNull PublishedStateCache publishedStates,
+                 @NotNull PublishingMetrics metrics,
+                 @NotNull RepositoryRouteCache routes) {
+    super(settings, buildType, buildFeatureId, executorServices, params, problems, publishedStates, metrics);
     myLinks = links;
+    myRoutes = routes;
   }
 
   @NotNull
@@ -186,7 +192,7 @@ class StashPublisher extends HttpBasedCommitStatusPublisher {
     return myBuildStatusEndpoint;
   }
 
-  private interface StatusData {
+  interface StatusData {
     @NotNull String getCommit();
     @NotNull String getState();
     @NotNull String getKey();
@@ -365,13 +371,7 @@ class StashPublisher extends HttpBasedCommitStatusPublisher {
     @NotNull
     @Override
     protected String createMessage(@NotNull final StatusData data) {
-      Map<String, String> jsonData = new LinkedHashMap<String, String>();
-      jsonData.put("state", data.getState());
-      jsonData.put("key", data.getKey());
-      jsonData.put("name", data.getName());
-      jsonData.put("url", data.getUrl());
-      jsonData.put("description", data.getDescription());
-      return myGson.toJson(jsonData);
+      return createBuildApiMessage(data);
     }
   }
 
@@ -385,34 +385,54 @@ class StashPublisher extends HttpBasedCommitStatusPublisher {
       String vcsUrl = vcs.getProperty("url");
       if (vcsUrl == null)
         throw new PublisherException("No VCS root fetch URL provided, revision " + data.getCommit());
-      Repository repo = StashSettings.VCS_URL_PARSER.parseRepositoryUrl(vcsUrl);
-      if (repo == null)
+      final String baseUrl = getBaseUrl();
+      RepositoryRouteCache.Route<Repository> route = myRoutes.getRoute(
+        Constants.STASH_PUBLISHER_ID, vcs, vcsUrl, baseUrl,
+        StashSettings.VCS_URL_PARSER::parseRepositoryUrl,
+        repo -> baseUrl + "/rest/api/1.0/projects/" + repo.owner() + "/repos/" + repo.repositoryName() + "/commits/");
+      if (route == null)
         throw new PublisherException("Failed to parse repoisotry fetch URL " + vcsUrl);
-      return getBaseUrl() + "/rest/api/1.0/projects/" + repo.owner() + "/repos/" + repo.repositoryName() +  "/commits/" + data.getCommit() + "/builds" ;
+      return route.getEndpointPrefix() + data.getCommit() + "/builds";
     }
 
     @NotNull
     @Override
     protected String createMessage(@NotNull final StatusData data) {
-      JsonStashBuildStatus status = new JsonStashBuildStatus();
-      status.buildNumber = data.getBuildNumber();
-      status.description = data.getDescription();
-      status.duration = data.getBuildDurationMs();
-      status.key = data.getKey();
-      status.name = data.getName();
-      status.ref = data.getVcsBranch();
-      status.state = data.getState();
-      status.url = data.getUrl();
-      BuildStatistics stats = data.getBuildStatistics();
-      if (stats != null) {
-        status.testResults = new JsonStashBuildStatus.StashTestStatistics();
-
-        status.testResults.failed = stats.getFailedTestCount();
-        status.testResults.skipped = stats.getMutedTestsCount() + stats.getIgnoredTestCount();
-        status.testResults.successful = stats.getPassedTestCount();
-      }
-      return myGson.toJson(status);
+      return createCoreApiMessage(data);
+    }
+  }
+
+  @NotNull
+  static String createBuildApiMessage(@NotNull StatusData data) {
+    Map<String, String> jsonData = new LinkedHashMap<String, String>();
+    jsonData.put("state", data.getState());
+    jsonData.put("key", data.getKey());
+    jsonData.put("name", data.getName());
+    jsonData.put("url", data.getUrl());
+    jsonData.put("description", data.getDescription());
+    return GSON.toJson(jsonData);
+  }
+
+  @NotNull
+  static String createCoreApiMessage(@NotNull StatusData data) {
+    JsonStashBuildStatus status = new JsonStashBuildStatus();
+    status.buildNumber = data.getBuildNumber();
+    status.description = data.getDescription();
+    status.duration = data.getBuildDurationMs();
+    status.key = data.getKey();
+    status.name = data.getName();
+    status.ref = data.getVcsBranch();
+    status.state = data.getState();
+    status.url = data.getUrl();
+    BuildStatistics stats = data.getBuildStatistics();
+    if (stats != null) {
+      status.testResults = new JsonStashBuildStatus.StashTestStatistics();
+
+      status.testResults.failed = stats.getFailedTestCount();
+      status.testResults.skipped = stats.getMutedTestsCount() + stats.getIgnoredTestCount();
+      status.testResults.successful = stats.getPassedTestCount();
     }
+    return GSON.toJson(status);
   }
 
 }
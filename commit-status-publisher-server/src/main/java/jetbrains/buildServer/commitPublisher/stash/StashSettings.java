@@ -13,6 +13,7 @@ import jetbrains.buildServer.web.util.WebUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 
 import java.io.IOException;
 import java.util.*;
@@ -39,12 +40,22 @@ public class StashSettings extends BasePublisherSettings implements CommitStatus
     addAll(mySupportedEvents);
   }};
 
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
+  private final RepositoryRouteCache myRoutes;
+
   public StashSettings(@NotNull final ExecutorServices executorServices,
                        @NotNull PluginDescriptor descriptor,
                        @NotNull WebLinks links,
                        @NotNull CommitStatusPublisherProblems problems,
-                       @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                       @NotNull SSLTrustStoreProvider trustStoreProvider,
+                       @NotNull PublishedStateCache publishedStates,
+                       @NotNull PublishingMetrics metrics,
+                       @NotNull RepositoryRouteCache routes) {
     super(executorServices, descriptor, links, problems, trustStoreProvider);
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
+    myRoutes = routes;
   }
 
   @NotNull
@@ -64,7 +75,7 @@ public class StashSettings extends BasePublisherSettings implements CommitStatus
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new StashPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems);
+    return new StashPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems, myPublishedStates, myMetrics, myRoutes);
   }
 
   @NotNull
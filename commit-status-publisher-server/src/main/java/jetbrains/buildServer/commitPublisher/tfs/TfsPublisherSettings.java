@@ -2,6 +2,7 @@ package jetbrains.buildServer.commitPublisher.tfs;
 
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.SecurityContext;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
@@ -27,6 +28,10 @@ public class TfsPublisherSettings extends BasePublisherSettings implements Commi
   private final OAuthConnectionsManager myOauthConnectionsManager;
   private final OAuthTokensStorage myOAuthTokensStorage;
   private final SecurityContext mySecurityContext;
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
+  private final RepositoryRouteCache myRoutes;
+  private final TfsPullRequestCache myPullRequests;
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.STARTED);
     add(Event.FINISHED);
@@ -41,11 +46,19 @@ public class TfsPublisherSettings extends BasePublisherSettings implements Commi
                               @NotNull OAuthConnectionsManager oauthConnectionsManager,
                               @NotNull OAuthTokensStorage oauthTokensStorage,
                               @NotNull SecurityContext securityContext,
-                              @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                              @NotNull SSLTrustStoreProvider trustStoreProvider,
+                              @NotNull PublishedStateCache publishedStates,
+                              @NotNull PublishingMetrics metrics,
+                              @NotNull RepositoryRouteCache routes,
+                              @NotNull TfsPullRequestCache pullRequests) {
     super(executorServices, descriptor, links, problems, trustStoreProvider);
     myOauthConnectionsManager = oauthConnectionsManager;
     myOAuthTokensStorage = oauthTokensStorage;
     mySecurityContext = securityContext;
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
+    myRoutes = routes;
+    myPullRequests = pullRequests;
   }
 
   @NotNull
@@ -100,7 +113,7 @@ public class TfsPublisherSettings extends BasePublisherSettings implements Commi
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new TfsStatusPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems);
+    return new TfsStatusPublisher(this, buildType, buildFeatureId, myExecutorServices, myLinks, params, myProblems, myPublishedStates, myMetrics, myRoutes, myPullRequests);
   }
 
   @NotNull
@@ -0,0 +1,60 @@
+package jetbrains.buildServer.commitPublisher.tfs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Set;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers pull request iterations resolved for merge commits,
+ * so statuses of the same merge commit (STARTED, FINISHED, reruns) don't query Azure DevOps again.
+ * Parents of a commit never change, so they are cached as well.
+ */
+public class TfsPullRequestCache {
+
+  private static final String MAX_SIZE_PROPERTY = "teamcity.commitStatusPublisher.tfs.pullRequestCache.maxSize";
+  private final Cache<String, Set<String>> myParents;
+  private final Cache<String, String> myIterations;
+
+  public TfsPullRequestCache() {
+    this(TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, 5000));
+  }
+
+  TfsPullRequestCache(int maxSize) {
+    myParents = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    myIterations = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  @Nullable
+  Set<String> getParents(@NotNull String repositoryUrl, @NotNull String commitId) {
+    return myParents.getIfPresent(parentsKey(repositoryUrl, commitId));
+  }
+
+  void putParents(@NotNull String repositoryUrl, @NotNull String commitId, @NotNull Set<String> parents) {
+    myParents.put(parentsKey(repositoryUrl, commitId), parents);
+  }
+
+  @Nullable
+  String getIteration(@NotNull String repositoryUrl, @NotNull String pullRequestId, @NotNull String commitId) {
+    return myIterations.getIfPresent(iterationKey(repositoryUrl, pullRequestId, commitId));
+  }
+
+  /**
+   * Only found iterations are remembered: an iteration for a fresh merge commit may not be created yet
+   */
+  void putIteration(@NotNull String repositoryUrl, @NotNull String pullRequestId, @NotNull String commitId, @NotNull String iterationId) {
+    myIterations.put(iterationKey(repositoryUrl, pullRequestId, commitId), iterationId);
+  }
+
+  @NotNull
+  private static String parentsKey(@NotNull String repositoryUrl, @NotNull String commitId) {
+    return repositoryUrl + "#" + commitId;
+  }
+
+  @NotNull
+  private static String iterationKey(@NotNull String repositoryUrl, @NotNull String pullRequestId, @NotNull String commitId) {
+    return repositoryUrl + "#" + pullRequestId + "#" + commitId;
+  }
+}
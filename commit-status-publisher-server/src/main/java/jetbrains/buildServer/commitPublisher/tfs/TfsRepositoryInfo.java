@@ -27,6 +27,7 @@ public class TfsRepositoryInfo {
   private static final String[] TFS_HOSTED_DOMAINS = new String[]{"visualstudio.com", "dev.azure.com"};
   private static final String TEAMCITY_TFS_HOSTED_DOMAINS = "teamcity.tfs.hosted.domains";
   private static final Pattern TFS_HOSTS_SEPARATOR = Pattern.compile(",");
+  private static volatile ParsedDomains ourParsedDomains;
 
   private final String myServer;
   private final String myRepository;
@@ -157,7 +158,25 @@ public class TfsRepositoryInfo {
       return TFS_HOSTED_DOMAINS;
     }
 
-    return TFS_HOSTS_SEPARATOR.split(domainsList);
+    // the property rarely changes, so split it again only when its value differs from the last one seen
+    final ParsedDomains parsed = ourParsedDomains;
+    if (parsed != null && parsed.myDomainsList.equals(domainsList)) {
+      return parsed.myDomains;
+    }
+
+    final String[] domains = TFS_HOSTS_SEPARATOR.split(domainsList);
+    ourParsedDomains = new ParsedDomains(domainsList, domains);
+    return domains;
+  }
+
+  private static class ParsedDomains {
+    private final String myDomainsList;
+    private final String[] myDomains;
+
+    ParsedDomains(@NotNull String domainsList, @NotNull String[] domains) {
+      myDomainsList = domainsList;
+      myDomains = domains;
+    }
   }
 
   @Override
@@ -5,11 +5,13 @@ import com.google.gson.JsonSyntaxException;
 import java.security.KeyStore;
 import java.util.concurrent.atomic.AtomicReference;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.util.StringUtil;
+import jetbrains.buildServer.vcs.SVcsModification;
 import jetbrains.buildServer.vcs.VcsRoot;
 import org.apache.http.entity.ContentType;
 import org.jetbrains.annotations.NotNull;
@@ -18,6 +20,9 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,12 +36,16 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher {
   private static final String COMMIT_URL_FORMAT = "{0}/{1}/_apis/git/repositories/{2}/commits/{3}?api-version=1.0";
   private static final String COMMIT_STATUS_URL_FORMAT = "{0}/{1}/_apis/git/repositories/{2}/commits/{3}/statuses?api-version=2.1";
   private static final String PULL_REQUEST_ITERATIONS_URL_FORMAT = "{0}/{1}/_apis/git/repositories/{2}/pullRequests/{3}/iterations?api-version=3.0";
-  private static final String PULL_REQUEST_ITERATION_STATUS_URL_FORMAT = "{0}/{1}/_apis/git/repositories/{2}/pullRequests/{3}/iterations/{4}/statuses?api-version=3.0-preview";
-  private static final String PULL_REQUEST_STATUS_URL_FORMAT = "{0}/{1}/_apis/git/repositories/{2}/pullRequests/{3}/statuses?api-version=3.0-preview";
+  private static final String REPOSITORY_URL_FORMAT = "{0}/{1}/_apis/git/repositories/{2}";
+  private static final String COMMIT_STATUS_PATH_FORMAT = "/commits/{0}/statuses?api-version=2.1";
+  private static final String PULL_REQUEST_ITERATION_STATUS_PATH_FORMAT = "/pullRequests/{0}/iterations/{1}/statuses?api-version=3.0-preview";
+  private static final String PULL_REQUEST_STATUS_PATH_FORMAT = "/pullRequests/{0}/statuses?api-version=3.0-preview";
   private static final String ERROR_AUTHORIZATION = "Check access token value and verify that it has Code (status) and Code (read) scopes";
   private static final String FAILED_TO_TEST_CONNECTION_TO_REPOSITORY = "TFS publisher has failed to test connection to repository ";
   private static final Gson myGson = new Gson();
   private final WebLinks myLinks;
+  private final RepositoryRouteCache myRoutes;
+  private final TfsPullRequestCache myPullRequests;
 
   // Captures pull request identifier. Example: refs/pull/1/merge
   private static final Pattern TFS_GIT_PULL_REQUEST_PATTERN = Pattern.compile("^refs\\/pull\\/(\\d+)/merge");
@@ -47,9 +56,15 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher {
                      @NotNull final ExecutorServices executorServices,
                      @NotNull final WebLinks webLinks,
                      @NotNull final Map<String, String> params,
-                     @NotNull final CommitStatusPublisherProblems problems) {
-    super(settings, buildType, buildFeatureId, executorServices, params, problems);
+                     @NotNull final CommitStatusPublisherProblems problems,
+                     @NotNull final PublishedStateCache publishedStates,
+                     @NotNull final PublishingMetrics metrics,
+                     @NotNull final RepositoryRouteCache routes,
+                     @NotNull final TfsPullRequestCache pullRequests) {
+    super(settings, buildType, buildFeatureId, executorServices, params, problems, publishedStates, metrics);
     myLinks = webLinks;
+    myRoutes = routes;
+    myPullRequests = pullRequests;
   }
 
   @NotNull
@@ -65,8 +80,11 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher {
 
   @Override
   public boolean isPublishingForRevision(@NotNull final BuildRevision revision) {
-    final VcsRoot vcsRoot = revision.getRoot();
-    return tryGetServerAndProject(vcsRoot, myParams) != null;
+    try {
+      return tryGetRoute(revision.getRoot()) != null;
+    } catch (PublisherException e) {
+      return false;
+    }
   }
 
   @Override
@@ -311,24 +329,44 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher {
       return;
     }
 
-    final TfsRepositoryInfo info = getServerAndProject(root, myParams);
+    final RepositoryRouteCache.Route<TfsRepositoryInfo> route = getRoute(root);
+    final TfsRepositoryInfo info = route.getRepository();
+    final String repositoryUrl = route.getEndpointPrefix();
     final CommitStatus status = getCommitStatus(build, isStarting);
-    final String data = myGson.toJson(status);
+    final String data = toJson(status);
 
     final String commitId = revision.getRevision();
-    final String commitStatusUrl = MessageFormat.format(COMMIT_STATUS_URL_FORMAT,
-      info.getServer(), info.getProject(), info.getRepository(), commitId);
-    post(commitStatusUrl, StringUtil.EMPTY, myParams.get(TfsConstants.ACCESS_TOKEN),
+    final String commitStatusUrl = repositoryUrl + MessageFormat.format(COMMIT_STATUS_PATH_FORMAT, commitId);
+    final String buildDescription = LogUtil.describe(build);
+    final FutureTask<Void> commitStatusTask = new FutureTask<Void>(() -> post(commitStatusUrl, StringUtil.EMPTY, myParams.get(TfsConstants.ACCESS_TOKEN),
       data, ContentType.APPLICATION_JSON,
       Collections.singletonMap("Accept", "application/json"),
-      LogUtil.describe(build));
+      buildDescription), null);
 
     // Check whether pull requests status publishing enabled
     final String publishPullRequest = StringUtil.emptyIfNull(myParams.get(TfsConstants.PUBLISH_PULL_REQUESTS)).trim();
     if (!Boolean.valueOf(publishPullRequest)) {
+      commitStatusTask.run();
       return;
     }
 
+    // The commit status is posted while the pull request is being resolved, both outcomes are reported by post() on their own
+    startConcurrently(commitStatusTask);
+    try {
+      publishPullRequestStatus(build, revision, info, repositoryUrl, data, buildDescription);
+    } finally {
+      awaitCommitStatus(commitStatusTask);
+    }
+  }
+
+  private void publishPullRequestStatus(@NotNull SBuild build,
+                                        @NotNull BuildRevision revision,
+                                        @NotNull TfsRepositoryInfo info,
+                                        @NotNull String repositoryUrl,
+                                        @NotNull String data,
+                                        @NotNull String buildDescription) throws PublisherException {
+    final String commitId = revision.getRevision();
+
     // Get branch and try to find pull request id
     final String branch = revision.getRepositoryVersion().getVcsBranch();
     if (StringUtil.isEmptyOrSpaces(branch)) {
@@ -344,51 +382,124 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher {
 
     final String pullRequestId = matcher.group(1);
 
-    final KeyStore trustStore = getSettings().trustStore();
-
-    // Since it's a merge request we need to get parent commit for it
-    final Set<String> commits = getParentCommits(info, commitId, myParams, trustStore);
-
-    // Then we need to get pull request iteration where this commit present
-    final String iterationId = getPullRequestIteration(info, pullRequestId, commits, myParams, trustStore);
+    final String iterationId = resolvePullRequestIteration(build, revision, info, repositoryUrl, pullRequestId);
     final String pullRequestStatusUrl;
 
     if (StringUtil.isEmptyOrSpaces(iterationId)) {
       // Publish status for pull request
-      pullRequestStatusUrl = MessageFormat.format(PULL_REQUEST_STATUS_URL_FORMAT,
-        info.getServer(), info.getProject(), info.getRepository(), pullRequestId);
+      pullRequestStatusUrl = repositoryUrl + MessageFormat.format(PULL_REQUEST_STATUS_PATH_FORMAT, pullRequestId);
     } else {
       // Publish status for pull request iteration
-      pullRequestStatusUrl = MessageFormat.format(PULL_REQUEST_ITERATION_STATUS_URL_FORMAT,
-        info.getServer(), info.getProject(), info.getRepository(), pullRequestId, iterationId);
+      pullRequestStatusUrl = repositoryUrl + MessageFormat.format(PULL_REQUEST_ITERATION_STATUS_PATH_FORMAT, pullRequestId, iterationId);
     }
 
     post(pullRequestStatusUrl, StringUtil.EMPTY, myParams.get(TfsConstants.ACCESS_TOKEN),
       data, ContentType.APPLICATION_JSON,
       Collections.singletonMap("Accept", "application/json"),
-      LogUtil.describe(build)
+      buildDescription
     );
   }
 
+  private void startConcurrently(@NotNull FutureTask<Void> task) {
+    try {
+      getExecutorServices().getLowPriorityExecutorService().execute(task);
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Executor rejected commit status task, it will be run in the publishing thread", e);
+    }
+  }
+
+  private static void awaitCommitStatus(@NotNull FutureTask<Void> task) {
+    // Runs the task in the current thread if the executor has not picked it up yet, so a saturated pool cannot block us
+    task.run();
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOG.warnAndDebugDetails("Failed to publish TFS commit status", e.getCause());
+    }
+  }
+
+  @Nullable
+  private String resolvePullRequestIteration(@NotNull SBuild build,
+                                             @NotNull BuildRevision revision,
+                                             @NotNull TfsRepositoryInfo info,
+                                             @NotNull String repositoryUrl,
+                                             @NotNull String pullRequestId) throws PublisherException {
+    final String commitId = revision.getRevision();
+    final String cachedIterationId = myPullRequests.getIteration(repositoryUrl, pullRequestId, commitId);
+    if (cachedIterationId != null) {
+      return cachedIterationId;
+    }
+
+    final KeyStore trustStore = getSettings().trustStore();
+
+    // Since it's a merge request we need to get parent commit for it
+    Set<String> commits = myPullRequests.getParents(repositoryUrl, commitId);
+    if (commits == null) {
+      commits = getLocalParentCommits(build, revision);
+      if (commits == null) {
+        commits = getParentCommits(info, commitId, myParams, trustStore);
+      }
+      myPullRequests.putParents(repositoryUrl, commitId, commits);
+    }
+
+    // Then we need to get pull request iteration where this commit present
+    final String iterationId = getPullRequestIteration(info, pullRequestId, commits, myParams, trustStore);
+    if (!StringUtil.isEmptyOrSpaces(iterationId)) {
+      myPullRequests.putIteration(repositoryUrl, pullRequestId, commitId, iterationId);
+    }
+    return iterationId;
+  }
+
+  @Nullable
+  private static Set<String> getLocalParentCommits(@NotNull SBuild build, @NotNull BuildRevision revision) {
+    final String commitId = revision.getRevision();
+    final long rootId = revision.getRoot().getId();
+    for (SVcsModification change : build.getContainingChanges()) {
+      if (commitId.equals(change.getVersion()) && change.getVcsRoot().getId() == rootId) {
+        final List<String> parents = change.getParentRevisions();
+        return parents.isEmpty() ? null : new HashSet<String>(parents);
+      }
+    }
+    return null;
+  }
+
   @NotNull
   private CommitStatus getCommitStatus(final SBuild build, final boolean isStarting) {
+    return createCommitStatus(build.getFullName(), build.getBuildNumber(), build.getBuildTypeExternalId(),
+                              build.getBuildStatus(), isStarting, myLinks.getViewResultsUrl(build));
+  }
+
+  @NotNull
+  static CommitStatus createCommitStatus(@NotNull String buildName,
+                                         @NotNull String buildNumber,
+                                         @NotNull String buildTypeExternalId,
+                                         @NotNull Status buildStatus,
+                                         boolean isStarting,
+                                         @NotNull String url) {
     final CommitStatus status = new CommitStatus();
 
-    final StatusState state = getState(isStarting, build.getBuildStatus());
+    final StatusState state = getState(isStarting, buildStatus);
     status.state = state;
     status.description = String.format("The build %s %s %s %s",
-      build.getFullName(), build.getBuildNumber(),
+      buildName, buildNumber,
       isStarting ? "is" : "has", state.toString().toLowerCase());
-    status.targetURL = myLinks.getViewResultsUrl(build);
+    status.targetURL = url;
 
     final StatusContext context = new StatusContext();
-    context.name = build.getBuildTypeExternalId();
+    context.name = buildTypeExternalId;
     context.genre = "TeamCity";
     status.context = context;
 
     return status;
   }
 
+  @NotNull
+  static String toJson(@NotNull CommitStatus status) {
+    return myGson.toJson(status);
+  }
+
   private static StatusState getState(boolean isStarting, Status status) {
     if (!isStarting) {
       if (status.isSuccessful()) return StatusState.Succeeded;
@@ -406,6 +517,28 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher {
     return TfsRepositoryInfo.parse(url, serverUrl);
   }
 
+  @Nullable
+  private RepositoryRouteCache.Route<TfsRepositoryInfo> tryGetRoute(@NotNull VcsRoot root) throws PublisherException {
+    final String serverUrl = myParams.get(TfsConstants.SERVER_URL);
+    return myRoutes.getRoute(
+      TfsConstants.ID, root, root.getProperty(TfsConstants.GIT_VCS_URL), serverUrl,
+      url -> TfsRepositoryInfo.parse(url, serverUrl),
+      info -> MessageFormat.format(REPOSITORY_URL_FORMAT, info.getServer(), info.getProject(), info.getRepository()));
+  }
+
+  @NotNull
+  private RepositoryRouteCache.Route<TfsRepositoryInfo> getRoute(@NotNull VcsRoot root) throws PublisherException {
+    final RepositoryRouteCache.Route<TfsRepositoryInfo> route = tryGetRoute(root);
+    if (route == null) {
+      throw new PublisherException(String.format(
+        "Invalid URL for TFS Git project '%s'. Publisher supports only TFS servers",
+        root.getProperty(TfsConstants.GIT_VCS_URL)
+      ));
+    }
+
+    return route;
+  }
+
   @NotNull
   private static TfsRepositoryInfo getServerAndProject(VcsRoot root, final Map<String, String> params) throws PublisherException {
     final TfsRepositoryInfo info = tryGetServerAndProject(root, params);
@@ -423,7 +556,7 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher {
     private String message;
   }
 
-  private static class CommitStatus {
+  static class CommitStatus {
     private StatusState state;
     private String description;
     private String targetURL;
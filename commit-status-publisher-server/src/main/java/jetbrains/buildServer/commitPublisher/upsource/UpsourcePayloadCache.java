@@ -0,0 +1,82 @@
+package jetbrains.buildServer.commitPublisher.upsource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.vcs.SVcsModification;
+import jetbrains.buildServer.vcs.VcsModificationHistory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the parts of Upsource status payloads that don't change between events:
+ * commit message and date by modification id, and build results URL by build id.
+ *
+ * Build name is not cached, because the build number can be changed while the build is running.
+ */
+public class UpsourcePayloadCache {
+
+  private static final String MAX_SIZE_PROPERTY = "teamcity.commitStatusPublisher.upsource.payloadCache.maxSize";
+  private final Cache<Long, CommitInfo> myCommits;
+  private final Cache<Long, String> myBuildUrls;
+
+  public UpsourcePayloadCache() {
+    this(TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, 10000));
+  }
+
+  UpsourcePayloadCache(int maxSize) {
+    myCommits = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    myBuildUrls = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterAccess(1, TimeUnit.HOURS).build();
+  }
+
+  /**
+   * Returns message and date of the commit, modifications which are not found are not remembered
+   */
+  @Nullable
+  CommitInfo getCommitInfo(long modificationId, @NotNull VcsModificationHistory vcsHistory) {
+    CommitInfo info = myCommits.getIfPresent(modificationId);
+    if (info != null)
+      return info;
+    SVcsModification modification = vcsHistory.findChangeById(modificationId);
+    if (modification == null)
+      return null;
+    info = new CommitInfo(modification.getDescription(), modification.getVcsDate().getTime());
+    myCommits.put(modificationId, info);
+    return info;
+  }
+
+  @NotNull
+  String getBuildUrl(long buildId, @NotNull UrlProvider urlProvider) {
+    String url = myBuildUrls.getIfPresent(buildId);
+    if (url == null) {
+      url = urlProvider.getUrl();
+      myBuildUrls.put(buildId, url);
+    }
+    return url;
+  }
+
+  interface UrlProvider {
+    @NotNull
+    String getUrl();
+  }
+
+  static class CommitInfo {
+    private final String myDescription;
+    private final long myVcsDate;
+
+    CommitInfo(@NotNull String description, long vcsDate) {
+      myDescription = description;
+      myVcsDate = vcsDate;
+    }
+
+    @NotNull
+    String getDescription() {
+      return myDescription;
+    }
+
+    long getVcsDate() {
+      return myVcsDate;
+    }
+  }
+}
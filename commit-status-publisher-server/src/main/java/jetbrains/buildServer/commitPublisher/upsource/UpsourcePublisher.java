@@ -4,10 +4,10 @@ import com.google.gson.Gson;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
-import jetbrains.buildServer.vcs.SVcsModification;
 import jetbrains.buildServer.vcs.VcsModificationHistory;
 import jetbrains.buildServer.vcs.VcsRootInstance;
 import org.apache.http.entity.ContentType;
@@ -20,6 +20,7 @@ class UpsourcePublisher extends HttpBasedCommitStatusPublisher {
 
   private final VcsModificationHistory myVcsHistory;
   private final WebLinks myLinks;
+  private final UpsourcePayloadCache myPayloads;
   private final Gson myGson = new Gson();
   private static final Pattern TEAMCITY_SVN_REVISION_PATTERN = Pattern.compile("([^\\|]+\\|)?([0-9]+)(_.+)?");
 
@@ -29,10 +30,14 @@ class UpsourcePublisher extends HttpBasedCommitStatusPublisher {
                     @NotNull VcsModificationHistory vcsHistory,
                     @NotNull final ExecutorServices executorServices,
                     @NotNull WebLinks links, @NotNull Map<String, String> params,
-                    @NotNull CommitStatusPublisherProblems problems) {
-    super(settings, buildType, buildFeatureId, executorServices, params, problems);
+                    @NotNull CommitStatusPublisherProblems problems,
+                    @NotNull PublishedStateCache publishedStates,
+                    @NotNull PublishingMetrics metrics,
+                    @NotNull UpsourcePayloadCache payloads) {
+    super(settings, buildType, buildFeatureId, executorServices, params, problems, publishedStates, metrics);
     myVcsHistory = vcsHistory;
     myLinks = links;
+    myPayloads = payloads;
   }
 
   @NotNull
@@ -83,16 +88,16 @@ class UpsourcePublisher extends HttpBasedCommitStatusPublisher {
                        @NotNull BuildRevision revision,
                        @NotNull UpsourceStatus status,
                        @NotNull String description) throws PublisherException {
-    String url = myLinks.getViewResultsUrl(build);
+    String url = myPayloads.getBuildUrl(build.getBuildId(), () -> myLinks.getViewResultsUrl(build));
     String commitMessage = null;
     Long commitDate = null;
     if (revision instanceof BuildRevisionEx) {
       Long modId = ((BuildRevisionEx) revision).getModificationId();
       if (modId != null) {
-        SVcsModification m = myVcsHistory.findChangeById(modId);
-        if (m != null) {
-          commitMessage = m.getDescription();
-          commitDate = m.getVcsDate().getTime();
+        UpsourcePayloadCache.CommitInfo commit = myPayloads.getCommitInfo(modId, myVcsHistory);
+        if (commit != null) {
+          commitMessage = commit.getDescription();
+          commitDate = commit.getVcsDate();
         }
       }
     }
@@ -17,6 +17,7 @@ import org.apache.http.entity.ContentType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 
 public class UpsourceSettings extends BasePublisherSettings implements CommitStatusPublisherSettings {
 
@@ -36,6 +37,9 @@ public class UpsourceSettings extends BasePublisherSettings implements CommitSta
 
 
   private final VcsModificationHistory myVcsHistory;
+  private final PublishedStateCache myPublishedStates;
+  private final PublishingMetrics myMetrics;
+  private final UpsourcePayloadCache myPayloads;
   private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
     add(Event.STARTED);
     add(Event.FINISHED);
@@ -49,9 +53,15 @@ public class UpsourceSettings extends BasePublisherSettings implements CommitSta
                           @NotNull PluginDescriptor descriptor,
                           @NotNull WebLinks links,
                           @NotNull CommitStatusPublisherProblems problems,
-                          @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                          @NotNull SSLTrustStoreProvider trustStoreProvider,
+                          @NotNull PublishedStateCache publishedStates,
+                          @NotNull PublishingMetrics metrics,
+                          @NotNull UpsourcePayloadCache payloads) {
     super(executorServices, descriptor, links, problems, trustStoreProvider);
     myVcsHistory = vcsHistory;
+    myPublishedStates = publishedStates;
+    myMetrics = metrics;
+    myPayloads = payloads;
   }
 
   @NotNull
@@ -71,7 +81,7 @@ public class UpsourceSettings extends BasePublisherSettings implements CommitSta
 
   @Nullable
   public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new UpsourcePublisher(this, buildType, buildFeatureId, myVcsHistory, myExecutorServices, myLinks, params, myProblems);
+    return new UpsourcePublisher(this, buildType, buildFeatureId, myVcsHistory, myExecutorServices, myLinks, params, myProblems, myPublishedStates, myMetrics, myPayloads);
   }
 
   @NotNull
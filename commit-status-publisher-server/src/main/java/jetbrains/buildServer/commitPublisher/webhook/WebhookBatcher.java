@@ -0,0 +1,276 @@
+package jetbrains.buildServer.commitPublisher.webhook;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Collects statuses posted to the same webhook and sends them as batches.
+ *
+ * A status is queued and the batch is sent by a background task when the window since the first queued status passes
+ * or when the batch is full. Submitters don't wait for the batch: they are called under the lock of the build type,
+ * and waiting there for the window would delay all other statuses of the build type. Failures of a batch are passed
+ * to the callbacks of its statuses, see {@link PendingStatus#onFailure}.
+ * Batches of a webhook are sent one at a time in the order of submission, a failed batch is retried as a whole
+ * before the next one is sent.
+ */
+class WebhookBatcher {
+
+  static final String WINDOW_PROPERTY = "teamcity.commitStatusPublisher.webhook.batch.windowMs";
+  static final String MAX_SIZE_PROPERTY = "teamcity.commitStatusPublisher.webhook.batch.maxSize";
+  static final String MAX_BYTES_PROPERTY = "teamcity.commitStatusPublisher.webhook.batch.maxBytes";
+  static final String MAX_ATTEMPTS_PROPERTY = "teamcity.commitStatusPublisher.webhook.batch.maxAttempts";
+  static final String MAX_QUEUED_PROPERTY = "teamcity.commitStatusPublisher.webhook.maxQueued";
+
+  private static final long INITIAL_RETRY_DELAY_MS = 1000;
+
+  private final ScheduledExecutorService myScheduler;
+  private final Executor mySendExecutor;
+  private final BatchSender mySender;
+  // keyed by URL and token, statuses sent with different tokens never share a batch
+  private final ConcurrentHashMap<List<String>, Webhook> myWebhooks = new ConcurrentHashMap<List<String>, Webhook>();
+
+  WebhookBatcher(@NotNull ScheduledExecutorService scheduler, @NotNull Executor sendExecutor, @NotNull BatchSender sender) {
+    myScheduler = scheduler;
+    mySendExecutor = sendExecutor;
+    mySender = sender;
+  }
+
+  /**
+   * Queues a status
+   * @param url webhook URL
+   * @param token token the webhook is called with
+   * @param status JSON object of the status
+   * @return the queued status, see {@link PendingStatus#onFailure}
+   * @throws PublisherException when too many statuses of the webhook are queued
+   */
+  @NotNull
+  PendingStatus submit(@NotNull String url, @Nullable String token, @NotNull String status) throws PublisherException {
+    Webhook webhook = myWebhooks.computeIfAbsent(Arrays.asList(url, token), k -> new Webhook(url, token));
+    PendingStatus pending = new PendingStatus(url, status);
+    synchronized (webhook) {
+      if (webhook.myQueue.size() >= TeamCityProperties.getInteger(MAX_QUEUED_PROPERTY, 10000))
+        throw new PublisherException("Too many statuses are waiting to be sent to the webhook " + url);
+      webhook.myQueue.add(pending);
+      if (!webhook.myFlushScheduled) {
+        webhook.myFlushScheduled = true;
+        schedule(webhook, getWindowMs());
+      } else if (webhook.isBatchFull() && webhook.myWindow != null && webhook.myWindow.cancel(false)) {
+        // the batch is full before the window has passed
+        schedule(webhook, 0);
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * @return number of statuses which are not sent yet
+   */
+  int getQueuedCount() {
+    int result = 0;
+    for (Webhook webhook : myWebhooks.values()) {
+      synchronized (webhook) {
+        result += webhook.myQueue.size();
+      }
+    }
+    return result;
+  }
+
+  private void schedule(@NotNull Webhook webhook, long delayMs) {
+    webhook.myWindow = myScheduler.schedule(() -> {
+      try {
+        mySendExecutor.execute(() -> flush(webhook));
+      } catch (RejectedExecutionException e) {
+        // the server is shutting down, nobody would send the queued statuses
+        List<PendingStatus> queued;
+        synchronized (webhook) {
+          queued = new ArrayList<PendingStatus>(webhook.myQueue);
+          webhook.myQueue.clear();
+          webhook.myFlushScheduled = false;
+        }
+        for (PendingStatus status : queued) {
+          status.fail(e);
+        }
+      }
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private void flush(@NotNull Webhook webhook) {
+    while (true) {
+      List<PendingStatus> batch;
+      synchronized (webhook) {
+        batch = webhook.takeBatch();
+        if (batch.isEmpty()) {
+          webhook.myFlushScheduled = false;
+          return;
+        }
+      }
+      send(webhook, batch);
+      synchronized (webhook) {
+        // a full batch is sent right away, otherwise the window starts again
+        if (!webhook.isBatchFull()) {
+          if (webhook.myQueue.isEmpty())
+            webhook.myFlushScheduled = false;
+          else
+            schedule(webhook, getWindowMs());
+          return;
+        }
+      }
+    }
+  }
+
+  private void send(@NotNull Webhook webhook, @NotNull List<PendingStatus> batch) {
+    List<String> statuses = new ArrayList<String>(batch.size());
+    for (PendingStatus status : batch) {
+      statuses.add(status.myJson);
+    }
+    int maxAttempts = Math.max(1, TeamCityProperties.getInteger(MAX_ATTEMPTS_PROPERTY, 3));
+    long delay = INITIAL_RETRY_DELAY_MS;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        mySender.send(webhook.myUrl, webhook.myToken, statuses);
+        for (PendingStatus status : batch) {
+          status.complete();
+        }
+        return;
+      } catch (Exception e) {
+        boolean retryable = !(e instanceof RejectedBatchException);
+        if (!retryable || attempt >= maxAttempts) {
+          LOG.debug("Batch of " + batch.size() + " statuses is not sent to " + webhook.myUrl + " after " + attempt + " attempt(s)", e);
+          for (PendingStatus status : batch) {
+            status.fail(e);
+          }
+          return;
+        }
+        LOG.debug("Attempt " + attempt + " to send a batch of " + batch.size() + " statuses to " + webhook.myUrl + " has failed, retrying in " + delay + " ms: " + e);
+      }
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (PendingStatus status : batch) {
+          status.fail(e);
+        }
+        return;
+      }
+      delay *= 2;
+    }
+  }
+
+  private static long getWindowMs() {
+    return TeamCityProperties.getLong(WINDOW_PROPERTY, 1000);
+  }
+
+  interface BatchSender {
+    /**
+     * Sends statuses in one request
+     * @throws RejectedBatchException if retrying the same batch makes no sense
+     */
+    void send(@NotNull String url, @Nullable String token, @NotNull List<String> statuses) throws Exception;
+  }
+
+  /**
+   * The webhook has rejected a batch, e.g. because of wrong credentials or malformed statuses
+   */
+  static class RejectedBatchException extends Exception {
+    RejectedBatchException(@NotNull String message) {
+      super(message);
+    }
+  }
+
+  private static class Webhook {
+    private final String myUrl;
+    private final String myToken;
+    private final ArrayDeque<PendingStatus> myQueue = new ArrayDeque<PendingStatus>(); // guarded by this
+    private boolean myFlushScheduled; // guarded by this
+    private ScheduledFuture<?> myWindow; // guarded by this
+
+    Webhook(@NotNull String url, @Nullable String token) {
+      myUrl = url;
+      myToken = token;
+    }
+
+    /**
+     * Takes statuses from the queue up to the maximum size of a batch, the first one is always taken
+     */
+    @NotNull
+    List<PendingStatus> takeBatch() {
+      int maxSize = Math.max(1, TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, 500));
+      int maxBytes = TeamCityProperties.getInteger(MAX_BYTES_PROPERTY, 1024 * 1024);
+      List<PendingStatus> batch = new ArrayList<PendingStatus>();
+      int bytes = 0;
+      while (!myQueue.isEmpty() && batch.size() < maxSize) {
+        PendingStatus next = myQueue.peek();
+        if (!batch.isEmpty() && bytes + next.myJson.length() > maxBytes)
+          break;
+        bytes += next.myJson.length();
+        batch.add(myQueue.poll());
+      }
+      return batch;
+    }
+
+    boolean isBatchFull() {
+      return myQueue.size() >= Math.max(1, TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, 500));
+    }
+  }
+
+  static class PendingStatus {
+    private final String myUrl;
+    private final String myJson;
+    private final CompletableFuture<Void> myResult = new CompletableFuture<Void>();
+
+    PendingStatus(@NotNull String url, @NotNull String json) {
+      myUrl = url;
+      myJson = json;
+    }
+
+    void complete() {
+      myResult.complete(null);
+    }
+
+    void fail(@NotNull Exception error) {
+      myResult.completeExceptionally(error);
+    }
+
+    /**
+     * Registers an action called when the batch with the status is not sent, the action is called
+     * by the thread sending the batch, or right away if the batch has already failed
+     */
+    void onFailure(@NotNull Consumer<PublisherException> action) {
+      myResult.whenComplete((r, error) -> {
+        if (error != null)
+          action.accept(toPublisherException(error));
+      });
+    }
+
+    /**
+     * Waits until the batch with the status is sent
+     * @throws PublisherException if the webhook has not accepted the batch
+     */
+    void await() throws PublisherException {
+      try {
+        myResult.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PublisherException("Interrupted while waiting for the webhook " + myUrl, e);
+      } catch (ExecutionException e) {
+        throw toPublisherException(e.getCause());
+      }
+    }
+
+    @NotNull
+    private PublisherException toPublisherException(@NotNull Throwable error) {
+      String message = error instanceof RejectedBatchException ? error.getMessage() : "Webhook request to " + myUrl + " has failed: " + error;
+      return new PublisherException(message, error);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package jetbrains.buildServer.commitPublisher.webhook;
+
+import com.google.gson.Gson;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.impl.LogUtil;
+import jetbrains.buildServer.users.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+class WebhookPublisher extends BaseCommitStatusPublisher {
+
+  private static final Gson GSON = new Gson();
+
+  private final WebhookBatcher myBatcher;
+  private final WebLinks myLinks;
+
+  WebhookPublisher(@NotNull CommitStatusPublisherSettings settings,
+                   @NotNull SBuildType buildType, @NotNull String buildFeatureId,
+                   @NotNull WebhookBatcher batcher, @NotNull WebLinks links,
+                   @NotNull Map<String, String> params,
+                   @NotNull CommitStatusPublisherProblems problems) {
+    super(settings, buildType, buildFeatureId, params, problems);
+    myBatcher = batcher;
+    myLinks = links;
+  }
+
+  @NotNull
+  @Override
+  public String getId() {
+    return Constants.WEBHOOK_PUBLISHER_ID;
+  }
+
+  @NotNull
+  @Override
+  public String toString() {
+    return "webhook";
+  }
+
+  @Override
+  public boolean buildQueued(@NotNull SQueuedBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(build, revision, Event.QUEUED, "pending", "Build queued");
+    return true;
+  }
+
+  @Override
+  public boolean buildRemovedFromQueue(@NotNull SQueuedBuild build, @NotNull BuildRevision revision, @Nullable User user, @Nullable String comment) throws PublisherException {
+    publish(build, revision, Event.REMOVED_FROM_QUEUE, "canceled", "Build canceled");
+    return true;
+  }
+
+  @Override
+  public boolean buildStarted(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(build, revision, Event.STARTED, "running", "Build started");
+    return true;
+  }
+
+  @Override
+  public boolean buildFinished(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(build, revision, Event.FINISHED, build.getBuildStatus().isSuccessful() ? "success" : "failure", build.getStatusDescriptor().getText());
+    return true;
+  }
+
+  @Override
+  public boolean buildFailureDetected(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(build, revision, Event.FAILURE_DETECTED, "failure", build.getStatusDescriptor().getText());
+    return true;
+  }
+
+  @Override
+  public boolean buildMarkedAsSuccessful(@NotNull SBuild build, @NotNull BuildRevision revision, boolean buildInProgress) throws PublisherException {
+    publish(build, revision, Event.MARKED_AS_SUCCESSFUL, buildInProgress ? "running" : "success", "Build marked as successful");
+    return true;
+  }
+
+  @Override
+  public boolean buildInterrupted(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+    publish(build, revision, Event.INTERRUPTED, "canceled", build.getStatusDescriptor().getText());
+    return true;
+  }
+
+  private void publish(@NotNull SBuild build, @NotNull BuildRevision revision, @NotNull Event event,
+                       @NotNull String state, @NotNull String description) throws PublisherException {
+    Map<String, Object> status = createStatus(revision, event, state, myLinks.getViewResultsUrl(build), description, build.getBuildPromotion().getId());
+    status.put("buildId", build.getBuildId());
+    status.put("buildNumber", build.getBuildNumber());
+    submit(status, LogUtil.describe(build));
+  }
+
+  private void publish(@NotNull SQueuedBuild build, @NotNull BuildRevision revision, @NotNull Event event,
+                       @NotNull String state, @NotNull String description) throws PublisherException {
+    Map<String, Object> status = createStatus(revision, event, state, myLinks.getQueuedBuildUrl(build), description, build.getBuildPromotion().getId());
+    submit(status, LogUtil.describe(build));
+  }
+
+  @NotNull
+  private Map<String, Object> createStatus(@NotNull BuildRevision revision, @NotNull Event event, @NotNull String state,
+                                           @NotNull String url, @NotNull String description, long promotionId) {
+    Map<String, Object> status = new LinkedHashMap<String, Object>();
+    status.put("event", event.getName());
+    status.put("state", state);
+    status.put("buildTypeId", myBuildType.getExternalId());
+    status.put("buildTypeName", myBuildType.getFullName());
+    status.put("promotionId", promotionId);
+    status.put("vcsRootUrl", revision.getRoot().getProperty(Constants.GIT_URL_PARAMETER));
+    status.put("branch", revision.getRepositoryVersion().getVcsBranch());
+    status.put("commit", revision.getRevision());
+    status.put("url", url);
+    status.put("description", description);
+    status.put("timestamp", System.currentTimeMillis());
+    return status;
+  }
+
+  /**
+   * Queues the status without waiting for its batch, failures of the batch are reported as problems of the publisher
+   */
+  private void submit(@NotNull Map<String, Object> status, @NotNull String buildDescription) throws PublisherException {
+    String url = myParams.get(Constants.WEBHOOK_URL);
+    if (url == null || url.isEmpty())
+      throw new PublisherException("Missing webhook URL parameter");
+    myBatcher.submit(url, myParams.get(Constants.WEBHOOK_TOKEN), GSON.toJson(status))
+             .onFailure(e -> myProblems.reportProblem("Commit Status Publisher has failed to send a status to the webhook", this, buildDescription, url, e, LOG));
+  }
+}
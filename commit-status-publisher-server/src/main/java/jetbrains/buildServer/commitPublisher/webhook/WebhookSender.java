@@ -0,0 +1,231 @@
+package jetbrains.buildServer.commitPublisher.webhook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import jetbrains.buildServer.commitPublisher.BaseCommitStatusPublisher;
+import jetbrains.buildServer.commitPublisher.Constants;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.IOGuard;
+import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.CommitStatusPublisher.LOG;
+
+/**
+ * Posts a batch of statuses as a gzipped JSON array.
+ *
+ * The request body is built from the already serialized statuses, so a batch is serialized once however many times it is retried.
+ * Apache HttpClient is used directly since the request builder of the server only posts string entities.
+ */
+class WebhookSender implements WebhookBatcher.BatchSender {
+
+  private final SSLTrustStoreProvider myTrustStoreProvider;
+  private final PublishingMetrics myMetrics;
+  private volatile ClientHolder myClient;
+
+  WebhookSender(@NotNull SSLTrustStoreProvider trustStoreProvider, @NotNull PublishingMetrics metrics) {
+    myTrustStoreProvider = trustStoreProvider;
+    myMetrics = metrics;
+  }
+
+  @Override
+  public void send(@NotNull String url, @Nullable String token, @NotNull List<String> statuses) throws Exception {
+    HttpPost post = new HttpPost(url);
+    post.setConfig(RequestConfig.custom()
+                                .setConnectTimeout(BaseCommitStatusPublisher.DEFAULT_CONNECTION_TIMEOUT)
+                                .setSocketTimeout(BaseCommitStatusPublisher.DEFAULT_CONNECTION_TIMEOUT)
+                                .build());
+    post.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    if (token != null)
+      post.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    post.setEntity(new ByteArrayEntity(gzip(statuses), ContentType.APPLICATION_JSON));
+
+    AtomicReference<String> status = new AtomicReference<String>(PublishingMetrics.ERROR_STATUS);
+    long start = System.currentTimeMillis();
+    ClientHolder client = acquireClient();
+    try {
+      IOGuard.allowNetworkCall(() -> {
+        try (CloseableHttpResponse response = client.myClient.execute(post)) {
+          int code = response.getStatusLine().getStatusCode();
+          status.set(String.valueOf(code));
+          String content = response.getEntity() == null ? null : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+          if (code >= 200 && code < 300)
+            return;
+          String message = "Webhook " + url + " has responded with " + response.getStatusLine() + (content == null || content.isEmpty() ? "" : ": " + content);
+          if (code == 408 || code == 429 || code >= 500)
+            throw new IOException(message);
+          throw new WebhookBatcher.RejectedBatchException(message);
+        }
+      });
+    } finally {
+      client.release();
+      myMetrics.requestCompleted(Constants.WEBHOOK_PUBLISHER_ID, url, status.get(), System.currentTimeMillis() - start);
+    }
+  }
+
+  @NotNull
+  static byte[] gzip(@NotNull List<String> statuses) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write('[');
+      for (int i = 0; i < statuses.size(); i++) {
+        if (i > 0)
+          out.write(',');
+        out.write(statuses.get(i).getBytes(StandardCharsets.UTF_8));
+      }
+      out.write(']');
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return a client trusting the certificates uploaded to the server, the caller must release it when its request is done.
+   * The client is recreated when the certificates change, the previous one is closed once requests of other webhooks
+   * which still use it are done.
+   */
+  @NotNull
+  private ClientHolder acquireClient() throws GeneralSecurityException {
+    while (true) {
+      KeyStore trustStore = myTrustStoreProvider.getTrustStore();
+      ClientHolder holder = myClient;
+      if (holder == null || holder.myTrustStore != trustStore) {
+        synchronized (this) {
+          holder = myClient;
+          if (holder == null || holder.myTrustStore != trustStore) {
+            if (holder != null)
+              holder.retire();
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{new CompositeTrustManager(trustStore)}, null);
+            holder = new ClientHolder(trustStore, HttpClients.custom().setSSLContext(sslContext).useSystemProperties().build());
+            myClient = holder;
+          }
+        }
+      }
+      // the client could be retired by a concurrent request after it was read, then the new one is used
+      if (holder.acquire())
+        return holder;
+    }
+  }
+
+  private static class ClientHolder {
+    private final KeyStore myTrustStore;
+    private final CloseableHttpClient myClient;
+    private int myRequests; // guarded by this
+    private boolean myRetired; // guarded by this
+
+    ClientHolder(@Nullable KeyStore trustStore, @NotNull CloseableHttpClient client) {
+      myTrustStore = trustStore;
+      myClient = client;
+    }
+
+    synchronized boolean acquire() {
+      if (myRetired)
+        return false;
+      myRequests++;
+      return true;
+    }
+
+    void release() {
+      boolean close;
+      synchronized (this) {
+        myRequests--;
+        close = myRetired && myRequests == 0;
+      }
+      if (close)
+        close();
+    }
+
+    void retire() {
+      boolean close;
+      synchronized (this) {
+        myRetired = true;
+        close = myRequests == 0;
+      }
+      if (close)
+        close();
+    }
+
+    private void close() {
+      try {
+        myClient.close();
+      } catch (IOException e) {
+        LOG.debug("Failed to close webhook HTTP client", e);
+      }
+    }
+  }
+
+  /**
+   * Trusts certificates of the server trust store and of the JVM default one
+   */
+  private static class CompositeTrustManager implements X509TrustManager {
+    private final List<X509TrustManager> myManagers = new ArrayList<X509TrustManager>();
+
+    CompositeTrustManager(@Nullable KeyStore trustStore) throws GeneralSecurityException {
+      if (trustStore != null)
+        addManagers(trustStore);
+      addManagers(null);
+    }
+
+    private void addManagers(@Nullable KeyStore trustStore) throws GeneralSecurityException {
+      TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      factory.init(trustStore);
+      for (TrustManager manager : factory.getTrustManagers()) {
+        if (manager instanceof X509TrustManager)
+          myManagers.add((X509TrustManager)manager);
+      }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      throw new CertificateException("Client certificates are not checked");
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      CertificateException error = null;
+      for (X509TrustManager manager : myManagers) {
+        try {
+          manager.checkServerTrusted(chain, authType);
+          return;
+        } catch (CertificateException e) {
+          error = e;
+        }
+      }
+      throw error != null ? error : new CertificateException("No trust managers");
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+      List<X509Certificate> result = new ArrayList<X509Certificate>();
+      for (X509TrustManager manager : myManagers) {
+        for (X509Certificate issuer : manager.getAcceptedIssuers()) {
+          result.add(issuer);
+        }
+      }
+      return result.toArray(new X509Certificate[0]);
+    }
+  }
+}
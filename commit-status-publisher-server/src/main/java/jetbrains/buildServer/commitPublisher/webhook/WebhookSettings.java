@@ -0,0 +1,103 @@
+package jetbrains.buildServer.commitPublisher.webhook;
+
+import java.util.*;
+import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.util.WebUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Publisher posting statuses as JSON to an arbitrary URL, e.g. of a service aggregating build statuses.
+ *
+ * Statuses are sent in batches, see {@link WebhookBatcher} for how batches are formed and retried.
+ */
+public class WebhookSettings extends BasePublisherSettings implements CommitStatusPublisherSettings {
+
+  private static final Set<Event> mySupportedEvents = new HashSet<Event>() {{
+    add(Event.STARTED);
+    add(Event.FINISHED);
+    add(Event.MARKED_AS_SUCCESSFUL);
+    add(Event.INTERRUPTED);
+    add(Event.FAILURE_DETECTED);
+  }};
+
+  private static final Set<Event> mySupportedEventsWithQueued = new HashSet<Event>() {{
+    add(Event.QUEUED);
+    add(Event.REMOVED_FROM_QUEUE);
+    addAll(mySupportedEvents);
+  }};
+
+  private final WebhookBatcher myBatcher;
+
+  public WebhookSettings(@NotNull ExecutorServices executorServices,
+                         @NotNull PluginDescriptor descriptor,
+                         @NotNull WebLinks links,
+                         @NotNull CommitStatusPublisherProblems problems,
+                         @NotNull SSLTrustStoreProvider trustStoreProvider,
+                         @NotNull PublishingMetrics metrics) {
+    super(executorServices, descriptor, links, problems, trustStoreProvider);
+    myBatcher = new WebhookBatcher(executorServices.getNormalExecutorService(), executorServices.getLowPriorityExecutorService(),
+                                   new WebhookSender(trustStoreProvider, metrics));
+  }
+
+  @NotNull
+  @Override
+  public String getId() {
+    return Constants.WEBHOOK_PUBLISHER_ID;
+  }
+
+  @NotNull
+  @Override
+  public String getName() {
+    return "Webhook";
+  }
+
+  @Nullable
+  @Override
+  public String getEditSettingsUrl() {
+    return "webhook/webhookSettings.jsp";
+  }
+
+  @NotNull
+  @Override
+  public WebhookPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
+    return new WebhookPublisher(this, buildType, buildFeatureId, myBatcher, myLinks, params, myProblems);
+  }
+
+  @NotNull
+  @Override
+  public String describeParameters(@NotNull Map<String, String> params) {
+    String result = super.describeParameters(params);
+    String url = params.get(Constants.WEBHOOK_URL);
+    if (url != null)
+      result += " " + WebUtil.escapeXml(url);
+    return result;
+  }
+
+  @Nullable
+  @Override
+  public PropertiesProcessor getParametersProcessor() {
+    return new PropertiesProcessor() {
+      public Collection<InvalidProperty> process(Map<String, String> params) {
+        List<InvalidProperty> errors = new ArrayList<InvalidProperty>();
+        String url = params.get(Constants.WEBHOOK_URL);
+        if (url == null || url.trim().isEmpty())
+          errors.add(new InvalidProperty(Constants.WEBHOOK_URL, "Webhook URL must be specified"));
+        else if (!url.startsWith("http://") && !url.startsWith("https://"))
+          errors.add(new InvalidProperty(Constants.WEBHOOK_URL, "Webhook URL must start with http:// or https://"));
+        return errors;
+      }
+    };
+  }
+
+  @Override
+  protected Set<Event> getSupportedEvents(final SBuildType buildType, final Map<String, String> params) {
+    return isBuildQueuedSupported(buildType, params) ? mySupportedEventsWithQueued : mySupportedEvents;
+  }
+}
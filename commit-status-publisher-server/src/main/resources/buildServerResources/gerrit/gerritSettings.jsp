@@ -11,7 +11,7 @@
     <th><label for="${keys.gerritServer}">Gerrit Server:<l:star/></label></th>
     <td>
       <props:textProperty name="${keys.gerritServer}" className="longField"/>
-      <span class="smallNote">Format: <strong>&lt;host&gt;[:&lt;port&gt;]</strong></span>
+      <span class="smallNote">Format: <strong>&lt;host&gt;[:&lt;port&gt;]</strong> for SSH, <strong>http[s]://&lt;host&gt;[:&lt;port&gt;][/&lt;path&gt;]</strong> for HTTP</span>
       <span class="error" id="error_${keys.gerritServer}"></span>
     </td>
   </tr>
@@ -24,13 +24,30 @@
     </td>
   </tr>
 
-  <tr>
-    <th><label for="${keys.sshKey}">SSH Key:<l:star/></label></th>
-    <td>
-      <admin:sshKeys projectId="${projectId}"/>
-      <span class="error" id="error_${keys.sshKey}"></span>
-    </td>
-  </tr>
+  <props:selectSectionProperty name="${keys.gerritTransport}" title="Connection">
+
+    <props:selectSectionPropertyContent value="${keys.gerritTransportSsh}" caption="SSH">
+      <tr>
+        <th><label for="${keys.sshKey}">SSH Key:<l:star/></label></th>
+        <td>
+          <admin:sshKeys projectId="${projectId}"/>
+          <span class="error" id="error_${keys.sshKey}"></span>
+        </td>
+      </tr>
+    </props:selectSectionPropertyContent>
+
+    <props:selectSectionPropertyContent value="${keys.gerritTransportHttp}" caption="HTTP (REST API)">
+      <tr>
+        <th><label for="${keys.gerritHttpPassword}">HTTP Password:<l:star/></label></th>
+        <td>
+          <props:passwordProperty name="${keys.gerritHttpPassword}" className="mediumField"/>
+          <span class="error" id="error_${keys.gerritHttpPassword}"></span>
+          <span class="smallNote">HTTP password of the Gerrit user, see the user's HTTP Credentials settings in Gerrit</span>
+        </td>
+      </tr>
+    </props:selectSectionPropertyContent>
+
+  </props:selectSectionProperty>
 
   <tr>
     <th><label for="${keys.gerritProject}">Gerrit Project Name:<l:star/></label></th>
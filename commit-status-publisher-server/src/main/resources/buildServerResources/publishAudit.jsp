@@ -0,0 +1,35 @@
+<%@ include file="/include-internal.jsp" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="bs" tagdir="/WEB-INF/tags" %>
+<jsp:useBean id="records" type="java.util.List" scope="request"/>
+<c:choose>
+  <c:when test="${empty records}">
+    <p>No commit statuses were published for this build configuration recently.</p>
+  </c:when>
+  <c:otherwise>
+    <table class="settings">
+      <tr>
+        <th>Time</th>
+        <th>Build promotion id</th>
+        <th>Publisher</th>
+        <th>Revision</th>
+        <th>State</th>
+        <th>Outcome</th>
+        <th>Duration</th>
+        <th>Details</th>
+      </tr>
+      <c:forEach items="${records}" var="record">
+        <tr>
+          <td><bs:date value="${record.date}"/></td>
+          <td><c:out value="${record.promotionId}"/></td>
+          <td><c:out value="${record.publisher}"/></td>
+          <td><c:out value="${record.revision}"/></td>
+          <td><c:out value="${record.state}"/></td>
+          <td><c:out value="${record.outcome}"/></td>
+          <td><c:out value="${record.latencyMs}"/> ms</td>
+          <td><c:out value="${record.message}"/></td>
+        </tr>
+      </c:forEach>
+    </table>
+  </c:otherwise>
+</c:choose>
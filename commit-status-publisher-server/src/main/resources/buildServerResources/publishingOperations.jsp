@@ -0,0 +1,63 @@
+<%@ include file="/include-internal.jsp" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<jsp:useBean id="operationGroups" type="java.util.Map" scope="request"/>
+<jsp:useBean id="groupBy" type="java.lang.String" scope="request"/>
+<jsp:useBean id="cancelUrl" type="java.lang.String" scope="request"/>
+<script type="text/javascript">
+  CommitStatusPublishingOperations = {
+    cancel: function(operationId) {
+      BS.ajaxRequest(window['base_uri'] + '${cancelUrl}', {
+        parameters: {operationId: operationId},
+        onComplete: function() {
+          BS.reload(true);
+        }
+      });
+      return false;
+    }
+  };
+</script>
+<div>
+  Group by:
+  <c:url var="ungroupedUrl" value="/admin/admin.html"><c:param name="item" value="commitStatusPublisherOperations"/></c:url>
+  <c:choose><c:when test="${empty groupBy}"><strong>none</strong></c:when><c:otherwise><a href="${ungroupedUrl}">none</a></c:otherwise></c:choose>
+  <c:forEach items="${groupings}" var="grouping">
+    <c:url var="groupUrl" value="/admin/admin.html"><c:param name="item" value="commitStatusPublisherOperations"/><c:param name="groupBy" value="${grouping}"/></c:url>
+    | <c:choose><c:when test="${groupBy == grouping}"><strong><c:out value="${grouping}"/></strong></c:when><c:otherwise><a href="${groupUrl}"><c:out value="${grouping}"/></a></c:otherwise></c:choose>
+  </c:forEach>
+</div>
+<c:forEach items="${operationGroups}" var="group">
+  <c:if test="${not empty groupBy}">
+    <h3><c:out value="${empty group.key ? 'not started' : group.key}"/>: <c:out value="${fn:length(group.value)}"/></h3>
+  </c:if>
+  <c:choose>
+    <c:when test="${empty group.value}">
+      <p>No commit statuses are being published on this node.</p>
+    </c:when>
+    <c:otherwise>
+      <table class="settings">
+        <tr>
+          <th>Build</th>
+          <th>Event</th>
+          <th>State</th>
+          <th>Publisher</th>
+          <th>Destination</th>
+          <th>Age</th>
+          <th>In state</th>
+          <th></th>
+        </tr>
+        <c:forEach items="${group.value}" var="operation">
+          <tr>
+            <td><c:out value="${operation.buildDescription}"/></td>
+            <td><c:out value="${operation.event}"/></td>
+            <td><c:out value="${operation.state}"/><c:if test="${operation.cancelRequested}"> (cancel requested<c:if test="${operation.inFlight}">, in flight</c:if>)</c:if></td>
+            <td><c:out value="${operation.publisherType}"/></td>
+            <td><c:out value="${operation.destination}"/></td>
+            <td><c:out value="${operation.ageMs / 1000}"/> s</td>
+            <td><c:out value="${operation.stateAgeMs / 1000}"/> s</td>
+            <td><c:if test="${not operation.cancelRequested}"><a href="#" onclick="return CommitStatusPublishingOperations.cancel(${operation.id});">Cancel</a></c:if></td>
+          </tr>
+        </c:forEach>
+      </table>
+    </c:otherwise>
+  </c:choose>
+</c:forEach>
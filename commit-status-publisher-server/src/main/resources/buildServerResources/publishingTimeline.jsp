@@ -0,0 +1,30 @@
+<%@ include file="/include-internal.jsp" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="bs" tagdir="/WEB-INF/tags" %>
+<jsp:useBean id="timelineEntries" type="java.util.List" scope="request"/>
+<bs:_collapsibleBlock title="Commit statuses" id="commitStatusPublisherTimeline">
+  <table class="settings">
+    <tr>
+      <th>Time</th>
+      <th>Event</th>
+      <th>Feature</th>
+      <th>Revision</th>
+      <th>Destination</th>
+      <th>Queue wait</th>
+      <th>Publishing</th>
+      <th>Outcome</th>
+    </tr>
+    <c:forEach items="${timelineEntries}" var="entry">
+      <tr>
+        <td><bs:date value="${entry.date}"/></td>
+        <td><c:out value="${entry.event}"/></td>
+        <td><c:out value="${entry.featureId}"/></td>
+        <td><c:out value="${entry.revision}"/></td>
+        <td><c:out value="${entry.destination}"/></td>
+        <td><c:choose><c:when test="${entry.queueMs < 0}">unknown</c:when><c:otherwise><c:out value="${entry.queueMs}"/> ms</c:otherwise></c:choose></td>
+        <td><c:out value="${entry.networkMs}"/> ms</td>
+        <td><c:out value="${entry.outcome}"/></td>
+      </tr>
+    </c:forEach>
+  </table>
+</bs:_collapsibleBlock>
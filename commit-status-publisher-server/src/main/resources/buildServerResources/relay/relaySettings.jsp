@@ -0,0 +1,32 @@
+<%@ include file="/include-internal.jsp" %>
+<%@ taglib prefix="props" tagdir="/WEB-INF/tags/props" %>
+<%@ taglib prefix="l" tagdir="/WEB-INF/tags/layout" %>
+<jsp:useBean id="keys" class="jetbrains.buildServer.commitPublisher.Constants"/>
+    <tr>
+        <th><label for="${keys.relayProvider}">Code hosting:<l:star/></label></th>
+        <td>
+            <props:selectProperty name="${keys.relayProvider}" className="mediumField">
+                <props:option value="GITHUB">GitHub</props:option>
+                <props:option value="GITLAB">GitLab</props:option>
+                <props:option value="BITBUCKET_SERVER">Bitbucket Server</props:option>
+                <props:option value="BITBUCKET_CLOUD">Bitbucket Cloud</props:option>
+                <props:option value="AZURE_DEVOPS">Azure DevOps</props:option>
+            </props:selectProperty>
+            <span class="smallNote">
+                Statuses are written to the spool directory of the server and delivered by the commit status relay process,
+                access tokens are configured in the relay
+            </span>
+            <span class="error" id="error_${keys.relayProvider}"></span>
+        </td>
+    </tr>
+
+    <tr>
+        <th><label for="${keys.relayApiUrl}">API URL:</label></th>
+        <td>
+            <props:textProperty name="${keys.relayApiUrl}" className="longField"/>
+            <span class="smallNote">
+                Required for GitLab and Bitbucket Server, e.g. <strong>https://gitlab.example.com/api/v4</strong> or <strong>https://bitbucket.example.com</strong>
+            </span>
+            <span class="error" id="error_${keys.relayApiUrl}"></span>
+        </td>
+    </tr>
@@ -0,0 +1,22 @@
+<%@ page import="jetbrains.buildServer.web.openapi.healthStatus.HealthStatusItemDisplayMode" %>
+<%@include file="/include-internal.jsp"%>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions" %>
+
+<jsp:useBean id="healthStatusItem" type="jetbrains.buildServer.serverSide.healthStatus.HealthStatusItem" scope="request"/>
+<jsp:useBean id="showMode" type="jetbrains.buildServer.web.openapi.healthStatus.HealthStatusItemDisplayMode" scope="request"/>
+<jsp:useBean id="healthStatusReportUrl" type="java.lang.String" scope="request"/>
+<c:set var="inplaceMode" value="<%=HealthStatusItemDisplayMode.IN_PLACE%>"/>
+<c:set var="cameFromUrl" value="${showMode eq inplaceMode ? pageUrl : healthStatusReportUrl}"/>
+<c:set var="buildType" value="${healthStatusItem.additionalData['buildType']}"/>
+<c:set var="problems" value="${healthStatusItem.additionalData['problems']}"/>
+<div>
+  Commit Status Publisher in <admin:editBuildTypeLinkFull buildType="${buildType}" cameFromUrl="${cameFromUrl}"/> Build Configuration
+  does not keep up with build events:
+  <ul>
+    <c:forEach items="${problems}" var="problem">
+      <li><c:out value="${problem}"/></li>
+    </c:forEach>
+  </ul>
+  Check the availability of the VCS hosting and the publishing metrics of the server.
+</div>
@@ -0,0 +1,25 @@
+<%@ include file="/include-internal.jsp" %>
+<%@ taglib prefix="props" tagdir="/WEB-INF/tags/props" %>
+<%@ taglib prefix="l" tagdir="/WEB-INF/tags/layout" %>
+<jsp:useBean id="keys" class="jetbrains.buildServer.commitPublisher.Constants"/>
+    <tr>
+        <th><label for="${keys.webhookUrl}">Webhook URL:<l:star/></label></th>
+        <td>
+            <props:textProperty name="${keys.webhookUrl}" className="longField"/>
+            <span class="smallNote">
+                Statuses are posted to the URL in batches as a gzipped JSON array
+            </span>
+            <span class="error" id="error_${keys.webhookUrl}"></span>
+        </td>
+    </tr>
+
+    <tr>
+        <th><label for="${keys.webhookToken}">Token:</label></th>
+        <td>
+            <props:passwordProperty name="${keys.webhookToken}" className="mediumField"/>
+            <span class="smallNote">
+                Sent in the <strong>Authorization: Bearer</strong> header if specified
+            </span>
+            <span class="error" id="error_${keys.webhookToken}"></span>
+        </td>
+    </tr>
@@ -0,0 +1,82 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class BuildEventTrackerTest extends BaseServerTestCase {
+
+  private AtomicInteger myRunningBuilds;
+  private BuildEventTracker myTracker;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRunningBuilds = new AtomicInteger();
+    myTracker = new BuildEventTracker(myRunningBuilds::get);
+  }
+
+  public void should_skip_first_event_after_consequent_one() {
+    then(myTracker.recordEvent(1, Event.STARTED)).isTrue();
+    then(myTracker.recordEvent(1, Event.FINISHED)).isTrue();
+    then(myTracker.recordEvent(1, Event.STARTED)).isFalse();
+    then(myTracker.recordEvent(2, Event.STARTED)).isTrue();
+    then(myTracker.getLastEvent(1)).isEqualTo(Event.FINISHED);
+    then(myTracker.getSkippedCount()).isEqualTo(1);
+  }
+
+  public void should_expire_events_of_finished_builds() {
+    setInternalProperty(BuildEventTracker.TTL_PROPERTY, "10");
+    myTracker.recordEvent(1, Event.FINISHED);
+    long now = System.currentTimeMillis();
+
+    myTracker.cleanup(now + TimeUnit.MINUTES.toMillis(5));
+    then(myTracker.size()).isEqualTo(1);
+
+    myTracker.cleanup(now + TimeUnit.MINUTES.toMillis(11));
+    then(myTracker.size()).isEqualTo(0);
+    then(myTracker.getExpiredCount()).isEqualTo(1);
+    then(myTracker.getEvictedCount()).isEqualTo(0);
+    then(myTracker.recordEvent(1, Event.STARTED)).isTrue();
+  }
+
+  public void should_size_capacity_by_running_builds() throws Exception {
+    setInternalProperty(BuildEventTracker.MIN_CAPACITY_PROPERTY, "2");
+    setInternalProperty(BuildEventTracker.CAPACITY_PER_RUNNING_BUILD_PROPERTY, "2");
+    for (long buildId = 1; buildId <= 4; buildId++) {
+      myTracker.recordEvent(buildId, Event.FINISHED);
+      Thread.sleep(2);
+    }
+
+    myRunningBuilds.set(2);
+    myTracker.cleanup();
+    then(myTracker.size()).isEqualTo(4);
+
+    myRunningBuilds.set(0);
+    myTracker.cleanup();
+    then(myTracker.size()).isEqualTo(2);
+    then(myTracker.getEvictedCount()).isEqualTo(2);
+    then(myTracker.getLastEvent(1)).isNull();
+    then(myTracker.getLastEvent(2)).isNull();
+    then(myTracker.getLastEvent(4)).isEqualTo(Event.FINISHED);
+  }
+
+  public void should_export_counters() {
+    PublishingMetrics metrics = new PublishingMetrics();
+    myTracker.registerCounters(metrics);
+    myTracker.recordEvent(1, Event.FINISHED);
+    myTracker.recordEvent(1, Event.STARTED);
+    then(metrics.getCounters()).containsEntry("late_first_events_skipped", 1L)
+                               .containsEntry("last_events_expired", 0L)
+                               .containsEntry("last_events_evicted", 0L);
+    then(metrics.toOpenMetrics()).contains("teamcity_commit_status_publisher_late_first_events_skipped_total 1\n");
+  }
+}
@@ -1,6 +1,7 @@
 package jetbrains.buildServer.commitPublisher;
 
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.executors.ExecutorServices;
@@ -37,7 +38,9 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     final PublisherManager myPublisherManager = new PublisherManager(myServer);
     final BuildHistory history = myFixture.getHistory();
     myListener = new CommitStatusPublisherListener(myFixture.getEventDispatcher(), myPublisherManager, history, myBuildsManager, myFixture.getBuildPromotionManager(), myProblems,
-                                                   myFixture.getServerResponsibility(), myFixture.getSingletonService(ExecutorServices.class), myMultiNodeTasks);
+                                                   myFixture.getServerResponsibility(), myFixture.getSingletonService(ExecutorServices.class), myMultiNodeTasks,
+                                                   new RepositoryRouteCache(), new PublishAuditLog(), new PublishingOperations(), new PublishingMetrics(),
+                                                   new PublishingEventRecorder(myFixture.getSingletonService(ExecutorServices.class), myFixture.getServerPaths()));
     myPublisher = new MockPublisher(myPublisherSettings, MockPublisherSettings.PUBLISHER_ID, myBuildType, myFeatureDescriptor.getId(),
                                     Collections.emptyMap(), myProblems, myLogger);
     myUser = myFixture.createUserAccount("newuser");
@@ -67,6 +70,19 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     then(myPublisher.getEventsReceived()).isEqualTo(Arrays.asList(Event.QUEUED, Event.STARTED, Event.FINISHED));
   }
 
+  public void should_publish_statuses_in_order_when_publishing_is_distributed() throws InterruptedException {
+    setInternalProperty(CommitStatusPublisherListener.DISTRIBUTED_PUBLISHING_PROPERTY_NAME, "true");
+    prepareVcs();
+    myPublisher.setEventToWait(Event.STARTED);
+    myBuildType.addToQueue("");
+    waitForTasksToFinish(Event.QUEUED);
+    SRunningBuild runningBuild = myFixture.flushQueueAndWait();
+    myFixture.finishBuild(runningBuild, false);
+    myPublisher.notifyWaitingEvent(Event.STARTED, 1000);
+    waitForTasksToFinish(Event.FINISHED);
+    then(myPublisher.getEventsReceived()).isEqualTo(Arrays.asList(Event.QUEUED, Event.STARTED, Event.FINISHED));
+  }
+
   public void should_not_accept_pending_after_finished() {
     prepareVcs();
     myBuildType.addToQueue("");
@@ -82,6 +98,29 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     then(myPublisher.getEventsReceived()).isEqualTo(eventsAfterFinished);  // no more events must arrive at the publisher
   }
 
+  public void should_not_publish_status_older_than_published_by_another_node() {
+    prepareVcs();
+    SRunningBuild runningBuild = myFixture.startBuild(myBuildType);
+    // a node with the clock ahead has published a later status of the build
+    long later = System.currentTimeMillis() + Dates.ONE_HOUR;
+    ((BuildPromotionEx)runningBuild.getBuildPromotion()).setAttribute(BuildTaskSequences.PUBLISHED_ATTRIBUTE_NAME, String.valueOf(later));
+    myListener.buildCommented(runningBuild, myUser, "comment");
+    waitForTasksToFinish(Event.COMMENTED);
+    then(myPublisher.getEventsReceived()).doesNotContain(Event.COMMENTED);
+  }
+
+  public void should_publish_status_after_status_submitted_by_node_with_clock_ahead() {
+    prepareVcs();
+    SRunningBuild runningBuild = myFixture.startBuild(myBuildType);
+    // a node with the clock ahead has submitted and published the previous status of the build
+    String ahead = String.valueOf(System.currentTimeMillis() + Dates.ONE_HOUR);
+    ((BuildPromotionEx)runningBuild.getBuildPromotion()).setAttribute(BuildTaskSequences.SUBMITTED_ATTRIBUTE_NAME, ahead);
+    ((BuildPromotionEx)runningBuild.getBuildPromotion()).setAttribute(BuildTaskSequences.PUBLISHED_ATTRIBUTE_NAME, ahead);
+    myFixture.finishBuild(runningBuild, false);
+    waitForTasksToFinish(Event.FINISHED);
+    then(myPublisher.getEventsReceived()).contains(Event.FINISHED);
+  }
+
   public void should_accept_pending_after_build_triggered_with_comment() {
     prepareVcs();
     BuildCustomizerFactory customizerFactory = myFixture.getSingletonService(BuildCustomizerFactory.class);
@@ -279,6 +318,36 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     then(problems.size()).isEqualTo(4); // Must be 4 in total, neither 1 nor 5
   }
 
+  public void should_save_timeline_of_all_revisions() {
+    prepareVcs("vcs1", "111", "rev1_2", SetVcsRootIdMode.DONT);
+    prepareVcs("vcs2", "222", "rev2_2", SetVcsRootIdMode.DONT);
+    SRunningBuild runningBuild = myFixture.startBuild(myBuildType);
+    myFixture.finishBuild(runningBuild, false);
+    waitForTasksToFinish(Event.FINISHED);
+    int finishedEntries = 0;
+    for (PublishingTimeline.Entry entry : PublishingTimeline.getEntries(runningBuild.getBuildPromotion())) {
+      if (Event.FINISHED.getName().equals(entry.getEvent()))
+        finishedEntries++;
+    }
+    then(finishedEntries).isEqualTo(2);
+  }
+
+  public void should_report_failures_of_different_roots_separately() {
+    prepareVcs("vcs1", "111", "rev1_2", SetVcsRootIdMode.DONT);
+    prepareVcs("vcs2", "222", "rev2_2", SetVcsRootIdMode.DONT);
+    SRunningBuild runningBuild = myFixture.startBuild(myBuildType);
+    myPublisher.shouldThrowException();
+    myFixture.finishBuild(runningBuild, false);
+    waitForTasksToFinish(Event.FINISHED);
+    Collection<SystemProblemEntry> problems = myProblemNotificationEngine.getProblems(myBuildType);
+    then(problems.size()).isEqualTo(2);
+    StringBuilder descriptions = new StringBuilder();
+    for (SystemProblemEntry problem : problems) {
+      descriptions.append(problem.getProblem().getDescription()).append('\n');
+    }
+    then(descriptions.toString()).contains("(vcs1)").contains("(vcs2)");
+  }
+
 
   public void should_not_publish_additional_status_if_marked_successful() {
     prepareVcs();
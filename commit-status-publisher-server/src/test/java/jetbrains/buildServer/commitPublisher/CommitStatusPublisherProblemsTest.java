@@ -5,6 +5,7 @@ import jetbrains.buildServer.serverSide.systemProblems.*;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
 import java.util.*;
 
 import static org.assertj.core.api.BDDAssertions.then;
@@ -65,4 +66,81 @@ public class CommitStatusPublisherProblemsTest extends BaseServerTestCase {
     then(remainingProblems.iterator().next().getProblem().getDescription()).contains(PUB1_P1);
   }
 
+  public void must_aggregate_repeated_problems() {
+    for (int i = 0; i < 5; i++) {
+      myProblems.reportProblem("Some problem description", myPublisher, "Build description", "http://server", new IOException("Connection refused"), myLogger);
+    }
+    Collection<SystemProblemEntry> problems = myProblemEngine.getProblems(myBuildType);
+    then(problems.size()).isEqualTo(1);
+    then(problems.iterator().next().getProblem().getDescription()).contains("Some problem description").contains("Connection refused");
+    then(myLogger.popLast()).startsWith("WARN: ").contains("Some problem description");
+    then(myLogger.isEmpty()).isTrue(); // repeated problems are not logged until the report interval passes
+  }
+
+  public void must_not_aggregate_problems_of_different_destinations_and_errors() {
+    myProblems.reportProblem("Some problem description", myPublisher, "Build description", "http://server1", new IOException("Connection refused"), myLogger);
+    myProblems.reportProblem("Some problem description", myPublisher, "Build description", "http://server2", new IOException("Connection refused"), myLogger);
+    myProblems.reportProblem("Some problem description", myPublisher, "Build description", "http://server1", new IllegalStateException("Bad state"), myLogger);
+    then(myProblemEngine.getProblems(myBuildType).size()).isEqualTo(3);
+  }
+
+  public void must_aggregate_problems_without_destination_by_error_message() {
+    for (int i = 0; i < 100; i++) {
+      myProblems.reportProblem("Some problem description", myPublisher, "Build description", null,
+                               new IOException("Failed to publish status for revision " + Integer.toHexString(i * 31337) + ", response code: 50" + i % 4), myLogger);
+    }
+    then(myProblemEngine.getProblems(myBuildType).size()).isEqualTo(1);
+
+    myProblems.reportProblem("Some problem description", myPublisher, "Build description", null, new IOException("Connection refused"), myLogger);
+    myProblems.reportProblem("Some problem description", myPublisher, "Build description", null, new IllegalStateException("Connection refused"), myLogger);
+    then(myProblemEngine.getProblems(myBuildType).size()).isEqualTo(3);
+  }
+
+  public void must_update_aggregated_problem_after_report_interval() {
+    setInternalProperty(CommitStatusPublisherProblems.REPORT_INTERVAL_PROPERTY, "0");
+    for (int i = 0; i < 3; i++) {
+      myProblems.reportProblem("Some problem description", myPublisher, "Build description", "http://server", null, myLogger);
+    }
+    Collection<SystemProblemEntry> problems = myProblemEngine.getProblems(myBuildType);
+    then(problems.size()).isEqualTo(1);
+    then(problems.iterator().next().getProblem().getDescription()).contains("Occurred 3 times");
+    then(myLogger.popLast()).startsWith("WARN: ").contains("Some problem description");
+  }
+
+  public void must_forget_build_types_without_problems() {
+    myProblems.reportProblem("Some problem description", myPublisher, "Build description", null, null, myLogger);
+    then(myProblems.getBuildTypesWithProblemsCount()).isEqualTo(1);
+    myProblems.clearProblem(myPublisher);
+    then(myProblems.getBuildTypesWithProblemsCount()).isEqualTo(1); // still counted within the report interval
+    myProblems.publishingSucceeded(myPublisher, System.currentTimeMillis() + 1);
+    then(myProblems.getBuildTypesWithProblemsCount()).isEqualTo(0);
+  }
+
+  public void must_keep_aggregating_problems_reported_after_clearing() {
+    for (int i = 0; i < 5; i++) {
+      myProblems.clearProblem(myPublisher);
+      myProblems.reportProblem("Some problem description", myPublisher, "Build description", "http://server", new IOException("Connection refused"), myLogger);
+      then(myProblemEngine.getProblems(myBuildType).size()).isEqualTo(1);
+    }
+    then(myLogger.popLast()).startsWith("WARN: ").contains("Some problem description");
+    then(myLogger.isEmpty()).isTrue(); // clearing doesn't reset the report interval
+
+    setInternalProperty(CommitStatusPublisherProblems.REPORT_INTERVAL_PROPERTY, "0");
+    myProblems.reportProblem("Some problem description", myPublisher, "Build description", "http://server", new IOException("Connection refused"), myLogger);
+    then(myLogger.popLast()).contains("4 similar errors were not logged");
+    then(myProblemEngine.getProblems(myBuildType).iterator().next().getProblem().getDescription()).contains("Occurred 6 times");
+  }
+
+  public void must_clear_problems_of_removed_build_type() {
+    CommitStatusPublisher publisher2 = new MockPublisher(myPublisherSettings, "PUBLISHER2", myBuildType, FEATURE_2,
+                                                         Collections.emptyMap(), myProblems, myLogger);
+    myProblems.reportProblem("First issue", myPublisher, "Build description", null, null, myLogger);
+    myProblems.reportProblem("Second issue", publisher2, "Build description", null, null, myLogger);
+    then(myProblemEngine.getProblems(myBuildType).size()).isEqualTo(2);
+
+    myProblems.clearProblems(myBuildType.getInternalId());
+    then(myProblemEngine.getProblems(myBuildType).size()).isEqualTo(0);
+    then(myProblems.getBuildTypesWithProblemsCount()).isEqualTo(0);
+  }
+
 }
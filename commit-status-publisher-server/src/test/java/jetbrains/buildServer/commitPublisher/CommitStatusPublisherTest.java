@@ -21,6 +21,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.testng.annotations.Test;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,6 +57,9 @@ public abstract class CommitStatusPublisherTest extends BaseServerTestCase {
   protected OAuthConnectionsManager myOAuthConnectionsManager;
   protected OAuthTokensStorage myOAuthTokenStorage;
   protected SSLTrustStoreProvider myTrustStoreProvider;
+  protected PublishedStateCache myPublishedStates;
+  protected PublishingMetrics myMetrics;
+  protected RepositoryRouteCache myRoutes;
 
 
   protected enum EventToTest {
@@ -91,6 +95,9 @@ public abstract class CommitStatusPublisherTest extends BaseServerTestCase {
     myProblemNotificationEngine = myFixture.getSingletonService(SystemProblemNotificationEngine.class);
     myProblems = new CommitStatusPublisherProblems(myProblemNotificationEngine);
     myBranch = null;
+    myPublishedStates = new PublishedStateCache();
+    myMetrics = new PublishingMetrics();
+    myRoutes = new RepositoryRouteCache();
     myOAuthConnectionsManager = new OAuthConnectionsManager(myServer, myWebLinks);
     myOAuthTokenStorage =  new OAuthTokensStorage(myFixture.getServerPaths(), myFixture.getSingletonService(ExecutorServices.class), myFixture.getEncryptionManager());
     myTrustStoreProvider = new SSLTrustStoreProvider() {
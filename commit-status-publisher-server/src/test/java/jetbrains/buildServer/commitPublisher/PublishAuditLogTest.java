@@ -0,0 +1,34 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishAuditLogTest {
+
+  public void should_return_records_of_build_type_most_recent_first() {
+    PublishAuditLog log = new PublishAuditLog(8);
+    log.record(1, "bt1", "githubStatusPublisher", "abc", "buildStarted", 10, PublishAuditLog.Outcome.PUBLISHED, null);
+    log.record(2, "bt2", "githubStatusPublisher", "def", "buildStarted", 20, PublishAuditLog.Outcome.FAILED, "Forbidden");
+    log.record(1, "bt1", "githubStatusPublisher", "abc", "buildFinished", 30, PublishAuditLog.Outcome.COALESCED, null);
+
+    List<PublishAuditLog.Record> records = log.getRecords("bt1");
+    then(records.stream().map(PublishAuditLog.Record::getState).collect(Collectors.toList())).containsExactly("buildFinished", "buildStarted");
+    then(records.get(0).getOutcome()).isEqualTo(PublishAuditLog.Outcome.COALESCED);
+    then(log.getRecords("bt2").get(0).getMessage()).isEqualTo("Forbidden");
+  }
+
+  public void should_keep_only_most_recent_records() {
+    PublishAuditLog log = new PublishAuditLog(4);
+    for (int i = 0; i < 10; i++) {
+      log.record(i, "bt1", "gerritStatusPublisher", null, "buildFinished", i, PublishAuditLog.Outcome.PUBLISHED, null);
+    }
+    then(log.getRecords("bt1").stream().map(PublishAuditLog.Record::getPromotionId).collect(Collectors.toList())).containsExactly(9L, 8L, 7L, 6L);
+
+    log.clear();
+    then(log.getRecords("bt1")).isEmpty();
+  }
+}
@@ -0,0 +1,43 @@
+package jetbrains.buildServer.commitPublisher;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishedStateCacheTest {
+
+  private static final String DESTINATION = "https://api.github.com/repos/owner/repo/statuses/abc|context";
+
+  private PublishedStateCache myCache;
+
+  @BeforeMethod
+  protected void setUp() {
+    myCache = new PublishedStateCache(100, 60);
+  }
+
+  public void should_skip_same_state() {
+    then(myCache.isPublished(DESTINATION, "{\"state\":\"success\"}")).isFalse();
+    myCache.published(DESTINATION, "{\"state\":\"success\"}");
+    then(myCache.isPublished(DESTINATION, "{\"state\":\"success\"}")).isTrue();
+    then(myCache.isPublished(DESTINATION, "{\"state\":\"success\"}")).isTrue();
+    then(myCache.getSavedRequestsCount()).isEqualTo(2);
+  }
+
+  public void should_publish_changed_state() {
+    myCache.published(DESTINATION, "{\"state\":\"pending\"}");
+    then(myCache.isPublished(DESTINATION, "{\"state\":\"success\"}")).isFalse();
+    myCache.published(DESTINATION, "{\"state\":\"success\"}");
+    // going back to the previous state is a change too
+    then(myCache.isPublished(DESTINATION, "{\"state\":\"pending\"}")).isFalse();
+    then(myCache.isPublished(DESTINATION + "2", "{\"state\":\"success\"}")).isFalse();
+    then(myCache.getSavedRequestsCount()).isEqualTo(0);
+  }
+
+  public void should_publish_again_after_failure() {
+    myCache.published(DESTINATION, "{\"state\":\"success\"}");
+    myCache.forget(DESTINATION);
+    then(myCache.isPublished(DESTINATION, "{\"state\":\"success\"}")).isFalse();
+  }
+}
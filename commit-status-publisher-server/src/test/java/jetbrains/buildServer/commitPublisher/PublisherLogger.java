@@ -16,6 +16,10 @@ class PublisherLogger extends Logger {
     return entries.pop();
   }
 
+  boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
   @Override
   public boolean isDebugEnabled() {
     return false;
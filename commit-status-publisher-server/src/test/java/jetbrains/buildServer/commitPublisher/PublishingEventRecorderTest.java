@@ -0,0 +1,121 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingEventRecorderTest extends CommitStatusPublisherTestBase {
+
+  private File myDir;
+  private PublishingEventRecorder myRecorder;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = createTempDir();
+    myRecorder = new PublishingEventRecorder(Runnable::run, myDir);
+  }
+
+  public void should_replace_identifiers_with_numbers() throws IOException {
+    List<String> github = Collections.singletonList("githubStatusPublisher");
+    myRecorder.record(Event.QUEUED, "bt10", 500, Collections.emptyList(), github, false);
+    myRecorder.record(Event.STARTED, "bt10", 500, Arrays.asList("abc", "def"), github, false);
+    myRecorder.record(Event.STARTED, "bt20", 700, Collections.singletonList("def"), Arrays.asList("gitlabStatusPublisher", "githubStatusPublisher"), false);
+    myRecorder.record(Event.FINISHED, "bt10", 500, Arrays.asList("abc", "def"), github, true);
+    myRecorder.stop();
+
+    List<RecordedEvent> events = readRecording();
+    then(events).hasSize(4);
+    then(events.get(0).getEvent()).isEqualTo(Event.QUEUED);
+    then(events.get(0).getRevisions()).isEmpty();
+    then(events.get(1).getBuildType()).isEqualTo(1);
+    then(events.get(1).getBuild()).isEqualTo(1);
+    then(events.get(1).getRevisions()).containsExactly(1, 2);
+    then(events.get(2).getBuildType()).isEqualTo(2);
+    then(events.get(2).getBuild()).isEqualTo(2);
+    then(events.get(2).getRevisions()).containsExactly(2);
+    then(events.get(2).getPublishers()).containsExactly("gitlabStatusPublisher", "githubStatusPublisher");
+    then(events.get(3).getBuild()).isEqualTo(1);
+    then(events.get(3).isFailed()).isTrue();
+    then(events.get(3).getOffsetMs()).isGreaterThanOrEqualTo(events.get(0).getOffsetMs());
+  }
+
+  public void should_stop_after_max_events() throws IOException {
+    setInternalProperty(PublishingEventRecorder.MAX_EVENTS_PROPERTY, "2");
+    for (int i = 0; i < 5; i++) {
+      myRecorder.record(Event.STARTED, "bt10", i, Collections.emptyList(), Collections.singletonList("githubStatusPublisher"), false);
+    }
+    then(readRecording()).hasSize(2);
+  }
+
+  public void should_write_events_in_background() throws IOException {
+    List<Runnable> writes = new ArrayList<Runnable>();
+    PublishingEventRecorder recorder = new PublishingEventRecorder(writes::add, myDir);
+    recorder.record(Event.STARTED, "bt10", 500, Collections.singletonList("abc"), Collections.singletonList("githubStatusPublisher"), false);
+    recorder.record(Event.FINISHED, "bt10", 500, Collections.singletonList("abc"), Collections.singletonList("githubStatusPublisher"), false);
+    then(myDir.listFiles()).isEmpty();
+    then(writes).hasSize(1);
+
+    writes.get(0).run();
+    recorder.stop();
+    List<RecordedEvent> events = readRecording();
+    then(events).hasSize(2);
+    then(events.get(0).getEvent()).isEqualTo(Event.STARTED);
+    then(events.get(1).getEvent()).isEqualTo(Event.FINISHED);
+  }
+
+  public void should_record_published_events_when_enabled() throws IOException {
+    new CommitStatusPublisherListener(myFixture.getEventDispatcher(), new PublisherManager(myServer), myFixture.getHistory(), myBuildsManager,
+                                      myFixture.getBuildPromotionManager(), myProblems, myFixture.getServerResponsibility(),
+                                      myFixture.getSingletonService(ExecutorServices.class), myMultiNodeTasks,
+                                      new RepositoryRouteCache(), new PublishAuditLog(), new PublishingOperations(), new PublishingMetrics(), myRecorder);
+    myFixture.finishBuild(myFixture.startBuild(myBuildType), false);
+    then(myDir.listFiles()).isEmpty();
+
+    setInternalProperty(PublishingEventRecorder.ENABLED_PROPERTY, "true");
+    myFixture.finishBuild(myFixture.startBuild(myBuildType), true);
+    setInternalProperty(PublishingEventRecorder.ENABLED_PROPERTY, "false");
+    myRecorder.stop();
+
+    List<RecordedEvent> events = readRecording();
+    then(events).isNotEmpty();
+    then(events.get(events.size() - 1).getEvent()).isEqualTo(Event.FINISHED);
+    then(events.get(events.size() - 1).isFailed()).isTrue();
+    then(events.get(events.size() - 1).getPublishers()).containsExactly(MockPublisherSettings.PUBLISHER_ID);
+  }
+
+  public void should_skip_malformed_lines() {
+    then(RecordedEvent.parse("# header")).isNull();
+    then(RecordedEvent.parse("10|UNKNOWN|1|1|||S")).isNull();
+    then(RecordedEvent.parse("10|STARTED|1|1|x||S")).isNull();
+    then(RecordedEvent.parse("10|STARTED|1|1|||S")).isNotNull();
+  }
+
+  private List<RecordedEvent> readRecording() throws IOException {
+    File[] files = myDir.listFiles();
+    then(files).hasSize(1);
+    List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(files[0])), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        RecordedEvent event = RecordedEvent.parse(line);
+        if (event != null)
+          result.add(event);
+      }
+    }
+    return result;
+  }
+}
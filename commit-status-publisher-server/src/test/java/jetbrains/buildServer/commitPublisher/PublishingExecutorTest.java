@@ -0,0 +1,117 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingExecutorTest extends BaseServerTestCase {
+
+  private ExecutorService myPlatformExecutor;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myPlatformExecutor = Executors.newFixedThreadPool(8);
+  }
+
+  @AfterMethod
+  @Override
+  protected void tearDown() throws Exception {
+    myPlatformExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void should_use_virtual_threads_when_jdk_supports_them() throws Exception {
+    PublishingExecutor executor = new PublishingExecutor(myPlatformExecutor);
+    try {
+      then(executor.isVirtualThreads()).isEqualTo(isVirtualThreadsSupported());
+      then(runInExecutor(executor)).isEqualTo(isVirtualThreadsSupported());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void should_use_platform_executor_when_virtual_threads_are_disabled() throws Exception {
+    setInternalProperty(PublishingExecutor.VIRTUAL_THREADS_PROPERTY, "false");
+    PublishingExecutor executor = new PublishingExecutor(myPlatformExecutor);
+    then(executor.isVirtualThreads()).isFalse();
+    then(runInExecutor(executor)).isFalse();
+  }
+
+  public void should_limit_running_tasks() throws Exception {
+    setInternalProperty(PublishingExecutor.MAX_RUNNING_TASKS_PROPERTY, "3");
+    PublishingExecutor executor = new PublishingExecutor(myPlatformExecutor);
+    try {
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      CountDownLatch finished = new CountDownLatch(200);
+      for (int i = 0; i < 200; i++) {
+        executor.execute(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException ignored) {
+          }
+          running.decrementAndGet();
+          finished.countDown();
+        });
+      }
+      then(finished.await(30, TimeUnit.SECONDS)).isTrue();
+      then(maxRunning.get()).isBetween(1, 3);
+      then(executor.getWaitingCount()).isZero();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void should_start_waiting_task_after_failed_one() throws Exception {
+    setInternalProperty(PublishingExecutor.MAX_RUNNING_TASKS_PROPERTY, "1");
+    PublishingExecutor executor = new PublishingExecutor(myPlatformExecutor);
+    try {
+      CountDownLatch finished = new CountDownLatch(1);
+      executor.execute(() -> {
+        throw new IllegalStateException("publishing failed");
+      });
+      executor.execute(finished::countDown);
+      then(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @return whether the task ran in a virtual thread
+   */
+  private static boolean runInExecutor(PublishingExecutor executor) throws Exception {
+    AtomicReference<Thread> thread = new AtomicReference<Thread>();
+    CountDownLatch finished = new CountDownLatch(1);
+    executor.execute(() -> {
+      thread.set(Thread.currentThread());
+      finished.countDown();
+    });
+    then(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    if (!isVirtualThreadsSupported())
+      return false;
+    return (Boolean)Thread.class.getMethod("isVirtual").invoke(thread.get());
+  }
+
+  private static boolean isVirtualThreadsSupported() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
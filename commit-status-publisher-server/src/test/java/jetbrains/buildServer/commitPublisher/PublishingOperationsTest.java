@@ -0,0 +1,62 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.List;
+import java.util.Map;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingOperationsTest {
+
+  public void should_group_operations() {
+    PublishingOperations operations = new PublishingOperations();
+    PublishingOperations.Operation op1 = operations.register(CommitStatusPublisher.Event.STARTED, "bt1", "build 1");
+    PublishingOperations.Operation op2 = operations.register(CommitStatusPublisher.Event.FINISHED, "bt1", "build 1");
+    PublishingOperations.Operation op3 = operations.register(CommitStatusPublisher.Event.STARTED, "bt2", "build 2");
+    op1.publishing("githubStatusPublisher", "github (repo1)");
+    op3.publishing("githubStatusPublisher", "github (repo2)");
+
+    Map<String, List<PublishingOperations.Operation>> byBuildType = operations.getGroupedOperations(PublishingOperations.Grouping.BUILD_TYPE);
+    then(byBuildType.keySet()).containsExactly("bt1", "bt2");
+    then(byBuildType.get("bt1")).containsExactly(op1, op2);
+
+    Map<String, List<PublishingOperations.Operation>> byPublisher = operations.getGroupedOperations(PublishingOperations.Grouping.PUBLISHER);
+    then(byPublisher.get("githubStatusPublisher")).containsExactly(op1, op3);
+    then(byPublisher.get("")).containsExactly(op2);
+
+    operations.unregister(op1);
+    then(operations.getOperations()).containsExactly(op2, op3);
+  }
+
+  public void should_not_interrupt_publishing_operation_on_cancel() {
+    PublishingOperations operations = new PublishingOperations();
+    PublishingOperations.Operation operation = operations.register(CommitStatusPublisher.Event.STARTED, "bt1", "build 1");
+    operation.waitingForLock();
+    operation.lockAcquired();
+    operation.publishing("githubStatusPublisher", "github (repo)");
+
+    then(operations.cancel(operation.getId())).isSameAs(operation);
+    then(operation.isCancelRequested()).isTrue();
+    then(operation.isInFlight()).isTrue();
+    then(Thread.interrupted()).isFalse();
+
+    operation.published();
+    then(operation.getState()).isEqualTo(PublishingOperations.State.HOLDING_LOCK);
+    then(operation.isInFlight()).isFalse();
+  }
+
+  public void should_cancel_queued_operation() {
+    PublishingOperations operations = new PublishingOperations();
+    PublishingOperations.Operation operation = operations.register(CommitStatusPublisher.Event.STARTED, "bt1", "build 1");
+    operation.waitingForLock();
+
+    then(operations.cancel(operation.getId())).isSameAs(operation);
+    then(operation.isCancelRequested()).isTrue();
+    then(operation.isInFlight()).isFalse();
+    then(Thread.interrupted()).isFalse();
+
+    operations.unregister(operation);
+    then(operations.cancel(operation.getId())).isNull();
+  }
+}
@@ -0,0 +1,39 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.List;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingTimelineTest {
+
+  public void should_restore_appended_entries() {
+    String timeline = PublishingTimeline.append(null, new PublishingTimeline.Entry(1000, "buildStarted", "BUILD_EXT_1", "abc", "github (repo)",
+                                                                                   -1, 120, PublishAuditLog.Outcome.PUBLISHED), 10);
+    timeline = PublishingTimeline.append(timeline, new PublishingTimeline.Entry(2000, "buildFinished", "BUILD_EXT_1", "abc", "github (a|b\nc)",
+                                                                                 350, 80, PublishAuditLog.Outcome.FAILED), 10);
+
+    List<PublishingTimeline.Entry> entries = PublishingTimeline.parse(timeline);
+    then(entries).hasSize(2);
+    then(entries.get(0).getEvent()).isEqualTo("buildStarted");
+    then(entries.get(0).getQueueMs()).isEqualTo(-1);
+    then(entries.get(1).getDate().getTime()).isEqualTo(2000);
+    then(entries.get(1).getDestination()).isEqualTo("github (a_b c)");
+    then(entries.get(1).getQueueMs()).isEqualTo(350);
+    then(entries.get(1).getNetworkMs()).isEqualTo(80);
+    then(entries.get(1).getOutcome()).isEqualTo(PublishAuditLog.Outcome.FAILED);
+  }
+
+  public void should_not_grow_beyond_max_entries() {
+    PublishingTimeline.Entry entry = new PublishingTimeline.Entry(1000, "buildStarted", "BUILD_EXT_1", null, null, 0, 0, PublishAuditLog.Outcome.PUBLISHED);
+    String timeline = PublishingTimeline.append(null, entry, 2);
+    timeline = PublishingTimeline.append(timeline, entry, 2);
+    then(PublishingTimeline.append(timeline, entry, 2)).isNull();
+    then(PublishingTimeline.parse(timeline)).hasSize(2);
+  }
+
+  public void should_skip_malformed_entries() {
+    then(PublishingTimeline.parse("garbage\n1000|buildStarted|f|r|d|0|0|UNKNOWN\n1000|buildStarted|f|r|d|0|5|SKIPPED")).hasSize(1);
+  }
+}
@@ -0,0 +1,55 @@
+package jetbrains.buildServer.commitPublisher;
+
+import jetbrains.buildServer.commitPublisher.metrics.LatencyHistogram;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingTraceTest {
+
+  private PublishingMetrics myMetrics;
+
+  @BeforeMethod
+  public void setUp() {
+    myMetrics = new PublishingMetrics();
+  }
+
+  public void should_carry_trace_through_task_argument() {
+    PublishingTrace trace = PublishingTrace.start(myMetrics, "bt1");
+    String argument = trace.toTaskArgument();
+
+    then(PublishingTrace.getBuildTypeId(argument)).isEqualTo("bt1");
+    then(PublishingTrace.fromTaskArgument(myMetrics, argument).getTraceId()).isEqualTo(trace.getTraceId());
+  }
+
+  public void should_accept_argument_without_trace() {
+    then(PublishingTrace.getBuildTypeId("bt1")).isEqualTo("bt1");
+    then(PublishingTrace.getBuildTypeId(null)).isNull();
+
+    PublishingTrace trace = PublishingTrace.fromTaskArgument(myMetrics, "bt1");
+    trace.stage(PublishingTrace.ACCEPT);
+    then(myMetrics.getStageHistogram(PublishingTrace.ACCEPT)).isNull();
+    trace.stage(PublishingTrace.QUEUE);
+    then(myMetrics.getStageHistogram(PublishingTrace.QUEUE).getCount()).isEqualTo(1);
+  }
+
+  public void should_record_stage_durations() {
+    PublishingTrace trace = PublishingTrace.fromTaskArgument(myMetrics, PublishingTrace.start(myMetrics, "bt1").toTaskArgument());
+    trace.stage(PublishingTrace.ACCEPT);
+    trace.stage(PublishingTrace.QUEUE);
+    trace.stage(PublishingTrace.LOCK);
+    trace.stage(PublishingTrace.PUBLISH, "githubStatusPublisher");
+    trace.stage(PublishingTrace.PUBLISH, "slackNotifier");
+
+    for (String stage : new String[]{PublishingTrace.ACCEPT, PublishingTrace.QUEUE, PublishingTrace.LOCK}) {
+      LatencyHistogram histogram = myMetrics.getStageHistogram(stage);
+      then(histogram).isNotNull();
+      then(histogram.getCount()).isEqualTo(1);
+    }
+    then(myMetrics.getStageHistogram(PublishingTrace.PUBLISH).getCount()).isEqualTo(2);
+    then(myMetrics.toOpenMetrics()).contains("teamcity_commit_status_publisher_stage_duration_seconds_count{stage=\"queue\"} 1");
+  }
+}
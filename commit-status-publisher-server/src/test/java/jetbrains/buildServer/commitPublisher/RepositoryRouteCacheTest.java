@@ -0,0 +1,92 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.vcs.impl.VcsRootImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SuppressWarnings("ConstantConditions")
+@Test
+public class RepositoryRouteCacheTest {
+
+  private static final String URL = "https://github.com/owner/repo.git";
+
+  private RepositoryRouteCache myCache;
+  private GitRepositoryParser myParser;
+  private AtomicInteger myParseCount;
+
+  @BeforeMethod
+  protected void setUp() {
+    myCache = new RepositoryRouteCache(100);
+    myParser = new GitRepositoryParser();
+    myParseCount = new AtomicInteger();
+  }
+
+  public void should_parse_url_once() throws PublisherException {
+    VcsRootImpl root = createRoot(1, URL);
+    for (int i = 0; i < 3; i++) {
+      RepositoryRouteCache.Route<Repository> route = getRoute(root, "http://server");
+      then(route.getRepository().owner()).isEqualTo("owner");
+      then(route.getRepository().repositoryName()).isEqualTo("repo");
+      then(route.getEndpointPrefix()).isEqualTo("http://server/owner/repo/");
+    }
+    then(myParseCount.get()).isEqualTo(1);
+  }
+
+  public void should_resolve_again_when_url_or_params_change() throws PublisherException {
+    VcsRootImpl root = createRoot(1, URL);
+    getRoute(root, "http://server");
+    then(getRoute(root, "http://other").getEndpointPrefix()).isEqualTo("http://other/owner/repo/");
+
+    root.addProperty("url", "https://github.com/owner/another.git");
+    then(getRoute(root, "http://server").getRepository().repositoryName()).isEqualTo("another");
+    then(myParseCount.get()).isEqualTo(3);
+  }
+
+  public void should_not_cache_unresolved_routes() throws PublisherException {
+    VcsRootImpl root = createRoot(1, "not a url");
+    then(getRoute(root, "http://server")).isNull();
+    then(getRoute(root, "http://server")).isNull();
+    then(myParseCount.get()).isEqualTo(2);
+    then(myCache.size()).isEqualTo(0);
+  }
+
+  public void should_invalidate_routes_of_vcs_root() throws PublisherException {
+    VcsRootImpl root1 = createRoot(1, URL);
+    VcsRootImpl root2 = createRoot(2, URL);
+    getRoute(root1, "http://server");
+    getRoute(root2, "http://server");
+    then(myCache.size()).isEqualTo(2);
+
+    myCache.invalidate(1);
+    then(myCache.size()).isEqualTo(1);
+
+    getRoute(root1, "http://server");
+    getRoute(root2, "http://server");
+    then(myParseCount.get()).isEqualTo(3);
+  }
+
+  public void should_be_bounded() throws PublisherException {
+    for (int i = 0; i < 500; i++) {
+      getRoute(createRoot(i, URL), "http://server");
+    }
+    then(myCache.size()).isLessThanOrEqualTo(100);
+  }
+
+  private RepositoryRouteCache.Route<Repository> getRoute(VcsRootImpl root, String serverUrl) throws PublisherException {
+    return myCache.getRoute("publisher", root, root.getProperty("url"), serverUrl,
+                            url -> {
+                              myParseCount.incrementAndGet();
+                              return myParser.parseRepositoryUrl(url);
+                            },
+                            repo -> serverUrl + "/" + repo.owner() + "/" + repo.repositoryName() + "/");
+  }
+
+  private static VcsRootImpl createRoot(long id, String url) {
+    VcsRootImpl root = new VcsRootImpl(id, "jetbrains.git");
+    root.addProperty("url", url);
+    return root;
+  }
+}
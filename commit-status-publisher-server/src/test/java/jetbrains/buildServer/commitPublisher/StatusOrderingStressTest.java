@@ -0,0 +1,253 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.messages.Status;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.users.User;
+import jetbrains.buildServer.vcs.SVcsRoot;
+import jetbrains.buildServer.vcs.VcsRoot;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Fires interleaved events of many builds at the listener from several threads while publishers sleep for random times,
+ * then checks that every commit got the statuses of every build in the order of the build events, so that the last status
+ * of a build comes from its last event. Statuses of different builds of a commit are not ordered by the listener.
+ *
+ * The test takes a while, so it is in the stress group which is run by the stressTest task rather than by the test task.
+ */
+@Test(groups = "stress")
+public class StatusOrderingStressTest extends CommitStatusPublisherTestBase {
+
+  private static final int BUILD_TYPES = 3;
+  private static final int BUILDS_PER_BUILD_TYPE = 8;
+  private static final int BUILDS_PER_REVISION = 3;
+  private static final int FIRING_THREADS = 6;
+  private static final long COMPLETION_TIMEOUT_MS = 60 * 1000;
+
+  private final Object myFiringLock = new Object();
+  private final AtomicLong myFiringOrder = new AtomicLong();
+  private final Map<String, Long> myFired = new ConcurrentHashMap<String, Long>();
+  private final Map<String, List<Long>> myPublished = new ConcurrentHashMap<String, List<Long>>();
+  private final Map<String, Long> myLastFired = new ConcurrentHashMap<String, Long>();
+  private List<SRunningBuild> myBuilds;
+  private CommitStatusPublisherListener myListener;
+  private PublishingOperations myOperations;
+  private long mySeed;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    OrderRecordingSettings settings = new OrderRecordingSettings();
+    myServer.registerExtension(CommitStatusPublisherSettings.class, OrderRecordingSettings.ID, settings);
+    myBuilds = new ArrayList<SRunningBuild>();
+    for (int i = 0; i < BUILD_TYPES; i++) {
+      SBuildType buildType = myProject.createBuildType("stress" + i, "Stress " + i);
+      SVcsRoot root1 = myFixture.addVcsRoot("jetbrains.git", "stress" + i + "_1", buildType);
+      SVcsRoot root2 = myFixture.addVcsRoot("jetbrains.git", "stress" + i + "_2", buildType);
+      buildType.addBuildFeature(CommitStatusPublisherFeature.TYPE, Collections.singletonMap(Constants.PUBLISHER_ID_PARAM, OrderRecordingSettings.ID));
+      buildType.addBuildFeature(CommitStatusPublisherFeature.TYPE, Collections.singletonMap(Constants.PUBLISHER_ID_PARAM, OrderRecordingSettings.ID));
+      for (int j = 0; j < BUILDS_PER_BUILD_TYPE; j++) {
+        // several builds of a build type share a commit, so their statuses compete for it
+        myCurrentVersions.put(root1.getName(), "rev" + i + "_" + j / BUILDS_PER_REVISION);
+        myCurrentVersions.put(root2.getName(), "rev" + i + "_" + j % 2);
+        SRunningBuild build = myFixture.startBuild(buildType);
+        myFixture.finishBuild(build, j % 3 == 0);
+        myBuilds.add(build);
+      }
+    }
+    // created after the builds are finished, so that it gets only the events fired by the test
+    myOperations = new PublishingOperations();
+    myListener = new CommitStatusPublisherListener(myFixture.getEventDispatcher(), new PublisherManager(myServer), myFixture.getHistory(), myBuildsManager,
+                                                   myFixture.getBuildPromotionManager(), myProblems, myFixture.getServerResponsibility(),
+                                                   myFixture.getSingletonService(ExecutorServices.class), myMultiNodeTasks,
+                                                   new RepositoryRouteCache(), new PublishAuditLog(), myOperations, new PublishingMetrics(),
+                                                   new PublishingEventRecorder(myFixture.getSingletonService(ExecutorServices.class), myFixture.getServerPaths()));
+    mySeed = System.nanoTime();
+  }
+
+  public void should_publish_statuses_of_every_build_in_order_of_events() throws Exception {
+    fireEvents();
+    checkOrdering();
+  }
+
+  public void should_publish_statuses_of_every_build_in_order_of_events_when_publishing_is_distributed() throws Exception {
+    setInternalProperty(CommitStatusPublisherListener.DISTRIBUTED_PUBLISHING_PROPERTY_NAME, "true");
+    fireEvents();
+    checkOrdering();
+  }
+
+  private void fireEvents() throws Exception {
+    List<SRunningBuild> builds = new ArrayList<SRunningBuild>(myBuilds);
+    Collections.shuffle(builds, new Random(mySeed));
+    ConcurrentLinkedQueue<SRunningBuild> pending = new ConcurrentLinkedQueue<SRunningBuild>(builds);
+    ExecutorService firing = Executors.newFixedThreadPool(FIRING_THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int i = 0; i < FIRING_THREADS; i++) {
+      Random random = new Random(mySeed + i);
+      futures.add(firing.submit(() -> {
+        start.await();
+        SRunningBuild build;
+        while ((build = pending.poll()) != null) {
+          fireBuildEvents(build, random);
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(COMPLETION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+    firing.shutdown();
+
+    Set<String> eventNames = Arrays.stream(Event.values()).map(Event::getName).collect(Collectors.toSet());
+    waitFor(() -> myMultiNodeTasks.findTasks(eventNames).isEmpty() && myOperations.getOperations().isEmpty(), COMPLETION_TIMEOUT_MS);
+  }
+
+  /**
+   * Fires events of a build in the order they happen to a real build, other threads fire events of other builds in between
+   */
+  private void fireBuildEvents(@NotNull SRunningBuild build, @NotNull Random random) throws InterruptedException {
+    fire(build, Event.STARTED, random, () -> myListener.changesLoaded(build));
+    if (build.getBuildStatus().isFailed())
+      fire(build, Event.FAILURE_DETECTED, random, () -> myListener.buildChangedStatus(build, Status.NORMAL, Status.FAILURE));
+    if (random.nextBoolean())
+      fire(build, Event.COMMENTED, random, () -> myListener.buildCommented(build, null, "comment"));
+    if (random.nextInt(4) == 0)
+      fire(build, Event.INTERRUPTED, random, () -> myListener.buildInterrupted(build));
+    else
+      fire(build, Event.FINISHED, random, () -> myListener.buildFinished(build));
+  }
+
+  private void fire(@NotNull SRunningBuild build, @NotNull Event event, @NotNull Random random, @NotNull Runnable listenerCall) throws InterruptedException {
+    Thread.sleep(random.nextInt(5));
+    // the listener numbers tasks on submission, firing under the lock makes its numbers follow the firing order
+    synchronized (myFiringLock) {
+      long order = myFiringOrder.incrementAndGet();
+      myFired.put(build.getBuildId() + ":" + event.getName(), order);
+      for (BuildRevision revision : build.getRevisions()) {
+        for (SBuildFeatureDescriptor feature : build.getBuildType().getBuildFeaturesOfType(CommitStatusPublisherFeature.TYPE)) {
+          myLastFired.merge(getCommit(build, feature.getId(), revision), order, Math::max);
+        }
+      }
+      listenerCall.run();
+    }
+  }
+
+  private void checkOrdering() {
+    String seed = "seed " + mySeed;
+    then(myLastFired).as(seed).isNotEmpty();
+    for (Map.Entry<String, Long> lastFired : myLastFired.entrySet()) {
+      String commit = lastFired.getKey();
+      List<Long> published = myPublished.get(commit);
+      then(published).as(seed + ", commit " + commit).isNotEmpty();
+      synchronized (published) {
+        for (int i = 1; i < published.size(); i++) {
+          then(published.get(i)).as(seed + ", commit " + commit + " got a status of an earlier event after a later one: " + published).isGreaterThan(published.get(i - 1));
+        }
+        then(published.get(published.size() - 1)).as(seed + ", last status of commit " + commit + ": " + published).isEqualTo(lastFired.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return key of the statuses of the build published to the commit by the feature
+   */
+  @NotNull
+  private static String getCommit(@NotNull SBuild build, @NotNull String featureId, @NotNull BuildRevision revision) {
+    return build.getBuildId() + "|" + featureId + "|" + revision.getRoot().getId() + "|" + revision.getRevision();
+  }
+
+  private class OrderRecordingSettings extends DummyPublisherSettings {
+    static final String ID = "orderRecordingPublisher";
+
+    @NotNull
+    @Override
+    public String getId() {
+      return ID;
+    }
+
+    @Override
+    public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
+      return new OrderRecordingPublisher(this, buildType, buildFeatureId, params);
+    }
+
+    @Override
+    public boolean isPublishingForVcsRoot(final VcsRoot vcsRoot) {
+      return vcsRoot.getVcsName().equals("jetbrains.git");
+    }
+
+    @Override
+    public boolean isEventSupported(final Event event, final SBuildType buildType, final Map<String, String> params) {
+      return true;
+    }
+  }
+
+  private class OrderRecordingPublisher extends BaseCommitStatusPublisher {
+
+    OrderRecordingPublisher(@NotNull CommitStatusPublisherSettings settings, @NotNull SBuildType buildType, @NotNull String buildFeatureId,
+                            @NotNull Map<String, String> params) {
+      super(settings, buildType, buildFeatureId, params, myProblems);
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return OrderRecordingSettings.ID;
+    }
+
+    private boolean publish(@NotNull SBuild build, @NotNull BuildRevision revision, @NotNull Event event) throws PublisherException {
+      try {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+      } catch (InterruptedException e) {
+        throw new PublisherException("Interrupted", e);
+      }
+      Long order = myFired.get(build.getBuildId() + ":" + event.getName());
+      if (order != null) {
+        List<Long> published = myPublished.computeIfAbsent(getCommit(build, getBuildFeatureId(), revision), k -> new ArrayList<Long>());
+        synchronized (published) {
+          published.add(order);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean buildStarted(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+      return publish(build, revision, Event.STARTED);
+    }
+
+    @Override
+    public boolean buildFinished(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+      return publish(build, revision, Event.FINISHED);
+    }
+
+    @Override
+    public boolean buildCommented(@NotNull SBuild build, @NotNull BuildRevision revision, @Nullable User user, @Nullable String comment, boolean buildInProgress)
+      throws PublisherException {
+      return publish(build, revision, Event.COMMENTED);
+    }
+
+    @Override
+    public boolean buildInterrupted(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+      return publish(build, revision, Event.INTERRUPTED);
+    }
+
+    @Override
+    public boolean buildFailureDetected(@NotNull SBuild build, @NotNull BuildRevision revision) throws PublisherException {
+      return publish(build, revision, Event.FAILURE_DETECTED);
+    }
+  }
+}
@@ -48,7 +48,7 @@ public class GerritPublisherTest extends CommitStatusPublisherTest {
     myPublisherSettings = new GerritSettings(myExecServices, new MockPluginDescriptor(),
                                              myFixture.getSingletonService(ExtensionHolder.class),
                                              myGerritClient,
-                                             myWebLinks, myProblems, myTrustStoreProvider);
+                                             myWebLinks, myProblems, myTrustStoreProvider, myMetrics);
     Map<String, String> params = getPublisherParams();
     myPublisher = new GerritPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myGerritClient, myWebLinks, params, myProblems);
     myBranch = "custom_branch";
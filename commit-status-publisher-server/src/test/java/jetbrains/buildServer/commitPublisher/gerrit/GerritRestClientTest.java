@@ -0,0 +1,45 @@
+package jetbrains.buildServer.commitPublisher.gerrit;
+
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.testng.Assert.fail;
+
+@Test
+public class GerritRestClientTest {
+
+  public void should_build_api_url() {
+    then(GerritRestClient.getApiUrl("gerrit.local")).isEqualTo("https://gerrit.local/a");
+    then(GerritRestClient.getApiUrl("http://gerrit.local:8080/")).isEqualTo("http://gerrit.local:8080/a");
+    then(GerritRestClient.getApiUrl("https://host/gerrit")).isEqualTo("https://host/gerrit/a");
+  }
+
+  public void should_vote_for_same_label_as_ssh_client() throws PublisherException {
+    then(GerritRestClient.createReviewPayload("Code-Review", "+1", "msg")).isEqualTo("{\"message\":\"msg\",\"labels\":{\"Code-Review\":1}}");
+    then(GerritRestClient.createReviewPayload(null, "-1", "msg")).isEqualTo("{\"message\":\"msg\",\"labels\":{\"Verified\":-1}}");
+    then(GerritRestClient.createReviewPayload("$verified-option", "+1", "msg")).isEqualTo("{\"message\":\"msg\",\"labels\":{\"Verified\":1}}");
+  }
+
+  public void should_reject_non_numeric_vote() {
+    try {
+      GerritRestClient.createReviewPayload("Verified", "yes", "msg");
+      fail("Non-numeric vote must be rejected");
+    } catch (PublisherException e) {
+      then(e).hasMessageContaining("yes");
+    }
+  }
+
+  public void should_parse_change_id_from_response_with_xssi_prefix() throws PublisherException {
+    then(GerritRestClient.parseChangeId(")]}'\n[{\"id\":\"PRJ1~master~I8473b95934b5732ac55d26311a706c9c2bde9940\",\"project\":\"PRJ1\",\"_number\":3965}]"))
+      .isEqualTo("3965");
+    then(GerritRestClient.parseChangeId(")]}'\n[]")).isNull();
+  }
+
+  public void should_not_double_encode_nested_project_in_review_url() throws Exception {
+    String changeId = GerritRestClient.parseChangeId(")]}'\n[{\"id\":\"group%2Fsubgroup%2FPRJ1~master~I8473b95934b5732ac55d26311a706c9c2bde9940\"," +
+                                                      "\"project\":\"group/subgroup/PRJ1\",\"_number\":3965}]");
+    then(GerritRestClient.getReviewUrl("gerrit.local", changeId, "8473b95934b5732ac55d26311a706c9c2bde9940"))
+      .isEqualTo("https://gerrit.local/a/changes/3965/revisions/8473b95934b5732ac55d26311a706c9c2bde9940/review");
+  }
+}
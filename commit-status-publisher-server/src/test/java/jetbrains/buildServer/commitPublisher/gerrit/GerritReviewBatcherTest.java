@@ -0,0 +1,103 @@
+package jetbrains.buildServer.commitPublisher.gerrit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class GerritReviewBatcherTest extends BaseServerTestCase {
+
+  private List<List<String>> myBatches;
+  private GerritReviewBatcher myBatcher;
+  private ExecutorService myExecutor;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myBatches = Collections.synchronizedList(new ArrayList<List<String>>());
+    myBatcher = new GerritReviewBatcher(commands -> {
+      List<String> batch = new ArrayList<String>();
+      for (GerritReviewBatcher.PendingCommand command : commands) {
+        batch.add(command.getCommand());
+        if (command.getCommand().contains("fail"))
+          command.fail(new IOException("review failed: " + command.getCommand()));
+        else
+          command.complete("ok: " + command.getCommand());
+      }
+      myBatches.add(batch);
+    });
+    myExecutor = Executors.newFixedThreadPool(3);
+  }
+
+  @AfterMethod
+  @Override
+  protected void tearDown() throws Exception {
+    myExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void should_run_reviews_for_same_server_in_one_batch() throws Exception {
+    setInternalProperty(GerritReviewBatcher.WINDOW_PROPERTY, "60000");
+    setInternalProperty(GerritReviewBatcher.MAX_SIZE_PROPERTY, "3");
+    List<Future<String>> results = new ArrayList<Future<String>>();
+    for (int i = 0; i < 3; i++) {
+      String command = "review " + i;
+      results.add(myExecutor.submit(() -> myBatcher.submit("server", details("server"), command)));
+    }
+    for (int i = 0; i < 3; i++) {
+      then(results.get(i).get(10, TimeUnit.SECONDS)).isEqualTo("ok: review " + i);
+    }
+    then(myBatches).hasSize(1);
+    then(myBatches.get(0)).containsOnly("review 0", "review 1", "review 2");
+  }
+
+  public void should_report_failure_only_for_failed_review() throws Exception {
+    setInternalProperty(GerritReviewBatcher.WINDOW_PROPERTY, "60000");
+    setInternalProperty(GerritReviewBatcher.MAX_SIZE_PROPERTY, "2");
+    Future<String> failed = myExecutor.submit(() -> myBatcher.submit("server", details("server"), "review fail"));
+    Future<String> succeeded = myExecutor.submit(() -> myBatcher.submit("server", details("server"), "review ok"));
+
+    then(succeeded.get(10, TimeUnit.SECONDS)).isEqualTo("ok: review ok");
+    try {
+      failed.get(10, TimeUnit.SECONDS);
+      fail("Failed review must be reported");
+    } catch (Exception e) {
+      then(e.getCause()).isInstanceOf(IOException.class).hasMessageContaining("review fail");
+    }
+    then(myBatches).hasSize(1);
+  }
+
+  public void should_not_batch_reviews_for_different_servers() throws Exception {
+    setInternalProperty(GerritReviewBatcher.WINDOW_PROPERTY, "10");
+    then(myBatcher.submit("server1", details("server1"), "review 1")).isEqualTo("ok: review 1");
+    then(myBatcher.submit("server2", details("server2"), "review 2")).isEqualTo("ok: review 2");
+    then(myBatches).hasSize(2);
+  }
+
+  public void should_fail_reviews_left_incomplete_by_runner() throws Exception {
+    setInternalProperty(GerritReviewBatcher.WINDOW_PROPERTY, "10");
+    GerritReviewBatcher batcher = new GerritReviewBatcher(commands -> {});
+    try {
+      batcher.submit("server", details("server"), "review");
+      fail("Review which was not run must fail");
+    } catch (IOException e) {
+      then(e).hasMessageContaining("review");
+    }
+  }
+
+  private GerritConnectionDetails details(String server) {
+    return new GerritConnectionDetails(myProject, "PRJ1", server, "gerrit_user", null);
+  }
+}
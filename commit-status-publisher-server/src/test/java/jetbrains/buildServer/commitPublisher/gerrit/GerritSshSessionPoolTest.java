@@ -0,0 +1,150 @@
+package jetbrains.buildServer.commitPublisher.gerrit;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import jetbrains.buildServer.ssh.TeamCitySshKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class GerritSshSessionPoolTest extends BaseServerTestCase {
+
+  private TestSessionPool myPool;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myPool = new TestSessionPool();
+  }
+
+  @AfterMethod
+  @Override
+  protected void tearDown() throws Exception {
+    myPool.dispose();
+    super.tearDown();
+  }
+
+  public void should_reuse_session_for_same_server_and_user() throws Exception {
+    Session first;
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", null)) {
+      first = lease.getSession();
+    }
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", null)) {
+      then(lease.getSession()).isSameAs(first);
+    }
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "other", null)) {
+      then(lease.getSession()).isNotSameAs(first);
+    }
+    then(myPool.myCreated).hasSize(2);
+    then(myPool.myDisconnected).isEmpty();
+  }
+
+  public void should_not_share_session_between_keys_with_same_hash() throws Exception {
+    // both arrays have Arrays.hashCode() equal to 992
+    TeamCitySshKey key1 = new TeamCitySshKey("key", new byte[]{1, 0}, false);
+    TeamCitySshKey key2 = new TeamCitySshKey("key", new byte[]{0, 31}, false);
+    Session first;
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", key1)) {
+      first = lease.getSession();
+    }
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", key2)) {
+      then(lease.getSession()).isNotSameAs(first);
+    }
+  }
+
+  public void should_reconnect_disconnected_session() throws Exception {
+    Session first;
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", null)) {
+      first = lease.getSession();
+    }
+    myPool.myDisconnected.add(first);
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", null)) {
+      then(lease.getSession()).isNotSameAs(first);
+    }
+  }
+
+  public void should_close_invalidated_session_when_last_lease_is_released() throws Exception {
+    GerritSshSessionPool.Lease lease1 = myPool.acquire("gerrit.example.com", "teamcity", null);
+    GerritSshSessionPool.Lease lease2 = myPool.acquire("gerrit.example.com", "teamcity", null);
+    Session invalidated = lease1.getSession();
+    then(lease2.getSession()).isSameAs(invalidated);
+
+    lease1.invalidate();
+    lease1.close();
+    then(myPool.myDisconnected).doesNotContain(invalidated);
+
+    try (GerritSshSessionPool.Lease lease3 = myPool.acquire("gerrit.example.com", "teamcity", null)) {
+      then(lease3.getSession()).isNotSameAs(invalidated);
+    }
+
+    lease2.close();
+    then(myPool.myDisconnected).contains(invalidated);
+  }
+
+  public void should_remove_idle_sessions() throws Exception {
+    setInternalProperty(GerritSshSessionPool.IDLE_TIMEOUT_PROPERTY, "0");
+    Session idle;
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", null)) {
+      idle = lease.getSession();
+    }
+    GerritSshSessionPool.Lease busy = myPool.acquire("gerrit.example.com", "other", null);
+    then(myPool.getPooledSessionsCount()).isEqualTo(2);
+
+    myPool.evictIdleSessions();
+    then(myPool.getPooledSessionsCount()).isEqualTo(1);
+    then(myPool.myDisconnected).containsOnly(idle);
+
+    busy.close();
+    myPool.evictIdleSessions();
+    then(myPool.getPooledSessionsCount()).isZero();
+    then(myPool.myDisconnected).containsOnly(idle, busy.getSession());
+
+    try (GerritSshSessionPool.Lease lease = myPool.acquire("gerrit.example.com", "teamcity", null)) {
+      then(lease.getSession()).isNotSameAs(idle);
+    }
+  }
+
+  private static class TestSessionPool extends GerritSshSessionPool {
+    private final List<Session> myCreated = Collections.synchronizedList(new ArrayList<Session>());
+    private final Set<Session> myDisconnected = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Session, Boolean>()));
+
+    @NotNull
+    @Override
+    JSch createJSch(@Nullable TeamCitySshKey key, @Nullable String defaultKeyPath) {
+      // keys of the tests are not real, they only need to be told apart
+      return new JSch();
+    }
+
+    @NotNull
+    @Override
+    Session createSession(@NotNull JSch jsch, @NotNull String server, @NotNull String username) throws JSchException {
+      // not connected, the pool only needs a distinct instance per connection
+      Session session = jsch.getSession(username, server, DEFAULT_PORT);
+      myCreated.add(session);
+      return session;
+    }
+
+    @Override
+    boolean isConnected(@NotNull Session session) {
+      return !myDisconnected.contains(session);
+    }
+
+    @Override
+    void disconnect(@NotNull Session session) {
+      myDisconnected.add(session);
+    }
+  }
+}
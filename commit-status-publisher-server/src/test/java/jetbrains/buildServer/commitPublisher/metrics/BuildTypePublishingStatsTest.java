@@ -0,0 +1,62 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class BuildTypePublishingStatsTest {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+  public void should_measure_backlog_age_until_it_clears() {
+    long now = 10 * MINUTE;
+    BuildTypePublishingStats stats = new BuildTypePublishingStats(now);
+    stats.taskAccepted(now);
+    stats.taskAccepted(now + MINUTE);
+    stats.taskFinished(now + 2 * MINUTE, 1000);
+
+    then(stats.getPendingCount()).isEqualTo(1);
+    then(stats.getBacklogAgeMs(now + 3 * MINUTE)).isEqualTo(3 * MINUTE);
+
+    stats.taskFinished(now + 4 * MINUTE, 1000);
+    then(stats.getPendingCount()).isEqualTo(0);
+    then(stats.getBacklogAgeMs(now + 5 * MINUTE)).isEqualTo(0);
+  }
+
+  public void should_smooth_latency() {
+    BuildTypePublishingStats stats = new BuildTypePublishingStats(0);
+    then(stats.getLatencyMs()).isEqualTo(-1);
+    stats.taskAccepted(0);
+    stats.taskFinished(0, 1000);
+    then(stats.getLatencyMs()).isEqualTo(1000);
+    stats.taskAccepted(0);
+    stats.taskFinished(0, 6000);
+    then(stats.getLatencyMs()).isEqualTo(2000);
+    stats.taskAccepted(0);
+    stats.taskFinished(0, -1);
+    then(stats.getLatencyMs()).isEqualTo(2000);
+  }
+
+  public void should_count_only_recent_skipped_statuses() {
+    long now = 100 * MINUTE;
+    BuildTypePublishingStats stats = new BuildTypePublishingStats(now);
+    stats.statusDropped(now);
+    stats.statusDropped(now + 30 * MINUTE);
+    stats.statusCoalesced(now + 30 * MINUTE);
+
+    then(stats.getRecentlyDroppedCount(now + 30 * MINUTE)).isEqualTo(2);
+    then(stats.getRecentlyDroppedCount(now + 70 * MINUTE)).isEqualTo(1);
+    then(stats.getRecentlyCoalescedCount(now + 70 * MINUTE)).isEqualTo(1);
+    then(stats.getRecentlyCoalescedCount(now + 100 * MINUTE)).isEqualTo(0);
+  }
+
+  public void should_become_idle_without_pending_tasks() {
+    BuildTypePublishingStats stats = new BuildTypePublishingStats(0);
+    stats.taskAccepted(0);
+    then(stats.isIdle(10 * MINUTE, MINUTE)).isFalse();
+    stats.taskFinished(0, 100);
+    then(stats.isIdle(10 * MINUTE, MINUTE)).isTrue();
+  }
+}
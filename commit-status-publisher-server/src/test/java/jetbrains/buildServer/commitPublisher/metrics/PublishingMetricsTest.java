@@ -0,0 +1,75 @@
+package jetbrains.buildServer.commitPublisher.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingMetricsTest {
+
+  private PublishingMetrics myMetrics;
+
+  @BeforeMethod
+  public void setUp() {
+    myMetrics = new PublishingMetrics();
+  }
+
+  public void should_count_requests_per_destination() {
+    myMetrics.requestCompleted("github", "https://api.github.com/repos/owner/repo/statuses/abc", "201", 120);
+    myMetrics.requestCompleted("github", "https://api.github.com/repos/owner/repo/statuses/def", "201", 80);
+    myMetrics.requestCompleted("github", "https://github.local/api/v3/repos/owner/repo/statuses/abc", "403", 30);
+    myMetrics.requestCompleted("gerrit", "gerrit.local:29418", PublishingMetrics.ERROR_STATUS, 5000);
+
+    then(myMetrics.getRequestsCount()).isEqualTo(4);
+    then(myMetrics.getFailedRequestsCount()).isEqualTo(2);
+    then(myMetrics.getRequestCounts()).containsEntry("github|api.github.com|201", 2L)
+                                      .containsEntry("github|github.local|403", 1L)
+                                      .containsEntry("gerrit|gerrit.local|error", 1L);
+  }
+
+  public void should_track_in_flight_events() {
+    myMetrics.eventStarted();
+    myMetrics.eventStarted();
+    myMetrics.eventFinished("github", "buildFinished", true, 10);
+    then(myMetrics.getInFlightEventsCount()).isEqualTo(1);
+    then(myMetrics.getEventCounts()).containsEntry("github|buildFinished|ok", 1L);
+  }
+
+  public void should_export_cumulative_histogram_buckets() {
+    myMetrics.requestCompleted("github", "https://api.github.com/x", "201", 20);
+    myMetrics.requestCompleted("github", "https://api.github.com/x", "201", 200);
+    String text = myMetrics.toOpenMetrics();
+    String labels = "publisher=\"github\",host=\"api.github.com\",status=\"201\"";
+    then(text).contains("# TYPE teamcity_commit_status_publisher_request_duration_seconds histogram")
+              .contains("teamcity_commit_status_publisher_request_duration_seconds_bucket{" + labels + ",le=\"0.01\"} 0")
+              .contains("teamcity_commit_status_publisher_request_duration_seconds_bucket{" + labels + ",le=\"0.025\"} 1")
+              .contains("teamcity_commit_status_publisher_request_duration_seconds_bucket{" + labels + ",le=\"0.25\"} 2")
+              .contains("teamcity_commit_status_publisher_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 2")
+              .contains("teamcity_commit_status_publisher_request_duration_seconds_count{" + labels + "} 2")
+              .contains("teamcity_commit_status_publisher_request_duration_seconds_sum{" + labels + "} 0.22")
+              .endsWith("# EOF\n");
+  }
+
+  public void should_export_registered_counters() {
+    AtomicLong saved = new AtomicLong(3);
+    myMetrics.registerCounter(PublishingMetrics.SAVED_REQUESTS_COUNTER, "Saved requests", saved::get);
+    saved.incrementAndGet();
+    then(myMetrics.getCounters()).containsEntry("saved_requests", 4L);
+    then(myMetrics.toOpenMetrics()).contains("# TYPE teamcity_commit_status_publisher_saved_requests counter")
+                                   .contains("teamcity_commit_status_publisher_saved_requests_total 4\n")
+                                   .endsWith("# EOF\n");
+  }
+
+  public void should_estimate_percentiles_by_bucket_bounds() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    then(histogram.getPercentileMs(95)).isEqualTo(0);
+    for (int i = 0; i < 9; i++) {
+      histogram.record(40);
+    }
+    histogram.record(70000);
+    then(histogram.getPercentileMs(50)).isEqualTo(50);
+    then(histogram.getPercentileMs(99)).isEqualTo(Long.MAX_VALUE);
+  }
+}
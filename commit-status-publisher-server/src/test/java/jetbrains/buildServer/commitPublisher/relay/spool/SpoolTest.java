@@ -0,0 +1,140 @@
+package jetbrains.buildServer.commitPublisher.relay.spool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import jetbrains.buildServer.util.FileUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class SpoolTest {
+
+  private static final int SEGMENT_SIZE = 256;
+
+  private File myDir;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    myDir = Files.createTempDirectory("spool").toFile();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  public void should_read_records_in_order_across_segments() throws IOException {
+    try (SpoolWriter writer = new SpoolWriter(myDir, SEGMENT_SIZE, 100)) {
+      for (int i = 0; i < 50; i++) {
+        writer.append(("record " + i).getBytes(StandardCharsets.UTF_8));
+      }
+      then(Segments.list(myDir).size()).isGreaterThan(1);
+
+      SpoolReader reader = new SpoolReader(myDir);
+      then(readAll(reader)).hasSize(50).startsWith("record 0", "record 1").endsWith("record 49");
+    }
+  }
+
+  public void should_read_records_appended_while_tailing() throws IOException {
+    try (SpoolWriter writer = new SpoolWriter(myDir, SEGMENT_SIZE, 100)) {
+      SpoolReader reader = new SpoolReader(myDir);
+      then(reader.next()).isNull();
+      writer.append("first".getBytes(StandardCharsets.UTF_8));
+      then(readAll(reader)).containsExactly("first");
+      writer.append("second".getBytes(StandardCharsets.UTF_8));
+      then(readAll(reader)).containsExactly("second");
+    }
+  }
+
+  public void should_continue_from_committed_position() throws IOException {
+    try (SpoolWriter writer = new SpoolWriter(myDir, SEGMENT_SIZE, 100)) {
+      for (int i = 0; i < 30; i++) {
+        writer.append(("record " + i).getBytes(StandardCharsets.UTF_8));
+      }
+      SpoolReader reader = new SpoolReader(myDir);
+      for (int i = 0; i < 20; i++) {
+        reader.next();
+      }
+      reader.commit();
+      reader.next();
+
+      then(readAll(new SpoolReader(myDir))).hasSize(10).startsWith("record 20");
+    }
+  }
+
+  public void should_delete_read_segments_on_commit() throws IOException {
+    try (SpoolWriter writer = new SpoolWriter(myDir, SEGMENT_SIZE, 100)) {
+      for (int i = 0; i < 50; i++) {
+        writer.append(("record " + i).getBytes(StandardCharsets.UTF_8));
+      }
+      SpoolReader reader = new SpoolReader(myDir);
+      readAll(reader);
+      reader.commit();
+      then(Segments.list(myDir)).hasSize(1);
+    }
+  }
+
+  public void should_continue_after_records_of_previous_writer() throws IOException {
+    try (SpoolWriter writer = new SpoolWriter(myDir, SEGMENT_SIZE, 100)) {
+      writer.append("old".getBytes(StandardCharsets.UTF_8));
+    }
+    SpoolReader reader = new SpoolReader(myDir);
+    then(readAll(reader)).containsExactly("old");
+    reader.commit();
+
+    try (SpoolWriter writer = new SpoolWriter(myDir, SEGMENT_SIZE, 100)) {
+      writer.append("new".getBytes(StandardCharsets.UTF_8));
+      then(readAll(reader)).containsExactly("new");
+      reader.commit();
+      then(readAll(new SpoolReader(myDir))).isEmpty();
+    }
+  }
+
+  public void should_not_allow_second_writer() throws IOException {
+    try (SpoolWriter ignored = new SpoolWriter(myDir, SEGMENT_SIZE, 100)) {
+      try {
+        new SpoolWriter(myDir, SEGMENT_SIZE, 100);
+        then(false).as("second writer should fail").isTrue();
+      } catch (IOException e) {
+        then(e.getMessage()).contains("another writer");
+      }
+    }
+  }
+
+  public void should_fail_when_spool_is_full() throws IOException {
+    try (SpoolWriter writer = new SpoolWriter(myDir, SEGMENT_SIZE, 2)) {
+      byte[] record = new byte[100];
+      writer.append(record);
+      writer.append(record);
+      writer.append(record);
+      writer.append(record);
+      try {
+        writer.append(record);
+        then(false).as("append to a full spool should fail").isTrue();
+      } catch (IOException e) {
+        then(e.getMessage()).contains("is full");
+      }
+
+      SpoolReader reader = new SpoolReader(myDir);
+      then(readAll(reader)).hasSize(4);
+      reader.commit();
+      writer.append(record);
+    }
+  }
+
+  private static List<String> readAll(SpoolReader reader) throws IOException {
+    List<String> result = new ArrayList<String>();
+    byte[] record;
+    while ((record = reader.next()) != null) {
+      result.add(new String(record, StandardCharsets.UTF_8));
+    }
+    return result;
+  }
+}
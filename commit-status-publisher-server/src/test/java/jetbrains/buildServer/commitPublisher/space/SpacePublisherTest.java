@@ -57,10 +57,10 @@ public class SpacePublisherTest extends HttpPublisherTest {
       put(Constants.SPACE_CLIENT_SECRET, FAKE_CLIENT_SECRET);
       put(Constants.SPACE_SERVER_URL, getServerUrl());
     }}).getId();
-    myPublisherSettings = new SpaceSettings(myExecServices, new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, myOAuthConnectionsManager, myOAuthTokenStorage);
+    myPublisherSettings = new SpaceSettings(myExecServices, new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, myOAuthConnectionsManager, myOAuthTokenStorage, myPublishedStates, myMetrics, myRoutes);
     Map<String, String> params = getPublisherParams();
     SpaceConnectDescriber connector = SpaceUtils.getConnectionData(params, myOAuthConnectionsManager, myBuildType.getProject());
-    myPublisher = new SpacePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myExecServices, myWebLinks, params, myProblems, connector);
+    myPublisher = new SpacePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myExecServices, myWebLinks, params, myProblems, connector, myPublishedStates, myMetrics, myRoutes);
   }
 
   /*
@@ -27,6 +27,8 @@ import static org.assertj.core.api.BDDAssertions.then;
 @Test
 public class TfsPublisherTest extends HttpPublisherTest {
 
+  private TfsPullRequestCache myPullRequests;
+
   TfsPublisherTest() {
     myExpectedRegExps.put(EventToTest.QUEUED, null); // not to be tested
     myExpectedRegExps.put(EventToTest.REMOVED, null);  // not to be tested
@@ -49,10 +51,11 @@ public class TfsPublisherTest extends HttpPublisherTest {
   @Override
   protected void setUp() throws Exception {
     super.setUp();
+    myPullRequests = new TfsPullRequestCache();
     myPublisherSettings = new TfsPublisherSettings(myExecServices, new MockPluginDescriptor(), myWebLinks, myProblems,
-      myOAuthConnectionsManager, myOAuthTokenStorage, myFixture.getSecurityContext(), myTrustStoreProvider);
+      myOAuthConnectionsManager, myOAuthTokenStorage, myFixture.getSecurityContext(), myTrustStoreProvider, myPublishedStates, myMetrics, myRoutes, myPullRequests);
     Map<String, String> params = getPublisherParams();
-    myPublisher = new TfsStatusPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myExecServices, myWebLinks, params, myProblems);
+    myPublisher = new TfsStatusPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myExecServices, myWebLinks, params, myProblems, myPublishedStates, myMetrics, myRoutes, myPullRequests);
     myVcsURL = getServerUrl() + "/_git/" + CORRECT_REPO;
     myReadOnlyVcsURL = getServerUrl()  + "/_git/" + READ_ONLY_REPO;
     myVcsRoot.setProperties(Collections.singletonMap("url", myVcsURL));
@@ -0,0 +1,54 @@
+package jetbrains.buildServer.commitPublisher.upsource;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import jetbrains.buildServer.vcs.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class UpsourcePayloadCacheTest extends BaseServerTestCase {
+
+  private UpsourcePayloadCache myCache;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCache = new UpsourcePayloadCache(100);
+  }
+
+  public void should_look_up_modification_once() {
+    SVcsRoot vcsRoot = myFixture.addVcsRoot("jetbrains.git", "vcs1");
+    myBuildType.addVcsRoot(vcsRoot);
+    VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstances().iterator().next();
+    SVcsModification modification = myFixture.addModification(new ModificationData(new Date(),
+            Collections.singletonList(new VcsChange(VcsChangeInfo.Type.CHANGED, "changed", "file", "file", "1", "2")),
+            "Commit message", "user", vcsRootInstance, "rev1", "rev1"));
+    VcsModificationHistory history = myFixture.getVcsHistory();
+
+    UpsourcePayloadCache.CommitInfo first = myCache.getCommitInfo(modification.getId(), history);
+    UpsourcePayloadCache.CommitInfo second = myCache.getCommitInfo(modification.getId(), history);
+
+    then(first).isNotNull();
+    then(first.getDescription()).isEqualTo("Commit message");
+    then(first.getVcsDate()).isEqualTo(modification.getVcsDate().getTime());
+    then(second).isSameAs(first);
+  }
+
+  public void should_not_remember_missing_modifications() {
+    then(myCache.getCommitInfo(12345L, myFixture.getVcsHistory())).isNull();
+  }
+
+  public void should_compute_build_url_once() {
+    AtomicInteger calls = new AtomicInteger();
+    for (int i = 0; i < 3; i++) {
+      then(myCache.getBuildUrl(1L, () -> "http://teamcity/build/" + calls.incrementAndGet())).isEqualTo("http://teamcity/build/1");
+    }
+    then(myCache.getBuildUrl(2L, () -> "http://teamcity/build/2")).isEqualTo("http://teamcity/build/2");
+  }
+}
@@ -22,6 +22,8 @@ import java.util.Map;
 @Test
 public class UpsourcePublisherTest extends HttpPublisherTest {
 
+  private UpsourcePayloadCache myPayloads;
+
   public UpsourcePublisherTest() {
     myExpectedRegExps.put(EventToTest.QUEUED, null); // not to be tested
     myExpectedRegExps.put(EventToTest.REMOVED, null); // not to be tested
@@ -46,16 +48,17 @@ public class UpsourcePublisherTest extends HttpPublisherTest {
     setExpectedApiPath("/~buildStatus");
     setExpectedEndpointPrefix("");
     super.setUp();
-    myPublisherSettings = new UpsourceSettings(myFixture.getVcsHistory(), myExecServices, new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider);
+    myPayloads = new UpsourcePayloadCache();
+    myPublisherSettings = new UpsourceSettings(myFixture.getVcsHistory(), myExecServices, new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, myPublishedStates, myMetrics, myPayloads);
     Map<String, String> params = getPublisherParams();
-    myPublisher = new UpsourcePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myFixture.getVcsHistory(), myExecServices, myWebLinks, params, myProblems);
+    myPublisher = new UpsourcePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myFixture.getVcsHistory(), myExecServices, myWebLinks, params, myProblems, myPublishedStates, myMetrics, myPayloads);
   }
 
   public void test_buildFinishedSuccessfully_server_url_with_subdir() throws Exception {
     Map<String, String> params = getPublisherParams();
     setExpectedApiPath("/subdir/~buildStatus");
     params.put(Constants.UPSOURCE_SERVER_URL, getServerUrl() + "/subdir");
-    myPublisher = new UpsourcePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myFixture.getVcsHistory(), myExecServices, myWebLinks, params, myProblems);
+    myPublisher = new UpsourcePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myFixture.getVcsHistory(), myExecServices, myWebLinks, params, myProblems, myPublishedStates, myMetrics, myPayloads);
     test_buildFinished_Successfully();
   }
 
@@ -63,7 +66,7 @@ public class UpsourcePublisherTest extends HttpPublisherTest {
     Map<String, String> params = getPublisherParams();
     setExpectedApiPath("/subdir/~buildStatus");
     params.put(Constants.UPSOURCE_SERVER_URL, getServerUrl() + "/subdir/");
-    myPublisher = new UpsourcePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myFixture.getVcsHistory(), myExecServices, myWebLinks, params, myProblems);
+    myPublisher = new UpsourcePublisher(myPublisherSettings, myBuildType, FEATURE_ID, myFixture.getVcsHistory(), myExecServices, myWebLinks, params, myProblems, myPublishedStates, myMetrics, myPayloads);
     test_buildFinished_Successfully();
   }
 
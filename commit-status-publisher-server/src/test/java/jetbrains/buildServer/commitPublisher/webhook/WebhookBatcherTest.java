@@ -0,0 +1,214 @@
+package jetbrains.buildServer.commitPublisher.webhook;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import jetbrains.buildServer.commitPublisher.*;
+import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.SRunningBuild;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import jetbrains.buildServer.serverSide.systemProblems.SystemProblemNotificationEngine;
+import jetbrains.buildServer.vcs.SVcsRoot;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class WebhookBatcherTest extends BaseServerTestCase {
+
+  private static final String URL = "http://localhost/statuses";
+
+  private List<List<String>> myBatches;
+  private List<String> myTokens;
+  private List<Exception> myErrors;
+  private ScheduledExecutorService myScheduler;
+  private WebhookBatcher myBatcher;
+  private SystemProblemNotificationEngine myProblemEngine;
+  private CommitStatusPublisherProblems myProblems;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myBatches = Collections.synchronizedList(new ArrayList<List<String>>());
+    myTokens = Collections.synchronizedList(new ArrayList<String>());
+    myErrors = Collections.synchronizedList(new ArrayList<Exception>());
+    myScheduler = Executors.newSingleThreadScheduledExecutor();
+    myProblemEngine = myFixture.getSingletonService(SystemProblemNotificationEngine.class);
+    myProblems = new CommitStatusPublisherProblems(myProblemEngine);
+    myBatcher = new WebhookBatcher(myScheduler, Runnable::run, (url, token, statuses) -> {
+      myBatches.add(new ArrayList<String>(statuses));
+      myTokens.add(token);
+      if (!myErrors.isEmpty())
+        throw myErrors.remove(0);
+    });
+  }
+
+  @AfterMethod
+  @Override
+  protected void tearDown() throws Exception {
+    myScheduler.shutdownNow();
+    super.tearDown();
+  }
+
+  public void should_send_statuses_of_window_in_one_batch() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "200");
+    List<WebhookBatcher.PendingStatus> statuses = submit("{\"n\":1}", "{\"n\":2}", "{\"n\":3}");
+    await(statuses);
+    then(myBatches).containsExactly(Arrays.asList("{\"n\":1}", "{\"n\":2}", "{\"n\":3}"));
+  }
+
+  public void should_not_share_batches_of_tokens_with_equal_hash_codes() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "100");
+    then("Aa".hashCode()).isEqualTo("BB".hashCode());
+    WebhookBatcher.PendingStatus status1 = myBatcher.submit(URL, "Aa", "{\"n\":1}");
+    WebhookBatcher.PendingStatus status2 = myBatcher.submit(URL, "BB", "{\"n\":2}");
+    await(Arrays.asList(status1, status2));
+    then(myBatches).containsOnly(Collections.singletonList("{\"n\":1}"), Collections.singletonList("{\"n\":2}"));
+    then(myTokens).containsOnly("Aa", "BB");
+  }
+
+  public void should_send_full_batch_before_window_passes() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "60000");
+    setInternalProperty(WebhookBatcher.MAX_SIZE_PROPERTY, "2");
+    submit("{\"n\":1}", "{\"n\":2}");
+    waitFor(() -> myBatches.size() == 1);
+    then(myBatches.get(0)).containsExactly("{\"n\":1}", "{\"n\":2}");
+  }
+
+  public void should_limit_batch_by_bytes_and_keep_order() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "100");
+    setInternalProperty(WebhookBatcher.MAX_BYTES_PROPERTY, "16");
+    await(submit("{\"n\":1}", "{\"n\":2}", "{\"n\":3}"));
+    then(myBatches).containsExactly(Arrays.asList("{\"n\":1}", "{\"n\":2}"), Collections.singletonList("{\"n\":3}"));
+  }
+
+  public void should_retry_failed_batch_as_whole() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "10");
+    myErrors.add(new IOException("unavailable"));
+    await(submit("{\"n\":1}", "{\"n\":2}"));
+    then(myBatches).hasSize(2);
+    then(myBatches.get(1)).isEqualTo(myBatches.get(0)).containsExactly("{\"n\":1}", "{\"n\":2}");
+  }
+
+  public void should_not_retry_rejected_batch() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "10");
+    myErrors.add(new WebhookBatcher.RejectedBatchException("unauthorized"));
+    for (WebhookBatcher.PendingStatus status : submit("{\"n\":1}", "{\"n\":2}")) {
+      try {
+        status.await();
+        fail("Status of a rejected batch must fail");
+      } catch (PublisherException e) {
+        then(e).hasMessage("unauthorized");
+      }
+    }
+    then(myBatches).hasSize(1);
+  }
+
+  public void should_fail_when_too_many_statuses_are_queued() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "60000");
+    setInternalProperty(WebhookBatcher.MAX_QUEUED_PROPERTY, "2");
+    submit("{\"n\":1}", "{\"n\":2}");
+    try {
+      submit("{\"n\":3}");
+      fail("Status must not be queued");
+    } catch (PublisherException e) {
+      then(e).hasMessageContaining(URL);
+    }
+    then(myBatcher.getQueuedCount()).isEqualTo(2);
+  }
+
+  public void should_queue_statuses_of_build_type_without_waiting_for_window() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "60000");
+    WebhookPublisher publisher = createPublisher();
+    SRunningBuild build = myFixture.startBuild(myBuildType);
+    BuildRevision revision = createRevision();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // statuses of a build type are published one by one under its lock
+      Future<?> published = executor.submit(() -> {
+        for (int i = 0; i < 100; i++) {
+          publisher.buildStarted(build, revision);
+        }
+        return null;
+      });
+      published.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+    then(myBatcher.getQueuedCount()).isEqualTo(100);
+    then(myBatches).isEmpty();
+  }
+
+  public void should_report_problem_when_batch_fails() throws Exception {
+    setInternalProperty(WebhookBatcher.WINDOW_PROPERTY, "10");
+    myErrors.add(new WebhookBatcher.RejectedBatchException("unauthorized"));
+    WebhookPublisher publisher = createPublisher();
+    publisher.buildStarted(myFixture.startBuild(myBuildType), createRevision());
+    waitFor(() -> !myProblemEngine.getProblems(myBuildType).isEmpty());
+    then(myProblemEngine.getProblems(myBuildType).iterator().next().getProblem().getDescription()).contains("unauthorized").contains(URL);
+  }
+
+  public void should_gzip_statuses_as_json_array() throws Exception {
+    byte[] body = WebhookSender.gzip(Arrays.asList("{\"n\":1}", "{\"s\":\"\u00e9\"}"));
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        json.write(buffer, 0, read);
+      }
+    }
+    then(new String(json.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("[{\"n\":1},{\"s\":\"\u00e9\"}]");
+  }
+
+  private WebhookPublisher createPublisher() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put(Constants.WEBHOOK_URL, URL);
+    params.put(Constants.WEBHOOK_TOKEN, "token");
+    return new WebhookPublisher(new MockPublisherSettings(myProblems), myBuildType, "WEBHOOK_FEATURE", myBatcher, myWebLinks, params, myProblems);
+  }
+
+  private BuildRevision createRevision() {
+    SVcsRoot vcsRoot = myFixture.addVcsRoot("jetbrains.git", "", myBuildType);
+    return new BuildRevision(myBuildType.getVcsRootInstanceForParent(vcsRoot), "12345", "", "12345");
+  }
+
+  private List<WebhookBatcher.PendingStatus> submit(String... statuses) throws PublisherException {
+    List<WebhookBatcher.PendingStatus> result = new ArrayList<WebhookBatcher.PendingStatus>();
+    for (String status : statuses) {
+      result.add(myBatcher.submit(URL, "token", status));
+    }
+    return result;
+  }
+
+  private static void await(List<WebhookBatcher.PendingStatus> statuses) throws PublisherException {
+    for (WebhookBatcher.PendingStatus status : statuses) {
+      status.await();
+    }
+  }
+
+  private static void waitFor(Condition condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (!condition.isMet()) {
+      if (System.currentTimeMillis() > deadline)
+        throw new AssertionError("Condition is not met in 10 seconds");
+      Thread.sleep(10);
+    }
+  }
+
+  private interface Condition {
+    boolean isMet();
+  }
+}
@@ -0,0 +1,148 @@
+package jetbrains.buildServer.commitRelay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolReader;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolRecord;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Delivers statuses written by the relay publisher of the TeamCity server to the code hostings.
+ *
+ * The relay tails the spool directory and posts statuses one by one in the order they were written, so a commit never gets
+ * an older status after a newer one. A status which the code hosting fails to accept for a transient reason is retried
+ * with a growing delay, after {@code maxAttempts} or on a permanent failure, e.g. a wrong token, it is logged and dropped.
+ * The position in the spool is saved when the relay is idle and every {@link #COMMIT_EVERY_RECORDS} statuses,
+ * after a restart the relay can deliver a few statuses again, which is harmless since a status replaces itself.
+ *
+ * Usage: {@code java -jar commit-status-relay.jar relay.properties}, see {@link RelayConfig} for the settings.
+ */
+public class CommitStatusRelay {
+
+  private static final Logger LOG = Logger.getLogger(CommitStatusRelay.class.getName());
+
+  private static final int COMMIT_EVERY_RECORDS = 100;
+  private static final long INITIAL_RETRY_DELAY_MS = 1000;
+  private static final long MAX_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private final RelayConfig myConfig;
+  private final SpoolReader myReader;
+  private final ForgeClient myClient;
+  private volatile boolean myStopped;
+  private int myUncommitted;
+
+  CommitStatusRelay(@NotNull RelayConfig config, @NotNull SpoolReader reader, @NotNull ForgeClient client) {
+    myConfig = config;
+    myReader = reader;
+    myClient = client;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 1) {
+      System.err.println("Usage: java -jar commit-status-relay.jar <relay.properties>");
+      System.exit(1);
+    }
+    RelayConfig config = RelayConfig.load(new File(args[0]));
+    File spoolDir = config.getSpoolDir();
+    if (spoolDir == null) {
+      System.err.println("Specify spoolDir in " + args[0]);
+      System.exit(1);
+    }
+    CommitStatusRelay relay = new CommitStatusRelay(config, new SpoolReader(spoolDir), new ForgeClient(config));
+    Thread main = Thread.currentThread();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      relay.stop();
+      main.interrupt();
+      try {
+        main.join(TimeUnit.SECONDS.toMillis(10));
+      } catch (InterruptedException ignored) {
+      }
+    }));
+    LOG.info("Relaying commit statuses from " + spoolDir.getAbsolutePath());
+    relay.run();
+  }
+
+  void run() throws IOException {
+    try {
+      while (!myStopped) {
+        byte[] bytes;
+        try {
+          bytes = myReader.next();
+        } catch (IOException e) {
+          LOG.log(Level.SEVERE, "Cannot read the spool, the rest of the current segment is skipped", e);
+          myReader.skipSegment();
+          continue;
+        }
+        if (bytes == null) {
+          commit();
+          sleep(myConfig.getPollIntervalMs());
+          continue;
+        }
+        SpoolRecord record = SpoolRecord.fromBytes(bytes);
+        if (record == null) {
+          LOG.warning("Skipping a malformed status of " + bytes.length + " bytes");
+        } else if (!deliver(record)) {
+          // stopped while retrying, the position is not saved, so the status is delivered after a restart
+          return;
+        }
+        if (++myUncommitted >= COMMIT_EVERY_RECORDS)
+          commit();
+      }
+      commit();
+    } finally {
+      myReader.close();
+    }
+  }
+
+  void stop() {
+    myStopped = true;
+  }
+
+  /**
+   * @return false if the relay was stopped before the status was delivered or dropped
+   */
+  private boolean deliver(@NotNull SpoolRecord record) {
+    long delay = INITIAL_RETRY_DELAY_MS;
+    for (int attempt = 1; !myStopped; attempt++) {
+      String error;
+      boolean retryable;
+      try {
+        myClient.deliver(record);
+        LOG.fine("Delivered " + record);
+        return true;
+      } catch (DeliveryException e) {
+        error = e.getMessage();
+        retryable = e.isRetryable();
+      } catch (IOException e) {
+        error = e.toString();
+        retryable = true;
+      }
+      if (!retryable || attempt >= myConfig.getMaxAttempts()) {
+        LOG.warning("Dropping " + record + " after " + attempt + " attempt(s): " + error);
+        return true;
+      }
+      LOG.info("Attempt " + attempt + " to deliver " + record + " has failed, retrying in " + delay + " ms: " + error);
+      sleep(delay);
+      delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+    }
+    return false;
+  }
+
+  private void commit() throws IOException {
+    if (myUncommitted == 0)
+      return;
+    myReader.commit();
+    myUncommitted = 0;
+  }
+
+  private void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      // interrupted on shutdown, the loop checks myStopped
+    }
+  }
+}
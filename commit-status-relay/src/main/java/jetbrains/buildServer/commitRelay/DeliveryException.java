@@ -0,0 +1,23 @@
+package jetbrains.buildServer.commitRelay;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A status was not accepted by the code hosting
+ */
+class DeliveryException extends Exception {
+
+  private final boolean myRetryable;
+
+  DeliveryException(@NotNull String message, boolean retryable) {
+    super(message);
+    myRetryable = retryable;
+  }
+
+  /**
+   * @return true if the same request can succeed later, e.g. the server was overloaded
+   */
+  boolean isRetryable() {
+    return myRetryable;
+  }
+}
@@ -0,0 +1,199 @@
+package jetbrains.buildServer.commitRelay;
+
+import com.google.gson.JsonObject;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import jetbrains.buildServer.commitPublisher.relay.spool.Provider;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolRecord;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolRecord.State;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Posts statuses from the spool to the commit status APIs of the code hostings
+ */
+class ForgeClient {
+
+  private static final int MAX_ERROR_LENGTH = 1000;
+  private static final int GITHUB_MAX_DESCRIPTION_LENGTH = 140;
+
+  private final RelayConfig myConfig;
+
+  ForgeClient(@NotNull RelayConfig config) {
+    myConfig = config;
+  }
+
+  void deliver(@NotNull SpoolRecord record) throws IOException, DeliveryException {
+    Provider provider = record.getProvider();
+    State state = record.getState();
+    if (provider == null || state == null)
+      throw new DeliveryException("Unknown provider or state of " + record, false);
+    String apiUrl = record.getApiUrl() != null ? record.getApiUrl() : provider.getDefaultApiUrl();
+    if (apiUrl == null)
+      throw new DeliveryException("Missing " + provider.getDisplayName() + " API URL of " + record, false);
+    String host = new URL(apiUrl).getHost();
+    switch (provider) {
+      case GITHUB:
+        deliverToGitHub(record, state, apiUrl, host);
+        break;
+      case GITLAB:
+        deliverToGitLab(record, state, apiUrl, host);
+        break;
+      case BITBUCKET_SERVER:
+        deliverToBitbucketServer(record, state, apiUrl, host);
+        break;
+      case BITBUCKET_CLOUD:
+        deliverToBitbucketCloud(record, state, apiUrl, host);
+        break;
+      case AZURE_DEVOPS:
+        deliverToAzureDevOps(record, state, apiUrl, host);
+        break;
+    }
+  }
+
+  private void deliverToGitHub(@NotNull SpoolRecord record, @NotNull State state, @NotNull String apiUrl, @NotNull String host) throws IOException, DeliveryException {
+    JsonObject data = new JsonObject();
+    data.addProperty("state", state == State.PENDING || state == State.RUNNING ? "pending" :
+                              state == State.SUCCESS ? "success" :
+                              state == State.FAILURE ? "failure" : "error");
+    data.addProperty("target_url", record.getUrl());
+    data.addProperty("description", truncate(record.getDescription(), GITHUB_MAX_DESCRIPTION_LENGTH));
+    data.addProperty("context", record.getContext());
+    String url = apiUrl + "/repos/" + record.getOwner() + "/" + record.getRepository() + "/statuses/" + record.getCommit();
+    post(url, data, "token " + requireToken(Provider.GITHUB, host));
+  }
+
+  private void deliverToGitLab(@NotNull SpoolRecord record, @NotNull State state, @NotNull String apiUrl, @NotNull String host) throws IOException, DeliveryException {
+    JsonObject data = new JsonObject();
+    data.addProperty("state", state == State.FAILURE ? "failed" : state.name().toLowerCase());
+    data.addProperty("name", record.getContext());
+    data.addProperty("target_url", record.getUrl());
+    data.addProperty("description", record.getDescription());
+    String project = URLEncoder.encode(record.getOwner() + "/" + record.getRepository(), "UTF-8").replace(".", "%2E");
+    post(apiUrl + "/projects/" + project + "/statuses/" + record.getCommit(), data, Collections.singletonMap("PRIVATE-TOKEN", requireToken(Provider.GITLAB, host)));
+  }
+
+  private void deliverToBitbucketServer(@NotNull SpoolRecord record, @NotNull State state, @NotNull String apiUrl, @NotNull String host) throws IOException, DeliveryException {
+    JsonObject data = new JsonObject();
+    data.addProperty("state", state == State.SUCCESS ? "SUCCESSFUL" : state == State.FAILURE || state == State.CANCELED ? "FAILED" : "INPROGRESS");
+    data.addProperty("key", record.getKey());
+    data.addProperty("name", record.getContext());
+    data.addProperty("url", record.getUrl());
+    data.addProperty("description", record.getDescription());
+    post(apiUrl + "/rest/build-status/1.0/commits/" + record.getCommit(), data, "Bearer " + requireToken(Provider.BITBUCKET_SERVER, host));
+  }
+
+  private void deliverToBitbucketCloud(@NotNull SpoolRecord record, @NotNull State state, @NotNull String apiUrl, @NotNull String host) throws IOException, DeliveryException {
+    JsonObject data = new JsonObject();
+    data.addProperty("state", state == State.SUCCESS ? "SUCCESSFUL" : state == State.FAILURE ? "FAILED" : state == State.CANCELED ? "STOPPED" : "INPROGRESS");
+    data.addProperty("key", record.getKey());
+    data.addProperty("name", record.getContext());
+    data.addProperty("url", record.getUrl());
+    data.addProperty("description", record.getDescription());
+    String username = myConfig.getUsername(Provider.BITBUCKET_CLOUD, host);
+    String password = myConfig.getPassword(Provider.BITBUCKET_CLOUD, host);
+    if (username == null || password == null)
+      throw new DeliveryException("No Bitbucket Cloud username and password are configured for " + host, false);
+    String url = apiUrl + "/2.0/repositories/" + record.getOwner() + "/" + record.getRepository() + "/commit/" + record.getCommit() + "/statuses/build";
+    post(url, data, basic(username, password));
+  }
+
+  /**
+   * The API URL is the organization or collection URL, by default the organization is taken from the repository URL
+   * of dev.azure.com, e.g. https://dev.azure.com/org/project/_git/repo or git@ssh.dev.azure.com:v3/org/project/repo
+   */
+  private void deliverToAzureDevOps(@NotNull SpoolRecord record, @NotNull State state, @NotNull String apiUrl, @NotNull String host) throws IOException, DeliveryException {
+    String path = record.getOwner();
+    if (path.startsWith("v3/"))
+      path = path.substring("v3/".length());
+    if (path.endsWith("/_git"))
+      path = path.substring(0, path.length() - "/_git".length());
+    String[] segments = path.split("/");
+    String project = segments[segments.length - 1];
+    String base = apiUrl;
+    if (record.getApiUrl() == null) {
+      if (segments.length < 2)
+        throw new DeliveryException("Cannot find Azure DevOps organization of " + record, false);
+      base += "/" + segments[segments.length - 2];
+    }
+    JsonObject context = new JsonObject();
+    context.addProperty("name", record.getContext());
+    context.addProperty("genre", "TeamCity");
+    JsonObject data = new JsonObject();
+    data.addProperty("state", state == State.SUCCESS ? "succeeded" : state == State.FAILURE ? "failed" : state == State.CANCELED ? "error" : "pending");
+    data.addProperty("description", record.getDescription());
+    data.addProperty("targetUrl", record.getUrl());
+    data.add("context", context);
+    String url = base + "/" + project + "/_apis/git/repositories/" + record.getRepository() + "/commits/" + record.getCommit() + "/statuses?api-version=4.1";
+    post(url, data, basic("", requireToken(Provider.AZURE_DEVOPS, host)));
+  }
+
+  @NotNull
+  private String requireToken(@NotNull Provider provider, @NotNull String host) throws DeliveryException {
+    String token = myConfig.getToken(provider, host);
+    if (token == null)
+      throw new DeliveryException("No " + provider.getDisplayName() + " token is configured for " + host, false);
+    return token;
+  }
+
+  private void post(@NotNull String url, @NotNull JsonObject data, @NotNull String authorization) throws IOException, DeliveryException {
+    post(url, data, Collections.singletonMap("Authorization", authorization));
+  }
+
+  private void post(@NotNull String url, @NotNull JsonObject data, @NotNull Map<String, String> headers) throws IOException, DeliveryException {
+    HttpURLConnection connection = (HttpURLConnection)new URL(url).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setConnectTimeout(myConfig.getConnectTimeoutMs());
+    connection.setReadTimeout(myConfig.getReadTimeoutMs());
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setRequestProperty("Accept", "application/json");
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      connection.setRequestProperty(header.getKey(), header.getValue());
+    }
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(data.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    int code = connection.getResponseCode();
+    if (code >= 200 && code < 300) {
+      // reading the response to the end lets the connection be reused
+      read(connection.getInputStream());
+      return;
+    }
+    String response = read(connection.getErrorStream());
+    throw new DeliveryException("HTTP " + code + " from " + url + (response.isEmpty() ? "" : ": " + response),
+                                code == 408 || code == 429 || code >= 500);
+  }
+
+  @NotNull
+  private static String read(@Nullable InputStream in) throws IOException {
+    if (in == null)
+      return "";
+    StringBuilder result = new StringBuilder();
+    try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      char[] buffer = new char[4096];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        if (result.length() < MAX_ERROR_LENGTH)
+          result.append(buffer, 0, Math.min(read, MAX_ERROR_LENGTH - result.length()));
+      }
+    }
+    return result.toString();
+  }
+
+  @NotNull
+  private static String basic(@NotNull String username, @NotNull String password) {
+    return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Nullable
+  private static String truncate(@Nullable String text, int maxLength) {
+    return text == null || text.length() <= maxLength ? text : text.substring(0, maxLength - 3) + "...";
+  }
+}
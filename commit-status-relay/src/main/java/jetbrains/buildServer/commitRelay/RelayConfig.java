@@ -0,0 +1,110 @@
+package jetbrains.buildServer.commitRelay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import jetbrains.buildServer.commitPublisher.relay.spool.Provider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Settings of the relay read from a properties file:
+ * <pre>
+ * spoolDir=/data/teamcity/system/pluginData/commitStatusPublisher/relaySpool
+ * pollIntervalMs=100
+ * maxAttempts=8
+ * github.token=...
+ * github.token.github.example.com=...
+ * gitlab.token=...
+ * bitbucketServer.token=...
+ * bitbucketCloud.username=...
+ * bitbucketCloud.password=...
+ * azureDevOps.token=...
+ * </pre>
+ * A token with a host suffix is used for statuses of the API on that host, the token without it for all other hosts.
+ */
+class RelayConfig {
+
+  private final Properties myProperties;
+
+  RelayConfig(@NotNull Properties properties) {
+    myProperties = properties;
+  }
+
+  @NotNull
+  static RelayConfig load(@NotNull File file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    }
+    return new RelayConfig(properties);
+  }
+
+  @Nullable
+  File getSpoolDir() {
+    String dir = myProperties.getProperty("spoolDir");
+    return dir == null ? null : new File(dir);
+  }
+
+  long getPollIntervalMs() {
+    return getLong("pollIntervalMs", 100);
+  }
+
+  int getMaxAttempts() {
+    return (int)getLong("maxAttempts", 8);
+  }
+
+  int getConnectTimeoutMs() {
+    return (int)getLong("connectTimeoutMs", 10 * 1000);
+  }
+
+  int getReadTimeoutMs() {
+    return (int)getLong("readTimeoutMs", 30 * 1000);
+  }
+
+  @Nullable
+  String getToken(@NotNull Provider provider, @NotNull String host) {
+    return get(getPrefix(provider) + ".token", host);
+  }
+
+  @Nullable
+  String getUsername(@NotNull Provider provider, @NotNull String host) {
+    return get(getPrefix(provider) + ".username", host);
+  }
+
+  @Nullable
+  String getPassword(@NotNull Provider provider, @NotNull String host) {
+    return get(getPrefix(provider) + ".password", host);
+  }
+
+  @Nullable
+  private String get(@NotNull String name, @NotNull String host) {
+    String value = myProperties.getProperty(name + "." + host);
+    return value != null ? value : myProperties.getProperty(name);
+  }
+
+  private long getLong(@NotNull String name, long defaultValue) {
+    String value = myProperties.getProperty(name);
+    if (value == null)
+      return defaultValue;
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  @NotNull
+  private static String getPrefix(@NotNull Provider provider) {
+    switch (provider) {
+      case GITHUB: return "github";
+      case GITLAB: return "gitlab";
+      case BITBUCKET_SERVER: return "bitbucketServer";
+      case BITBUCKET_CLOUD: return "bitbucketCloud";
+      case AZURE_DEVOPS: return "azureDevOps";
+      default: throw new IllegalArgumentException("Unknown provider " + provider);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package jetbrains.buildServer.commitRelay;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+import jetbrains.buildServer.commitPublisher.relay.spool.Provider;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolRecord;
+import jetbrains.buildServer.commitPublisher.relay.spool.SpoolRecord.State;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.testng.Assert.fail;
+
+@Test
+public class ForgeClientTest {
+
+  private HttpServer myServer;
+  private String myApiUrl;
+  private Properties myProperties;
+  private final List<Request> myRequests = new ArrayList<Request>();
+  private volatile int myResponseCode;
+  private volatile String myResponse;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    myRequests.clear();
+    myResponseCode = 201;
+    myResponse = "{}";
+    myProperties = new Properties();
+    myServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    myServer.createContext("/", exchange -> {
+      Request request = new Request();
+      request.myPath = exchange.getRequestURI().getRawPath();
+      request.myQuery = exchange.getRequestURI().getRawQuery();
+      request.myAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+      request.myPrivateToken = exchange.getRequestHeaders().getFirst("PRIVATE-TOKEN");
+      request.myBody = new JsonParser().parse(read(exchange.getRequestBody())).getAsJsonObject();
+      synchronized (myRequests) {
+        myRequests.add(request);
+      }
+      byte[] response = myResponse.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(myResponseCode, response.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response);
+      }
+    });
+    myServer.start();
+    myApiUrl = "http://127.0.0.1:" + myServer.getAddress().getPort();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    myServer.stop(0);
+  }
+
+  public void should_post_github_status() throws Exception {
+    myProperties.setProperty("github.token", "secret");
+    String description = new String(new char[200]).replace('\0', 'x');
+    deliver(record(Provider.GITHUB, "owner", "repo", State.RUNNING, description));
+
+    Request request = getSingleRequest();
+    then(request.myPath).isEqualTo("/repos/owner/repo/statuses/abc");
+    then(request.myAuthorization).isEqualTo("token secret");
+    then(request.myBody.get("state").getAsString()).isEqualTo("pending");
+    then(request.myBody.get("context").getAsString()).isEqualTo("TeamCity: Build");
+    then(request.myBody.get("description").getAsString()).hasSize(140).endsWith("...");
+  }
+
+  public void should_use_token_of_api_host() throws Exception {
+    myProperties.setProperty("gitlab.token", "default");
+    myProperties.setProperty("gitlab.token.127.0.0.1", "host");
+    deliver(record(Provider.GITLAB, "group/subgroup", "my.repo", State.FAILURE, "Tests failed"));
+
+    Request request = getSingleRequest();
+    then(request.myPath).isEqualTo("/projects/group%2Fsubgroup%2Fmy%2Erepo/statuses/abc");
+    then(request.myPrivateToken).isEqualTo("host");
+    then(request.myBody.get("state").getAsString()).isEqualTo("failed");
+  }
+
+  public void should_post_bitbucket_cloud_status_with_basic_auth() throws Exception {
+    myProperties.setProperty("bitbucketCloud.username", "user");
+    myProperties.setProperty("bitbucketCloud.password", "password");
+    deliver(record(Provider.BITBUCKET_CLOUD, "owner", "repo", State.CANCELED, "Build canceled"));
+
+    Request request = getSingleRequest();
+    then(request.myPath).isEqualTo("/2.0/repositories/owner/repo/commit/abc/statuses/build");
+    then(request.myAuthorization).isEqualTo(basic("user:password"));
+    then(request.myBody.get("state").getAsString()).isEqualTo("STOPPED");
+    then(request.myBody.get("key").getAsString()).isEqualTo("key1");
+  }
+
+  public void should_post_azure_devops_status_to_project_of_repository() throws Exception {
+    myProperties.setProperty("azureDevOps.token", "secret");
+    deliver(record(Provider.AZURE_DEVOPS, "org/project/_git", "repo", State.SUCCESS, "Success"));
+
+    Request request = getSingleRequest();
+    then(request.myPath).isEqualTo("/project/_apis/git/repositories/repo/commits/abc/statuses");
+    then(request.myQuery).isEqualTo("api-version=4.1");
+    then(request.myAuthorization).isEqualTo(basic(":secret"));
+    then(request.myBody.get("state").getAsString()).isEqualTo("succeeded");
+    then(request.myBody.get("context").getAsJsonObject().get("name").getAsString()).isEqualTo("TeamCity: Build");
+  }
+
+  public void should_not_send_status_without_token() throws Exception {
+    DeliveryException e = deliverWithError(record(Provider.BITBUCKET_SERVER, "project", "repo", State.SUCCESS, "Success"));
+    then(e.isRetryable()).isFalse();
+    then(e.getMessage()).contains("No Bitbucket Server token");
+    then(myRequests).isEmpty();
+  }
+
+  public void should_retry_server_errors_only() throws Exception {
+    myProperties.setProperty("bitbucketServer.token", "secret");
+    myResponseCode = 503;
+    myResponse = "overloaded";
+    DeliveryException e = deliverWithError(record(Provider.BITBUCKET_SERVER, "project", "repo", State.SUCCESS, "Success"));
+    then(e.isRetryable()).isTrue();
+    then(e.getMessage()).contains("HTTP 503").contains("overloaded");
+
+    myResponseCode = 429;
+    then(deliverWithError(record(Provider.BITBUCKET_SERVER, "project", "repo", State.SUCCESS, "Success")).isRetryable()).isTrue();
+
+    myResponseCode = 404;
+    then(deliverWithError(record(Provider.BITBUCKET_SERVER, "project", "repo", State.SUCCESS, "Success")).isRetryable()).isFalse();
+    then(myRequests).hasSize(3);
+    then(myRequests.get(0).myPath).isEqualTo("/rest/build-status/1.0/commits/abc");
+    then(myRequests.get(0).myAuthorization).isEqualTo("Bearer secret");
+  }
+
+  private void deliver(SpoolRecord record) throws Exception {
+    new ForgeClient(new RelayConfig(myProperties)).deliver(record);
+  }
+
+  private DeliveryException deliverWithError(SpoolRecord record) throws Exception {
+    try {
+      deliver(record);
+    } catch (DeliveryException e) {
+      return e;
+    }
+    fail("Delivery must fail");
+    return null;
+  }
+
+  private SpoolRecord record(Provider provider, String owner, String repository, State state, String description) {
+    return new SpoolRecord(provider, myApiUrl, "https://example.com/" + owner + "/" + repository + ".git", owner, repository,
+                           "abc", state, "key1", "TeamCity: Build", "http://teamcity/build/1", description, System.currentTimeMillis());
+  }
+
+  private Request getSingleRequest() {
+    then(myRequests).hasSize(1);
+    return myRequests.get(0);
+  }
+
+  private static String basic(String credentials) {
+    return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      result.write(buffer, 0, read);
+    }
+    return new String(result.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static class Request {
+    private String myPath;
+    private String myQuery;
+    private String myAuthorization;
+    private String myPrivateToken;
+    private JsonObject myBody;
+  }
+}
@@ -0,0 +1,199 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import jetbrains.buildServer.BuildProblemData;
+import jetbrains.buildServer.messages.Status;
+import jetbrains.buildServer.requirements.Requirement;
+import jetbrains.buildServer.requirements.RequirementType;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.util.EventDispatcher;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Replays a recording made by {@link PublishingEventRecorder} against stub forges, keeping the timing of the recorded events.
+ *
+ * Every recorded build type becomes a build type with a publishing feature for each of its publishers, publishers without a stub,
+ * e.g. Gerrit, are replaced with {@code replay.defaultForge}. Builds are run by the test server at their first event,
+ * the listener is notified directly, so the fixture itself doesn't produce any events for it.
+ * Queued builds are kept in the queue of a twin build type which no agent can run.
+ *
+ * System properties:
+ * <ul>
+ *   <li>{@code replay.file} - the recording, required</li>
+ *   <li>{@code replay.speed} - how many times faster than recorded the events are replayed, 1 by default</li>
+ *   <li>{@code replay.defaultForge} - {@link Forge} for publishers without a stub, GITHUB by default</li>
+ *   <li>{@code loadTest.faults} and {@code loadTest.faults.<FORGE>} - fault profiles of stubs as in {@link LoadTest}</li>
+ * </ul>
+ */
+public class EventReplay extends LoadTest {
+
+  private static final String HOLD_IN_QUEUE_REQUIREMENT = "replay.holdInQueue";
+
+  private final EventDispatcher<BuildServerListener> myListenerEvents = EventDispatcher.create(BuildServerListener.class);
+  private final Map<Forge, StubForge> myStubs = new EnumMap<Forge, StubForge>(Forge.class);
+  private final Map<Integer, SBuildType> myBuildTypes = new HashMap<Integer, SBuildType>();
+  private final Map<Integer, SBuildType> myQueueBuildTypes = new HashMap<Integer, SBuildType>();
+  private final Map<Integer, SQueuedBuild> myQueuedBuilds = new HashMap<Integer, SQueuedBuild>();
+  private final Map<Integer, SRunningBuild> myBuilds = new HashMap<Integer, SRunningBuild>();
+  private final Set<Integer> myFailedBuilds = new HashSet<Integer>();
+
+  public static void main(String[] args) throws Exception {
+    String file = System.getProperty("replay.file");
+    if (file == null) {
+      System.err.println("Specify the recording with -Dreplay.file=<path>");
+      System.exit(1);
+    }
+    EventReplay replay = new EventReplay();
+    replay.setUp();
+    try {
+      replay.replay(read(new File(file)));
+    } finally {
+      replay.tearDown();
+      System.exit(0);
+    }
+  }
+
+  @NotNull
+  @Override
+  protected EventDispatcher<BuildServerListener> getListenerEvents() {
+    return myListenerEvents;
+  }
+
+  @NotNull
+  static List<RecordedEvent> read(@NotNull File file) throws IOException {
+    List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+    InputStream in = new FileInputStream(file);
+    if (file.getName().endsWith(".gz"))
+      in = new GZIPInputStream(in);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        RecordedEvent event = RecordedEvent.parse(line);
+        if (event != null)
+          result.add(event);
+      }
+    }
+    return result;
+  }
+
+  private void replay(@NotNull List<RecordedEvent> events) throws Exception {
+    if (events.isEmpty()) {
+      System.out.println("The recording has no events");
+      return;
+    }
+    double speed = Double.parseDouble(System.getProperty("replay.speed", "1"));
+    Forge defaultForge = Forge.valueOf(System.getProperty("replay.defaultForge", Forge.GITHUB.name()));
+    long drainTimeoutMs = TimeUnit.MINUTES.toMillis(Long.getLong("loadTest.drainTimeoutMinutes", 10));
+
+    for (RecordedEvent event : events) {
+      if (event.isFailed())
+        myFailedBuilds.add(event.getBuild());
+      if (!myBuildTypes.containsKey(event.getBuildType()))
+        createBuildTypes(event, defaultForge);
+    }
+    long recordedMs = events.get(events.size() - 1).getOffsetMs();
+    System.out.println("Replaying " + events.size() + " events of " + myBuildTypes.size() + " build configurations recorded during " +
+                       recordedMs / 1000 + " s at speed " + speed);
+
+    startThreadSampling();
+    long start = System.currentTimeMillis();
+    long maxLagMs = 0;
+    for (RecordedEvent event : events) {
+      long due = start + (long)(event.getOffsetMs() / speed);
+      long now = System.currentTimeMillis();
+      if (due > now)
+        Thread.sleep(due - now);
+      else
+        maxLagMs = Math.max(maxLagMs, now - due);
+      dispatch(event);
+    }
+    long eventsFinished = System.currentTimeMillis();
+    boolean drained = waitForPublishing(drainTimeoutMs);
+    long finish = System.currentTimeMillis();
+    stopThreadSampling();
+    for (SQueuedBuild queued : myQueuedBuilds.values()) {
+      queued.removeFromQueue(null, "Replay is finished");
+    }
+
+    report(String.format("Events: %d in %.1f s, recorded in %.1f s, max replay lag %d ms", events.size(), (eventsFinished - start) / 1000.0,
+                         recordedMs / 1000.0, maxLagMs), start, eventsFinished, finish, drained);
+  }
+
+  private void createBuildTypes(@NotNull RecordedEvent event, @NotNull Forge defaultForge) throws Exception {
+    List<StubForge> stubs = new ArrayList<StubForge>();
+    for (String publisherId : event.getPublishers()) {
+      Forge forge = Arrays.stream(Forge.values()).filter(f -> f.getPublisherId().equals(publisherId)).findFirst().orElse(defaultForge);
+      StubForge stub = myStubs.get(forge);
+      if (stub == null) {
+        stub = startForge(forge);
+        myStubs.put(forge, stub);
+      }
+      if (!stubs.contains(stub))
+        stubs.add(stub);
+    }
+    myBuildTypes.put(event.getBuildType(), createBuildType("Replay" + event.getBuildType(), stubs));
+    SBuildType queueBuildType = createBuildType("ReplayQueue" + event.getBuildType(), stubs);
+    queueBuildType.addRequirement(new Requirement(HOLD_IN_QUEUE_REQUIREMENT, null, RequirementType.EXISTS));
+    myQueueBuildTypes.put(event.getBuildType(), queueBuildType);
+  }
+
+  private void dispatch(@NotNull RecordedEvent event) {
+    switch (event.getEvent()) {
+      case QUEUED:
+        myListener.buildTypeAddedToQueue(getQueuedBuild(event));
+        break;
+      case REMOVED_FROM_QUEUE:
+        myListener.buildRemovedFromQueue(getQueuedBuild(event), null, null);
+        break;
+      case STARTED:
+        myListener.changesLoaded(getBuild(event));
+        break;
+      case FINISHED:
+        myListener.buildFinished(getBuild(event));
+        break;
+      case INTERRUPTED:
+        myListener.buildInterrupted(getBuild(event));
+        break;
+      case FAILURE_DETECTED:
+        myListener.buildChangedStatus(getBuild(event), Status.NORMAL, Status.FAILURE);
+        break;
+      case MARKED_AS_SUCCESSFUL:
+        myListener.buildProblemsChanged(getBuild(event), Collections.singletonList(BuildProblemData.createBuildProblem("replay", "replay", "Replayed problem")),
+                                        Collections.emptyList());
+        break;
+      case COMMENTED:
+        myListener.buildCommented(getBuild(event), null, "Replayed comment");
+        break;
+    }
+  }
+
+  @NotNull
+  private SQueuedBuild getQueuedBuild(@NotNull RecordedEvent event) {
+    return myQueuedBuilds.computeIfAbsent(event.getBuild(), b -> {
+      BuildCustomizer customizer = myFixture.getSingletonService(BuildCustomizerFactory.class).createBuildCustomizer(myQueueBuildTypes.get(event.getBuildType()), null);
+      // makes builds different, so that the queue doesn't merge them
+      customizer.setParameters(Collections.singletonMap("replay.build", String.valueOf(b)));
+      SQueuedBuild queued = customizer.createPromotion().addToQueue("replay");
+      if (queued == null)
+        throw new IllegalStateException("Build " + b + " was not added to the queue");
+      return queued;
+    });
+  }
+
+  /**
+   * @return the build of the event, runs it on the first call, the build is finished right away,
+   * the listener finds it in the history when publishing any of its statuses
+   */
+  @NotNull
+  private SRunningBuild getBuild(@NotNull RecordedEvent event) {
+    return myBuilds.computeIfAbsent(event.getBuild(), b -> {
+      SRunningBuild build = myFixture.startBuild(myBuildTypes.get(event.getBuildType()));
+      myFixture.finishBuild(build, myFailedBuilds.contains(b));
+      return build;
+    });
+  }
+}
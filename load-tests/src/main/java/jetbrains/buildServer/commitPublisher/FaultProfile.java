@@ -0,0 +1,88 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Random;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Describes how a stub forge misbehaves: the latency of its responses follows a log-normal distribution
+ * given by its median and 99th percentile, some requests fail, are throttled or never get a response.
+ *
+ * The profile is parsed from a comma separated list, e.g. {@code median=50,p99=800,errors=0.01,throttled=0.02,hangs=0.001,hangMs=120000},
+ * omitted values keep their defaults.
+ */
+class FaultProfile {
+
+  enum Fault {
+    NONE, ERROR, THROTTLED, HANG
+  }
+
+  private static final double Z_99 = 2.326;
+
+  private long myMedianMs = 30;
+  private long myP99Ms = 300;
+  private double myErrorRate;
+  private double myThrottledRate;
+  private int myRetryAfterSeconds = 1;
+  private double myHangRate;
+  private long myHangMs = 120000;
+
+  @NotNull
+  static FaultProfile parse(@NotNull String spec) {
+    FaultProfile profile = new FaultProfile();
+    for (String pair : spec.split(",")) {
+      if (pair.trim().isEmpty())
+        continue;
+      int idx = pair.indexOf('=');
+      if (idx < 0)
+        throw new IllegalArgumentException("Bad fault profile entry '" + pair + "', name=value expected");
+      String name = pair.substring(0, idx).trim();
+      String value = pair.substring(idx + 1).trim();
+      switch (name) {
+        case "median": profile.myMedianMs = Long.parseLong(value); break;
+        case "p99": profile.myP99Ms = Long.parseLong(value); break;
+        case "errors": profile.myErrorRate = Double.parseDouble(value); break;
+        case "throttled": profile.myThrottledRate = Double.parseDouble(value); break;
+        case "retryAfter": profile.myRetryAfterSeconds = Integer.parseInt(value); break;
+        case "hangs": profile.myHangRate = Double.parseDouble(value); break;
+        case "hangMs": profile.myHangMs = Long.parseLong(value); break;
+        default: throw new IllegalArgumentException("Unknown fault profile entry '" + name + "'");
+      }
+    }
+    if (profile.myMedianMs <= 0 || profile.myP99Ms < profile.myMedianMs)
+      throw new IllegalArgumentException("Median latency must be positive and not greater than p99 in '" + spec + "'");
+    return profile;
+  }
+
+  long nextLatencyMs(@NotNull Random random) {
+    double sigma = Math.log((double)myP99Ms / myMedianMs) / Z_99;
+    return Math.round(myMedianMs * Math.exp(sigma * random.nextGaussian()));
+  }
+
+  @NotNull
+  Fault nextFault(@NotNull Random random) {
+    double value = random.nextDouble();
+    if (value < myHangRate)
+      return Fault.HANG;
+    value -= myHangRate;
+    if (value < myThrottledRate)
+      return Fault.THROTTLED;
+    value -= myThrottledRate;
+    if (value < myErrorRate)
+      return Fault.ERROR;
+    return Fault.NONE;
+  }
+
+  int getRetryAfterSeconds() {
+    return myRetryAfterSeconds;
+  }
+
+  long getHangMs() {
+    return myHangMs;
+  }
+
+  @Override
+  public String toString() {
+    return "median=" + myMedianMs + ",p99=" + myP99Ms + ",errors=" + myErrorRate + ",throttled=" + myThrottledRate +
+           ",retryAfter=" + myRetryAfterSeconds + ",hangs=" + myHangRate + ",hangMs=" + myHangMs;
+  }
+}
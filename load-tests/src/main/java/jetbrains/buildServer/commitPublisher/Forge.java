@@ -0,0 +1,149 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.HashMap;
+import java.util.Map;
+import jetbrains.buildServer.commitPublisher.tfs.TfsConstants;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Forges simulated by the load test: publisher settings pointing to a stub server and the minimal answers the publishers need
+ */
+enum Forge {
+
+  GITHUB(Constants.GITHUB_PUBLISHER_ID) {
+    @NotNull
+    @Override
+    Map<String, String> getPublisherParams(@NotNull String serverUrl) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(Constants.GITHUB_USERNAME, "user");
+      params.put(Constants.GITHUB_PASSWORD, "pwd");
+      params.put(Constants.GITHUB_SERVER, serverUrl);
+      return params;
+    }
+  },
+
+  GITLAB(Constants.GITLAB_PUBLISHER_ID) {
+    @NotNull
+    @Override
+    Map<String, String> getPublisherParams(@NotNull String serverUrl) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(Constants.GITLAB_TOKEN, "TOKEN");
+      params.put(Constants.GITLAB_API_URL, serverUrl + "/api/v4");
+      return params;
+    }
+  },
+
+  BITBUCKET_SERVER(Constants.STASH_PUBLISHER_ID) {
+    @NotNull
+    @Override
+    Map<String, String> getPublisherParams(@NotNull String serverUrl) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(Constants.STASH_USERNAME, "user");
+      params.put(Constants.STASH_PASSWORD, "pwd");
+      params.put(Constants.STASH_BASE_URL, serverUrl);
+      return params;
+    }
+
+    @Nullable
+    @Override
+    String respond(@NotNull String method, @NotNull String uri, @Nullable String body) {
+      if (uri.endsWith("/rest/api/1.0/application-properties"))
+        return "{\"version\":\"7.4.0\",\"displayName\":\"Bitbucket Server\"}";
+      return super.respond(method, uri, body);
+    }
+  },
+
+  BITBUCKET_CLOUD(Constants.BITBUCKET_PUBLISHER_ID) {
+    @NotNull
+    @Override
+    Map<String, String> getPublisherParams(@NotNull String serverUrl) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(Constants.BITBUCKET_CLOUD_USERNAME, "user");
+      params.put(Constants.BITBUCKET_CLOUD_PASSWORD, "pwd");
+      return params;
+    }
+  },
+
+  AZURE_DEVOPS(TfsConstants.ID) {
+    @NotNull
+    @Override
+    Map<String, String> getPublisherParams(@NotNull String serverUrl) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(TfsConstants.ACCESS_TOKEN, "token");
+      return params;
+    }
+
+    @NotNull
+    @Override
+    String getVcsUrl(@NotNull String serverUrl) {
+      return serverUrl + "/_git/" + REPOSITORY;
+    }
+  },
+
+  SPACE(jetbrains.buildServer.commitPublisher.space.Constants.SPACE_PUBLISHER_ID) {
+    /**
+     * The connection id is added by the load test, since the connection is a feature of the project
+     */
+    @NotNull
+    @Override
+    Map<String, String> getPublisherParams(@NotNull String serverUrl) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(jetbrains.buildServer.commitPublisher.space.Constants.SPACE_CREDENTIALS_TYPE,
+                 jetbrains.buildServer.commitPublisher.space.Constants.SPACE_CREDENTIALS_CONNECTION);
+      params.put(jetbrains.buildServer.commitPublisher.space.Constants.SPACE_PROJECT_KEY, OWNER);
+      return params;
+    }
+
+    @Nullable
+    @Override
+    String respond(@NotNull String method, @NotNull String uri, @Nullable String body) {
+      if (uri.endsWith("oauth/token"))
+        return "{\"token_type\":\"Bearer\",\"access_token\":\"token\"}";
+      return super.respond(method, uri, body);
+    }
+  },
+
+  UPSOURCE(Constants.UPSOURCE_PUBLISHER_ID) {
+    @NotNull
+    @Override
+    Map<String, String> getPublisherParams(@NotNull String serverUrl) {
+      Map<String, String> params = new HashMap<String, String>();
+      params.put(Constants.UPSOURCE_PROJECT_ID, "PRJ1");
+      params.put(Constants.UPSOURCE_USERNAME, "user");
+      params.put(Constants.UPSOURCE_PASSWORD, "pwd");
+      params.put(Constants.UPSOURCE_SERVER_URL, serverUrl);
+      return params;
+    }
+  };
+
+  static final String OWNER = "owner";
+  static final String REPOSITORY = "project";
+
+  private final String myPublisherId;
+
+  Forge(@NotNull String publisherId) {
+    myPublisherId = publisherId;
+  }
+
+  @NotNull
+  String getPublisherId() {
+    return myPublisherId;
+  }
+
+  @NotNull
+  abstract Map<String, String> getPublisherParams(@NotNull String serverUrl);
+
+  @NotNull
+  String getVcsUrl(@NotNull String serverUrl) {
+    return serverUrl + "/" + OWNER + "/" + REPOSITORY;
+  }
+
+  /**
+   * @return body of a successful response, null to respond with 404
+   */
+  @Nullable
+  String respond(@NotNull String method, @NotNull String uri, @Nullable String body) {
+    return "POST".equals(method) || "GET".equals(method) ? "{}" : null;
+  }
+}
@@ -0,0 +1,341 @@
+package jetbrains.buildServer.commitPublisher;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.security.KeyStore;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.bitbucketCloud.StubBitbucketCloudSettings;
+import jetbrains.buildServer.commitPublisher.github.ChangeStatusUpdater;
+import jetbrains.buildServer.commitPublisher.github.GitHubSettings;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubApiFactoryImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.HttpClientWrapperImpl;
+import jetbrains.buildServer.commitPublisher.gitlab.GitlabSettings;
+import jetbrains.buildServer.commitPublisher.metrics.LatencyHistogram;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.commitPublisher.space.SpaceSettings;
+import jetbrains.buildServer.commitPublisher.stash.StashSettings;
+import jetbrains.buildServer.commitPublisher.tfs.TfsPublisherSettings;
+import jetbrains.buildServer.commitPublisher.tfs.TfsPullRequestCache;
+import jetbrains.buildServer.commitPublisher.upsource.UpsourcePayloadCache;
+import jetbrains.buildServer.commitPublisher.upsource.UpsourceSettings;
+import jetbrains.buildServer.serverSide.BuildServerListener;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.SRunningBuild;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.serverSide.impl.executors.SimpleExecutorServices;
+import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
+import jetbrains.buildServer.serverSide.oauth.OAuthConstants;
+import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
+import jetbrains.buildServer.util.EventDispatcher;
+import jetbrains.buildServer.util.HTTPRequestBuilder;
+import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
+import jetbrains.buildServer.vcs.SVcsRoot;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Drives synthetic builds through {@link CommitStatusPublisherListener} with real publishers sending statuses to stub forges,
+ * then reports throughput, latency percentiles and thread usage.
+ *
+ * The server is the in-memory one of the functional tests. The load is configured by system properties:
+ * <ul>
+ *   <li>{@code loadTest.builds} - number of builds to run, 2000 by default</li>
+ *   <li>{@code loadTest.buildTypes} - number of build configurations, 50 by default, forges are assigned to them round robin</li>
+ *   <li>{@code loadTest.forges} - comma separated {@link Forge} names, all by default</li>
+ *   <li>{@code loadTest.faults} - {@link FaultProfile} of all stub forges, {@code loadTest.faults.<FORGE>} overrides it for one forge</li>
+ *   <li>{@code loadTest.failedBuildsRate} - share of failed builds, 0.1 by default</li>
+ *   <li>{@code loadTest.drainTimeoutMinutes} - how long to wait for the statuses after the last build, 10 by default</li>
+ * </ul>
+ */
+public class LoadTest extends CommitStatusPublisherTestBase {
+
+  private static final long SAMPLING_INTERVAL_MS = 100;
+
+  private final List<StubForge> myForges = new ArrayList<StubForge>();
+  private final List<SBuildType> myBuildTypes = new ArrayList<SBuildType>();
+  private final Map<StubForge, String> mySpaceConnections = new HashMap<StubForge, String>();
+  private final ThreadUsage myThreadUsage = new ThreadUsage();
+  protected CommitStatusPublisherListener myListener;
+  private SimpleExecutorServices myExecServices;
+  private OAuthConnectionsManager myOAuthConnectionsManager;
+  private OAuthTokensStorage myOAuthTokensStorage;
+  private SSLTrustStoreProvider myTrustStoreProvider;
+  private PublishedStateCache myPublishedStates;
+  private PublishingMetrics myMetrics;
+  private RepositoryRouteCache myRoutes;
+
+  public static void main(String[] args) throws Exception {
+    LoadTest test = new LoadTest();
+    test.setUp();
+    try {
+      test.run();
+    } finally {
+      test.tearDown();
+      System.exit(0);
+    }
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myExecServices = myFixture.getSingletonService(SimpleExecutorServices.class);
+    myExecServices.start();
+    myOAuthConnectionsManager = new OAuthConnectionsManager(myServer, myWebLinks);
+    myOAuthTokensStorage = new OAuthTokensStorage(myFixture.getServerPaths(), myFixture.getSingletonService(ExecutorServices.class), myFixture.getEncryptionManager());
+    myTrustStoreProvider = new SSLTrustStoreProvider() {
+      @Nullable
+      @Override
+      public KeyStore getTrustStore() {
+        return null;
+      }
+    };
+    myPublishedStates = new PublishedStateCache();
+    myMetrics = new PublishingMetrics();
+    myRoutes = new RepositoryRouteCache();
+    myListener = new CommitStatusPublisherListener(getListenerEvents(), new PublisherManager(myServer), myFixture.getHistory(), myBuildsManager,
+                                                   myFixture.getBuildPromotionManager(), myProblems, myFixture.getServerResponsibility(),
+                                                   myFixture.getSingletonService(ExecutorServices.class), myMultiNodeTasks,
+                                                   myRoutes, new PublishAuditLog(), new PublishingOperations(), myMetrics,
+                                                   new PublishingEventRecorder(myFixture.getSingletonService(ExecutorServices.class), myFixture.getServerPaths()));
+  }
+
+  /**
+   * @return events the listener is subscribed to, builds of the fixture notify the listener by default
+   */
+  @NotNull
+  protected EventDispatcher<BuildServerListener> getListenerEvents() {
+    return myFixture.getEventDispatcher();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    myThreadUsage.stop();
+    for (StubForge forge : myForges) {
+      forge.stop();
+    }
+    super.tearDown();
+  }
+
+  private void run() throws Exception {
+    int builds = Integer.getInteger("loadTest.builds", 2000);
+    int buildTypes = Integer.getInteger("loadTest.buildTypes", 50);
+    double failedBuildsRate = Double.parseDouble(System.getProperty("loadTest.failedBuildsRate", "0.1"));
+    long drainTimeoutMs = TimeUnit.MINUTES.toMillis(Long.getLong("loadTest.drainTimeoutMinutes", 10));
+
+    startForges();
+    for (int i = 0; i < buildTypes; i++) {
+      myBuildTypes.add(createBuildType("LoadTest" + i, Collections.singletonList(myForges.get(i % myForges.size()))));
+    }
+
+    System.out.println("Running " + builds + " builds of " + buildTypes + " build configurations against " +
+                       myForges.stream().map(f -> f.getForge().name()).collect(Collectors.joining(", ")));
+    startThreadSampling();
+    Random random = new Random(42);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < builds; i++) {
+      SBuildType buildType = myBuildTypes.get(i % myBuildTypes.size());
+      buildType.addToQueue("");
+      SRunningBuild build = myFixture.flushQueueAndWait();
+      myFixture.finishBuild(build, random.nextDouble() < failedBuildsRate);
+    }
+    long buildsFinished = System.currentTimeMillis();
+    boolean drained = waitForPublishing(drainTimeoutMs);
+    long finish = System.currentTimeMillis();
+    stopThreadSampling();
+
+    report(String.format("Builds: %d in %.1f s", builds, (buildsFinished - start) / 1000.0), start, buildsFinished, finish, drained);
+  }
+
+  private void startForges() throws Exception {
+    String forges = System.getProperty("loadTest.forges");
+    List<Forge> selected = forges == null
+                           ? Arrays.asList(Forge.values())
+                           : Arrays.stream(forges.split(",")).map(String::trim).map(Forge::valueOf).collect(Collectors.toList());
+    for (Forge forge : selected) {
+      startForge(forge);
+    }
+  }
+
+  /**
+   * Starts the stub with the fault profile given by system properties and registers settings of its publisher
+   */
+  @NotNull
+  protected StubForge startForge(@NotNull Forge forge) throws Exception {
+    String faults = System.getProperty("loadTest.faults." + forge.name(), System.getProperty("loadTest.faults", ""));
+    FaultProfile profile = FaultProfile.parse(faults);
+    StubForge stub = new StubForge(forge, profile);
+    stub.start();
+    myForges.add(stub);
+    CommitStatusPublisherSettings settings = createSettings(forge, stub.getUrl());
+    myServer.registerExtension(CommitStatusPublisherSettings.class, settings.getId(), settings);
+    System.out.println(forge + " at " + stub.getUrl() + ": " + profile);
+    return stub;
+  }
+
+  @NotNull
+  private CommitStatusPublisherSettings createSettings(@NotNull Forge forge, @NotNull String serverUrl) {
+    MockPluginDescriptor descriptor = new MockPluginDescriptor();
+    switch (forge) {
+      case GITHUB:
+        GitHubApiFactoryImpl apiFactory = new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
+                                                                   myPublishedStates, myMetrics);
+        ChangeStatusUpdater updater = new ChangeStatusUpdater(apiFactory, myWebLinks, myFixture.getVcsHistory(), myRoutes, myMetrics, new PublishAuditLog());
+        return new GitHubSettings(updater, myExecServices, descriptor, myWebLinks, myProblems, myOAuthConnectionsManager, myOAuthTokensStorage,
+                                  myFixture.getSecurityContext(), myTrustStoreProvider);
+      case GITLAB:
+        return new GitlabSettings(myExecServices, descriptor, myWebLinks, myProblems, myTrustStoreProvider, myPublishedStates, myMetrics, myRoutes);
+      case BITBUCKET_SERVER:
+        return new StashSettings(myExecServices, descriptor, myWebLinks, myProblems, myTrustStoreProvider, myPublishedStates, myMetrics, myRoutes);
+      case BITBUCKET_CLOUD:
+        return new StubBitbucketCloudSettings(myExecServices, descriptor, myWebLinks, myProblems, myTrustStoreProvider, myPublishedStates, myMetrics, myRoutes,
+                                              serverUrl + "/");
+      case AZURE_DEVOPS:
+        return new TfsPublisherSettings(myExecServices, descriptor, myWebLinks, myProblems, myOAuthConnectionsManager, myOAuthTokensStorage,
+                                        myFixture.getSecurityContext(), myTrustStoreProvider, myPublishedStates, myMetrics, myRoutes, new TfsPullRequestCache());
+      case SPACE:
+        return new SpaceSettings(myExecServices, descriptor, myWebLinks, myProblems, myTrustStoreProvider, myOAuthConnectionsManager, myOAuthTokensStorage,
+                                 myPublishedStates, myMetrics, myRoutes);
+      case UPSOURCE:
+        return new UpsourceSettings(myFixture.getVcsHistory(), myExecServices, descriptor, myWebLinks, myProblems, myTrustStoreProvider,
+                                    myPublishedStates, myMetrics, new UpsourcePayloadCache());
+      default:
+        throw new IllegalArgumentException("Unsupported forge " + forge);
+    }
+  }
+
+  /**
+   * Creates a build type with a VCS root and a commit status publisher feature for every stub
+   */
+  @NotNull
+  protected SBuildType createBuildType(@NotNull String id, @NotNull List<StubForge> stubs) {
+    SBuildType buildType = myProject.createBuildType(id, id);
+    for (StubForge stub : stubs) {
+      Forge forge = stub.getForge();
+      SVcsRoot vcsRoot = myFixture.addVcsRoot("jetbrains.git", id + "_" + forge.name(), buildType);
+      vcsRoot.setProperties(Collections.singletonMap("url", forge.getVcsUrl(stub.getUrl())));
+      myCurrentVersions.put(vcsRoot.getName(), String.valueOf(1000 + myCurrentVersions.size()));
+
+      Map<String, String> params = forge.getPublisherParams(stub.getUrl());
+      params.put(Constants.PUBLISHER_ID_PARAM, forge.getPublisherId());
+      if (forge == Forge.SPACE)
+        params.put(jetbrains.buildServer.commitPublisher.space.Constants.SPACE_CONNECTION_ID, getSpaceConnectionId(stub));
+      buildType.addBuildFeature(CommitStatusPublisherFeature.TYPE, params);
+    }
+    return buildType;
+  }
+
+  @NotNull
+  private String getSpaceConnectionId(@NotNull StubForge stub) {
+    return mySpaceConnections.computeIfAbsent(stub, s -> {
+      Map<String, String> connection = new HashMap<String, String>();
+      connection.put(jetbrains.buildServer.commitPublisher.space.Constants.SPACE_CLIENT_ID, "clientId");
+      connection.put(jetbrains.buildServer.commitPublisher.space.Constants.SPACE_CLIENT_SECRET, "clientSecret");
+      connection.put(jetbrains.buildServer.commitPublisher.space.Constants.SPACE_SERVER_URL, s.getUrl());
+      return myProject.addFeature(OAuthConstants.FEATURE_TYPE, connection).getId();
+    });
+  }
+
+  protected boolean waitForPublishing(long timeoutMs) throws InterruptedException {
+    Set<String> events = Arrays.stream(Event.values()).map(Event::getName).collect(Collectors.toSet());
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (System.currentTimeMillis() < deadline) {
+      if (myMultiNodeTasks.findTasks(events).isEmpty() && myMetrics.getInFlightEventsCount() == 0)
+        return true;
+      Thread.sleep(SAMPLING_INTERVAL_MS);
+    }
+    return false;
+  }
+
+  protected void startThreadSampling() {
+    myThreadUsage.start();
+  }
+
+  protected void stopThreadSampling() {
+    myThreadUsage.stop();
+  }
+
+  /**
+   * @param summary describes the load, e.g. the number of builds and how long it took to run them
+   * @param eventsFinished time of the last build event
+   */
+  protected void report(@NotNull String summary, long start, long eventsFinished, long finish, boolean drained) {
+    long statuses = 0;
+    StringBuilder out = new StringBuilder();
+    out.append("\n=== Commit status publishing load test ===\n");
+    out.append(String.format("%s, statuses were published %.1f s after the last build event%s%n", summary,
+                             (finish - eventsFinished) / 1000.0, drained ? "" : " (NOT DRAINED, timed out)"));
+    out.append("Statuses (publisher|event|outcome):\n");
+    for (Map.Entry<String, Long> entry : myMetrics.getEventCounts().entrySet()) {
+      out.append(String.format("  %-60s %d%n", entry.getKey(), entry.getValue()));
+      statuses += entry.getValue();
+    }
+    out.append(String.format("Throughput: %.1f statuses/s%n", statuses * 1000.0 / Math.max(1, finish - start)));
+    out.append(String.format("Requests: %d, failed: %d%n", myMetrics.getRequestsCount(), myMetrics.getFailedRequestsCount()));
+    appendPercentiles(out, "From build event to published status", myMetrics.getStageHistogram(PublishingTrace.TOTAL));
+    appendPercentiles(out, "Waiting in the executor queue", myMetrics.getStageHistogram(PublishingTrace.QUEUE));
+    appendPercentiles(out, "Waiting for the build configuration lock", myMetrics.getStageHistogram(PublishingTrace.LOCK));
+    appendPercentiles(out, "Publishing by a publisher", myMetrics.getStageHistogram(PublishingTrace.PUBLISH));
+    out.append(String.format("Threads: peak live %d (%d at start), peak busy publishing threads %d, peak executor queue %d%n",
+                             myThreadUsage.myPeakThreads.get(), myThreadUsage.myInitialThreads, myThreadUsage.myPeakActive.get(), myThreadUsage.myPeakQueue.get()));
+    out.append("Stub forges:\n");
+    for (StubForge stub : myForges) {
+      out.append(String.format("  %-18s requests %d, errors %d, throttled %d, hangs %d, peak concurrent requests %d%n", stub.getForge(),
+                               stub.getRequestsCount(), stub.getFaultsCount(FaultProfile.Fault.ERROR), stub.getFaultsCount(FaultProfile.Fault.THROTTLED),
+                               stub.getFaultsCount(FaultProfile.Fault.HANG), stub.getPeakInFlight()));
+    }
+    System.out.println(out);
+  }
+
+  private static void appendPercentiles(@NotNull StringBuilder out, @NotNull String title, @Nullable LatencyHistogram histogram) {
+    if (histogram == null || histogram.getCount() == 0) {
+      out.append(title).append(": no data\n");
+      return;
+    }
+    out.append(String.format("%s: p50 <= %s, p90 <= %s, p99 <= %s, mean %d ms (%d samples)%n", title,
+                             formatBound(histogram.getPercentileMs(50)), formatBound(histogram.getPercentileMs(90)),
+                             formatBound(histogram.getPercentileMs(99)), histogram.getSumMs() / histogram.getCount(), histogram.getCount()));
+  }
+
+  @NotNull
+  private static String formatBound(long ms) {
+    return ms == Long.MAX_VALUE ? "inf" : ms + " ms";
+  }
+
+  /**
+   * Samples live threads of the JVM and the executor publishing statuses
+   */
+  private class ThreadUsage {
+    private final ThreadMXBean myThreads = ManagementFactory.getThreadMXBean();
+    private final AtomicInteger myPeakThreads = new AtomicInteger();
+    private final AtomicInteger myPeakActive = new AtomicInteger();
+    private final AtomicInteger myPeakQueue = new AtomicInteger();
+    private int myInitialThreads;
+    private ScheduledExecutorService mySampler;
+
+    void start() {
+      myInitialThreads = myThreads.getThreadCount();
+      ExecutorService executor = myFixture.getSingletonService(ExecutorServices.class).getLowPriorityExecutorService();
+      mySampler = Executors.newSingleThreadScheduledExecutor();
+      mySampler.scheduleAtFixedRate(() -> {
+        myPeakThreads.accumulateAndGet(myThreads.getThreadCount(), Math::max);
+        if (executor instanceof ThreadPoolExecutor) {
+          myPeakActive.accumulateAndGet(((ThreadPoolExecutor)executor).getActiveCount(), Math::max);
+          myPeakQueue.accumulateAndGet(((ThreadPoolExecutor)executor).getQueue().size(), Math::max);
+        }
+      }, 0, SAMPLING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+      if (mySampler != null)
+        mySampler.shutdownNow();
+    }
+  }
+}
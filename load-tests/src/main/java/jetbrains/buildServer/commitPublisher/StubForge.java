@@ -0,0 +1,124 @@
+package jetbrains.buildServer.commitPublisher;
+
+import com.intellij.openapi.util.io.StreamUtil;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Embedded HTTP server standing in for a forge, set up the same way as the one of {@link HttpPublisherTest}.
+ * Every request is delayed and possibly failed according to the {@link FaultProfile}, the rest is answered by the forge.
+ */
+class StubForge {
+
+  private final Forge myForge;
+  private final FaultProfile myProfile;
+  private final AtomicLongArray myFaults = new AtomicLongArray(FaultProfile.Fault.values().length);
+  private final AtomicInteger myInFlight = new AtomicInteger();
+  private final AtomicInteger myPeakInFlight = new AtomicInteger();
+  private HttpServer myServer;
+
+  StubForge(@NotNull Forge forge, @NotNull FaultProfile profile) {
+    myForge = forge;
+    myProfile = profile;
+  }
+
+  void start() throws IOException {
+    myServer = ServerBootstrap.bootstrap()
+                              .setSocketConfig(SocketConfig.custom().setSoTimeout((int)myProfile.getHangMs() * 2).build())
+                              .setServerInfo("STUB/1.1")
+                              .registerHandler("/*", (request, response, context) -> handle(request, response))
+                              .create();
+    myServer.start();
+  }
+
+  void stop() {
+    if (myServer != null)
+      myServer.shutdown(1, TimeUnit.SECONDS);
+  }
+
+  @NotNull
+  Forge getForge() {
+    return myForge;
+  }
+
+  @NotNull
+  String getUrl() {
+    return "http://localhost:" + myServer.getLocalPort();
+  }
+
+  long getRequestsCount() {
+    long result = 0;
+    for (int i = 0; i < myFaults.length(); i++) {
+      result += myFaults.get(i);
+    }
+    return result;
+  }
+
+  long getFaultsCount(@NotNull FaultProfile.Fault fault) {
+    return myFaults.get(fault.ordinal());
+  }
+
+  int getPeakInFlight() {
+    return myPeakInFlight.get();
+  }
+
+  private void handle(@NotNull HttpRequest request, @NotNull HttpResponse response) throws IOException {
+    int inFlight = myInFlight.incrementAndGet();
+    myPeakInFlight.accumulateAndGet(inFlight, Math::max);
+    try {
+      String body = null;
+      if (request instanceof HttpEntityEnclosingRequest)
+        body = StreamUtil.readText(((HttpEntityEnclosingRequest)request).getEntity().getContent());
+
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      FaultProfile.Fault fault = myProfile.nextFault(random);
+      myFaults.incrementAndGet(fault.ordinal());
+      sleep(fault == FaultProfile.Fault.HANG ? myProfile.getHangMs() : myProfile.nextLatencyMs(random));
+      switch (fault) {
+        case ERROR:
+          response.setStatusCode(503);
+          return;
+        case THROTTLED:
+          response.setStatusCode(429);
+          response.setHeader("Retry-After", String.valueOf(myProfile.getRetryAfterSeconds()));
+          return;
+        default:
+          respond(request.getRequestLine().getMethod(), request.getRequestLine().getUri(), body, response);
+      }
+    } finally {
+      myInFlight.decrementAndGet();
+    }
+  }
+
+  private void respond(@NotNull String method, @NotNull String uri, @Nullable String body, @NotNull HttpResponse response) {
+    String content = myForge.respond(method, uri, body);
+    if (content == null) {
+      response.setStatusCode(404);
+      return;
+    }
+    response.setStatusCode("POST".equals(method) ? 201 : 200);
+    if (!content.isEmpty())
+      response.setEntity(new StringEntity(content, ContentType.APPLICATION_JSON));
+  }
+
+  private static void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package jetbrains.buildServer.commitPublisher.bitbucketCloud;
+
+import java.util.Map;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
+import jetbrains.buildServer.commitPublisher.PublishedStateCache;
+import jetbrains.buildServer.commitPublisher.RepositoryRouteCache;
+import jetbrains.buildServer.commitPublisher.metrics.PublishingMetrics;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.WebLinks;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
+import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bitbucket Cloud has a fixed API URL, publishers of these settings send requests to the given stub server instead
+ */
+public class StubBitbucketCloudSettings extends BitbucketCloudSettings {
+
+  private final String myApiUrl;
+
+  public StubBitbucketCloudSettings(@NotNull ExecutorServices executorServices,
+                                    @NotNull PluginDescriptor descriptor,
+                                    @NotNull WebLinks links,
+                                    @NotNull CommitStatusPublisherProblems problems,
+                                    @NotNull SSLTrustStoreProvider trustStoreProvider,
+                                    @NotNull PublishedStateCache publishedStates,
+                                    @NotNull PublishingMetrics metrics,
+                                    @NotNull RepositoryRouteCache routes,
+                                    @NotNull String apiUrl) {
+    super(executorServices, descriptor, links, problems, trustStoreProvider, publishedStates, metrics, routes);
+    myApiUrl = apiUrl;
+    setDefaultApiUrl(apiUrl);
+  }
+
+  @Override
+  public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
+    BitbucketCloudPublisher publisher = (BitbucketCloudPublisher)super.createPublisher(buildType, buildFeatureId, params);
+    publisher.setBaseUrl(myApiUrl);
+    return publisher;
+  }
+}